@@ -1,12 +1,23 @@
 package com.karlnosworthy.poijoi;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.karlnosworthy.poijoi.io.OptionAware;
+import com.karlnosworthy.poijoi.io.PipelinedRowSink;
+import com.karlnosworthy.poijoi.io.RowSink;
+import com.karlnosworthy.poijoi.io.RowTransfer;
+import com.karlnosworthy.poijoi.io.SupportsFormat;
+import com.karlnosworthy.poijoi.io.reader.ConfigurableReader;
 import com.karlnosworthy.poijoi.io.reader.Reader;
+import com.karlnosworthy.poijoi.io.reader.RowSource;
 import com.karlnosworthy.poijoi.io.reflect.PoiJoiClassTools;
 import com.karlnosworthy.poijoi.io.reflect.PoiJoiClasspathScanner;
+import com.karlnosworthy.poijoi.io.writer.ConfigurableWriter;
+import com.karlnosworthy.poijoi.io.writer.RowSinkFactory;
 import com.karlnosworthy.poijoi.io.writer.Writer;
 import com.karlnosworthy.poijoi.io.writer.Writer.WriteType;
 import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
@@ -17,9 +28,10 @@ import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
  * An instance can be configuring using a {@link PoiJoiOptions} instance or left as defaults. If provided, these options
  * are then passed onto any Reader or Writer instance that implements the {@link OptionAware} interface.
  * 
- * WARNING: A cache of applicable reader and writer classes is created on construction by searching the classpath
- *          for applicable implementations.  It's suggested that unless otherwise required, a single instance is
- *          used.
+ * WARNING: A cache of applicable reader and writer classes is created on construction from the index files
+ *          (META-INF/services) shipped with each module, or by searching the classpath for applicable
+ *          implementations if there aren't any.  It's suggested that unless otherwise required, a single instance
+ *          is used.
  * 
  * @author Karl Nosworthy
  * @version 1.0
@@ -33,6 +45,7 @@ public class PoiJoi {
 	private PoiJoiOptions options;
 	private PoiJoiClasspathScanner classpathScanner;
 	private PoiJoiClassTools classTools;
+	private ConcurrentMap<Class<?>, Object> sharedInstances;
 	
 	/**
 	 * Creates an instance of PoiJoi which is configured using the standard options.
@@ -54,43 +67,160 @@ public class PoiJoi {
 		super();
 		this.options = options;
 		this.classTools = new PoiJoiClassTools();
+		this.sharedInstances = new ConcurrentHashMap<Class<?>, Object>();
 		this.classpathScanner = new PoiJoiClasspathScanner(classTools);
-		this.classpathScanner.addRootPackageName(Reader.class.getPackage().getName());
-		this.classpathScanner.addRootPackageName(Writer.class.getPackage().getName());
 		
 		if (options != null && options.hasValue(CUSTOM_PACKAGE_NAME_OPTION)) {
 			this.classpathScanner.addRootPackageName(options.getValue(CUSTOM_PACKAGE_NAME_OPTION));
 		}
 		
-		this.classpathScanner.scan(registrationListener);
+		// Use the index shipped with each module unless told not to, only
+		// falling back to scanning the classpath if there isn't one
+		boolean scanClasspath = options != null && options.getBooleanValue(PoiJoiOptions.OPTION_SCAN_CLASSPATH, false);
+		this.classpathScanner.register(!scanClasspath, registrationListener);
 	}
 	
+	@SuppressWarnings("unchecked")
 	public <T> PoiJoiMetaData read(T input, String formatType, boolean readData) throws Exception {
 		Reader<T> reader = findReader(input, formatType);
-		if (reader != null) {
+		if (reader instanceof ConfigurableReader) {
+			return ((ConfigurableReader<T>) reader).read(input, readData, options);
+		} else if (reader != null) {
 			return reader.read(input, readData);
 		}
 		return null;
 	}
 	
+	@SuppressWarnings("unchecked")
 	public <T> boolean write(PoiJoiMetaData metaData, T output, String formatType, WriteType writeType) throws Exception {
 		Writer<T> writer = findWriter(output, formatType);
-		if (writer != null) {
+		if (writer instanceof ConfigurableWriter) {
+			return ((ConfigurableWriter<T>) writer).write(output, metaData, writeType, options);
+		} else if (writer != null) {
 			return writer.write(output, metaData, writeType);
 		}
 		return false;
 	}
 	
+	/**
+	 * Reads the input and writes it to the output without building a complete
+	 * {@link PoiJoiMetaData} in between, as long as the reader is a {@link RowSource}
+	 * and the writer is a {@link RowSinkFactory}. Otherwise the input is read in full
+	 * and then written.
+	 * 
+	 * @param input The input to read from.
+	 * @param inputFormatType The format type of the input.
+	 * @param output The output to write to.
+	 * @param outputFormatType The format type of the output.
+	 * @param writeType Whether to write the Data and/or the Schema.
+	 * @return True if the write was successful otherwise false.
+	 */
+	public <I, O> boolean pipe(I input, String inputFormatType, O output, String outputFormatType, WriteType writeType) throws Exception {
+		return transfer(input, inputFormatType, output, outputFormatType, writeType, options, false);
+	}
+	
+	/**
+	 * Reads the input and writes it to the output with the reading and the
+	 * writing overlapping, as long as the reader is a {@link RowSource} and the
+	 * writer is a {@link RowSinkFactory}. The reader runs on the calling thread
+	 * and hands batches of rows to the writer, which runs on a thread of its
+	 * own, through a queue holding at most {@link PoiJoiOptions#OPTION_QUEUE_SIZE}
+	 * batches. Otherwise the input is read in full and then written.
+	 * 
+	 * If either side fails the other is stopped and the failure is thrown.
+	 * 
+	 * @param input The input to read from.
+	 * @param inputFormatType The format type of the input.
+	 * @param output The output to write to.
+	 * @param outputFormatType The format type of the output.
+	 * @param options The options to apply to this conversion, or null to use
+	 *                the ones this instance was created with.
+	 * @return True if the write was successful otherwise false.
+	 */
+	public <I, O> boolean convert(I input, String inputFormatType, O output, String outputFormatType, PoiJoiOptions options) throws Exception {
+		return convert(input, inputFormatType, output, outputFormatType, WriteType.BOTH, options);
+	}
+	
+	/**
+	 * As {@link #convert(Object, String, Object, String, PoiJoiOptions)} but
+	 * controlling what gets written.
+	 * 
+	 * @param writeType Whether to write the Data and/or the Schema.
+	 */
+	public <I, O> boolean convert(I input, String inputFormatType, O output, String outputFormatType, WriteType writeType, PoiJoiOptions options) throws Exception {
+		if (options == null) {
+			options = this.options;
+		}
+		return transfer(input, inputFormatType, output, outputFormatType, writeType, options, true);
+	}
+	
+	/**
+	 * Reads the input and writes it to the output, streaming the rows from the
+	 * reader to the writer if the reader is a {@link RowSource} and the writer
+	 * is a {@link RowSinkFactory}, and otherwise reading the input in full and
+	 * then writing it.
+	 * 
+	 * @param pipelined Whether the streamed rows are handed to the writer
+	 *                  through a {@link PipelinedRowSink}, so that it writes
+	 *                  them on a thread of its own.
+	 */
+	@SuppressWarnings("unchecked")
+	private <I, O> boolean transfer(I input, String inputFormatType, O output, String outputFormatType, WriteType writeType, PoiJoiOptions options, boolean pipelined) throws Exception {
+		Reader<I> reader = findReader(input, inputFormatType);
+		Writer<O> writer = findWriter(output, outputFormatType);
+		
+		if (reader == null || writer == null) {
+			return false;
+		}
+		
+		boolean readData = writeType != WriteType.SCHEMA_ONLY;
+		
+		if (reader instanceof RowSource && writer instanceof RowSinkFactory) {
+			RowSink sink = ((RowSinkFactory<O>) writer).createSink(output, writeType, options);
+			if (sink == null) {
+				return false;
+			}
+			
+			if (pipelined) {
+				int queueSize = PipelinedRowSink.DEFAULT_QUEUE_SIZE;
+				if (options != null) {
+					queueSize = options.getIntValue(PoiJoiOptions.OPTION_QUEUE_SIZE, queueSize);
+				}
+				sink = new PipelinedRowSink(sink, queueSize);
+			}
+			return RowTransfer.transfer((RowSource<I>) reader, input, readData, sink, options);
+		}
+		
+		logger.debug("{} or {} cannot stream rows, reading the input in full", reader.getClass().getSimpleName(), writer.getClass().getSimpleName());
+		
+		PoiJoiMetaData metaData = null;
+		if (reader instanceof ConfigurableReader) {
+			metaData = ((ConfigurableReader<I>) reader).read(input, readData, options);
+		} else {
+			metaData = reader.read(input, readData);
+		}
+		
+		if (metaData == null) {
+			return false;
+		} else if (writer instanceof ConfigurableWriter) {
+			return ((ConfigurableWriter<O>) writer).write(output, metaData, writeType, options);
+		}
+		return writer.write(output, metaData, writeType);
+	}
+	
 	/**
 	 * Searches for a known reader that supports the given input type and format.
 	 * 
+	 * Readers which are declared as stateless (see {@link SupportsFormat#stateless()}) are shared
+	 * and so never have the options set on them, they have to be passed with each call instead.
+	 * 
 	 * @param input The type of input that the reader needs to support.
 	 * @param formatType The format type of the data that the reader will be reading.
 	 * @return An instance of an applicable reader (may be null).
 	 */
 	public <T> Reader<T> findReader(T input, String formatType) {
 		Reader<T> reader = getCachedReader(input, formatType);
-		if (reader instanceof OptionAware) {
+		if (reader instanceof OptionAware && !sharedInstances.containsKey(reader.getClass())) {
 			((OptionAware) reader).setOptions(options);
 		}
 		return reader;
@@ -99,13 +229,16 @@ public class PoiJoi {
 	/**
 	 * Searches for a known writer that supports the given input type and format.
 	 * 
+	 * Writers which are declared as stateless (see {@link SupportsFormat#stateless()}) are shared
+	 * and so never have the options set on them, they have to be passed with each call instead.
+	 * 
 	 * @param output The type of output that the reader needs to support.
 	 * @param formatType The format type of the data that the reader will be reading.
 	 * @return An instance of an applicable reader (may be null).
 	 */
 	public <T> Writer<T> findWriter(T output, String formatType) {
 		Writer<T> writer = getCachedWriter(output, formatType);
-		if (writer instanceof OptionAware) {
+		if (writer instanceof OptionAware && !sharedInstances.containsKey(writer.getClass())) {
 			((OptionAware) writer).setOptions(options);
 		}
 		return writer;
@@ -120,14 +253,26 @@ public class PoiJoi {
 	 * @param formatType The format type of the data that the reader will be reading.
 	 * @return An instance of an applicable reader or null.
 	 */
+	@SuppressWarnings("unchecked")
 	private <T> Reader<T> getCachedReader(T input, String formatType) {
 		Reader<T> reader = null;
 		
 		Class<?> readerClass = classpathScanner.getCachedReaderClass(input.getClass(), formatType);
 		
 		if (readerClass != null) {
+			Object sharedInstance = sharedInstances.get(readerClass);
+			if (sharedInstance != null) {
+				return (Reader<T>) sharedInstance;
+			}
+			
 			try {
 				reader = classTools.createReaderInstance(input, readerClass);
+				if (reader != null && classTools.isStateless(readerClass)) {
+					sharedInstance = sharedInstances.putIfAbsent(readerClass, reader);
+					if (sharedInstance != null) {
+						reader = (Reader<T>) sharedInstance;
+					}
+				}
 			} catch (IllegalAccessException illegalAccessException) {
 				illegalAccessException.printStackTrace();
 			} catch (InstantiationException instantiationException) {
@@ -146,14 +291,26 @@ public class PoiJoi {
 	 * @param formatType The format type of the data that the writer will be reading.
 	 * @return An instance of an applicable writer or null.
 	 */
+	@SuppressWarnings("unchecked")
 	private <T> Writer<T> getCachedWriter(T output, String formatType) {
 		Writer<T> writer = null;
 		
 		Class<?> writerClass = classpathScanner.getCachedWriterClass(output.getClass(), formatType);
 		
 		if (writerClass != null) {
+			Object sharedInstance = sharedInstances.get(writerClass);
+			if (sharedInstance != null) {
+				return (Writer<T>) sharedInstance;
+			}
+			
 			try {
 				writer = classTools.createWriterInstance(output, writerClass);
+				if (writer != null && classTools.isStateless(writerClass)) {
+					sharedInstance = sharedInstances.putIfAbsent(writerClass, writer);
+					if (sharedInstance != null) {
+						writer = (Writer<T>) sharedInstance;
+					}
+				}
 			} catch (IllegalAccessException illegalAccessException) {
 				illegalAccessException.printStackTrace();
 			} catch (InstantiationException instantiationException) {
@@ -1,23 +1,40 @@
 package com.karlnosworthy.poijoi;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * An immutable set of named options.
+ * 
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
 public class PoiJoiOptions {
 	
 	public static final String OPTION_INFO = "--info";
 	public static final String OPTION_COMPARE = "--compare";
+	public static final String OPTION_STREAMING = "--streaming";
+	public static final String OPTION_SCAN_CLASSPATH = "--scan-classpath";
+	public static final String OPTION_QUEUE_SIZE = "--queue-size";
+	public static final String OPTION_READ_THREADS = "--read-threads";
 	
-	private Map<String,String> options;
+	private final Map<String,String> options;
 	
 	public PoiJoiOptions() {
 		super();
-		this.options = new HashMap<String,String>();
+		this.options = Collections.emptyMap();
 	}
 	
+	/**
+	 * Creates a set of options from a copy of the values given, the options
+	 * can't be changed once created so can be shared freely.
+	 * 
+	 * @param options The option values keyed by option name.
+	 */
 	public PoiJoiOptions(Map<String,String> options) {
 		super();
-		this.options = options;
+		this.options = Collections.unmodifiableMap(new HashMap<String,String>(options));
 	}
 	
 	public boolean hasValue(String optionName) {
@@ -31,4 +48,41 @@ public class PoiJoiOptions {
 		return null;
 	}
 	
+	/**
+	 * Get the value of an option as a whole number.
+	 * 
+	 * @param optionName The name of the option.
+	 * @param defaultValue The value to use if the option hasn't been set.
+	 * @throws IllegalArgumentException If the option value isn't a number.
+	 */
+	public int getIntValue(String optionName, int defaultValue) {
+		String value = getValue(optionName);
+		if (value == null || value.isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException numberFormatException) {
+			throw new IllegalArgumentException("The value of option " + optionName + " must be a number: " + value);
+		}
+	}
+	
+	/**
+	 * Get the value of an option as a boolean. An option which has been set
+	 * without a value is treated as true.
+	 * 
+	 * @param optionName The name of the option.
+	 * @param defaultValue The value to use if the option hasn't been set.
+	 */
+	public boolean getBooleanValue(String optionName, boolean defaultValue) {
+		if (!hasValue(optionName)) {
+			return defaultValue;
+		}
+		String value = getValue(optionName);
+		if (value == null || value.isEmpty()) {
+			return true;
+		}
+		return Boolean.parseBoolean(value.trim());
+	}
+	
 }
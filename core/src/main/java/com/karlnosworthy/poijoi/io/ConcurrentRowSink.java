@@ -0,0 +1,17 @@
+package com.karlnosworthy.poijoi.io;
+
+/**
+ * A {@link RowSink} which can be passed different tables at the same time
+ * from different threads, as long as all the calls for any one table are made
+ * from the same thread. The stream itself is still started and finished from a
+ * single thread.
+ *
+ * A {@link ParallelTableReader} passes each table straight to a sink like
+ * this from the thread reading it, rather than holding on to the table until
+ * it can be passed on in order.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public interface ConcurrentRowSink extends RowSink {
+}
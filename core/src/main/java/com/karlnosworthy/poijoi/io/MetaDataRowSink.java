@@ -0,0 +1,83 @@
+package com.karlnosworthy.poijoi.io;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.karlnosworthy.poijoi.model.ColumnarTableData;
+import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+/**
+ * A {@link RowSink} which collects everything it is passed into a
+ * {@link PoiJoiMetaData} instance, holding the rows in columnar form. This is
+ * what allows the streaming readers to continue supporting the original
+ * {@code read(source, readData)} API.
+ *
+ * Different tables can be collected at the same time from different threads
+ * (see {@link ConcurrentRowSink}).
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public class MetaDataRowSink implements ConcurrentRowSink {
+
+	private boolean readData;
+	private Map<String, TableDefinition> tableDefinitions;
+	private Map<String, ColumnarTableData> tableData;
+
+	public MetaDataRowSink(boolean readData) {
+		super();
+		this.readData = readData;
+		this.tableDefinitions = new ConcurrentHashMap<String, TableDefinition>();
+		this.tableData = new ConcurrentHashMap<String, ColumnarTableData>();
+	}
+
+	@Override
+	public void startStream() {
+	}
+
+	@Override
+	public void startTable(TableDefinition tableDefinition) {
+		tableDefinitions.put(tableDefinition.getTableName(), tableDefinition);
+		if (readData) {
+			tableData.put(tableDefinition.getTableName(),
+					new ColumnarTableData(tableDefinition));
+		}
+	}
+
+	@Override
+	public void writeRows(TableDefinition tableDefinition,
+			List<HashMap<String, Object>> rows) {
+		ColumnarTableData columnarTableData = tableData.get(tableDefinition
+				.getTableName());
+		if (columnarTableData != null) {
+			for (int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
+				columnarTableData.addRow(rows.get(rowIndex));
+			}
+		}
+	}
+
+	@Override
+	public void finishTable(TableDefinition tableDefinition) {
+	}
+
+	@Override
+	public boolean finishStream() {
+		return true;
+	}
+
+	@Override
+	public void abortStream() {
+	}
+
+	/**
+	 * The table structures and data collected so far.
+	 */
+	public PoiJoiMetaData getMetaData() {
+		return PoiJoiMetaData.fromColumnarData(readData,
+				new HashMap<String, TableDefinition>(tableDefinitions),
+				new HashMap<String, ColumnarTableData>(tableData));
+	}
+}
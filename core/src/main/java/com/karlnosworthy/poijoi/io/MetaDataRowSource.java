@@ -0,0 +1,53 @@
+package com.karlnosworthy.poijoi.io;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.reader.RowSource;
+import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+/**
+ * A {@link RowSource} which replays the contents of an existing
+ * {@link PoiJoiMetaData} instance. This is what allows the streaming writers
+ * to continue supporting the original {@code write(output, metaData, writeType)}
+ * API.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public class MetaDataRowSource implements RowSource<PoiJoiMetaData> {
+
+	@Override
+	public boolean readRows(PoiJoiMetaData metaData, boolean readData,
+			RowSink sink, PoiJoiOptions options) throws Exception {
+
+		if (metaData == null || metaData.getTableDefinitions() == null) {
+			return false;
+		}
+
+		Map<String, TableDefinition> tableDefinitions = metaData
+				.getTableDefinitions();
+		for (String tableName : tableDefinitions.keySet()) {
+			TableDefinition tableDefinition = tableDefinitions.get(tableName);
+			sink.startTable(tableDefinition);
+
+			if (readData && metaData.getTableData() != null) {
+				List<HashMap<String, Object>> rows = metaData
+						.getTableData(tableName);
+				if (rows != null) {
+					for (int fromIndex = 0; fromIndex < rows.size(); fromIndex += RowBuffer.DEFAULT_BATCH_SIZE) {
+						int toIndex = Math.min(rows.size(), fromIndex
+								+ RowBuffer.DEFAULT_BATCH_SIZE);
+						sink.writeRows(tableDefinition,
+								rows.subList(fromIndex, toIndex));
+					}
+				}
+			}
+			sink.finishTable(tableDefinition);
+		}
+		return true;
+	}
+}
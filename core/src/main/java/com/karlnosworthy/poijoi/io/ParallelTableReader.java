@@ -0,0 +1,291 @@
+package com.karlnosworthy.poijoi.io;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+/**
+ * Reads the tables of a source at the same time on an {@link ExecutorService}
+ * while still passing them on to a {@link RowSink} one table at a time, for
+ * sources whose tables can be read independently of each other (e.g. the
+ * sheets of a workbook or the tables of a database).
+ *
+ * Each table is read by a {@link TableReader} of its own. If the sink is a
+ * {@link ConcurrentRowSink} the tables are passed straight to it from the
+ * threads reading them, otherwise each table is handed over through a bounded
+ * queue of its own and passed on from the calling thread, in the order the
+ * table readers were given, as it is read. A table read ahead of its turn
+ * waits once its queue is full, so at most one queue of batches per thread is
+ * held in memory.
+ *
+ * If a table fails to be read the tables still being read are cancelled and
+ * the failure is thrown.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public final class ParallelTableReader {
+
+	/**
+	 * Reads a single table of a source.
+	 */
+	public interface TableReader {
+
+		/**
+		 * Pass the structure and optionally the rows of the table to the sink,
+		 * starting and finishing the table, or pass nothing at all if the
+		 * table is to be skipped.
+		 */
+		void readTable(RowSink sink) throws Exception;
+	}
+
+	private final ExecutorService executorService;
+	private final int queueSize;
+
+	/**
+	 * @param executorService
+	 *            The executor the tables are read on, which is left running
+	 */
+	public ParallelTableReader(ExecutorService executorService) {
+		this(executorService, PipelinedRowSink.DEFAULT_QUEUE_SIZE);
+	}
+
+	/**
+	 * @param executorService
+	 *            The executor the tables are read on, which is left running
+	 * @param queueSize
+	 *            The number of batches of a table which can be waiting to be
+	 *            passed on
+	 */
+	public ParallelTableReader(ExecutorService executorService, int queueSize) {
+		super();
+		if (executorService == null) {
+			throw new IllegalArgumentException("The executor service cannot be null.");
+		}
+		this.executorService = executorService;
+		this.queueSize = queueSize > 0 ? queueSize : PipelinedRowSink.DEFAULT_QUEUE_SIZE;
+	}
+
+	/**
+	 * The number of tables to read at the same time given by the
+	 * {@link PoiJoiOptions#OPTION_READ_THREADS} option, defaults to 1 which
+	 * reads them one after another.
+	 *
+	 * @param options
+	 *            The options to apply while reading (may be null)
+	 */
+	public static int getNumberOfThreads(PoiJoiOptions options) {
+		if (options == null) {
+			return 1;
+		}
+		int numberOfThreads = options.getIntValue(PoiJoiOptions.OPTION_READ_THREADS, 1);
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("The value of option " + PoiJoiOptions.OPTION_READ_THREADS + " must be at least 1: " + numberOfThreads);
+		}
+		return numberOfThreads;
+	}
+
+	/**
+	 * Read the tables on a pool of at most the given number of threads, which
+	 * is shut down once they have been read. With a single thread, or a single
+	 * table, the tables are read one after another on the calling thread.
+	 *
+	 * @param tableReaders
+	 *            The readers of the tables, in the order they're passed on
+	 * @param sink
+	 *            The sink to pass the tables to
+	 * @param numberOfThreads
+	 *            The number of tables to read at the same time
+	 */
+	public static void read(List<TableReader> tableReaders, RowSink sink,
+			int numberOfThreads) throws Exception {
+
+		int poolSize = Math.min(numberOfThreads, tableReaders.size());
+		if (poolSize < 2) {
+			for (TableReader tableReader : tableReaders) {
+				tableReader.readTable(sink);
+			}
+			return;
+		}
+
+		ExecutorService executorService = Executors.newFixedThreadPool(poolSize);
+		try {
+			new ParallelTableReader(executorService).read(tableReaders, sink);
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	/**
+	 * Read the tables on this reader's executor.
+	 *
+	 * @param tableReaders
+	 *            The readers of the tables, in the order they're passed on
+	 * @param sink
+	 *            The sink to pass the tables to
+	 */
+	public void read(List<TableReader> tableReaders, final RowSink sink)
+			throws Exception {
+
+		final boolean concurrentSink = sink instanceof ConcurrentRowSink;
+
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		List<BlockingQueue<Event>> queues = new ArrayList<BlockingQueue<Event>>();
+		try {
+			for (final TableReader tableReader : tableReaders) {
+				final BlockingQueue<Event> queue = concurrentSink ? null : new ArrayBlockingQueue<Event>(queueSize);
+				queues.add(queue);
+				futures.add(executorService.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						if (concurrentSink) {
+							tableReader.readTable(sink);
+							return null;
+						}
+						try {
+							tableReader.readTable(new QueueRowSink(queue));
+						} finally {
+							queue.put(END_OF_TABLE);
+						}
+						return null;
+					}
+				}));
+			}
+
+			for (int tableIndex = 0; tableIndex < futures.size(); tableIndex++) {
+				BlockingQueue<Event> queue = queues.get(tableIndex);
+				if (queue != null) {
+					Event event;
+					while ((event = queue.take()) != END_OF_TABLE) {
+						event.passTo(sink);
+					}
+				}
+				getResult(futures.get(tableIndex));
+			}
+		} finally {
+			// only tables still being read after a failure are affected
+			for (Future<Void> future : futures) {
+				future.cancel(true);
+			}
+			// make room for the end of any table left waiting on its queue
+			for (BlockingQueue<Event> queue : queues) {
+				if (queue != null) {
+					queue.clear();
+				}
+			}
+		}
+	}
+
+	private void getResult(Future<Void> future) throws Exception {
+		try {
+			future.get();
+		} catch (InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+			throw interruptedException;
+		} catch (ExecutionException executionException) {
+			Throwable cause = executionException.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw executionException;
+		}
+	}
+
+	private enum EventType {
+		START_TABLE, WRITE_ROWS, FINISH_TABLE
+	}
+
+	/**
+	 * Marks the end of the events of a table.
+	 */
+	private static final Event END_OF_TABLE = new Event(null, null, null);
+
+	private static final class Event {
+
+		private final EventType type;
+		private final TableDefinition tableDefinition;
+		private final List<HashMap<String, Object>> rows;
+
+		Event(EventType type, TableDefinition tableDefinition,
+				List<HashMap<String, Object>> rows) {
+			super();
+			this.type = type;
+			this.tableDefinition = tableDefinition;
+			this.rows = rows;
+		}
+
+		void passTo(RowSink sink) throws Exception {
+			switch (type) {
+				case START_TABLE:
+					sink.startTable(tableDefinition);
+					break;
+				case WRITE_ROWS:
+					sink.writeRows(tableDefinition, rows);
+					break;
+				case FINISH_TABLE:
+					sink.finishTable(tableDefinition);
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Puts what a {@link TableReader} passes to it on to the table's queue, to
+	 * be passed on to the real sink by the calling thread. The stream belongs
+	 * to the real sink, so the table readers can't start or finish it.
+	 */
+	private static final class QueueRowSink implements RowSink {
+
+		private final BlockingQueue<Event> queue;
+
+		QueueRowSink(BlockingQueue<Event> queue) {
+			super();
+			this.queue = queue;
+		}
+
+		@Override
+		public void startStream() {
+			throw new UnsupportedOperationException("A table reader can't start the stream");
+		}
+
+		@Override
+		public void startTable(TableDefinition tableDefinition) throws InterruptedException {
+			queue.put(new Event(EventType.START_TABLE, tableDefinition, null));
+		}
+
+		@Override
+		public void writeRows(TableDefinition tableDefinition,
+				List<HashMap<String, Object>> rows) throws InterruptedException {
+			// the batch isn't guaranteed to be valid once this returns
+			queue.put(new Event(EventType.WRITE_ROWS, tableDefinition,
+					new ArrayList<HashMap<String, Object>>(rows)));
+		}
+
+		@Override
+		public void finishTable(TableDefinition tableDefinition) throws InterruptedException {
+			queue.put(new Event(EventType.FINISH_TABLE, tableDefinition, null));
+		}
+
+		@Override
+		public boolean finishStream() {
+			throw new UnsupportedOperationException("A table reader can't finish the stream");
+		}
+
+		@Override
+		public void abortStream() {
+			throw new UnsupportedOperationException("A table reader can't abort the stream");
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package com.karlnosworthy.poijoi.io;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+/**
+ * A {@link RowSink} which hands everything it is passed over to another sink
+ * running on a thread of its own, so that a source can carry on reading while
+ * the rows it has already produced are being written.
+ *
+ * The two threads are connected by a bounded queue of row batches, once it is
+ * full the source waits for the writer to catch up. A failure on either side
+ * stops the other: if the writer fails the next call made by the source
+ * throws the writer's exception, and if the source fails (see
+ * {@link #abortStream()}) the writer is aborted once it has caught up.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public final class PipelinedRowSink implements RowSink {
+
+	public static final int DEFAULT_QUEUE_SIZE = 8;
+
+	private enum EventType {
+		START_STREAM, START_TABLE, WRITE_ROWS, FINISH_TABLE, FINISH_STREAM, ABORT_STREAM
+	}
+
+	private static final class Event {
+
+		private final EventType type;
+		private final TableDefinition tableDefinition;
+		private final List<HashMap<String, Object>> rows;
+
+		Event(EventType type, TableDefinition tableDefinition,
+				List<HashMap<String, Object>> rows) {
+			super();
+			this.type = type;
+			this.tableDefinition = tableDefinition;
+			this.rows = rows;
+		}
+	}
+
+	private final RowSink sink;
+	private final BlockingQueue<Event> queue;
+
+	private Thread writerThread;
+	private volatile Throwable writerFailure;
+	private volatile boolean successful;
+
+	/**
+	 * @param sink
+	 *            The sink to write into, only ever called from the writer
+	 *            thread
+	 * @param queueSize
+	 *            The number of batches which can be waiting to be written
+	 *            before the source has to wait
+	 */
+	public PipelinedRowSink(RowSink sink, int queueSize) {
+		super();
+		if (sink == null) {
+			throw new IllegalArgumentException("The sink cannot be null.");
+		}
+		this.sink = sink;
+		this.queue = new ArrayBlockingQueue<Event>(queueSize > 0 ? queueSize : DEFAULT_QUEUE_SIZE);
+	}
+
+	@Override
+	public void startStream() throws Exception {
+		writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "poijoi-writer");
+		writerThread.setDaemon(true);
+		writerThread.start();
+
+		enqueue(new Event(EventType.START_STREAM, null, null));
+	}
+
+	@Override
+	public void startTable(TableDefinition tableDefinition) throws Exception {
+		enqueue(new Event(EventType.START_TABLE, tableDefinition, null));
+	}
+
+	@Override
+	public void writeRows(TableDefinition tableDefinition,
+			List<HashMap<String, Object>> rows) throws Exception {
+		// the batch isn't guaranteed to be valid once this returns
+		enqueue(new Event(EventType.WRITE_ROWS, tableDefinition,
+				new ArrayList<HashMap<String, Object>>(rows)));
+	}
+
+	@Override
+	public void finishTable(TableDefinition tableDefinition) throws Exception {
+		enqueue(new Event(EventType.FINISH_TABLE, tableDefinition, null));
+	}
+
+	@Override
+	public boolean finishStream() throws Exception {
+		enqueue(new Event(EventType.FINISH_STREAM, null, null));
+		writerThread.join();
+		rethrowWriterFailure();
+		return successful;
+	}
+
+	@Override
+	public void abortStream() {
+		if (writerThread == null) {
+			return;
+		}
+
+		try {
+			// the writer only stops once it has seen the end of the stream
+			if (writerThread.isAlive()) {
+				queue.put(new Event(EventType.ABORT_STREAM, null, null));
+			}
+			writerThread.join();
+		} catch (InterruptedException interruptedException) {
+			writerThread.interrupt();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * The exception thrown by the sink on the writer thread, if it failed.
+	 */
+	public Throwable getWriterFailure() {
+		return writerFailure;
+	}
+
+	private void enqueue(Event event) throws Exception {
+		rethrowWriterFailure();
+		queue.put(event);
+	}
+
+	private void rethrowWriterFailure() throws Exception {
+		Throwable failure = writerFailure;
+		if (failure instanceof Exception) {
+			throw (Exception) failure;
+		} else if (failure instanceof Error) {
+			throw (Error) failure;
+		}
+	}
+
+	/**
+	 * Runs on the writer thread, passing each event on to the sink until the
+	 * end of the stream. After a failure the remaining events are discarded
+	 * so that the source is never left waiting on a full queue.
+	 */
+	private void drain() {
+		while (true) {
+			Event event;
+			try {
+				event = queue.take();
+			} catch (InterruptedException interruptedException) {
+				if (writerFailure == null) {
+					writerFailure = interruptedException;
+					sink.abortStream();
+				}
+				return;
+			}
+
+			boolean endOfStream = event.type == EventType.FINISH_STREAM
+					|| event.type == EventType.ABORT_STREAM;
+
+			if (writerFailure == null) {
+				try {
+					handle(event);
+				} catch (Throwable throwable) {
+					writerFailure = throwable;
+					sink.abortStream();
+				}
+			}
+
+			if (endOfStream) {
+				return;
+			}
+		}
+	}
+
+	private void handle(Event event) throws Exception {
+		switch (event.type) {
+			case START_STREAM:
+				sink.startStream();
+				break;
+			case START_TABLE:
+				sink.startTable(event.tableDefinition);
+				break;
+			case WRITE_ROWS:
+				sink.writeRows(event.tableDefinition, event.rows);
+				break;
+			case FINISH_TABLE:
+				sink.finishTable(event.tableDefinition);
+				break;
+			case FINISH_STREAM:
+				successful = sink.finishStream();
+				break;
+			case ABORT_STREAM:
+				sink.abortStream();
+				break;
+		}
+	}
+}
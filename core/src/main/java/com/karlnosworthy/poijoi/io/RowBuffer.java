@@ -0,0 +1,68 @@
+package com.karlnosworthy.poijoi.io;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+/**
+ * Collects the rows of a single table into fixed size batches and passes each
+ * completed batch on to a {@link RowSink}.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public class RowBuffer {
+
+	public static final int DEFAULT_BATCH_SIZE = 500;
+
+	private RowSink sink;
+	private TableDefinition tableDefinition;
+	private int batchSize;
+	private List<HashMap<String, Object>> rows;
+	private long numberOfRows;
+
+	public RowBuffer(RowSink sink, TableDefinition tableDefinition) {
+		this(sink, tableDefinition, DEFAULT_BATCH_SIZE);
+	}
+
+	public RowBuffer(RowSink sink, TableDefinition tableDefinition,
+			int batchSize) {
+		super();
+		this.sink = sink;
+		this.tableDefinition = tableDefinition;
+		this.batchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+		this.rows = new ArrayList<HashMap<String, Object>>(this.batchSize);
+	}
+
+	/**
+	 * Add a row to the current batch, passing the batch to the sink if it is
+	 * now full.
+	 */
+	public void add(HashMap<String, Object> row) throws Exception {
+		rows.add(row);
+		numberOfRows++;
+		if (rows.size() >= batchSize) {
+			flush();
+		}
+	}
+
+	/**
+	 * Pass any rows in the current batch to the sink.
+	 */
+	public void flush() throws Exception {
+		if (!rows.isEmpty()) {
+			List<HashMap<String, Object>> batch = rows;
+			rows = new ArrayList<HashMap<String, Object>>(batchSize);
+			sink.writeRows(tableDefinition, batch);
+		}
+	}
+
+	/**
+	 * The total number of rows added to the buffer.
+	 */
+	public long getNumberOfRows() {
+		return numberOfRows;
+	}
+}
@@ -0,0 +1,73 @@
+package com.karlnosworthy.poijoi.io;
+
+import java.util.HashMap;
+import java.util.List;
+
+import com.karlnosworthy.poijoi.io.reader.RowSource;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+/**
+ * Receives the table structures and rows produced by a {@link RowSource} one
+ * table at a time, allowing data to be passed from a reader to a writer
+ * without ever holding the complete data set in memory.
+ *
+ * The callbacks are always invoked in the following order:
+ *
+ * <pre>
+ * startStream
+ *   (startTable, writeRows*, finishTable)*
+ * finishStream | abortStream
+ * </pre>
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public interface RowSink {
+
+	/**
+	 * Invoked once before any tables are passed to the sink.
+	 */
+	void startStream() throws Exception;
+
+	/**
+	 * Invoked when a new table has been found by the source.
+	 *
+	 * @param tableDefinition
+	 *            The structure of the table whose rows will follow
+	 */
+	void startTable(TableDefinition tableDefinition) throws Exception;
+
+	/**
+	 * Invoked with the next batch of rows for the current table. The sink must
+	 * not assume that the batch will remain valid after the call returns.
+	 *
+	 * @param tableDefinition
+	 *            The structure of the table the rows belong to
+	 * @param rows
+	 *            The rows where each HashMap represents a row and the String
+	 *            key is the column name
+	 */
+	void writeRows(TableDefinition tableDefinition,
+			List<HashMap<String, Object>> rows) throws Exception;
+
+	/**
+	 * Invoked once all the rows for the current table have been passed.
+	 *
+	 * @param tableDefinition
+	 *            The structure of the table that has been completed
+	 */
+	void finishTable(TableDefinition tableDefinition) throws Exception;
+
+	/**
+	 * Invoked once the source has passed all of its tables.
+	 *
+	 * @return True if the sink completed successfully otherwise false
+	 */
+	boolean finishStream() throws Exception;
+
+	/**
+	 * Invoked instead of {@link #finishStream()} if the source failed part way
+	 * through, giving the sink the chance to release any resources it holds.
+	 */
+	void abortStream();
+}
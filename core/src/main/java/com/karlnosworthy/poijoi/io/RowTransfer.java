@@ -0,0 +1,57 @@
+package com.karlnosworthy.poijoi.io;
+
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.reader.RowSource;
+
+/**
+ * Drives a complete transfer from a {@link RowSource} into a {@link RowSink},
+ * taking care of starting, finishing or aborting the stream on the sink.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public final class RowTransfer {
+
+	private RowTransfer() {
+		super();
+	}
+
+	/**
+	 * Pass everything the source provides into the sink.
+	 *
+	 * @param source
+	 *            The source to read from
+	 * @param input
+	 *            The input handed to the source
+	 * @param readData
+	 *            Whether or not to pass the data or just the structure
+	 * @param sink
+	 *            The sink to write into
+	 * @param options
+	 *            The options to apply (may be null)
+	 * @return True if the source was read and the sink finished successfully
+	 */
+	public static <T> boolean transfer(RowSource<T> source, T input,
+			boolean readData, RowSink sink, PoiJoiOptions options)
+			throws Exception {
+
+		if (source == null || sink == null) {
+			return false;
+		}
+
+		boolean finished = false;
+		try {
+			sink.startStream();
+			if (source.readRows(input, readData, sink, options)) {
+				boolean successful = sink.finishStream();
+				finished = true;
+				return successful;
+			}
+			return false;
+		} finally {
+			if (!finished) {
+				sink.abortStream();
+			}
+		}
+	}
+}
@@ -7,10 +7,28 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * Marks a {@link com.karlnosworthy.poijoi.io.reader.Reader} or
+ * {@link com.karlnosworthy.poijoi.io.writer.Writer} implementation as
+ * supporting a format type.
+ * 
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
 @Documented
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.TYPE)
 @Inherited
 public @interface SupportsFormat {
 	String type();
+
+	/**
+	 * Whether a single instance can be shared between callers (and threads).
+	 * A stateless implementation keeps nothing between calls, receives its
+	 * options with each call (see
+	 * {@link com.karlnosworthy.poijoi.io.reader.ConfigurableReader} and
+	 * {@link com.karlnosworthy.poijoi.io.writer.ConfigurableWriter}) and never
+	 * has them set on it.
+	 */
+	boolean stateless() default false;
 }
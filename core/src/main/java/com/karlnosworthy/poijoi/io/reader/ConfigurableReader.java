@@ -0,0 +1,26 @@
+package com.karlnosworthy.poijoi.io.reader;
+
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
+
+/**
+ * A {@link Reader} which is passed its options with each call, rather than
+ * having them set beforehand, so that a single instance can be shared.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ *
+ * @param <T>
+ *            The type of source (e.g. java.io.File, java.sql.Connection etc)
+ */
+public interface ConfigurableReader<T> extends Reader<T> {
+
+	/**
+	 * Read a source to build a Poijoi meta data object based on the read type
+	 * 
+	 * @param source The source input for the data
+	 * @param readData Whether or not to read the data or just the structure
+	 * @param options The options to apply while reading (may be null)
+	 */
+	PoiJoiMetaData read(T source, boolean readData, PoiJoiOptions options) throws Exception;
+}
@@ -0,0 +1,36 @@
+package com.karlnosworthy.poijoi.io.reader;
+
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.RowSink;
+
+/**
+ * A source which can pass its table structures and data to a {@link RowSink}
+ * incrementally rather than building a complete
+ * {@link com.karlnosworthy.poijoi.model.PoiJoiMetaData} first.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ *
+ * @param <T>
+ *            The type of source (e.g. java.io.File, java.sql.Connection etc)
+ */
+public interface RowSource<T> {
+
+	/**
+	 * Read a source and pass each table structure (and optionally its rows) to
+	 * the sink. The caller is responsible for starting and finishing the
+	 * stream on the sink.
+	 *
+	 * @param source
+	 *            The source input for the data
+	 * @param readData
+	 *            Whether or not to read the data or just the structure
+	 * @param sink
+	 *            The sink to pass the tables and rows to
+	 * @param options
+	 *            The options to apply while reading (may be null)
+	 * @return True if the source was valid and has been read otherwise false
+	 */
+	boolean readRows(T source, boolean readData, RowSink sink,
+			PoiJoiOptions options) throws Exception;
+}
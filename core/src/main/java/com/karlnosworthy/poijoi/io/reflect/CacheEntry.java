@@ -0,0 +1,29 @@
+package com.karlnosworthy.poijoi.io.reflect;
+
+import java.lang.reflect.Type;
+
+class CacheEntry {
+	
+	private Class<?> entryClass;
+	private String formatType;
+	private Type resourceType;
+	
+	public CacheEntry(Class<?> entryClass,String formatType, Type resourceType) {
+		super();
+		this.entryClass = entryClass;
+		this.formatType = formatType;
+		this.resourceType = resourceType;
+	}
+	
+	public Class<?> getEntryClass() {
+		return entryClass;
+	}
+	
+	public String getFormatType() {
+		return formatType;
+	}
+	
+	public Type getResourceType() {
+		return resourceType;
+	}
+}
@@ -115,6 +115,20 @@ public class PoiJoiClassTools {
 		return supportedFormat;
 	}
 	
+	/**
+	 * Checks if the specified class declares itself as stateless through its
+	 * {@link SupportsFormat} annotation, meaning a single instance can be shared.
+	 * 
+	 * @param _class The class to check.
+	 * @return True if the class is stateless otherwise false.
+	 */
+	public boolean isStateless(Class<?> _class) {
+		if (_class != null && _class.isAnnotationPresent(SupportsFormat.class)) {
+			return _class.getAnnotation(SupportsFormat.class).stateless();
+		}
+		return false;
+	}
+	
 	public Type getReaderGenericType(Class<?> _class) {
 		
 		Type readerGenericType = null;
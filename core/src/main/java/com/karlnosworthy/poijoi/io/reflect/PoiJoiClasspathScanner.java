@@ -1,8 +1,10 @@
 package com.karlnosworthy.poijoi.io.reflect;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.reflect.Type;
 import java.net.JarURLConnection;
 import java.net.URL;
@@ -10,6 +12,7 @@ import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.jar.JarEntry;
@@ -27,6 +30,16 @@ public class PoiJoiClasspathScanner {
 	
 	private static final Logger logger = LoggerFactory.getLogger(PoiJoiClasspathScanner.class);
 
+	/**
+	 * The resource listing the reader classes provided by a module.
+	 */
+	public static final String READER_INDEX_RESOURCE = "META-INF/services/" + Reader.class.getName();
+	
+	/**
+	 * The resource listing the writer classes provided by a module.
+	 */
+	public static final String WRITER_INDEX_RESOURCE = "META-INF/services/" + Writer.class.getName();
+	
 	private final String CLASS_EXTENSION = ".class";
 	private final String JAR_PROTOCOL_NAME = "jar";
 	private final String TEST_CLASS_NAME_SUFFIX = "Test.class";
@@ -35,6 +48,8 @@ public class PoiJoiClasspathScanner {
 	private PoiJoiClassTools classTools;
 	private Set<CacheEntry> readerClassCache;
 	private Set<CacheEntry> writerClassCache;
+	private Set<Class<?>> registeredClasses;
+	private volatile PoiJoiRegistry registry;
 	
 	public PoiJoiClasspathScanner() {
 		this(new PoiJoiClassTools());
@@ -44,8 +59,10 @@ public class PoiJoiClasspathScanner {
 		super();
 		this.classTools = classTools;
 		this.rootPackageNames = new ArrayList<String>();
-		this.readerClassCache = new HashSet<CacheEntry>();
-		this.writerClassCache = new HashSet<CacheEntry>();
+		this.readerClassCache = new LinkedHashSet<CacheEntry>();
+		this.writerClassCache = new LinkedHashSet<CacheEntry>();
+		this.registeredClasses = new HashSet<Class<?>>();
+		this.registry = new PoiJoiRegistry(readerClassCache, writerClassCache);
 	}
 	
 	public void addRootPackageName(String rootPackageName) {
@@ -64,38 +81,35 @@ public class PoiJoiClasspathScanner {
 		return writerClassCache != null && !writerClassCache.isEmpty();
 	}
 	
+	/**
+	 * The readers and writers found by the most recent scan.
+	 */
+	public PoiJoiRegistry getRegistry() {
+		return registry;
+	}
+	
 	public <T> Class<?> getCachedReaderClass(Type inputResourceType, String formatType) {
-		Class<?> cachedReaderClass = null;
-		
-		for (CacheEntry cacheEntry : readerClassCache) {
-			if (cacheEntry.getFormatType().equalsIgnoreCase(formatType) &&
-				((Class<?>)cacheEntry.getResourceType()).isAssignableFrom((Class<?>)inputResourceType)) {			
-				cachedReaderClass = cacheEntry.getEntryClass();
-				break;
-			}
+		if (!(inputResourceType instanceof Class)) {
+			return null;
 		}
-		
-		return cachedReaderClass;
+		return registry.getReaderClass((Class<?>) inputResourceType, formatType);
 	}
 	
 	public Class<?> getCachedWriterClass(Type outputResourceType, String formatType) {
-		Class<?> cachedWriterClass = null;
-		
-		for (CacheEntry cacheEntry : writerClassCache) {
-			if (cacheEntry.getFormatType().equalsIgnoreCase(formatType) &&
-				((Class<?>)cacheEntry.getResourceType()).isAssignableFrom((Class<?>)outputResourceType)) {			
-				cachedWriterClass = cacheEntry.getEntryClass();
-				break;
-			}
+		if (!(outputResourceType instanceof Class)) {
+			return null;
 		}
-		
-		return cachedWriterClass;
+		return registry.getWriterClass((Class<?>) outputResourceType, formatType);
 	}
 	
 	public void scan() {
 		scan(null);
 	}
 	
+	public boolean loadIndex() {
+		return loadIndex(null);
+	}
+	
 	public void scan(PoiJoiRegistrationListener registrationListener) {
 		
 		// check that some root packages have been specified!
@@ -104,6 +118,45 @@ public class PoiJoiClasspathScanner {
 			registrationListener.registrationStarted();
 		}
 		
+		scanRootPackages(registrationListener);
+		
+		registry = new PoiJoiRegistry(readerClassCache, writerClassCache);
+		
+		if (registrationListener != null) {
+			registrationListener.registrationFinished();
+		}
+	}
+	
+	/**
+	 * Registers the readers and writers listed in the index files shipped by
+	 * each module (see {@link #loadIndex(PoiJoiRegistrationListener)}), or
+	 * those found by scanning the reader and writer packages if there aren't
+	 * any, along with those found by scanning any root packages which have
+	 * been added. The listener is notified of the whole registration once.
+	 * 
+	 * @param useIndex False to scan the reader and writer packages even if
+	 *                 there are index files.
+	 * @param registrationListener The listener to notify (may be null).
+	 */
+	public void register(boolean useIndex, PoiJoiRegistrationListener registrationListener) {
+		if (registrationListener != null) {
+			registrationListener.registrationStarted();
+		}
+		
+		if (!useIndex || !loadIndexes(registrationListener)) {
+			addRootPackageName(Reader.class.getPackage().getName());
+			addRootPackageName(Writer.class.getPackage().getName());
+		}
+		scanRootPackages(registrationListener);
+		
+		registry = new PoiJoiRegistry(readerClassCache, writerClassCache);
+		
+		if (registrationListener != null) {
+			registrationListener.registrationFinished();
+		}
+	}
+	
+	private void scanRootPackages(PoiJoiRegistrationListener registrationListener) {
 		for (String rootPackageName: rootPackageNames) {
 			String resourcePath = createResourceName(rootPackageName);
 			
@@ -146,43 +199,142 @@ public class PoiJoiClasspathScanner {
 					}
 					
 					for (Class<?> _class : classes) {
-						
-						String supportedFormatType = classTools.getSupportedFormatType(_class);
-						
-						if (classTools.isReader(_class)) {
-							Class<?> readerClass = _class;
-							
-							Type genericType = classTools.getReaderGenericType(readerClass);
-							CacheEntry cacheEntry = new CacheEntry(readerClass, supportedFormatType, genericType);
-							readerClassCache.add(cacheEntry);
-							
-							logger.info("Found Reader implementation {}", _class.getCanonicalName());
-							if (registrationListener != null) {
-								registrationListener.registeredExtension(_class.getSimpleName(), _class.getPackage().getName(), "", ExtensionType.READER);
-							}
-						} else if (classTools.isWriter(_class)) {
-							Class<?> writerClass = _class;
-							
-							Type genericType = classTools.getWriterGenericType(writerClass);
-							
-							CacheEntry cacheEntry = new CacheEntry(writerClass, supportedFormatType, genericType);
-							writerClassCache.add(cacheEntry);
-							
-							logger.info("Found Writer implementation {}", _class.getCanonicalName());
-							if (registrationListener != null) {
-								registrationListener.registeredExtension(_class.getSimpleName(), _class.getPackage().getName(), "", ExtensionType.WRITER);
-							}
-						}
+						register(_class, registrationListener);
 					}				
 				}
 			} catch (IOException ioException) {
 				logger.debug("", ioException);
 			}
 		}
+	}
+	
+	/**
+	 * Registers the readers and writers listed in the
+	 * {@link #READER_INDEX_RESOURCE} and {@link #WRITER_INDEX_RESOURCE} files
+	 * shipped by each module, without scanning any packages. The files use the
+	 * same format as a {@link java.util.ServiceLoader} provider configuration
+	 * file, but the classes are only loaded and not instantiated.
+	 * 
+	 * @param registrationListener The listener to notify (may be null).
+	 * @return True if at least one index file was found.
+	 */
+	public boolean loadIndex(PoiJoiRegistrationListener registrationListener) {
+		if (registrationListener != null) {
+			registrationListener.registrationStarted();
+		}
+		
+		boolean indexFound = loadIndexes(registrationListener);
+		
+		registry = new PoiJoiRegistry(readerClassCache, writerClassCache);
 		
 		if (registrationListener != null) {
 			registrationListener.registrationFinished();
 		}
+		return indexFound;
+	}
+	
+	private boolean loadIndexes(PoiJoiRegistrationListener registrationListener) {
+		boolean indexFound = loadIndex(READER_INDEX_RESOURCE, registrationListener);
+		indexFound |= loadIndex(WRITER_INDEX_RESOURCE, registrationListener);
+		return indexFound;
+	}
+	
+	private boolean loadIndex(String indexResourceName, PoiJoiRegistrationListener registrationListener) {
+		boolean indexFound = false;
+		ClassLoader classLoader = getClass().getClassLoader();
+		
+		try {
+			Enumeration<URL> indexURLs = classLoader.getResources(indexResourceName);
+			while (indexURLs.hasMoreElements()) {
+				URL indexURL = indexURLs.nextElement();
+				indexFound = true;
+				
+				for (String className : readIndex(indexURL)) {
+					try {
+						Class<?> _class = Class.forName(className, false, classLoader);
+						if (!register(_class, registrationListener)) {
+							logger.warn("{} listed in {} is not a valid Reader or Writer", className, indexURL);
+						}
+					} catch (ClassNotFoundException classNotFoundException) {
+						logger.warn("{} listed in {} could not be found", className, indexURL);
+					}
+				}
+			}
+		} catch (IOException ioException) {
+			logger.debug("", ioException);
+		}
+		return indexFound;
+	}
+	
+	/**
+	 * Reads the class names from an index file, ignoring blank lines and
+	 * anything after a '#'.
+	 */
+	private List<String> readIndex(URL indexURL) throws IOException {
+		List<String> classNames = new ArrayList<String>();
+		
+		BufferedReader reader = new BufferedReader(new InputStreamReader(indexURL.openStream(), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int commentIndex = line.indexOf('#');
+				if (commentIndex >= 0) {
+					line = line.substring(0, commentIndex);
+				}
+				line = line.trim();
+				if (line.length() > 0) {
+					classNames.add(line);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return classNames;
+	}
+	
+	/**
+	 * Adds the class to the reader or writer cache if it is a valid reader or
+	 * writer, unless it has already been registered (e.g. it's both listed in
+	 * an index and found by a scan).
+	 * 
+	 * @return True if the class was (or already had been) registered.
+	 */
+	private boolean register(Class<?> _class, PoiJoiRegistrationListener registrationListener) {
+		if (registeredClasses.contains(_class)) {
+			return true;
+		}
+		
+		String supportedFormatType = classTools.getSupportedFormatType(_class);
+		
+		if (classTools.isReader(_class)) {
+			Class<?> readerClass = _class;
+			
+			Type genericType = classTools.getReaderGenericType(readerClass);
+			CacheEntry cacheEntry = new CacheEntry(readerClass, supportedFormatType, genericType);
+			readerClassCache.add(cacheEntry);
+			registeredClasses.add(_class);
+			
+			logger.info("Found Reader implementation {}", _class.getCanonicalName());
+			if (registrationListener != null) {
+				registrationListener.registeredExtension(_class.getSimpleName(), _class.getPackage().getName(), "", ExtensionType.READER);
+			}
+			return true;
+		} else if (classTools.isWriter(_class)) {
+			Class<?> writerClass = _class;
+			
+			Type genericType = classTools.getWriterGenericType(writerClass);
+			
+			CacheEntry cacheEntry = new CacheEntry(writerClass, supportedFormatType, genericType);
+			writerClassCache.add(cacheEntry);
+			registeredClasses.add(_class);
+			
+			logger.info("Found Writer implementation {}", _class.getCanonicalName());
+			if (registrationListener != null) {
+				registrationListener.registeredExtension(_class.getSimpleName(), _class.getPackage().getName(), "", ExtensionType.WRITER);
+			}
+			return true;
+		}
+		return false;
 	}
 	
 	/**
@@ -283,29 +435,3 @@ public class PoiJoiClasspathScanner {
 		});
 	}
 }
-
-class CacheEntry {
-	
-	private Class<?> entryClass;
-	private String formatType;
-	private Type resourceType;
-	
-	public CacheEntry(Class<?> entryClass,String formatType, Type resourceType) {
-		super();
-		this.entryClass = entryClass;
-		this.formatType = formatType;
-		this.resourceType = resourceType;
-	}
-	
-	public Class<?> getEntryClass() {
-		return entryClass;
-	}
-	
-	public String getFormatType() {
-		return formatType;
-	}
-	
-	public Type getResourceType() {
-		return resourceType;
-	}
-}	
@@ -0,0 +1,196 @@
+package com.karlnosworthy.poijoi.io.reflect;
+
+import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.karlnosworthy.poijoi.io.reader.Reader;
+import com.karlnosworthy.poijoi.io.writer.Writer;
+
+/**
+ * An immutable index of the {@link Reader} and {@link Writer} classes found by
+ * a {@link PoiJoiClasspathScanner}, keyed by format type and then by the type
+ * of resource (File, InputStream, Connection etc) each class supports.
+ *
+ * Resolving the class for a concrete resource type walks its type hierarchy
+ * (the class itself, then its superclasses and interfaces, nearest first) the
+ * first time it is seen and then remembers the answer, so repeated lookups
+ * cost a hash lookup on the format type and one on the resource type.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public final class PoiJoiRegistry {
+
+	private final Map<String, TypeLookup> readerLookups;
+	private final Map<String, TypeLookup> writerLookups;
+
+	PoiJoiRegistry(Collection<CacheEntry> readerEntries, Collection<CacheEntry> writerEntries) {
+		super();
+		this.readerLookups = index(readerEntries);
+		this.writerLookups = index(writerEntries);
+	}
+
+	/**
+	 * Returns the reader class which supports the given format type and input
+	 * resource type.
+	 *
+	 * @param inputResourceType The class of the input which is to be read.
+	 * @param formatType The format type of the data that the reader will be reading.
+	 * @return The reader class or null if one isn't available.
+	 */
+	public Class<?> getReaderClass(Class<?> inputResourceType, String formatType) {
+		return resolve(readerLookups, inputResourceType, formatType);
+	}
+
+	/**
+	 * Returns the writer class which supports the given format type and
+	 * output resource type.
+	 *
+	 * @param outputResourceType The class of the output which is to be written.
+	 * @param formatType The format type of the data that the writer will be writing.
+	 * @return The writer class or null if one isn't available.
+	 */
+	public Class<?> getWriterClass(Class<?> outputResourceType, String formatType) {
+		return resolve(writerLookups, outputResourceType, formatType);
+	}
+
+	public boolean hasReaders() {
+		return !readerLookups.isEmpty();
+	}
+
+	public boolean hasWriters() {
+		return !writerLookups.isEmpty();
+	}
+
+	/**
+	 * The format types that can be read, in upper case.
+	 */
+	public Set<String> getReaderFormatTypes() {
+		return readerLookups.keySet();
+	}
+
+	/**
+	 * The format types that can be written, in upper case.
+	 */
+	public Set<String> getWriterFormatTypes() {
+		return writerLookups.keySet();
+	}
+
+	private static Class<?> resolve(Map<String, TypeLookup> lookups, Class<?> resourceType, String formatType) {
+		if (resourceType == null || formatType == null) {
+			return null;
+		}
+		TypeLookup typeLookup = lookups.get(normaliseFormatType(formatType));
+		if (typeLookup == null) {
+			return null;
+		}
+		return typeLookup.resolve(resourceType);
+	}
+
+	static String normaliseFormatType(String formatType) {
+		// toUpperCase returns the same instance if it's already upper case
+		return formatType.trim().toUpperCase(Locale.ENGLISH);
+	}
+
+	private static Map<String, TypeLookup> index(Collection<CacheEntry> entries) {
+		Map<String, Map<Class<?>, Class<?>>> classesByFormatType = new LinkedHashMap<String, Map<Class<?>, Class<?>>>();
+
+		for (CacheEntry entry : entries) {
+			Type resourceType = entry.getResourceType();
+			if (!(resourceType instanceof Class) || entry.getFormatType() == null) {
+				continue;
+			}
+
+			String formatType = normaliseFormatType(entry.getFormatType());
+			Map<Class<?>, Class<?>> classesByResourceType = classesByFormatType.get(formatType);
+			if (classesByResourceType == null) {
+				classesByResourceType = new HashMap<Class<?>, Class<?>>();
+				classesByFormatType.put(formatType, classesByResourceType);
+			}
+
+			// the first class registered for a resource type wins
+			if (!classesByResourceType.containsKey(resourceType)) {
+				classesByResourceType.put((Class<?>) resourceType, entry.getEntryClass());
+			}
+		}
+
+		Map<String, TypeLookup> lookups = new HashMap<String, TypeLookup>();
+		for (Map.Entry<String, Map<Class<?>, Class<?>>> formatTypeEntry : classesByFormatType.entrySet()) {
+			lookups.put(formatTypeEntry.getKey(), new TypeLookup(formatTypeEntry.getValue()));
+		}
+		return Collections.unmodifiableMap(lookups);
+	}
+
+	/**
+	 * The classes supporting a single format type, keyed by the resource type
+	 * they were declared for, along with a memo of the answers for the
+	 * concrete resource types asked about so far.
+	 */
+	private static final class TypeLookup {
+
+		/**
+		 * Stands in for "no class" in the memo, which can't hold nulls.
+		 */
+		private static final Class<?> NONE = Void.class;
+
+		private final Map<Class<?>, Class<?>> classesByResourceType;
+		private final ConcurrentMap<Class<?>, Class<?>> resolvedClasses;
+
+		TypeLookup(Map<Class<?>, Class<?>> classesByResourceType) {
+			super();
+			this.classesByResourceType = Collections.unmodifiableMap(new HashMap<Class<?>, Class<?>>(classesByResourceType));
+			this.resolvedClasses = new ConcurrentHashMap<Class<?>, Class<?>>();
+		}
+
+		Class<?> resolve(Class<?> resourceType) {
+			Class<?> resolvedClass = resolvedClasses.get(resourceType);
+			if (resolvedClass == null) {
+				resolvedClass = findClass(resourceType);
+				resolvedClasses.putIfAbsent(resourceType, resolvedClass);
+			}
+			return resolvedClass != NONE ? resolvedClass : null;
+		}
+
+		/**
+		 * Search the type hierarchy of the resource type breadth first, so
+		 * that a class declared for a more specific type is preferred.
+		 */
+		private Class<?> findClass(Class<?> resourceType) {
+			Deque<Class<?>> typesToCheck = new ArrayDeque<Class<?>>();
+			Set<Class<?>> checkedTypes = new HashSet<Class<?>>();
+			typesToCheck.add(resourceType);
+
+			while (!typesToCheck.isEmpty()) {
+				Class<?> type = typesToCheck.poll();
+				if (!checkedTypes.add(type)) {
+					continue;
+				}
+
+				Class<?> entryClass = classesByResourceType.get(type);
+				if (entryClass != null) {
+					return entryClass;
+				}
+
+				if (type.getSuperclass() != null) {
+					typesToCheck.add(type.getSuperclass());
+				}
+				Collections.addAll(typesToCheck, type.getInterfaces());
+			}
+
+			// interfaces don't have Object as a superclass
+			Class<?> objectClass = classesByResourceType.get(Object.class);
+			return objectClass != null ? objectClass : NONE;
+		}
+	}
+}
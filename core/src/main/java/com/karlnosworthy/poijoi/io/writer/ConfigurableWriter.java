@@ -0,0 +1,35 @@
+package com.karlnosworthy.poijoi.io.writer;
+
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
+
+/**
+ * A {@link Writer} which is passed its options with each call, rather than
+ * having them set beforehand, so that a single instance can be shared.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ *
+ * @param <T>
+ *            The type of destination (e.g. java.io.File, java.sql.Connection
+ *            etc)
+ */
+public interface ConfigurableWriter<T> extends Writer<T> {
+
+	/**
+	 * Write out to the required output based on the {@link WriteType}
+	 * 
+	 * @param output
+	 *            The destination (e.g. java.io.File, java.sql.Connection etc)
+	 * @param metaData
+	 *            The database details (e.g. structure and optionally the data)
+	 * @param writeType
+	 *            Whether to write the Data and/or the Schema
+	 * @param options
+	 *            The options to apply while writing (may be null)
+	 *            
+	 * @return True if the write was successful otherwise false
+	 */
+	boolean write(T output, PoiJoiMetaData metaData, WriteType writeType,
+			PoiJoiOptions options) throws Exception;
+}
@@ -0,0 +1,34 @@
+package com.karlnosworthy.poijoi.io.writer;
+
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.RowSink;
+import com.karlnosworthy.poijoi.io.writer.Writer.WriteType;
+
+/**
+ * A destination which can accept table structures and data incrementally
+ * through a {@link RowSink} rather than requiring a complete
+ * {@link com.karlnosworthy.poijoi.model.PoiJoiMetaData}.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ *
+ * @param <T>
+ *            The type of destination (e.g. java.io.File, java.sql.Connection
+ *            etc)
+ */
+public interface RowSinkFactory<T> {
+
+	/**
+	 * Create a sink which writes everything it is passed to the output.
+	 *
+	 * @param output
+	 *            The destination (e.g. java.io.File, java.sql.Connection etc)
+	 * @param writeType
+	 *            Whether to write the Data and/or the Schema
+	 * @param options
+	 *            The options to apply while writing (may be null)
+	 * @return A sink ready to be started or null if the output is not valid
+	 */
+	RowSink createSink(T output, WriteType writeType, PoiJoiOptions options)
+			throws Exception;
+}
@@ -0,0 +1,52 @@
+package com.karlnosworthy.poijoi.jdbc;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Signals that a row could not be inserted as part of a batch, identifying the
+ * table and the row which caused the batch to fail.
+ * 
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public class BatchInsertException extends SQLException {
+
+	private static final long serialVersionUID = 1L;
+
+	private String tableName;
+	private long rowNumber;
+	private Map<String, Object> rowData;
+
+	public BatchInsertException(String tableName, long rowNumber,
+			Map<String, Object> rowData, SQLException cause) {
+		super("Failed to insert row " + rowNumber + " into table " + tableName
+				+ ": " + cause.getMessage(), cause.getSQLState(), cause
+				.getErrorCode(), cause);
+		this.tableName = tableName;
+		this.rowNumber = rowNumber;
+		this.rowData = rowData;
+	}
+
+	/**
+	 * The name of the table the row was being inserted into.
+	 */
+	public String getTableName() {
+		return tableName;
+	}
+
+	/**
+	 * The position of the failing row within the rows passed for the table
+	 * (starting at 0).
+	 */
+	public long getRowNumber() {
+		return rowNumber;
+	}
+
+	/**
+	 * The data of the failing row, keyed by column name.
+	 */
+	public Map<String, Object> getRowData() {
+		return rowData;
+	}
+}
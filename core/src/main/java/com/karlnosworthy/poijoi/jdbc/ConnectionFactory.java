@@ -0,0 +1,21 @@
+package com.karlnosworthy.poijoi.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Supplies additional connections to the same database, allowing work to be
+ * spread across several connections at once. Only databases which can be
+ * written to by more than one connection at a time should provide one.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public interface ConnectionFactory {
+
+	/**
+	 * Open a new connection to the database, the caller is responsible for
+	 * closing it.
+	 */
+	Connection createConnection() throws SQLException;
+}
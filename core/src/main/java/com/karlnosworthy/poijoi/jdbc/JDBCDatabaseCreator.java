@@ -1,144 +1,1034 @@
 package com.karlnosworthy.poijoi.jdbc;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import com.karlnosworthy.poijoi.model.ColumnDefinition;
 import com.karlnosworthy.poijoi.model.IndexDefinition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.MetaDataRowSource;
+import com.karlnosworthy.poijoi.io.RowTransfer;
 import com.karlnosworthy.poijoi.io.writer.Writer.WriteType;
 import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
 import com.karlnosworthy.poijoi.model.TableDefinition;
 
+/**
+ * Creates the tables (and indexes) described by the table definitions in a
+ * database and inserts the table data, using either prepared statements or the
+ * SQL generated by a {@link SQLStatementCreator}.
+ * 
+ * Rows are inserted in batches of {@link #OPTION_BATCH_SIZE} rows. If a batch
+ * fails it is rolled back, the row which caused it to fail is located (from
+ * the update counts or, failing that, by inserting the batch again one row at
+ * a time) and reported with a {@link BatchInsertException}.
+ * 
+ * In bulk load mode ({@link #OPTION_BULK_LOAD}, or either of the commit
+ * options) the tables are created and loaded inside explicit transactions
+ * which are committed every {@link #OPTION_COMMIT_EVERY} rows and/or
+ * {@link #OPTION_COMMIT_EVERY_BYTES} bytes of row data (or only once the
+ * load has finished if neither is set). If the load fails everything since
+ * the last commit is rolled back. Either way the connection's auto-commit
+ * mode is restored afterwards.
+ * 
+ * When the SQL is generated, {@link SQLStatementCreator#OPTION_ROWS_PER_INSERT}
+ * rows of each batch can be inserted by a single multi-row INSERT statement.
+ * A failed batch of these is always located by inserting its rows again one
+ * at a time, as the update counts are per statement rather than per row.
+ * 
+ * With {@link #OPTION_DEFER_INDEXES} the indexes are only created once all of
+ * the data has been loaded, rather than straight after each table, so the
+ * inserts don't have to maintain them.
+ * 
+ * If a {@link ConnectionFactory} has been provided, {@link #OPTION_LOAD_THREADS}
+ * tables of the metadata passed to {@link #create(PoiJoiMetaData, WriteType)}
+ * can be loaded at the same time, each on a connection of its own and in
+ * transactions of its own. A table which references other tables through its
+ * ".id" or ".ids" columns is only loaded once they have been. This needs a
+ * database which allows several connections to write to it at once, and
+ * doesn't apply to the sink returned by {@link #createSink(WriteType)}, which
+ * is passed the tables one at a time.
+ */
 public class JDBCDatabaseCreator {
-	
+
 	private static final Logger logger = LoggerFactory.getLogger(JDBCDatabaseCreator.class);
 
+	/**
+	 * The number of rows to insert per batch.
+	 */
+	public static final String OPTION_BATCH_SIZE = "--batch-size";
+	
+	public static final int DEFAULT_BATCH_SIZE = 500;
+
+	/**
+	 * Create the tables and load the data inside explicit transactions.
+	 */
+	public static final String OPTION_BULK_LOAD = "--bulk-load";
+
+	/**
+	 * The number of rows to insert per transaction in bulk load mode.
+	 */
+	public static final String OPTION_COMMIT_EVERY = "--commit-every";
+
+	/**
+	 * The (approximate) number of bytes of row data to insert per transaction
+	 * in bulk load mode.
+	 */
+	public static final String OPTION_COMMIT_EVERY_BYTES = "--commit-every-bytes";
+
+	/**
+	 * Create the indexes after the data has been loaded.
+	 */
+	public static final String OPTION_DEFER_INDEXES = "--defer-indexes";
+
+	/**
+	 * The number of tables whose deferred indexes are created at the same time,
+	 * only used if a {@link ConnectionFactory} has been provided (and otherwise
+	 * ignored with a warning).
+	 */
+	public static final String OPTION_INDEX_THREADS = "--index-threads";
+
+	/**
+	 * The number of tables loaded at the same time, only used if a
+	 * {@link ConnectionFactory} has been provided (and otherwise ignored with
+	 * a warning). Defaults to 1, which loads the tables one after another on
+	 * the creator's connection.
+	 */
+	public static final String OPTION_LOAD_THREADS = "--load-threads";
+
+	private static final String BATCH_SAVEPOINT_NAME = "poijoi_batch";
+
 	private Connection connection;
 	private SQLStatementCreator sqlStatementCreator;
 	private JDBCPreparedStatementCreator preparedStatementCreator;
-	
+	private int batchSize;
+	private int rowsPerInsert;
+	private int maxInsertBytes;
+	private boolean bulkLoad;
+	private int commitEvery;
+	private long commitEveryBytes;
+	private boolean deferIndexes;
+	private int indexThreads;
+	private boolean indexThreadsGiven;
+	private int loadThreads;
+	private ConnectionFactory connectionFactory;
+	private JDBCLoadReport loadReport;
+
 	public JDBCDatabaseCreator(Connection connection) {
+		this(connection, null);
+	}
+
+	public JDBCDatabaseCreator(Connection connection, PoiJoiOptions options) {
 		super();
 		this.connection = connection;
 		this.preparedStatementCreator = new JDBCPreparedStatementCreator(connection);
+		this.loadReport = new JDBCLoadReport();
+		applyOptions(options);
 	}
 
 	public JDBCDatabaseCreator(SQLStatementCreator sqlStatementCreator, Connection connection) {
+		this(sqlStatementCreator, connection, null);
+	}
+
+	public JDBCDatabaseCreator(SQLStatementCreator sqlStatementCreator, Connection connection, PoiJoiOptions options) {
 		super();
 		this.sqlStatementCreator = sqlStatementCreator;
 		this.connection = connection;
+		this.loadReport = new JDBCLoadReport();
+		applyOptions(options);
 	}
-	
+
+	private void applyOptions(PoiJoiOptions options) {
+		batchSize = DEFAULT_BATCH_SIZE;
+		rowsPerInsert = SQLStatementCreator.getRowsPerInsert(options);
+		maxInsertBytes = SQLStatementCreator.getMaxInsertBytes(options);
+		indexThreads = Runtime.getRuntime().availableProcessors();
+		loadThreads = 1;
+		if (options == null) {
+			return;
+		}
+
+		batchSize = options.getIntValue(OPTION_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("The value of option " + OPTION_BATCH_SIZE + " must be at least 1: " + batchSize);
+		}
+
+		commitEvery = options.getIntValue(OPTION_COMMIT_EVERY, 0);
+		if (commitEvery < 0) {
+			throw new IllegalArgumentException("The value of option " + OPTION_COMMIT_EVERY + " must not be negative: " + commitEvery);
+		}
+
+		String commitEveryBytesValue = options.getValue(OPTION_COMMIT_EVERY_BYTES);
+		if (commitEveryBytesValue != null && !commitEveryBytesValue.isEmpty()) {
+			try {
+				commitEveryBytes = Long.parseLong(commitEveryBytesValue.trim());
+			} catch (NumberFormatException numberFormatException) {
+				throw new IllegalArgumentException("The value of option " + OPTION_COMMIT_EVERY_BYTES + " must be a number: " + commitEveryBytesValue);
+			}
+			if (commitEveryBytes < 0) {
+				throw new IllegalArgumentException("The value of option " + OPTION_COMMIT_EVERY_BYTES + " must not be negative: " + commitEveryBytes);
+			}
+		}
+
+		deferIndexes = options.getBooleanValue(OPTION_DEFER_INDEXES, false);
+		indexThreadsGiven = options.hasValue(OPTION_INDEX_THREADS);
+		indexThreads = options.getIntValue(OPTION_INDEX_THREADS, indexThreads);
+		if (indexThreads < 1) {
+			throw new IllegalArgumentException("The value of option " + OPTION_INDEX_THREADS + " must be at least 1: " + indexThreads);
+		}
+
+		loadThreads = options.getIntValue(OPTION_LOAD_THREADS, 1);
+		if (loadThreads < 1) {
+			throw new IllegalArgumentException("The value of option " + OPTION_LOAD_THREADS + " must be at least 1: " + loadThreads);
+		}
+
+		bulkLoad = options.getBooleanValue(OPTION_BULK_LOAD, false)
+				|| options.hasValue(OPTION_COMMIT_EVERY)
+				|| options.hasValue(OPTION_COMMIT_EVERY_BYTES);
+	}
+
 	public boolean create(PoiJoiMetaData metaData, WriteType writeType) throws Exception {
-		int numberOfTablesCreated = 0;
+		if (loadThreads > 1 && connectionFactory == null) {
+			logger.warn("Option {} ignored as no ConnectionFactory has been provided, loading the tables one after another", OPTION_LOAD_THREADS);
+		}
+		try {
+			if (isParallelLoad() && metaData != null && metaData.getTableDefinitions() != null
+					&& metaData.getTableDefinitions().size() > 1) {
+				return createInParallel(metaData, writeType);
+			}
+			return RowTransfer.transfer(new MetaDataRowSource(), metaData,
+					writeType != WriteType.SCHEMA_ONLY, new DatabaseRowSink(writeType), null);
+		} catch (BatchInsertException batchInsertException) {
+			throw batchInsertException;
+		} catch (SQLException e) {
+			logger.error("Unable to create the database", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Create a sink which creates each table (and its indexes) as it is
+	 * started and then inserts the rows it is passed.
+	 *
+	 * @param writeType
+	 *            Whether to write the Data and/or the Schema
+	 */
+	public JDBCLoadSink createSink(WriteType writeType) {
+		if (loadThreads > 1) {
+			logger.warn("Option {} ignored as a sink is passed the tables one at a time", OPTION_LOAD_THREADS);
+		}
+		return new DatabaseRowSink(writeType);
+	}
+
+	/**
+	 * The number of rows inserted into each table so far.
+	 */
+	public JDBCLoadReport getLoadReport() {
+		return loadReport;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Whether the rows of each batch are inserted using multi-row INSERT
+	 * statements, only possible when the SQL is generated by a
+	 * {@link SQLStatementCreator} which supports them.
+	 */
+	public boolean isMultiRowInsert() {
+		return sqlStatementCreator != null && rowsPerInsert > 1
+				&& sqlStatementCreator.supportsMultiRowInsert();
+	}
+
+	public boolean isBulkLoad() {
+		return bulkLoad;
+	}
+
+	public boolean isDeferIndexes() {
+		return deferIndexes;
+	}
+
+	/**
+	 * Whether {@link #create(PoiJoiMetaData, WriteType)} loads several tables
+	 * at the same time.
+	 */
+	public boolean isParallelLoad() {
+		return connectionFactory != null && loadThreads > 1;
+	}
+
+	/**
+	 * Provide additional connections to the database so that deferred indexes
+	 * can be created, and tables loaded, concurrently.
+	 */
+	public void setConnectionFactory(ConnectionFactory connectionFactory) {
+		this.connectionFactory = connectionFactory;
+	}
+
+	private void createTable(TableDefinition tableDefinition, Connection tableConnection) throws SQLException {
+		if (preparedStatementCreator != null) {
+			PreparedStatement preparedStatement = preparedStatementCreator.buildCreateTableStatement(tableDefinition, tableConnection);
+			preparedStatement.execute();
+			preparedStatement.close();
+		} else {
+			String sqlStatement = sqlStatementCreator.buildCreateTableStatement(tableDefinition);
+			Statement statement = tableConnection.createStatement();
+			statement.execute(sqlStatement);
+			statement.close();
+		}
+	}
 
+	private void createIndexes(TableDefinition tableDefinition, Connection indexConnection) throws SQLException {
+		if (!tableDefinition.hasIndexDefinitions()) {
+			return;
+		}
+
+		for (IndexDefinition indexDefinition : tableDefinition.getIndexDefinitions()) {
+			if (preparedStatementCreator != null) {
+				PreparedStatement preparedIndexStatement = preparedStatementCreator.buildCreateIndexStatement(indexDefinition, indexConnection);
+				try {
+					preparedIndexStatement.execute();
+				} finally {
+					preparedIndexStatement.close();
+				}
+			} else {
+				String createIndexSQL = sqlStatementCreator.buildCreateIndexStatement(indexDefinition);
+				Statement createIndexStatement = indexConnection.createStatement();
+				try {
+					createIndexStatement.execute(createIndexSQL);
+				} finally {
+					createIndexStatement.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create the indexes of the tables whose index creation was deferred
+	 * until the data had been loaded. If a {@link ConnectionFactory} has been
+	 * provided the indexes of each table are created on a connection of their
+	 * own, {@link #OPTION_INDEX_THREADS} tables at a time, otherwise they are
+	 * created one after another on the creator's connection.
+	 */
+	private void createDeferredIndexes(List<TableDefinition> tableDefinitions) throws SQLException {
+		if (tableDefinitions.isEmpty()) {
+			return;
+		}
+		JDBCMetaDataCache.clear(connection);
+
+		int numberOfThreads = Math.min(indexThreads, tableDefinitions.size());
+		if (connectionFactory == null && indexThreadsGiven && numberOfThreads > 1) {
+			logger.warn("Option {} ignored as no ConnectionFactory has been provided, creating the indexes one table after another", OPTION_INDEX_THREADS);
+		}
+		if (connectionFactory == null || numberOfThreads < 2) {
+			for (TableDefinition tableDefinition : tableDefinitions) {
+				createIndexes(tableDefinition, connection);
+			}
+			return;
+		}
+
+		logger.debug("Creating the indexes of {} table(s) using {} connection(s)", tableDefinitions.size(), numberOfThreads);
+
+		ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads);
 		try {
-			// Create tables
-			Map<String, TableDefinition> tableDefinitions = metaData.getTableDefinitions();
-			
-			for (String tableName : tableDefinitions.keySet()) {
-				TableDefinition tableDefinition = tableDefinitions.get(tableName);
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (final TableDefinition tableDefinition : tableDefinitions) {
+				futures.add(executorService.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws SQLException {
+						Connection indexConnection = connectionFactory.createConnection();
+						try {
+							createIndexes(tableDefinition, indexConnection);
+							if (!indexConnection.getAutoCommit()) {
+								indexConnection.commit();
+							}
+						} finally {
+							indexConnection.close();
+						}
+						return null;
+					}
+				}));
+			}
 
-				if (preparedStatementCreator != null) {
-					PreparedStatement preparedStatement = preparedStatementCreator.buildCreateTableStatement(tableDefinition);
-					if (preparedStatement.execute()) {
-						numberOfTablesCreated++;
+			for (Future<Void> future : futures) {
+				try {
+					future.get();
+				} catch (InterruptedException interruptedException) {
+					Thread.currentThread().interrupt();
+					throw new SQLException("Interrupted while creating indexes", interruptedException);
+				} catch (ExecutionException executionException) {
+					Throwable cause = executionException.getCause();
+					if (cause instanceof SQLException) {
+						throw (SQLException) cause;
 					}
-					preparedStatement.close();
+					throw new SQLException("Failed to create indexes", cause);
+				}
+			}
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
 
-					if (tableDefinition.hasIndexDefinitions()) {
-						PreparedStatement preparedIndexStatement = null;
+	/**
+	 * Load each table on a connection of its own, {@link #OPTION_LOAD_THREADS}
+	 * tables at a time, once the tables it references have been loaded. If a
+	 * table fails to load, the tables which reference it are skipped but the
+	 * rest are still loaded, and the first failure is thrown once they have
+	 * been (with any others suppressed by it). Tables which reference each
+	 * other in a cycle are loaded regardless of the order.
+	 */
+	private boolean createInParallel(PoiJoiMetaData metaData, final WriteType writeType) throws Exception {
+		Map<String, TableDefinition> tableDefinitions = metaData.getTableDefinitions();
+		final boolean loadData = writeType != WriteType.SCHEMA_ONLY && metaData.getTableData() != null;
 
-						for (IndexDefinition indexDefinition : tableDefinition.getIndexDefinitions()) {
-							preparedIndexStatement = preparedStatementCreator.buildCreateIndexStatement(indexDefinition);
-							preparedIndexStatement.execute();
-						}
+		Map<String, Set<String>> pendingTables = new LinkedHashMap<String, Set<String>>();
+		for (Map.Entry<String, TableDefinition> entry : tableDefinitions.entrySet()) {
+			pendingTables.put(entry.getKey(), getReferencedTableNames(entry.getValue(), tableDefinitions.keySet()));
+		}
+		Set<String> loadedTables = new HashSet<String>();
+		Set<String> failedTables = new HashSet<String>();
+		List<Exception> failures = new ArrayList<Exception>();
+		final List<TableDefinition> deferredIndexTables = Collections.synchronizedList(new ArrayList<TableDefinition>());
 
-						if (preparedIndexStatement != null) {
-							preparedIndexStatement.close();
-						}
+		int numberOfThreads = Math.min(loadThreads, pendingTables.size());
+		logger.debug("Loading {} table(s) using {} connection(s)", pendingTables.size(), numberOfThreads);
+
+		ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads);
+		CompletionService<String> completionService = new ExecutorCompletionService<String>(executorService);
+		Map<Future<String>, String> runningTables = new HashMap<Future<String>, String>();
+		try {
+			while (true) {
+				skipTablesReferencingFailures(pendingTables, failedTables);
+
+				List<String> readyTables = new ArrayList<String>();
+				for (Map.Entry<String, Set<String>> entry : pendingTables.entrySet()) {
+					if (loadedTables.containsAll(entry.getValue())) {
+						readyTables.add(entry.getKey());
 					}
-				} else {
-					String sqlStatement = sqlStatementCreator.buildCreateTableStatement(tableDefinition);
-					Statement statement = connection.createStatement();
-					statement.execute(sqlStatement);
-					statement.close();
+				}
+				if (readyTables.isEmpty() && runningTables.isEmpty() && !pendingTables.isEmpty()) {
+					logger.warn("Tables {} reference each other, loading them in any order", pendingTables.keySet());
+					readyTables.addAll(pendingTables.keySet());
+				}
 
-					if (tableDefinition.hasIndexDefinitions()) {
-						for (IndexDefinition indexDefinition : tableDefinition.getIndexDefinitions()) {
-							String createIndexSQL = sqlStatementCreator.buildCreateIndexStatement(indexDefinition);
-							Statement createIndexStatement = connection.createStatement();
-							createIndexStatement.execute(createIndexSQL);
-							createIndexStatement.close();
+				for (final String tableName : readyTables) {
+					pendingTables.remove(tableName);
+					final TableDefinition tableDefinition = tableDefinitions.get(tableName);
+					final List<HashMap<String, Object>> rows = loadData ? metaData.getTableData(tableName) : null;
+					runningTables.put(completionService.submit(new Callable<String>() {
+						@Override
+						public String call() throws Exception {
+							loadTable(tableDefinition, rows, writeType, deferredIndexTables);
+							return tableName;
 						}
+					}), tableName);
+				}
+
+				if (runningTables.isEmpty()) {
+					break;
+				}
+
+				Future<String> future = completionService.take();
+				String tableName = runningTables.remove(future);
+				try {
+					loadedTables.add(future.get());
+				} catch (ExecutionException executionException) {
+					Throwable cause = executionException.getCause();
+					if (cause instanceof Error) {
+						throw (Error) cause;
 					}
+					logger.debug("Failed to load table {}", tableName, cause);
+					failedTables.add(tableName);
+					failures.add(cause instanceof Exception ? (Exception) cause : executionException);
+				}
+			}
+		} catch (InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while loading tables", interruptedException);
+		} finally {
+			executorService.shutdownNow();
+		}
+
+		if (!failures.isEmpty()) {
+			Exception failure = failures.get(0);
+			for (int failureIndex = 1; failureIndex < failures.size(); failureIndex++) {
+				failure.addSuppressed(failures.get(failureIndex));
+			}
+			throw failure;
+		}
+
+		createDeferredIndexes(new ArrayList<TableDefinition>(deferredIndexTables));
+		logger.debug("Finished creating database, {}", loadReport);
+		return true;
+	}
+
+	/**
+	 * Create and load a single table on a new connection from the
+	 * {@link ConnectionFactory}, leaving the creation of its indexes to the
+	 * caller if they are deferred.
+	 */
+	private void loadTable(TableDefinition tableDefinition, List<HashMap<String, Object>> rows,
+			WriteType writeType, List<TableDefinition> deferredIndexTables) throws Exception {
+
+		Connection tableConnection = connectionFactory.createConnection();
+		try {
+			DatabaseRowSink sink = new DatabaseRowSink(writeType, tableConnection, deferredIndexTables);
+			try {
+				sink.startStream();
+				sink.startTable(tableDefinition);
+				if (rows != null) {
+					sink.writeRows(tableDefinition, rows);
+				}
+				sink.finishTable(tableDefinition);
+				sink.finishStream();
+			} catch (Exception exception) {
+				sink.abortStream();
+				throw exception;
+			}
+			if (!tableConnection.getAutoCommit()) {
+				tableConnection.commit();
+			}
+		} finally {
+			tableConnection.close();
+		}
+	}
+
+	/**
+	 * Remove the pending tables which reference a table that failed to load,
+	 * or was itself skipped, marking them as failed too.
+	 */
+	private void skipTablesReferencingFailures(Map<String, Set<String>> pendingTables, Set<String> failedTables) {
+		boolean skippedTable;
+		do {
+			skippedTable = false;
+			Iterator<Map.Entry<String, Set<String>>> iterator = pendingTables.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Map.Entry<String, Set<String>> entry = iterator.next();
+				if (!Collections.disjoint(entry.getValue(), failedTables)) {
+					logger.warn("Skipping table {} as a table it references failed to load", entry.getKey());
+					iterator.remove();
+					failedTables.add(entry.getKey());
+					skippedTable = true;
+				}
+			}
+		} while (skippedTable);
+	}
+
+	/**
+	 * The names of the other tables a table references through its ".id" and
+	 * ".ids" columns, e.g. a column "Author.id" references the table "Author".
+	 * 
+	 * @param tableNames
+	 *            The names of the tables being loaded, any other tables are
+	 *            ignored
+	 */
+	private static Set<String> getReferencedTableNames(TableDefinition tableDefinition, Set<String> tableNames) {
+		Set<String> referencedTableNames = new HashSet<String>();
+		for (ColumnDefinition columnDefinition : tableDefinition.getColumnDefinitions()) {
+			String columnName = columnDefinition.getColumnName();
+			String referencedTableName;
+			if (columnDefinition.isRelationshipIDColumn()) {
+				referencedTableName = columnName.substring(0, columnName.length() - ".ids".length());
+			} else if (columnDefinition.isIDColumn() && !columnName.equalsIgnoreCase("id")) {
+				referencedTableName = columnName.substring(0, columnName.length() - ".id".length());
+			} else {
+				continue;
+			}
+
+			for (String tableName : tableNames) {
+				if (tableName.equalsIgnoreCase(referencedTableName)
+						&& !tableName.equalsIgnoreCase(tableDefinition.getTableName())) {
+					referencedTableNames.add(tableName);
+				}
+			}
+		}
+		return referencedTableNames;
+	}
+
+	/**
+	 * Creates the tables and inserts the rows as they arrive in batches, only
+	 * holding on to the insert statement and rows of the current batch.
+	 */
+	private class DatabaseRowSink implements JDBCLoadSink {
+
+		private WriteType writeType;
+		private Connection connection;
+		private PreparedStatement preparedStatement;
+		private Statement statement;
+		private List<Map<String, Object>> batchRows;
+		private boolean multiRowInsert;
+		private List<Integer> insertRowCounts;
+		private long numberOfTableRows;
+		private Boolean callersAutoCommit;
+		private long uncommittedRows;
+		private long uncommittedBytes;
+		private List<TableDefinition> deferredIndexTables;
+		private boolean createsDeferredIndexes;
+		private Savepoint batchSavepoint;
+		private boolean sqlSavepoints;
+		private boolean savepointsUnsupported;
+
+		DatabaseRowSink(WriteType writeType) {
+			this(writeType, JDBCDatabaseCreator.this.connection, null);
+		}
+
+		/**
+		 * @param sharedDeferredIndexTables
+		 *            The list the tables whose index creation is deferred are
+		 *            added to for the caller to create, or null if the sink is
+		 *            to create them once the stream has finished
+		 */
+		DatabaseRowSink(WriteType writeType, Connection connection, List<TableDefinition> sharedDeferredIndexTables) {
+			super();
+			this.writeType = writeType;
+			this.connection = connection;
+			this.batchRows = new ArrayList<Map<String, Object>>(batchSize);
+			this.createsDeferredIndexes = sharedDeferredIndexTables == null;
+			this.deferredIndexTables = createsDeferredIndexes ? new ArrayList<TableDefinition>() : sharedDeferredIndexTables;
+			this.multiRowInsert = isMultiRowInsert();
+			this.insertRowCounts = new ArrayList<Integer>();
+		}
+
+		@Override
+		public void startStream() throws SQLException {
+			if (bulkLoad) {
+				callersAutoCommit = connection.getAutoCommit();
+				connection.setAutoCommit(false);
+				logger.debug("Starting bulk load, committing every {} row(s) / {} byte(s)", commitEvery, commitEveryBytes);
+			}
+		}
+
+		@Override
+		public void startTable(TableDefinition tableDefinition) throws SQLException {
+			createTable(tableDefinition, connection);
+			JDBCMetaDataCache.clear(connection);
+			JDBCMetaDataCache.clear(JDBCDatabaseCreator.this.connection);
+			if (deferIndexes) {
+				if (tableDefinition.hasIndexDefinitions()) {
+					deferredIndexTables.add(tableDefinition);
 				}
+			} else {
+				createIndexes(tableDefinition, connection);
 			}
-			
+
+			numberOfTableRows = 0;
 			if (writeType != WriteType.SCHEMA_ONLY) {
-				int numberOfRowsInserted = 0;
+				if (preparedStatementCreator != null) {
+					preparedStatement = preparedStatementCreator.createInsertPreparedStatement(tableDefinition, connection);
+				} else {
+					statement = connection.createStatement();
+				}
+			}
+		}
+
+		@Override
+		public void writeRows(TableDefinition tableDefinition, List<HashMap<String, Object>> rows) throws SQLException {
+			if (writeType == WriteType.SCHEMA_ONLY) {
+				return;
+			}
+
+			for (int dataToInsertRowIndex = 0; dataToInsertRowIndex < rows.size(); dataToInsertRowIndex++) {
+				Map<String, Object> dataToInsert = rows.get(dataToInsertRowIndex);
+
+				if (preparedStatement != null) {
+					preparedStatementCreator.populatePreparedStatement(preparedStatement, tableDefinition, dataToInsert);
+					preparedStatement.addBatch();
+				} else if (!multiRowInsert) {
+					statement.addBatch(sqlStatementCreator.buildInsertTableStatement(tableDefinition, dataToInsert));
+				}
+				batchRows.add(dataToInsert);
+
+				boolean commitDue = false;
+				if (bulkLoad) {
+					uncommittedRows++;
+					uncommittedBytes += estimateRowSize(dataToInsert);
+					commitDue = (commitEvery > 0 && uncommittedRows >= commitEvery)
+							|| (commitEveryBytes > 0 && uncommittedBytes >= commitEveryBytes);
+				}
+
+				if (batchRows.size() >= batchSize || commitDue) {
+					executeBatch(tableDefinition);
+				}
+				if (commitDue) {
+					commit();
+				}
+			}
+		}
 
-				PreparedStatement preparedStatement = null;
+		@Override
+		public void finishTable(TableDefinition tableDefinition) throws SQLException {
+			try {
+				if (!batchRows.isEmpty()) {
+					executeBatch(tableDefinition);
+				}
+			} finally {
+				closeStatements();
+			}
+		}
 
-				for (TableDefinition tableDefinition : tableDefinitions.values()) {
+		@Override
+		public boolean finishStream() throws SQLException {
+			try {
+				if (bulkLoad) {
+					commit();
+				}
 
-					List<HashMap<String, Object>> tableData = metaData
-							.getTableData(tableDefinition.getTableName());
-					
-					if (tableData != null) {
+				// the data has to be committed before the indexes are created
+				// as they may be created using other connections
+				if (createsDeferredIndexes) {
+					createDeferredIndexes(deferredIndexTables);
+					if (bulkLoad && !deferredIndexTables.isEmpty()) {
+						connection.commit();
+					}
+				}
+			} finally {
+				if (createsDeferredIndexes) {
+					deferredIndexTables.clear();
+				}
+				if (bulkLoad) {
+					restoreAutoCommit();
+				}
+			}
+			if (createsDeferredIndexes) {
+				logger.debug("Finished creating database, {}", loadReport);
+			}
+			return true;
+		}
 
-						if (preparedStatementCreator != null) {
-							try {
-								preparedStatement = preparedStatementCreator.createInsertPreparedStatement(tableDefinition, connection);
+		@Override
+		public void abortStream() {
+			closeStatements();
+			if (createsDeferredIndexes) {
+				deferredIndexTables.clear();
+			}
+			if (bulkLoad) {
+				try {
+					connection.rollback();
+					logger.debug("Rolled back {} uncommitted row(s)", uncommittedRows);
+				} catch (SQLException sqlException) {
+					logger.warn("Unable to roll back the bulk load", sqlException);
+				} finally {
+					uncommittedRows = 0;
+					uncommittedBytes = 0;
+					try {
+						restoreAutoCommit();
+					} catch (SQLException sqlException) {
+						logger.warn("Unable to restore auto-commit", sqlException);
+					}
+				}
+			}
+		}
 
-								for (int dataToInsertRowIndex = 0; dataToInsertRowIndex < tableData.size(); dataToInsertRowIndex++) {
-									Map<String, Object> dataToInsert = tableData.get(dataToInsertRowIndex);
+		@Override
+		public JDBCLoadReport getLoadReport() {
+			return loadReport;
+		}
 
-									preparedStatementCreator.populatePreparedStatement(preparedStatement, tableDefinition, dataToInsert);
+		private void commit() throws SQLException {
+			connection.commit();
+			loadReport.addCommit(uncommittedRows);
+			logger.debug("Committed {} row(s)", uncommittedRows);
 
-									if (preparedStatement.execute()) {
-										numberOfRowsInserted++;
-									}
-								}
+			uncommittedRows = 0;
+			uncommittedBytes = 0;
+		}
 
-								preparedStatement.close();
+		private void restoreAutoCommit() throws SQLException {
+			if (callersAutoCommit != null) {
+				connection.setAutoCommit(callersAutoCommit);
+				callersAutoCommit = null;
+			}
+		}
 
-							} finally {
-								try {
-									if (!preparedStatement.isClosed()) {
-										preparedStatement.close();
-									}
-								} catch (SQLException sqlException) {
-									logger.debug("", sqlException);
-								}
-							}
-						} else {
+		/**
+		 * A rough guide to the number of bytes a row will take up, used to
+		 * decide when to commit in bulk load mode.
+		 */
+		private long estimateRowSize(Map<String, Object> dataToInsert) {
+			long rowSize = 0;
+			for (Object value : dataToInsert.values()) {
+				if (value instanceof CharSequence) {
+					rowSize += ((CharSequence) value).length();
+				} else if (value != null) {
+					rowSize += 8;
+				}
+			}
+			return rowSize;
+		}
 
-							Statement statement = connection.createStatement();
-							for (int dataToInsertRowIndex = 0; dataToInsertRowIndex < tableData.size(); dataToInsertRowIndex++) {
-								Map<String, Object> dataToInsert = tableData.get(dataToInsertRowIndex);
+		/**
+		 * Insert the current batch. When the connection is in auto-commit mode
+		 * the batch is inserted in a transaction of its own, so that if it
+		 * fails it can be rolled back and the failed row located without any
+		 * of the batch having been inserted twice. In bulk load mode the batch
+		 * is inserted after a savepoint instead, as rolling back the whole
+		 * transaction would also undo any tables created in it, and only the
+		 * batch is rolled back before the failed row is located (the rest of
+		 * the load is rolled back once the stream is aborted).
+		 */
+		private void executeBatch(TableDefinition tableDefinition) throws SQLException {
+			Statement batchStatement = preparedStatement != null ? preparedStatement : statement;
+			if (multiRowInsert) {
+				addMultiRowInserts(tableDefinition);
+			}
+			boolean autoCommit = !bulkLoad && connection.getAutoCommit();
+			try {
+				if (autoCommit) {
+					connection.setAutoCommit(false);
+				}
+				boolean savepoint = bulkLoad && setBatchSavepoint();
 
-								String sql = sqlStatementCreator.buildInsertTableStatement(tableDefinition, dataToInsert);
-								if (statement.execute(sql)) {
-									numberOfRowsInserted++;
-								}
-							}
-							statement.close();
+				int[] updateCounts;
+				try {
+					updateCounts = batchStatement.executeBatch();
+					if (autoCommit) {
+						connection.commit();
+					} else if (savepoint) {
+						releaseBatchSavepoint();
+					}
+				} catch (SQLException sqlException) {
+					resetStatements(tableDefinition);
+					if (autoCommit) {
+						connection.rollback();
+						connection.setAutoCommit(true);
+					} else if (savepoint) {
+						rollbackToBatchSavepoint();
+					}
+					BatchInsertException batchInsertException = locateFailedRow(tableDefinition,
+							autoCommit || savepoint, sqlException);
+					if (savepoint) {
+						releaseBatchSavepoint();
+					}
+					throw batchInsertException;
+				}
+
+				int numberOfRowsInserted = countRowsInserted(updateCounts);
+				loadReport.addBatch(tableDefinition.getTableName(), numberOfRowsInserted);
+
+				logger.debug("Inserted batch of {} row(s) into {}", numberOfRowsInserted, tableDefinition.getTableName());
+			} finally {
+				if (autoCommit && !connection.getAutoCommit()) {
+					connection.setAutoCommit(true);
+				}
+				numberOfTableRows += batchRows.size();
+				batchRows.clear();
+			}
+		}
+
+		/**
+		 * Mark the start of a batch within the bulk load's transaction, using
+		 * an SQL SAVEPOINT if the driver doesn't support JDBC savepoints (as
+		 * SQLite's doesn't).
+		 * 
+		 * @return False if savepoints aren't supported at all, in which case a
+		 *         failed batch can't be rolled back on its own
+		 */
+		private boolean setBatchSavepoint() {
+			if (savepointsUnsupported) {
+				return false;
+			}
+			try {
+				if (!sqlSavepoints) {
+					try {
+						batchSavepoint = connection.setSavepoint();
+						return true;
+					} catch (SQLException sqlException) {
+						sqlSavepoints = true;
+					}
+				}
+				executeSavepointStatement("savepoint " + BATCH_SAVEPOINT_NAME);
+				return true;
+			} catch (SQLException sqlException) {
+				logger.debug("Savepoints aren't supported, a failed batch will only be located from its update counts", sqlException);
+				savepointsUnsupported = true;
+				return false;
+			}
+		}
+
+		private void releaseBatchSavepoint() throws SQLException {
+			if (batchSavepoint != null) {
+				Savepoint savepoint = batchSavepoint;
+				batchSavepoint = null;
+				connection.releaseSavepoint(savepoint);
+			} else {
+				executeSavepointStatement("release savepoint " + BATCH_SAVEPOINT_NAME);
+			}
+		}
+
+		private void rollbackToBatchSavepoint() throws SQLException {
+			if (batchSavepoint != null) {
+				connection.rollback(batchSavepoint);
+			} else {
+				executeSavepointStatement("rollback to savepoint " + BATCH_SAVEPOINT_NAME);
+			}
+		}
+
+		private void executeSavepointStatement(String sql) throws SQLException {
+			Statement savepointStatement = connection.createStatement();
+			try {
+				savepointStatement.execute(sql);
+			} finally {
+				savepointStatement.close();
+			}
+		}
+
+		/**
+		 * Add the rows of the current batch to the statement as multi-row
+		 * INSERT statements, noting how many rows each statement covers.
+		 */
+		private void addMultiRowInserts(TableDefinition tableDefinition) throws SQLException {
+			insertRowCounts.clear();
+			StringBuilder builder = new StringBuilder();
+			int batchRowIndex = 0;
+			while (batchRowIndex < batchRows.size()) {
+				builder.setLength(0);
+				int numberOfRows = sqlStatementCreator.appendInsertTableStatement(builder, tableDefinition,
+						batchRows, batchRowIndex, rowsPerInsert, maxInsertBytes);
+				statement.addBatch(builder.toString());
+				insertRowCounts.add(numberOfRows);
+				batchRowIndex += numberOfRows;
+			}
+		}
+
+		private int countRowsInserted(int[] updateCounts) {
+			int numberOfRowsInserted = 0;
+			for (int updateCountIndex = 0; updateCountIndex < updateCounts.length; updateCountIndex++) {
+				int updateCount = updateCounts[updateCountIndex];
+				if (updateCount == Statement.SUCCESS_NO_INFO) {
+					numberOfRowsInserted += multiRowInsert ? insertRowCounts.get(updateCountIndex) : 1;
+				} else if (updateCount > 0) {
+					numberOfRowsInserted += updateCount;
+				}
+			}
+			return numberOfRowsInserted;
+		}
+
+		/**
+		 * Work out which row of the current batch caused it to fail. If the
+		 * driver marked the failed row in the update counts (or stopped at it)
+		 * only the rows before it are inserted again, otherwise the rows are
+		 * inserted again one at a time until one fails.
+		 * 
+		 * If the batch couldn't be rolled back (because it was part of a
+		 * transaction which isn't ours to roll back) the rows can't safely be
+		 * inserted again, so unless the update counts identify the failed row
+		 * the failure is reported against the first row of the batch.
+		 */
+		private BatchInsertException locateFailedRow(TableDefinition tableDefinition,
+				boolean rolledBack, SQLException batchException) throws SQLException {
+
+			String tableName = tableDefinition.getTableName();
+			int failedRowIndex = -1;
+
+			// multi-row update counts are per statement, not per row
+			if (!multiRowInsert && batchException instanceof BatchUpdateException) {
+				int[] updateCounts = ((BatchUpdateException) batchException).getUpdateCounts();
+				if (updateCounts != null) {
+					for (int batchRowIndex = 0; batchRowIndex < updateCounts.length; batchRowIndex++) {
+						if (updateCounts[batchRowIndex] == Statement.EXECUTE_FAILED) {
+							failedRowIndex = batchRowIndex;
+							break;
 						}
 					}
+					if (failedRowIndex < 0 && updateCounts.length < batchRows.size()) {
+						failedRowIndex = updateCounts.length;
+					}
+					if (failedRowIndex >= 0 && !rolledBack) {
+						loadReport.addBatch(tableName, failedRowIndex);
+						return new BatchInsertException(tableName, numberOfTableRows + failedRowIndex,
+								batchRows.get(failedRowIndex), batchException);
+					}
 				}
 			}
-			return true;
-		} catch (SQLException e) {
-			e.printStackTrace();
-			return false;
+
+			if (!rolledBack) {
+				return new BatchInsertException(tableName, numberOfTableRows, batchRows.get(0), batchException);
+			}
+
+			logger.debug("Batch insert into {} failed, inserting the batch one row at a time", tableName);
+
+			int lastRowIndex = failedRowIndex >= 0 ? failedRowIndex : batchRows.size();
+			int numberOfRowsInserted = 0;
+			try {
+				for (int batchRowIndex = 0; batchRowIndex < lastRowIndex; batchRowIndex++) {
+					Map<String, Object> dataToInsert = batchRows.get(batchRowIndex);
+					try {
+						if (preparedStatement != null) {
+							preparedStatementCreator.populatePreparedStatement(preparedStatement, tableDefinition, dataToInsert);
+							preparedStatement.executeUpdate();
+						} else {
+							statement.executeUpdate(sqlStatementCreator.buildInsertTableStatement(tableDefinition, dataToInsert));
+						}
+						numberOfRowsInserted++;
+					} catch (SQLException sqlException) {
+						return new BatchInsertException(tableName, numberOfTableRows + batchRowIndex,
+								dataToInsert, sqlException);
+					}
+				}
+			} finally {
+				loadReport.addBatch(tableName, numberOfRowsInserted);
+			}
+
+			if (failedRowIndex >= 0) {
+				return new BatchInsertException(tableName, numberOfTableRows + failedRowIndex,
+						batchRows.get(failedRowIndex), batchException);
+			}
+
+			// every row went in on its own, so report the original failure
+			return new BatchInsertException(tableName, numberOfTableRows, batchRows.get(0), batchException);
+		}
+
+		/**
+		 * Replace the insert statement after a failed batch, as not every
+		 * driver leaves the statement usable once its batch has failed.
+		 */
+		private void resetStatements(TableDefinition tableDefinition) throws SQLException {
+			if (preparedStatement != null) {
+				preparedStatement.close();
+				preparedStatement = preparedStatementCreator.createInsertPreparedStatement(tableDefinition, connection);
+			} else {
+				statement.close();
+				statement = connection.createStatement();
+			}
+		}
+
+		private void closeStatements() {
+			batchRows.clear();
+			try {
+				if (preparedStatement != null && !preparedStatement.isClosed()) {
+					preparedStatement.close();
+				}
+				if (statement != null && !statement.isClosed()) {
+					statement.close();
+				}
+			} catch (SQLException sqlException) {
+				logger.debug("", sqlException);
+			} finally {
+				preparedStatement = null;
+				statement = null;
+			}
 		}
 	}
 }
@@ -0,0 +1,126 @@
+package com.karlnosworthy.poijoi.jdbc;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A summary of the rows loaded into a database by a
+ * {@link JDBCDatabaseCreator}.
+ * 
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public class JDBCLoadReport {
+
+	private Map<String, Long> numberOfRowsInsertedByTable;
+	private long numberOfRowsInserted;
+	private int numberOfBatches;
+	private long numberOfRowsCommitted;
+	private int numberOfCommits;
+	private Map<String, String> settings;
+
+	public JDBCLoadReport() {
+		super();
+		this.numberOfRowsInsertedByTable = new LinkedHashMap<String, Long>();
+		this.settings = new LinkedHashMap<String, String>();
+	}
+
+	/**
+	 * Record the outcome of a batch of inserts.
+	 * 
+	 * @param tableName
+	 *            The table the rows were inserted into
+	 * @param numberOfRows
+	 *            The number of rows inserted by the batch
+	 */
+	synchronized void addBatch(String tableName, int numberOfRows) {
+		Long numberOfTableRows = numberOfRowsInsertedByTable.get(tableName);
+		if (numberOfTableRows == null) {
+			numberOfTableRows = Long.valueOf(0);
+		}
+		numberOfRowsInsertedByTable.put(tableName, numberOfTableRows + numberOfRows);
+		numberOfRowsInserted += numberOfRows;
+		numberOfBatches++;
+	}
+
+	/**
+	 * Record a commit of the rows inserted since the previous commit.
+	 * 
+	 * @param numberOfRows
+	 *            The number of rows made permanent by the commit
+	 */
+	synchronized void addCommit(long numberOfRows) {
+		numberOfRowsCommitted += numberOfRows;
+		numberOfCommits++;
+	}
+
+	public synchronized long getNumberOfRowsInserted() {
+		return numberOfRowsInserted;
+	}
+
+	/**
+	 * The number of rows inserted into a given table.
+	 */
+	public synchronized long getNumberOfRowsInserted(String tableName) {
+		Long numberOfTableRows = numberOfRowsInsertedByTable.get(tableName);
+		return numberOfTableRows != null ? numberOfTableRows : 0;
+	}
+
+	/**
+	 * The number of rows inserted keyed by table name, in the order the
+	 * tables were loaded.
+	 */
+	public synchronized Map<String, Long> getNumberOfRowsInsertedByTable() {
+		return Collections.unmodifiableMap(new LinkedHashMap<String, Long>(numberOfRowsInsertedByTable));
+	}
+
+	public synchronized int getNumberOfBatches() {
+		return numberOfBatches;
+	}
+
+	/**
+	 * The number of rows committed by a bulk load, rows inserted outside of a
+	 * bulk load are committed as they are inserted and aren't counted.
+	 */
+	public synchronized long getNumberOfRowsCommitted() {
+		return numberOfRowsCommitted;
+	}
+
+	public synchronized int getNumberOfCommits() {
+		return numberOfCommits;
+	}
+
+	/**
+	 * Record a database setting the rows were loaded with, e.g. one changed by
+	 * a writer for the duration of the load.
+	 * 
+	 * @param name
+	 *            The name of the setting
+	 * @param value
+	 *            A description of the setting's value
+	 */
+	public synchronized void addSetting(String name, String value) {
+		settings.put(name, value);
+	}
+
+	/**
+	 * The database settings the rows were loaded with, keyed by name in the
+	 * order they were recorded.
+	 */
+	public synchronized Map<String, String> getSettings() {
+		return Collections.unmodifiableMap(new LinkedHashMap<String, String>(settings));
+	}
+
+	@Override
+	public synchronized String toString() {
+		String summary = numberOfRowsInserted + " row(s) inserted in " + numberOfBatches + " batch(es)";
+		if (numberOfCommits > 0) {
+			summary += ", " + numberOfRowsCommitted + " row(s) committed in " + numberOfCommits + " commit(s)";
+		}
+		if (!settings.isEmpty()) {
+			summary += ", settings " + settings;
+		}
+		return summary;
+	}
+}
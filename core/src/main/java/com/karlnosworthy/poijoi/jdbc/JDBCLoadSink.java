@@ -0,0 +1,19 @@
+package com.karlnosworthy.poijoi.jdbc;
+
+import com.karlnosworthy.poijoi.io.RowSink;
+
+/**
+ * A {@link RowSink} which loads the tables it is passed into a database and
+ * keeps the {@link JDBCLoadReport} of that load, so the report belongs to the
+ * sink rather than to the writer which created it.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public interface JDBCLoadSink extends RowSink {
+
+	/**
+	 * The report of the load made through this sink so far.
+	 */
+	JDBCLoadReport getLoadReport();
+}
@@ -0,0 +1,97 @@
+package com.karlnosworthy.poijoi.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.UnsupportedMapping;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+/**
+ * Holds on to the table definitions read from each connection, by catalog and
+ * schema, so that reading the same database again on the same connection
+ * doesn't have to go back to the {@link java.sql.DatabaseMetaData}.
+ *
+ * The cache is only used when {@link #OPTION_CACHE_METADATA} is given, as it
+ * can't see tables being created or changed other than by a
+ * {@link JDBCDatabaseCreator}, which clears the entries of its connection.
+ * Entries are dropped along with their connection once it is no longer used.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public final class JDBCMetaDataCache {
+
+	/**
+	 * Keep the table definitions read from a connection for later reads on
+	 * the same connection.
+	 */
+	public static final String OPTION_CACHE_METADATA = "--cache-metadata";
+
+	private static final Map<Connection, Map<String, Map<String, TableDefinition>>> tableDefinitionsByConnection = new WeakHashMap<Connection, Map<String, Map<String, TableDefinition>>>();
+
+	private JDBCMetaDataCache() {
+		super();
+	}
+
+	/**
+	 * Whether the options ask for the table definitions to be cached.
+	 *
+	 * @param options
+	 *            The options to apply while reading (may be null)
+	 */
+	public static boolean isEnabled(PoiJoiOptions options) {
+		return options != null && options.getBooleanValue(OPTION_CACHE_METADATA, false);
+	}
+
+	/**
+	 * The definitions of the tables of a schema, read using a
+	 * {@link JDBCMetaDataReader} the first time they are asked for on the
+	 * connection and taken from the cache after that.
+	 *
+	 * @param connection
+	 *            The connection to the database
+	 * @param schemaName
+	 *            The schema of the tables (may be null)
+	 */
+	public static Map<String, TableDefinition> getTableDefinitions(
+			Connection connection, String schemaName) throws SQLException,
+			UnsupportedMapping {
+
+		String key = connection.getCatalog() + "/" + schemaName;
+		synchronized (tableDefinitionsByConnection) {
+			Map<String, Map<String, TableDefinition>> cachedTableDefinitions = tableDefinitionsByConnection.get(connection);
+			if (cachedTableDefinitions != null && cachedTableDefinitions.containsKey(key)) {
+				return new HashMap<String, TableDefinition>(cachedTableDefinitions.get(key));
+			}
+		}
+
+		JDBCMetaDataReader metaDataReader = new JDBCMetaDataReader(connection.getMetaData());
+		List<String> tableNames = metaDataReader.getTableNames(schemaName);
+		Map<String, TableDefinition> tableDefinitions = metaDataReader.getTableDefinitions(tableNames, schemaName);
+
+		synchronized (tableDefinitionsByConnection) {
+			Map<String, Map<String, TableDefinition>> cachedTableDefinitions = tableDefinitionsByConnection.get(connection);
+			if (cachedTableDefinitions == null) {
+				cachedTableDefinitions = new HashMap<String, Map<String, TableDefinition>>();
+				tableDefinitionsByConnection.put(connection, cachedTableDefinitions);
+			}
+			cachedTableDefinitions.put(key, new HashMap<String, TableDefinition>(tableDefinitions));
+		}
+		return tableDefinitions;
+	}
+
+	/**
+	 * Forget the table definitions read from a connection, e.g. because its
+	 * tables have been changed.
+	 */
+	public static void clear(Connection connection) {
+		synchronized (tableDefinitionsByConnection) {
+			tableDefinitionsByConnection.remove(connection);
+		}
+	}
+}
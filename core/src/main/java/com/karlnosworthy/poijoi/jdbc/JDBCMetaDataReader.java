@@ -6,16 +6,37 @@ import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.karlnosworthy.poijoi.UnsupportedMapping;
 import com.karlnosworthy.poijoi.model.ColumnDefinition;
 import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
+import com.karlnosworthy.poijoi.model.IndexDefinition;
 import com.karlnosworthy.poijoi.model.TableDefinition;
 
+/**
+ * Reads the table definitions of a database from its {@link DatabaseMetaData}.
+ * 
+ * The columns of all the tables are read with a single call to
+ * {@link DatabaseMetaData#getColumns(String, String, String, String)} rather
+ * than one per table, falling back to reading the columns of any table the
+ * driver left out one table at a time. The indexes of each table are read
+ * with {@link DatabaseMetaData#getIndexInfo(String, String, String, boolean, boolean)},
+ * which can only be asked about one table at a time, leaving out the index of
+ * the primary key as the writers create that along with the table.
+ */
 public class JDBCMetaDataReader {
 
+	private static final Logger logger = LoggerFactory.getLogger(JDBCMetaDataReader.class);
+
 	private static final String TABLE_TYPE_TABLE = "TABLE";
 
 	// getTables result set constants
@@ -27,8 +48,20 @@ public class JDBCMetaDataReader {
 	private static final String COLUMN_RESULT_COLUMN_NAME = "COLUMN_NAME";
 	private static final String COLUMN_RESULT_COLUMN_INDEX_NAME = "ORDINAL_POSITION";
 	private static final String COLUMN_RESULT_DATA_TYPE_NAME = "DATA_TYPE";
+	private static final String COLUMN_RESULT_TABLE_NAME = "TABLE_NAME";
+
+	// getIndexInfo result set constants
+	private static final String INDEX_RESULT_INDEX_NAME = "INDEX_NAME";
+	private static final String INDEX_RESULT_NON_UNIQUE_NAME = "NON_UNIQUE";
+	private static final String INDEX_RESULT_TYPE_NAME = "TYPE";
+	private static final String INDEX_RESULT_COLUMN_INDEX_NAME = "ORDINAL_POSITION";
+	private static final String INDEX_RESULT_COLUMN_NAME = "COLUMN_NAME";
+
+	// getPrimaryKeys result set constants
+	private static final String PRIMARY_KEY_RESULT_COLUMN_NAME = "COLUMN_NAME";
 
 	private DatabaseMetaData databaseMetaData;
+	private boolean indexInfoUnsupported;
 
 	public JDBCMetaDataReader(DatabaseMetaData databaseMetaData) {
 		super();
@@ -94,36 +127,181 @@ public class JDBCMetaDataReader {
 	public Map<String, TableDefinition> getTableDefinitions(
 			List<String> tableNames, String schemaName) throws SQLException, UnsupportedMapping {
 
-		Map<String, TableDefinition> tableDefinitions = new HashMap<String, TableDefinition>();
+		Map<String, List<ColumnDefinition>> columnDefinitionsByTable = getColumnDefinitions(
+				tableNames, schemaName);
 
+		Map<String, TableDefinition> tableDefinitions = new HashMap<String, TableDefinition>();
 		for (String tableName : tableNames) {
+			List<ColumnDefinition> columnDefinitions = columnDefinitionsByTable.get(tableName);
+			if (columnDefinitions == null) {
+				columnDefinitions = getColumnDefinitions(tableName, schemaName);
+			}
+			tableDefinitions.put(tableName, new TableDefinition(tableName,
+					columnDefinitions, getIndexDefinitions(tableName, schemaName)));
+		}
 
-			List<ColumnDefinition> columnDefinitions = new ArrayList<ColumnDefinition>();
+		return tableDefinitions;
+	}
 
-			ResultSet tableColumnsResultSet = null;
+	/**
+	 * The column definitions of the tables, read with a single call for all
+	 * of them. Not every driver returns the columns of every table this way,
+	 * so any table may be missing.
+	 */
+	private Map<String, List<ColumnDefinition>> getColumnDefinitions(
+			List<String> tableNames, String schemaName) throws UnsupportedMapping {
 
-			try {
-				tableColumnsResultSet = databaseMetaData.getColumns(null,
-						schemaName, tableName, null);
+		Set<String> wantedTableNames = new HashSet<String>(tableNames);
+		Map<String, List<ColumnDefinition>> columnDefinitionsByTable = new HashMap<String, List<ColumnDefinition>>();
 
-				while (tableColumnsResultSet.next()) {
-					ColumnDefinition columnDefinition = getColumnDefinition(
-							tableColumnsResultSet, tableName);
+		ResultSet columnsResultSet = null;
+		try {
+			columnsResultSet = databaseMetaData.getColumns(null, schemaName, "%", "%");
+			while (columnsResultSet.next()) {
+				String tableName = columnsResultSet.getString(COLUMN_RESULT_TABLE_NAME);
+				if (!wantedTableNames.contains(tableName)) {
+					continue;
+				}
 
-					columnDefinitions.add(columnDefinition);
+				List<ColumnDefinition> columnDefinitions = columnDefinitionsByTable.get(tableName);
+				if (columnDefinitions == null) {
+					columnDefinitions = new ArrayList<ColumnDefinition>();
+					columnDefinitionsByTable.put(tableName, columnDefinitions);
 				}
+				columnDefinitions.add(getColumnDefinition(columnsResultSet, tableName));
+			}
+		} catch (SQLException sqlException) {
+			logger.debug("Unable to read the columns of every table at once, reading them a table at a time", sqlException);
+			columnDefinitionsByTable.clear();
+		} finally {
+			close(columnsResultSet);
+		}
+
+		return columnDefinitionsByTable;
+	}
+
+	private List<ColumnDefinition> getColumnDefinitions(String tableName,
+			String schemaName) throws SQLException, UnsupportedMapping {
 
-				tableDefinitions.put(tableName, new TableDefinition(tableName,
-						columnDefinitions));
+		List<ColumnDefinition> columnDefinitions = new ArrayList<ColumnDefinition>();
+
+		ResultSet tableColumnsResultSet = null;
+		try {
+			tableColumnsResultSet = databaseMetaData.getColumns(null,
+					schemaName, tableName, null);
+
+			while (tableColumnsResultSet.next()) {
+				columnDefinitions.add(getColumnDefinition(
+						tableColumnsResultSet, tableName));
+			}
+		} finally {
+			close(tableColumnsResultSet);
+		}
+
+		return columnDefinitions;
+	}
+
+	/**
+	 * The indexes of a table other than the index of its primary key. If the
+	 * driver can't describe the indexes of a table, none are returned for this
+	 * or any later table.
+	 */
+	public List<IndexDefinition> getIndexDefinitions(String tableName,
+			String schemaName) throws SQLException {
+
+		List<IndexDefinition> indexDefinitions = new ArrayList<IndexDefinition>();
+		if (indexInfoUnsupported) {
+			return indexDefinitions;
+		}
 
-			} finally {
-				if (tableColumnsResultSet != null) {
-					tableColumnsResultSet.close();
+		// the column names of each index by their position in the index
+		Map<String, TreeMap<Short, String>> indexColumnNames = new LinkedHashMap<String, TreeMap<Short, String>>();
+		Set<String> uniqueIndexNames = new HashSet<String>();
+		Set<String> expressionIndexNames = new HashSet<String>();
+
+		ResultSet indexResultSet = null;
+		try {
+			indexResultSet = databaseMetaData.getIndexInfo(null, schemaName,
+					tableName, false, true);
+
+			while (indexResultSet.next()) {
+				String indexName = indexResultSet.getString(INDEX_RESULT_INDEX_NAME);
+				if (indexName == null
+						|| indexResultSet.getShort(INDEX_RESULT_TYPE_NAME) == DatabaseMetaData.tableIndexStatistic) {
+					continue;
+				}
+
+				String columnName = indexResultSet.getString(INDEX_RESULT_COLUMN_NAME);
+				if (columnName == null) {
+					expressionIndexNames.add(indexName);
+					continue;
+				}
+
+				TreeMap<Short, String> columnNames = indexColumnNames.get(indexName);
+				if (columnNames == null) {
+					columnNames = new TreeMap<Short, String>();
+					indexColumnNames.put(indexName, columnNames);
+				}
+				columnNames.put(indexResultSet.getShort(INDEX_RESULT_COLUMN_INDEX_NAME), columnName);
+				if (!indexResultSet.getBoolean(INDEX_RESULT_NON_UNIQUE_NAME)) {
+					uniqueIndexNames.add(indexName);
 				}
 			}
+		} catch (SQLException sqlException) {
+			logger.debug("Unable to read the indexes of {}, no indexes will be read", tableName, sqlException);
+			indexInfoUnsupported = true;
+			return indexDefinitions;
+		} finally {
+			close(indexResultSet);
 		}
 
-		return tableDefinitions;
+		if (indexColumnNames.isEmpty()) {
+			return indexDefinitions;
+		}
+
+		Set<String> primaryKeyColumnNames = getPrimaryKeyColumnNames(tableName, schemaName);
+		for (Map.Entry<String, TreeMap<Short, String>> entry : indexColumnNames.entrySet()) {
+			String indexName = entry.getKey();
+			List<String> columnNames = new ArrayList<String>(entry.getValue().values());
+			boolean unique = uniqueIndexNames.contains(indexName);
+			if (expressionIndexNames.contains(indexName)
+					|| (unique && primaryKeyColumnNames.equals(new HashSet<String>(columnNames)))) {
+				continue;
+			}
+			indexDefinitions.add(new IndexDefinition(indexName, tableName,
+					columnNames.toArray(new String[columnNames.size()]), unique));
+		}
+
+		return indexDefinitions;
+	}
+
+	private Set<String> getPrimaryKeyColumnNames(String tableName,
+			String schemaName) throws SQLException {
+
+		Set<String> columnNames = new HashSet<String>();
+
+		ResultSet primaryKeyResultSet = null;
+		try {
+			primaryKeyResultSet = databaseMetaData.getPrimaryKeys(null,
+					schemaName, tableName);
+			while (primaryKeyResultSet.next()) {
+				columnNames.add(primaryKeyResultSet.getString(PRIMARY_KEY_RESULT_COLUMN_NAME));
+			}
+		} finally {
+			close(primaryKeyResultSet);
+		}
+
+		return columnNames;
+	}
+
+	private void close(ResultSet resultSet) {
+		if (resultSet != null) {
+			try {
+				resultSet.close();
+			} catch (SQLException sqlException) {
+				logger.debug("", sqlException);
+			}
+		}
 	}
 
 	public ColumnDefinition getColumnDefinition(ResultSet tableColumnResetSet,
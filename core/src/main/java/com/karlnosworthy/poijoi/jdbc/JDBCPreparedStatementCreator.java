@@ -27,6 +27,18 @@ public class JDBCPreparedStatementCreator extends AbstractStatementCreator<Prepa
      * @return
      */
     public PreparedStatement buildCreateTableStatement(TableDefinition tableDefinition) {
+        return buildCreateTableStatement(tableDefinition, connection);
+    }
+
+    /**
+     * Create a new prepared statement to create a table, using a connection other than the one this creator was
+     * constructed with.
+     *
+     * @param tableDefinition The table to construct the create statement for.
+     * @param connection The connection from which the prepared statement should be obtained.
+     * @return The newly created prepared statement or null.
+     */
+    public PreparedStatement buildCreateTableStatement(TableDefinition tableDefinition, Connection connection) {
 
         String createTableSQL = generateCreateTableSQL(tableDefinition);
 
@@ -40,6 +52,18 @@ public class JDBCPreparedStatementCreator extends AbstractStatementCreator<Prepa
     }
 
     public PreparedStatement buildCreateIndexStatement(IndexDefinition indexDefinition) {
+        return buildCreateIndexStatement(indexDefinition, connection);
+    }
+
+    /**
+     * Create a new prepared statement to create an index, using a connection other than the one this creator was
+     * constructed with.
+     *
+     * @param indexDefinition The index to construct the create statement for.
+     * @param connection The connection from which the prepared statement should be obtained.
+     * @return The newly created prepared statement or null.
+     */
+    public PreparedStatement buildCreateIndexStatement(IndexDefinition indexDefinition, Connection connection) {
 
         String createIndexSQL = generateCreateIndexSQL(indexDefinition);
 
@@ -0,0 +1,188 @@
+package com.karlnosworthy.poijoi.jdbc;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.HashMap;
+
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.UnsupportedMapping;
+import com.karlnosworthy.poijoi.io.RowBuffer;
+import com.karlnosworthy.poijoi.io.RowSink;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+/**
+ * Reads the rows of a database table using a forward only, read only query
+ * and passes them on to a {@link RowSink} in batches as they are read.
+ *
+ * The name of each column of the result and how its values are read are
+ * worked out once per query rather than for every row, and the driver is
+ * asked to fetch {@link #OPTION_FETCH_SIZE} rows at a time so that it
+ * doesn't have to hold the whole table in memory (or make a round trip for
+ * every row).
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public class JDBCTableScanner {
+
+	/**
+	 * The number of rows the driver is asked to fetch from the database at a
+	 * time.
+	 */
+	public static final String OPTION_FETCH_SIZE = "--fetch-size";
+
+	public static final int DEFAULT_FETCH_SIZE = 1000;
+
+	private int fetchSize;
+
+	public JDBCTableScanner() {
+		this(null);
+	}
+
+	/**
+	 * @param options
+	 *            The options to apply while reading (may be null)
+	 */
+	public JDBCTableScanner(PoiJoiOptions options) {
+		super();
+		fetchSize = DEFAULT_FETCH_SIZE;
+		if (options != null) {
+			fetchSize = options.getIntValue(OPTION_FETCH_SIZE, DEFAULT_FETCH_SIZE);
+			if (fetchSize < 1) {
+				throw new IllegalArgumentException("The value of option " + OPTION_FETCH_SIZE + " must be at least 1: " + fetchSize);
+			}
+		}
+	}
+
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	/**
+	 * Pass all the rows of a table to the sink, the table having already been
+	 * started.
+	 *
+	 * @param connection
+	 *            The connection to read the table on
+	 * @param tableDefinition
+	 *            The table to read
+	 * @param sink
+	 *            The sink to pass the rows to
+	 * @return The number of rows read
+	 */
+	public long scan(Connection connection, TableDefinition tableDefinition,
+			RowSink sink) throws Exception {
+		return scan(connection, "select * from " + tableDefinition.getTableName(),
+				tableDefinition, sink);
+	}
+
+	/**
+	 * Pass the rows returned by a query to the sink as the rows of a table,
+	 * the table having already been started.
+	 *
+	 * @param connection
+	 *            The connection to run the query on
+	 * @param query
+	 *            The query selecting the rows
+	 * @param tableDefinition
+	 *            The table the rows are passed to the sink as
+	 * @param sink
+	 *            The sink to pass the rows to
+	 * @return The number of rows read
+	 */
+	public long scan(Connection connection, String query,
+			TableDefinition tableDefinition, RowSink sink) throws Exception {
+
+		Statement statement = connection.createStatement(
+				ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		try {
+			statement.setFetchSize(fetchSize);
+
+			ResultSet resultSet = statement.executeQuery(query);
+			try {
+				ResultSetMetaData resultSetMetaData = resultSet.getMetaData();
+				int columnCount = resultSetMetaData.getColumnCount();
+				String[] columnNames = new String[columnCount];
+				ColumnReader[] columnReaders = new ColumnReader[columnCount];
+				for (int columnIndex = 0; columnIndex < columnCount; columnIndex++) {
+					columnNames[columnIndex] = resultSetMetaData.getColumnName(columnIndex + 1);
+					columnReaders[columnIndex] = ColumnReader.forType(resultSetMetaData.getColumnType(columnIndex + 1));
+				}
+
+				RowBuffer rowBuffer = new RowBuffer(sink, tableDefinition);
+				while (resultSet.next()) {
+					HashMap<String, Object> row = new HashMap<String, Object>();
+					for (int columnIndex = 0; columnIndex < columnCount; columnIndex++) {
+						row.put(columnNames[columnIndex],
+								columnReaders[columnIndex].read(resultSet, columnIndex + 1));
+					}
+					rowBuffer.add(row);
+				}
+				rowBuffer.flush();
+				return rowBuffer.getNumberOfRows();
+			} finally {
+				resultSet.close();
+			}
+		} finally {
+			statement.close();
+		}
+	}
+
+	/**
+	 * How the values of a column are read from a result set, depending on the
+	 * column's SQL type.
+	 */
+	private enum ColumnReader {
+
+		DATE {
+			@Override
+			Object read(ResultSet resultSet, int columnIndex) throws SQLException {
+				return resultSet.getDate(columnIndex);
+			}
+		},
+		DECIMAL_NUMBER {
+			@Override
+			Object read(ResultSet resultSet, int columnIndex) throws SQLException {
+				return resultSet.getDouble(columnIndex);
+			}
+		},
+		INTEGER_NUMBER {
+			@Override
+			Object read(ResultSet resultSet, int columnIndex) throws SQLException {
+				return resultSet.getInt(columnIndex);
+			}
+		},
+		STRING {
+			@Override
+			Object read(ResultSet resultSet, int columnIndex) throws SQLException {
+				return resultSet.getString(columnIndex);
+			}
+		};
+
+		abstract Object read(ResultSet resultSet, int columnIndex) throws SQLException;
+
+		static ColumnReader forType(int columnType) throws UnsupportedMapping {
+			switch (columnType) {
+			case Types.DATE:
+				return DATE;
+			case Types.DECIMAL:
+			case Types.REAL:
+				return DECIMAL_NUMBER;
+			case Types.INTEGER:
+				return INTEGER_NUMBER;
+			case Types.BOOLEAN:
+			case Types.CLOB:
+			case Types.BLOB:
+			case Types.CHAR:
+			case Types.VARCHAR:
+				return STRING;
+			default:
+				throw new UnsupportedMapping("Unsupported Data Type: " + columnType);
+			}
+		}
+	}
+}
@@ -8,6 +8,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.karlnosworthy.poijoi.PoiJoiOptions;
 import com.karlnosworthy.poijoi.model.ColumnDefinition;
 import com.karlnosworthy.poijoi.model.IndexDefinition;
 import com.karlnosworthy.poijoi.model.TableDefinition;
@@ -15,6 +16,48 @@ import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
 
 public class SQLStatementCreator extends AbstractStatementCreator<String> {
 
+	/**
+	 * The maximum number of rows to insert with each INSERT statement, more
+	 * than one giving multi-row {@code VALUES (...),(...)} statements.
+	 */
+	public static final String OPTION_ROWS_PER_INSERT = "--rows-per-insert";
+
+	/**
+	 * The maximum length, in bytes, of a multi-row INSERT statement.
+	 */
+	public static final String OPTION_MAX_INSERT_BYTES = "--max-insert-bytes";
+
+	public static final int DEFAULT_MAX_INSERT_BYTES = 1024 * 1024;
+
+	/**
+	 * The value of {@link #OPTION_ROWS_PER_INSERT}, defaulting to one row per
+	 * statement.
+	 */
+	public static int getRowsPerInsert(PoiJoiOptions options) {
+		if (options == null) {
+			return 1;
+		}
+		int rowsPerInsert = options.getIntValue(OPTION_ROWS_PER_INSERT, 1);
+		if (rowsPerInsert < 1) {
+			throw new IllegalArgumentException("The value of option " + OPTION_ROWS_PER_INSERT + " must be at least 1: " + rowsPerInsert);
+		}
+		return rowsPerInsert;
+	}
+
+	/**
+	 * The value of {@link #OPTION_MAX_INSERT_BYTES}, defaulting to
+	 * {@link #DEFAULT_MAX_INSERT_BYTES}.
+	 */
+	public static int getMaxInsertBytes(PoiJoiOptions options) {
+		if (options == null) {
+			return DEFAULT_MAX_INSERT_BYTES;
+		}
+		int maxInsertBytes = options.getIntValue(OPTION_MAX_INSERT_BYTES, DEFAULT_MAX_INSERT_BYTES);
+		if (maxInsertBytes < 1) {
+			throw new IllegalArgumentException("The value of option " + OPTION_MAX_INSERT_BYTES + " must be at least 1: " + maxInsertBytes);
+		}
+		return maxInsertBytes;
+	}
 
 	public String buildCreateTableStatement(TableDefinition tableDefinition) {
 		return generateCreateTableSQL(tableDefinition);
@@ -29,57 +72,164 @@ public class SQLStatementCreator extends AbstractStatementCreator<String> {
 
 		StringBuilder builder = new StringBuilder();
 
+		List<String> columnNames = getInsertColumnNames(dataToImport);
+		appendInsertPrefix(builder, tableDefinition, columnNames);
+		appendValues(builder, tableDefinition, columnNames, dataToImport);
+		builder.append(";");
+		return builder.toString();
+	}
+
+	/**
+	 * Whether more than one row can be inserted by a single statement, i.e.
+	 * {@code INSERT INTO t (...) VALUES (...),(...)}.
+	 */
+	public boolean supportsMultiRowInsert() {
+		return true;
+	}
+
+	/**
+	 * Appends a single INSERT statement covering as many of the rows starting
+	 * at fromIndex as it can, which is up to maxRows consecutive rows holding
+	 * the same columns without the statement going over maxBytes bytes (when
+	 * encoded as UTF-8). The statement always covers at least one row, however
+	 * long that row is.
+	 * 
+	 * @param builder The builder to append the statement to
+	 * @param tableDefinition The table the rows are to be inserted into
+	 * @param rows The rows to insert
+	 * @param fromIndex The index of the first row to insert
+	 * @param maxRows The maximum number of rows the statement can cover
+	 * @param maxBytes The maximum length of the statement in bytes
+	 * @return The number of rows the statement covers
+	 */
+	public int appendInsertTableStatement(StringBuilder builder, TableDefinition tableDefinition,
+			List<? extends Map<String, Object>> rows, int fromIndex, int maxRows, long maxBytes) {
+
+		Map<String, Object> firstRow = rows.get(fromIndex);
+		if (maxRows <= 1 || !supportsMultiRowInsert()) {
+			builder.append(buildInsertTableStatement(tableDefinition, firstRow));
+			return 1;
+		}
+
+		// every row's values follow the column order of the first row
+		List<String> columnNames = getInsertColumnNames(firstRow);
+		int statementStart = builder.length();
+		appendInsertPrefix(builder, tableDefinition, columnNames);
+		appendValues(builder, tableDefinition, columnNames, firstRow);
+		long statementBytes = utf8Length(builder, statementStart) + 1;
+
+		int numberOfRows = 1;
+		StringBuilder valuesBuilder = new StringBuilder();
+		for (int rowIndex = fromIndex + 1; rowIndex < rows.size() && numberOfRows < maxRows; rowIndex++) {
+			Map<String, Object> row = rows.get(rowIndex);
+			if (!row.keySet().equals(firstRow.keySet())) {
+				break;
+			}
+
+			valuesBuilder.setLength(0);
+			valuesBuilder.append(",");
+			appendValues(valuesBuilder, tableDefinition, columnNames, row);
+
+			long valuesBytes = utf8Length(valuesBuilder, 0);
+			if (statementBytes + valuesBytes > maxBytes) {
+				break;
+			}
+			builder.append(valuesBuilder);
+			statementBytes += valuesBytes;
+			numberOfRows++;
+		}
+
+		builder.append(";");
+		return numberOfRows;
+	}
+
+	/**
+	 * The names of the columns a row's values are inserted into, in the order
+	 * they are listed by the statement.
+	 */
+	private List<String> getInsertColumnNames(Map<String, Object> dataToImport) {
+		List<String> columnNames = new ArrayList<String>(dataToImport.size());
+		for (String columnName : dataToImport.keySet()) {
+			if (!columnName.endsWith(".id")) {
+				columnNames.add(columnName);
+			}
+		}
+		return columnNames;
+	}
+
+	private void appendInsertPrefix(StringBuilder builder, TableDefinition tableDefinition, List<String> columnNames) {
+
 		builder.append("INSERT INTO '");
 		builder.append(tableDefinition.getTableName());
 		builder.append("' (");
 
 		boolean first = true;
-		for (String columnName : dataToImport.keySet()) {
-			if (!columnName.endsWith(".id")) {
-				if (first) {
-					first = false;
-				} else {
-					builder.append(",");
-				}
-				builder.append("\"");
-				builder.append(columnName);
-				builder.append("\"");
+		for (String columnName : columnNames) {
+			if (first) {
+				first = false;
+			} else {
+				builder.append(",");
 			}
+			builder.append("\"");
+			builder.append(columnName);
+			builder.append("\"");
 		}
 
 		builder.append(")");
-		builder.append(" VALUES (");
+		builder.append(" VALUES ");
+	}
+
+	private void appendValues(StringBuilder builder, TableDefinition tableDefinition, List<String> columnNames,
+			Map<String, Object> dataToImport) {
+
+		builder.append("(");
 
 		ColumnDefinition columnDefinition = null;
 
-		first = true;
-		for (String columnName : dataToImport.keySet()) {
+		boolean first = true;
+		for (String columnName : columnNames) {
 
 			columnDefinition = tableDefinition.getColumnDefinition(columnName);
 
-			if (!columnName.endsWith(".id")) {
-				if (first) {
-					first = false;
-				} else {
-					builder.append(",");
-				}
-				Object val = dataToImport.get(columnName);
-				if (columnDefinition.getColumnType() == ColumnType.DATE) {
-					SimpleDateFormat dateFormat = new SimpleDateFormat(
-							"yyyy-MM-dd HH:mm:ss.SSS");
-					builder.append("'");
-					builder.append(dateFormat.format(val));
-					builder.append("'");
-				} else if (columnDefinition.getColumnType() == ColumnType.STRING) {
-					builder.append("'");
-					builder.append(val.toString().replace("'", "''"));
-					builder.append("'");
-				} else {
-					builder.append(dataToImport.get(columnName));
-				}
+			if (first) {
+				first = false;
+			} else {
+				builder.append(",");
+			}
+			Object val = dataToImport.get(columnName);
+			if (columnDefinition.getColumnType() == ColumnType.DATE) {
+				SimpleDateFormat dateFormat = new SimpleDateFormat(
+						"yyyy-MM-dd HH:mm:ss.SSS");
+				builder.append("'");
+				builder.append(dateFormat.format(val));
+				builder.append("'");
+			} else if (columnDefinition.getColumnType() == ColumnType.STRING) {
+				builder.append("'");
+				builder.append(val.toString().replace("'", "''"));
+				builder.append("'");
+			} else {
+				builder.append(val);
 			}
 		}
-		builder.append(");");
-		return builder.toString();
+		builder.append(")");
+	}
+
+	private static long utf8Length(CharSequence sequence, int fromIndex) {
+		long length = 0;
+		for (int index = fromIndex; index < sequence.length(); index++) {
+			char character = sequence.charAt(index);
+			if (character < 0x80) {
+				length++;
+			} else if (character < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(character)) {
+				// the pair is encoded as 4 bytes
+				length += 4;
+				index++;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
 	}
 }
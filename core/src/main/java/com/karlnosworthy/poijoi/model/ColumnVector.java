@@ -0,0 +1,142 @@
+package com.karlnosworthy.poijoi.model;
+
+import java.util.BitSet;
+
+import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
+
+/**
+ * Storage for all the values of a single column of a table, held in row order.
+ * 
+ * Rows without a value are recorded in a null bitmap rather than being stored,
+ * and rows where the column was not provided at all are recorded separately so
+ * that the original row can be rebuilt exactly.
+ * 
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public abstract class ColumnVector {
+
+	static final int INITIAL_CAPACITY = 64;
+
+	private BitSet nulls;
+	private BitSet missing;
+	private int size;
+
+	ColumnVector() {
+		super();
+		this.nulls = new BitSet();
+		this.missing = new BitSet();
+	}
+
+	/**
+	 * Create the most compact vector for values of the given column type.
+	 * 
+	 * @param columnType
+	 *            The type of values the column holds
+	 */
+	public static ColumnVector forType(ColumnType columnType) {
+		if (columnType != null) {
+			switch (columnType) {
+			case INTEGER_NUMBER:
+				return new IntegerColumnVector();
+			case DECIMAL_NUMBER:
+				return new DecimalColumnVector();
+			case DATE:
+				return new DateColumnVector();
+			case STRING:
+				return new StringColumnVector();
+			}
+		}
+		return new ObjectColumnVector();
+	}
+
+	/**
+	 * Append a value to the end of the column.
+	 * 
+	 * @return False if the value cannot be held by this type of vector, in which
+	 *         case nothing is appended
+	 */
+	public boolean add(Object value) {
+		if (value == null) {
+			nulls.set(size);
+			ensureCapacity(size + 1);
+		} else if (accepts(value)) {
+			ensureCapacity(size + 1);
+			store(size, value);
+		} else {
+			return false;
+		}
+		size++;
+		return true;
+	}
+
+	/**
+	 * Append a row for which the column was not provided at all.
+	 */
+	public void addMissing() {
+		missing.set(size);
+		add(null);
+	}
+
+	/**
+	 * The value held for a given row, boxed into the type the readers provide.
+	 */
+	public Object get(int rowIndex) {
+		checkRowIndex(rowIndex);
+		if (nulls.get(rowIndex)) {
+			return null;
+		}
+		return load(rowIndex);
+	}
+
+	public boolean isNull(int rowIndex) {
+		checkRowIndex(rowIndex);
+		return nulls.get(rowIndex);
+	}
+
+	/**
+	 * Was the column provided for the given row (even if it was null).
+	 */
+	public boolean isPresent(int rowIndex) {
+		checkRowIndex(rowIndex);
+		return !missing.get(rowIndex);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Copy the column into a vector which will hold a value of any type.
+	 */
+	ObjectColumnVector toObjectColumnVector() {
+		ObjectColumnVector objectColumnVector = new ObjectColumnVector();
+		for (int rowIndex = 0; rowIndex < size; rowIndex++) {
+			if (missing.get(rowIndex)) {
+				objectColumnVector.addMissing();
+			} else {
+				objectColumnVector.add(get(rowIndex));
+			}
+		}
+		return objectColumnVector;
+	}
+
+	void checkRowIndex(int rowIndex) {
+		if (rowIndex < 0 || rowIndex >= size) {
+			throw new IndexOutOfBoundsException("Row: " + rowIndex + ", Size: " + size);
+		}
+	}
+
+	static int grow(int currentCapacity, int minimumCapacity) {
+		int newCapacity = Math.max(INITIAL_CAPACITY, currentCapacity + (currentCapacity >> 1));
+		return Math.max(newCapacity, minimumCapacity);
+	}
+
+	abstract boolean accepts(Object value);
+
+	abstract void ensureCapacity(int capacity);
+
+	abstract void store(int rowIndex, Object value);
+
+	abstract Object load(int rowIndex);
+}
@@ -0,0 +1,180 @@
+package com.karlnosworthy.poijoi.model;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column orientated storage for the data of a single table. Each column of the
+ * {@link TableDefinition} is held in its own {@link ColumnVector}, keyed by the
+ * column index, using primitive arrays where the column type allows it.
+ * 
+ * A value which doesn't match its column type (e.g. a {@link java.sql.Date} in
+ * a DATE column) moves that column over to an {@link ObjectColumnVector} so
+ * that every value comes back out exactly as it went in.
+ * 
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public class ColumnarTableData {
+
+	private TableDefinition tableDefinition;
+	private ColumnVector[] columns;
+	private Map<Integer, HashMap<String, Object>> undefinedColumnData;
+	private int rowCount;
+
+	public ColumnarTableData(TableDefinition tableDefinition) {
+		super();
+		this.tableDefinition = tableDefinition;
+
+		int numberOfColumns = 0;
+		for (ColumnDefinition columnDefinition : tableDefinition.getColumnDefinitions()) {
+			numberOfColumns = Math.max(numberOfColumns, columnDefinition.getColumnIndex() + 1);
+		}
+
+		this.columns = new ColumnVector[numberOfColumns];
+		for (ColumnDefinition columnDefinition : tableDefinition.getColumnDefinitions()) {
+			columns[columnDefinition.getColumnIndex()] = ColumnVector.forType(columnDefinition.getColumnType());
+		}
+		this.undefinedColumnData = new HashMap<Integer, HashMap<String, Object>>();
+	}
+
+	/**
+	 * Create the columnar form of a list of rows.
+	 * 
+	 * @param tableDefinition
+	 *            The definition of the table the rows belong to
+	 * @param rows
+	 *            The rows, keyed by column name
+	 */
+	public static ColumnarTableData fromRows(TableDefinition tableDefinition, List<? extends Map<String, Object>> rows) {
+		ColumnarTableData columnarTableData = new ColumnarTableData(tableDefinition);
+		if (rows != null) {
+			for (Map<String, Object> row : rows) {
+				columnarTableData.addRow(row);
+			}
+		}
+		return columnarTableData;
+	}
+
+	public TableDefinition getTableDefinition() {
+		return tableDefinition;
+	}
+
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Append a row, keyed by column name, to the end of the table.
+	 */
+	public void addRow(Map<String, Object> row) {
+		HashMap<String, Object> undefinedColumns = null;
+		int numberOfDefinedColumns = 0;
+
+		for (ColumnDefinition columnDefinition : tableDefinition.getColumnDefinitions()) {
+			int columnIndex = columnDefinition.getColumnIndex();
+			String columnName = columnDefinition.getColumnName();
+
+			if (!row.containsKey(columnName)) {
+				columns[columnIndex].addMissing();
+			} else {
+				numberOfDefinedColumns++;
+				Object value = row.get(columnName);
+				if (!columns[columnIndex].add(value)) {
+					columns[columnIndex] = columns[columnIndex].toObjectColumnVector();
+					columns[columnIndex].add(value);
+				}
+			}
+		}
+
+		if (row.size() > numberOfDefinedColumns) {
+			for (String columnName : row.keySet()) {
+				if (!tableDefinition.containsDefinitionForColumn(columnName)) {
+					if (undefinedColumns == null) {
+						undefinedColumns = new HashMap<String, Object>();
+					}
+					undefinedColumns.put(columnName, row.get(columnName));
+				}
+			}
+		}
+
+		if (undefinedColumns != null) {
+			undefinedColumnData.put(rowCount, undefinedColumns);
+		}
+		rowCount++;
+	}
+
+	/**
+	 * Get the storage for a column.
+	 * 
+	 * @param columnIndex
+	 *            The index of the column (see
+	 *            {@link ColumnDefinition#getColumnIndex()})
+	 * @return The column, or null if there is no column with that index
+	 */
+	public ColumnVector getColumn(int columnIndex) {
+		if (columnIndex < 0 || columnIndex >= columns.length) {
+			return null;
+		}
+		return columns[columnIndex];
+	}
+
+	/**
+	 * Get the storage for a column based on it's name
+	 * 
+	 * @param columnName
+	 *            The Database Column name
+	 * @return The column, or null if there is no column with that name
+	 */
+	public ColumnVector getColumn(String columnName) {
+		ColumnDefinition columnDefinition = tableDefinition.getColumnDefinition(columnName);
+		if (columnDefinition == null) {
+			return null;
+		}
+		return columns[columnDefinition.getColumnIndex()];
+	}
+
+	/**
+	 * Rebuild a single row, keyed by column name.
+	 */
+	public HashMap<String, Object> getRow(int rowIndex) {
+		if (rowIndex < 0 || rowIndex >= rowCount) {
+			throw new IndexOutOfBoundsException("Row: " + rowIndex + ", Size: " + rowCount);
+		}
+
+		HashMap<String, Object> row = new HashMap<String, Object>();
+		for (ColumnDefinition columnDefinition : tableDefinition.getColumnDefinitions()) {
+			ColumnVector column = columns[columnDefinition.getColumnIndex()];
+			if (column.isPresent(rowIndex)) {
+				row.put(columnDefinition.getColumnName(), column.get(rowIndex));
+			}
+		}
+
+		HashMap<String, Object> undefinedColumns = undefinedColumnData.get(rowIndex);
+		if (undefinedColumns != null) {
+			row.putAll(undefinedColumns);
+		}
+		return row;
+	}
+
+	/**
+	 * A read only view of the table as a list of rows keyed by column name.
+	 * Each row is rebuilt when it is requested, so changes made to a returned
+	 * row are not reflected in the table.
+	 */
+	public List<HashMap<String, Object>> asRows() {
+		return new AbstractList<HashMap<String, Object>>() {
+			@Override
+			public HashMap<String, Object> get(int rowIndex) {
+				return getRow(rowIndex);
+			}
+
+			@Override
+			public int size() {
+				return rowCount;
+			}
+		};
+	}
+}
@@ -0,0 +1,49 @@
+package com.karlnosworthy.poijoi.model;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * A {@link ColumnVector} for {@link Date} values, held as a {@code long[]} of
+ * milliseconds since the epoch.
+ * 
+ * Only plain {@link Date} values are accepted so that subclasses such as
+ * {@link java.sql.Date} come back out as the same type they went in.
+ * 
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public class DateColumnVector extends ColumnVector {
+
+	private long[] values = new long[0];
+
+	/**
+	 * The value for the given row in milliseconds since the epoch.
+	 */
+	public long getTime(int rowIndex) {
+		checkRowIndex(rowIndex);
+		return values[rowIndex];
+	}
+
+	@Override
+	boolean accepts(Object value) {
+		return value != null && value.getClass() == Date.class;
+	}
+
+	@Override
+	void ensureCapacity(int capacity) {
+		if (capacity > values.length) {
+			values = Arrays.copyOf(values, grow(values.length, capacity));
+		}
+	}
+
+	@Override
+	void store(int rowIndex, Object value) {
+		values[rowIndex] = ((Date) value).getTime();
+	}
+
+	@Override
+	Object load(int rowIndex) {
+		return new Date(values[rowIndex]);
+	}
+}
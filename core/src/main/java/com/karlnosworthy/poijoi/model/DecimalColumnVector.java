@@ -0,0 +1,41 @@
+package com.karlnosworthy.poijoi.model;
+
+import java.util.Arrays;
+
+/**
+ * A {@link ColumnVector} for {@link Double} values, held as a {@code double[]}.
+ * 
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public class DecimalColumnVector extends ColumnVector {
+
+	private double[] values = new double[0];
+
+	public double getDouble(int rowIndex) {
+		checkRowIndex(rowIndex);
+		return values[rowIndex];
+	}
+
+	@Override
+	boolean accepts(Object value) {
+		return value instanceof Double;
+	}
+
+	@Override
+	void ensureCapacity(int capacity) {
+		if (capacity > values.length) {
+			values = Arrays.copyOf(values, grow(values.length, capacity));
+		}
+	}
+
+	@Override
+	void store(int rowIndex, Object value) {
+		values[rowIndex] = ((Double) value).doubleValue();
+	}
+
+	@Override
+	Object load(int rowIndex) {
+		return Double.valueOf(values[rowIndex]);
+	}
+}
@@ -0,0 +1,41 @@
+package com.karlnosworthy.poijoi.model;
+
+import java.util.Arrays;
+
+/**
+ * A {@link ColumnVector} for {@link Integer} values, held as an {@code int[]}.
+ * 
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public class IntegerColumnVector extends ColumnVector {
+
+	private int[] values = new int[0];
+
+	public int getInt(int rowIndex) {
+		checkRowIndex(rowIndex);
+		return values[rowIndex];
+	}
+
+	@Override
+	boolean accepts(Object value) {
+		return value instanceof Integer;
+	}
+
+	@Override
+	void ensureCapacity(int capacity) {
+		if (capacity > values.length) {
+			values = Arrays.copyOf(values, grow(values.length, capacity));
+		}
+	}
+
+	@Override
+	void store(int rowIndex, Object value) {
+		values[rowIndex] = ((Integer) value).intValue();
+	}
+
+	@Override
+	Object load(int rowIndex) {
+		return Integer.valueOf(values[rowIndex]);
+	}
+}
@@ -0,0 +1,37 @@
+package com.karlnosworthy.poijoi.model;
+
+import java.util.Arrays;
+
+/**
+ * A {@link ColumnVector} which will hold any value. Used for columns holding
+ * values that don't match their {@link ColumnDefinition.ColumnType}.
+ * 
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public class ObjectColumnVector extends ColumnVector {
+
+	private Object[] values = new Object[0];
+
+	@Override
+	boolean accepts(Object value) {
+		return true;
+	}
+
+	@Override
+	void ensureCapacity(int capacity) {
+		if (capacity > values.length) {
+			values = Arrays.copyOf(values, grow(values.length, capacity));
+		}
+	}
+
+	@Override
+	void store(int rowIndex, Object value) {
+		values[rowIndex] = value;
+	}
+
+	@Override
+	Object load(int rowIndex) {
+		return values[rowIndex];
+	}
+}
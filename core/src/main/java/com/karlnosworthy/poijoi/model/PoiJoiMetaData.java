@@ -23,7 +23,7 @@ public class PoiJoiMetaData {
 	private boolean readData;
 	private Map<String, TableDefinition> tableDefinitions;
 	private Map<String, List<HashMap<String, Object>>> tableData;
-
+	private Map<String, ColumnarTableData> columnarTableData;
 
 	public PoiJoiMetaData(boolean readData,
 						  Map<String, TableDefinition> tableDefinitions,
@@ -34,6 +34,35 @@ public class PoiJoiMetaData {
 		this.tableData = tableData;
 	}
 
+	/**
+	 * Create an instance which holds its table data in columnar form (see
+	 * {@link ColumnarTableData}). The row based accessors are still available
+	 * and return a read only view over the columnar data.
+	 * 
+	 * @param readData
+	 *            Was the database data read
+	 * @param tableDefinitions
+	 *            The table structures keyed by table name
+	 * @param columnarTableData
+	 *            The table data keyed by table name
+	 */
+	public static PoiJoiMetaData fromColumnarData(boolean readData,
+			Map<String, TableDefinition> tableDefinitions,
+			Map<String, ColumnarTableData> columnarTableData) {
+
+		Map<String, List<HashMap<String, Object>>> tableData = null;
+		if (columnarTableData != null) {
+			tableData = new HashMap<String, List<HashMap<String, Object>>>();
+			for (String tableName : columnarTableData.keySet()) {
+				tableData.put(tableName, columnarTableData.get(tableName).asRows());
+			}
+		}
+
+		PoiJoiMetaData metaData = new PoiJoiMetaData(readData, tableDefinitions, tableData);
+		metaData.columnarTableData = columnarTableData;
+		return metaData;
+	}
+
 	/**
 	 * Was the database data read
 	 */
@@ -81,6 +110,25 @@ public class PoiJoiMetaData {
 		return tableData.get(tableName);
 	}
 
+	/**
+	 * Get the data for a given database table in columnar form. If the data
+	 * was provided as rows it is converted on each call.
+	 * 
+	 * @param tableName
+	 *            The table to get the data for
+	 * @return The table data, or null if there is no data for the table
+	 */
+	public ColumnarTableData getColumnarTableData(String tableName) {
+		if (columnarTableData != null) {
+			return columnarTableData.get(tableName);
+		}
+
+		if (tableData == null || !tableData.containsKey(tableName)) {
+			return null;
+		}
+		return ColumnarTableData.fromRows(getTableDefinition(tableName), tableData.get(tableName));
+	}
+
 
 	/**
 	 *
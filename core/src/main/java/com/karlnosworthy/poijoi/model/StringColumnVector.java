@@ -0,0 +1,67 @@
+package com.karlnosworthy.poijoi.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dictionary encoded {@link ColumnVector} for {@link String} values. Each
+ * distinct value is held once and the rows hold an {@code int} code into the
+ * dictionary.
+ * 
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public class StringColumnVector extends ColumnVector {
+
+	private int[] codes = new int[0];
+	private List<String> dictionary = new ArrayList<String>();
+	private Map<String, Integer> dictionaryCodes = new HashMap<String, Integer>();
+
+	/**
+	 * The dictionary code for the given row.
+	 */
+	public int getCode(int rowIndex) {
+		checkRowIndex(rowIndex);
+		return codes[rowIndex];
+	}
+
+	/**
+	 * The distinct values held in the column, indexed by their code.
+	 */
+	public List<String> getDictionary() {
+		return Collections.unmodifiableList(dictionary);
+	}
+
+	@Override
+	boolean accepts(Object value) {
+		return value instanceof String;
+	}
+
+	@Override
+	void ensureCapacity(int capacity) {
+		if (capacity > codes.length) {
+			codes = Arrays.copyOf(codes, grow(codes.length, capacity));
+		}
+	}
+
+	@Override
+	void store(int rowIndex, Object value) {
+		String stringValue = (String) value;
+		Integer code = dictionaryCodes.get(stringValue);
+		if (code == null) {
+			code = Integer.valueOf(dictionary.size());
+			dictionary.add(stringValue);
+			dictionaryCodes.put(stringValue, code);
+		}
+		codes[rowIndex] = code.intValue();
+	}
+
+	@Override
+	Object load(int rowIndex) {
+		return dictionary.get(codes[rowIndex]);
+	}
+}
@@ -0,0 +1,292 @@
+package com.karlnosworthy.poijoi.io;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.ParallelTableReader.TableReader;
+import com.karlnosworthy.poijoi.model.ColumnDefinition;
+import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+public class ParallelTableReaderTest {
+
+	@Test
+	public void testNumberOfThreads() {
+		assertEquals(1, ParallelTableReader.getNumberOfThreads(null));
+
+		Map<String, String> options = new HashMap<String, String>();
+		options.put(PoiJoiOptions.OPTION_READ_THREADS, "4");
+		assertEquals(4, ParallelTableReader.getNumberOfThreads(new PoiJoiOptions(options)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidNumberOfThreads() {
+		Map<String, String> options = new HashMap<String, String>();
+		options.put(PoiJoiOptions.OPTION_READ_THREADS, "0");
+		ParallelTableReader.getNumberOfThreads(new PoiJoiOptions(options));
+	}
+
+	/**
+	 * Test that the tables are passed to a sink one at a time and in order,
+	 * even when the later tables finish being read first.
+	 */
+	@Test
+	public void testTablesPassedInOrder() throws Exception {
+		final CountDownLatch lastTableRead = new CountDownLatch(1);
+		final List<Thread> readingThreads = Collections.synchronizedList(new ArrayList<Thread>());
+
+		List<TableReader> tableReaders = new ArrayList<TableReader>();
+		for (int tableIndex = 0; tableIndex < 3; tableIndex++) {
+			final TableDefinition tableDefinition = createTableDefinition("Table" + tableIndex);
+			final boolean firstTable = tableIndex == 0;
+			final boolean lastTable = tableIndex == 2;
+			tableReaders.add(new TableReader() {
+				@Override
+				public void readTable(RowSink sink) throws Exception {
+					readingThreads.add(Thread.currentThread());
+					if (firstTable) {
+						// the last table has been read in full before this one starts
+						assertTrue(lastTableRead.await(10, TimeUnit.SECONDS));
+					}
+					sink.startTable(tableDefinition);
+					RowBuffer rowBuffer = new RowBuffer(sink, tableDefinition, 2);
+					for (int rowIndex = 0; rowIndex < 5; rowIndex++) {
+						HashMap<String, Object> row = new HashMap<String, Object>();
+						row.put("ColumnOne", tableDefinition.getTableName() + " " + rowIndex);
+						rowBuffer.add(row);
+					}
+					rowBuffer.flush();
+					sink.finishTable(tableDefinition);
+					if (lastTable) {
+						lastTableRead.countDown();
+					}
+				}
+			});
+		}
+
+		RecordingRowSink sink = new RecordingRowSink();
+		ParallelTableReader.read(tableReaders, sink, 3);
+
+		List<String> expectedEvents = new ArrayList<String>();
+		for (int tableIndex = 0; tableIndex < 3; tableIndex++) {
+			expectedEvents.add("start Table" + tableIndex);
+			expectedEvents.add("rows Table" + tableIndex + " 2");
+			expectedEvents.add("rows Table" + tableIndex + " 2");
+			expectedEvents.add("rows Table" + tableIndex + " 1");
+			expectedEvents.add("finish Table" + tableIndex);
+		}
+		assertEquals(expectedEvents, sink.events);
+
+		// only the calling thread passes the tables on
+		assertEquals(Collections.singleton(Thread.currentThread()), sink.threads);
+		assertFalse(readingThreads.contains(Thread.currentThread()));
+	}
+
+	/**
+	 * Test that the table whose turn it is gets passed on while it's still
+	 * being read, and that a table read ahead of its turn only gets as far as
+	 * filling its queue.
+	 */
+	@Test
+	public void testTablesStreamedWithBoundedQueues() throws Exception {
+		final CountDownLatch firstBatchPassedOn = new CountDownLatch(1);
+		final AtomicInteger aheadBatchesRead = new AtomicInteger();
+		final TableDefinition firstTable = createTableDefinition("Table0");
+		final TableDefinition aheadTable = createTableDefinition("Table1");
+
+		List<TableReader> tableReaders = new ArrayList<TableReader>();
+		tableReaders.add(new TableReader() {
+			@Override
+			public void readTable(RowSink sink) throws Exception {
+				sink.startTable(firstTable);
+				sink.writeRows(firstTable, createRows(1));
+				assertTrue(firstBatchPassedOn.await(10, TimeUnit.SECONDS));
+				sink.finishTable(firstTable);
+			}
+		});
+		tableReaders.add(new TableReader() {
+			@Override
+			public void readTable(RowSink sink) throws Exception {
+				sink.startTable(aheadTable);
+				for (int batchIndex = 0; batchIndex < 100; batchIndex++) {
+					sink.writeRows(aheadTable, createRows(1));
+					aheadBatchesRead.incrementAndGet();
+				}
+				sink.finishTable(aheadTable);
+			}
+		});
+
+		final List<Integer> aheadBatchesReadAtTurn = new ArrayList<Integer>();
+		RecordingRowSink sink = new RecordingRowSink() {
+			@Override
+			public void writeRows(TableDefinition tableDefinition, List<HashMap<String, Object>> rows) {
+				super.writeRows(tableDefinition, rows);
+				if (tableDefinition == firstTable) {
+					firstBatchPassedOn.countDown();
+				}
+			}
+
+			@Override
+			public void finishTable(TableDefinition tableDefinition) {
+				super.finishTable(tableDefinition);
+				if (tableDefinition == firstTable) {
+					aheadBatchesReadAtTurn.add(aheadBatchesRead.get());
+				}
+			}
+		};
+
+		ExecutorService executorService = Executors.newFixedThreadPool(2);
+		try {
+			new ParallelTableReader(executorService, 4).read(tableReaders, sink);
+		} finally {
+			executorService.shutdownNow();
+		}
+
+		assertEquals(1 + 1 + 1 + 1 + 100 + 1, sink.events.size());
+		// the start and at most 4 queued events, plus the one waiting to be queued
+		assertTrue(aheadBatchesReadAtTurn.get(0) <= 4);
+	}
+
+	@Test
+	public void testConcurrentSinkPassedTablesDirectly() throws Exception {
+		List<TableReader> tableReaders = new ArrayList<TableReader>();
+		for (int tableIndex = 0; tableIndex < 4; tableIndex++) {
+			final TableDefinition tableDefinition = createTableDefinition("Table" + tableIndex);
+			final int numberOfRows = tableIndex * 100;
+			tableReaders.add(new TableReader() {
+				@Override
+				public void readTable(RowSink sink) throws Exception {
+					sink.startTable(tableDefinition);
+					RowBuffer rowBuffer = new RowBuffer(sink, tableDefinition, 7);
+					for (int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
+						HashMap<String, Object> row = new HashMap<String, Object>();
+						row.put("ColumnOne", "Row " + rowIndex);
+						rowBuffer.add(row);
+					}
+					rowBuffer.flush();
+					sink.finishTable(tableDefinition);
+				}
+			});
+		}
+
+		final List<Thread> writingThreads = Collections.synchronizedList(new ArrayList<Thread>());
+		MetaDataRowSink sink = new MetaDataRowSink(true) {
+			@Override
+			public void startTable(TableDefinition tableDefinition) {
+				writingThreads.add(Thread.currentThread());
+				super.startTable(tableDefinition);
+			}
+		};
+		ParallelTableReader.read(tableReaders, sink, 4);
+
+		assertEquals(4, sink.getMetaData().getTableDefinitions().size());
+		for (int tableIndex = 0; tableIndex < 4; tableIndex++) {
+			List<HashMap<String, Object>> rows = sink.getMetaData().getTableData("Table" + tableIndex);
+			assertEquals(tableIndex * 100, rows.size());
+			if (!rows.isEmpty()) {
+				assertEquals("Row 99", rows.get(99).get("ColumnOne"));
+			}
+		}
+		assertFalse(writingThreads.contains(Thread.currentThread()));
+	}
+
+	@Test
+	public void testFailureThrown() throws Exception {
+		final IllegalStateException readException = new IllegalStateException("Read failed");
+
+		List<TableReader> tableReaders = new ArrayList<TableReader>();
+		tableReaders.add(new TableReader() {
+			@Override
+			public void readTable(RowSink sink) throws Exception {
+				sink.startTable(createTableDefinition("TableOne"));
+				sink.finishTable(createTableDefinition("TableOne"));
+			}
+		});
+		tableReaders.add(new TableReader() {
+			@Override
+			public void readTable(RowSink sink) throws Exception {
+				throw readException;
+			}
+		});
+
+		RecordingRowSink sink = new RecordingRowSink();
+		try {
+			ParallelTableReader.read(tableReaders, sink, 2);
+			fail("The table reader's failure should have been thrown");
+		} catch (IllegalStateException illegalStateException) {
+			assertSame(readException, illegalStateException);
+		}
+		assertEquals(2, sink.events.size());
+	}
+
+	private List<HashMap<String, Object>> createRows(int numberOfRows) {
+		List<HashMap<String, Object>> rows = new ArrayList<HashMap<String, Object>>();
+		for (int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
+			HashMap<String, Object> row = new HashMap<String, Object>();
+			row.put("ColumnOne", "Row " + rowIndex);
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	private TableDefinition createTableDefinition(String tableName) {
+		List<ColumnDefinition> columnDefinitions = new ArrayList<ColumnDefinition>();
+		columnDefinitions.add(new ColumnDefinition("ColumnOne", 0, ColumnType.STRING));
+		return new TableDefinition(tableName, columnDefinitions);
+	}
+
+	/**
+	 * Records the calls made to it, which must all be made on the same thread.
+	 */
+	private static class RecordingRowSink implements RowSink {
+
+		private List<String> events = new ArrayList<String>();
+		private Set<Thread> threads = new HashSet<Thread>();
+
+		@Override
+		public void startStream() {
+		}
+
+		@Override
+		public void startTable(TableDefinition tableDefinition) {
+			threads.add(Thread.currentThread());
+			events.add("start " + tableDefinition.getTableName());
+		}
+
+		@Override
+		public void writeRows(TableDefinition tableDefinition, List<HashMap<String, Object>> rows) {
+			threads.add(Thread.currentThread());
+			events.add("rows " + tableDefinition.getTableName() + " " + rows.size());
+		}
+
+		@Override
+		public void finishTable(TableDefinition tableDefinition) {
+			threads.add(Thread.currentThread());
+			events.add("finish " + tableDefinition.getTableName());
+		}
+
+		@Override
+		public boolean finishStream() {
+			return true;
+		}
+
+		@Override
+		public void abortStream() {
+		}
+	}
+}
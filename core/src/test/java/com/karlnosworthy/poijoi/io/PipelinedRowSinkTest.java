@@ -0,0 +1,151 @@
+package com.karlnosworthy.poijoi.io;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.reader.RowSource;
+import com.karlnosworthy.poijoi.model.ColumnDefinition;
+import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
+import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+public class PipelinedRowSinkTest {
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullSink() {
+		new PipelinedRowSink(null, 1);
+	}
+
+	@Test
+	public void testTransferRoundTrip() throws Exception {
+		int numberOfRows = RowBuffer.DEFAULT_BATCH_SIZE * 4 + 1;
+		PoiJoiMetaData metaData = createMetaData(numberOfRows);
+
+		final List<Thread> writerThreads = new ArrayList<Thread>();
+		MetaDataRowSink sink = new MetaDataRowSink(true) {
+			@Override
+			public void writeRows(TableDefinition tableDefinition, List<HashMap<String, Object>> rows) {
+				writerThreads.add(Thread.currentThread());
+				super.writeRows(tableDefinition, rows);
+			}
+		};
+
+		assertTrue(RowTransfer.transfer(new MetaDataRowSource(), metaData, true, new PipelinedRowSink(sink, 1), null));
+
+		List<HashMap<String, Object>> rows = sink.getMetaData().getTableData("TableOne");
+		assertEquals(metaData.getTableData("TableOne"), rows);
+
+		// every batch was written away from the reading thread
+		assertEquals(5, writerThreads.size());
+		assertFalse(writerThreads.contains(Thread.currentThread()));
+	}
+
+	@Test
+	public void testWriterFailureStopsReader() throws Exception {
+		final IllegalStateException writerException = new IllegalStateException("Write failed");
+		final boolean[] aborted = new boolean[1];
+		MetaDataRowSink sink = new MetaDataRowSink(true) {
+			@Override
+			public void writeRows(TableDefinition tableDefinition, List<HashMap<String, Object>> rows) {
+				throw writerException;
+			}
+
+			@Override
+			public void abortStream() {
+				aborted[0] = true;
+			}
+		};
+
+		final int[] batchesRead = new int[1];
+		RowSource<PoiJoiMetaData> source = new MetaDataRowSource() {
+			@Override
+			public boolean readRows(PoiJoiMetaData metaData, boolean readData, RowSink sink, PoiJoiOptions options) throws Exception {
+				TableDefinition tableDefinition = metaData.getTableDefinition("TableOne");
+				sink.startTable(tableDefinition);
+				// carry on until the writer's failure reaches us
+				for (int batch = 0; batch < 10000; batch++) {
+					batchesRead[0]++;
+					sink.writeRows(tableDefinition, metaData.getTableData("TableOne"));
+				}
+				sink.finishTable(tableDefinition);
+				return true;
+			}
+		};
+
+		try {
+			RowTransfer.transfer(source, createMetaData(1), true, new PipelinedRowSink(sink, 1), null);
+			fail("The writer's failure should have been thrown");
+		} catch (IllegalStateException illegalStateException) {
+			assertSame(writerException, illegalStateException);
+		}
+		assertTrue(aborted[0]);
+		assertTrue(batchesRead[0] < 10000);
+	}
+
+	@Test
+	public void testReaderFailureAbortsWriter() throws Exception {
+		final boolean[] aborted = new boolean[1];
+		final boolean[] finished = new boolean[1];
+		MetaDataRowSink sink = new MetaDataRowSink(true) {
+			@Override
+			public boolean finishStream() {
+				finished[0] = true;
+				return true;
+			}
+
+			@Override
+			public void abortStream() {
+				aborted[0] = true;
+			}
+		};
+
+		final IllegalStateException readerException = new IllegalStateException("Read failed");
+		RowSource<PoiJoiMetaData> source = new MetaDataRowSource() {
+			@Override
+			public boolean readRows(PoiJoiMetaData metaData, boolean readData, RowSink sink, PoiJoiOptions options) throws Exception {
+				sink.startTable(metaData.getTableDefinition("TableOne"));
+				throw readerException;
+			}
+		};
+
+		try {
+			RowTransfer.transfer(source, createMetaData(1), true, new PipelinedRowSink(sink, 1), null);
+			fail("The reader's failure should have been thrown");
+		} catch (IllegalStateException illegalStateException) {
+			assertSame(readerException, illegalStateException);
+		}
+
+		// the writer has been aborted by the time the transfer returns
+		assertTrue(aborted[0]);
+		assertFalse(finished[0]);
+	}
+
+	private PoiJoiMetaData createMetaData(int numberOfRows) {
+		List<ColumnDefinition> columnDefinitions = new ArrayList<ColumnDefinition>();
+		columnDefinitions.add(new ColumnDefinition("ColumnOne", 0, ColumnType.STRING));
+		columnDefinitions.add(new ColumnDefinition("ColumnTwo", 1, ColumnType.INTEGER_NUMBER));
+
+		Map<String, TableDefinition> tableDefinitions = new HashMap<String, TableDefinition>();
+		tableDefinitions.put("TableOne", new TableDefinition("TableOne", columnDefinitions));
+
+		List<HashMap<String, Object>> rows = new ArrayList<HashMap<String, Object>>();
+		for (int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
+			HashMap<String, Object> row = new HashMap<String, Object>();
+			row.put("ColumnOne", "Row " + rowIndex);
+			row.put("ColumnTwo", rowIndex);
+			rows.add(row);
+		}
+
+		Map<String, List<HashMap<String, Object>>> tableData = new HashMap<String, List<HashMap<String, Object>>>();
+		tableData.put("TableOne", rows);
+
+		return new PoiJoiMetaData(true, tableDefinitions, tableData);
+	}
+}
@@ -0,0 +1,86 @@
+package com.karlnosworthy.poijoi.io;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.karlnosworthy.poijoi.model.ColumnDefinition;
+import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
+import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+public class RowTransferTest {
+
+	@Test
+	public void testTransferWithNullSink() throws Exception {
+		assertFalse(RowTransfer.transfer(new MetaDataRowSource(), createMetaData(10), true, null, null));
+	}
+
+	@Test
+	public void testTransferWithInvalidSource() throws Exception {
+		final boolean[] aborted = new boolean[1];
+		MetaDataRowSink sink = new MetaDataRowSink(true) {
+			@Override
+			public void abortStream() {
+				aborted[0] = true;
+			}
+		};
+
+		assertFalse(RowTransfer.transfer(new MetaDataRowSource(), null, true, sink, null));
+		assertTrue(aborted[0]);
+	}
+
+	@Test
+	public void testTransferRoundTrip() throws Exception {
+		int numberOfRows = RowBuffer.DEFAULT_BATCH_SIZE * 2 + 1;
+		PoiJoiMetaData metaData = createMetaData(numberOfRows);
+
+		MetaDataRowSink sink = new MetaDataRowSink(true);
+		assertTrue(RowTransfer.transfer(new MetaDataRowSource(), metaData, true, sink, null));
+
+		PoiJoiMetaData copiedMetaData = sink.getMetaData();
+		assertTrue(copiedMetaData.getTableDefinition("TableOne").isSameAs(metaData.getTableDefinition("TableOne")));
+
+		List<HashMap<String, Object>> rows = copiedMetaData.getTableData("TableOne");
+		assertEquals(numberOfRows, rows.size());
+		assertEquals(metaData.getTableData("TableOne"), rows);
+	}
+
+	@Test
+	public void testTransferSchemaOnly() throws Exception {
+		MetaDataRowSink sink = new MetaDataRowSink(false);
+		assertTrue(RowTransfer.transfer(new MetaDataRowSource(), createMetaData(10), false, sink, null));
+
+		PoiJoiMetaData copiedMetaData = sink.getMetaData();
+		assertFalse(copiedMetaData.isReadData());
+		assertNotNull(copiedMetaData.getTableDefinition("TableOne"));
+		assertNull(copiedMetaData.getTableData("TableOne"));
+	}
+
+	private PoiJoiMetaData createMetaData(int numberOfRows) {
+		List<ColumnDefinition> columnDefinitions = new ArrayList<ColumnDefinition>();
+		columnDefinitions.add(new ColumnDefinition("ColumnOne", 0, ColumnType.STRING));
+		columnDefinitions.add(new ColumnDefinition("ColumnTwo", 1, ColumnType.INTEGER_NUMBER));
+
+		Map<String, TableDefinition> tableDefinitions = new HashMap<String, TableDefinition>();
+		tableDefinitions.put("TableOne", new TableDefinition("TableOne", columnDefinitions));
+
+		List<HashMap<String, Object>> rows = new ArrayList<HashMap<String, Object>>();
+		for (int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
+			HashMap<String, Object> row = new HashMap<String, Object>();
+			row.put("ColumnOne", "Row " + rowIndex);
+			row.put("ColumnTwo", rowIndex);
+			rows.add(row);
+		}
+
+		Map<String, List<HashMap<String, Object>>> tableData = new HashMap<String, List<HashMap<String, Object>>>();
+		tableData.put("TableOne", rows);
+
+		return new PoiJoiMetaData(true, tableDefinitions, tableData);
+	}
+}
@@ -10,7 +10,6 @@ import org.junit.Test;
 
 import com.karlnosworthy.poijoi.io.SupportsFormat;
 import com.karlnosworthy.poijoi.io.reader.Reader;
-import com.karlnosworthy.poijoi.io.writer.Writer;
 import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
 
 public class PoiJoiClassToolsTest {
@@ -59,6 +58,14 @@ public class PoiJoiClassToolsTest {
 		assertEquals("DUMMY", classTools.getSupportedFormatType(SimpleWriter.class));
 	}
 	
+	@Test
+	public void testIsStateless() {
+		assertFalse(classTools.isStateless(null));
+		assertFalse(classTools.isStateless(classTools.getClass()));
+		assertFalse(classTools.isStateless(SimpleReader.class));
+		assertTrue(classTools.isStateless(SimpleStatelessReader.class));
+	}
+	
 	@Test
 	public void testCreateReaderInstance() throws Exception {
 		assertNull(classTools.createReaderInstance(null, null));
@@ -88,20 +95,11 @@ public class PoiJoiClassToolsTest {
 	}
 }
 
-@SupportsFormat(type = "DUMMY")	
-class SimpleReader implements Reader<File> {
+@SupportsFormat(type = "DUMMY", stateless = true)
+class SimpleStatelessReader implements Reader<File> {
 
 	@Override
 	public PoiJoiMetaData read(File input, boolean readData) throws Exception {
 		return null;
 	}
 }
-
-@SupportsFormat(type = "DUMMY")	
-class SimpleWriter implements Writer<File> {
-
-	@Override
-	public boolean write(File output, PoiJoiMetaData metaData, WriteType writeType) throws Exception {
-		return false;
-	}
-}
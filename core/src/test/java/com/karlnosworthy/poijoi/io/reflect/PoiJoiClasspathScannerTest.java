@@ -2,11 +2,20 @@ package com.karlnosworthy.poijoi.io.reflect;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.karlnosworthy.poijoi.PoiJoiRegistrationListener;
+
 public class PoiJoiClasspathScannerTest {
 
 	private PoiJoiClasspathScanner classpathScanner;
@@ -31,4 +40,52 @@ public class PoiJoiClasspathScannerTest {
 		assertEquals(1, classpathScanner.getRootPackageNames().size());
 		assertEquals("com.custom.package.name", classpathScanner.getRootPackageNames().get(0));
 	}
+	
+	@Test
+	public void testLoadIndex() {
+		assertNull(classpathScanner.getCachedReaderClass(File.class, "DUMMY"));
+		
+		assertTrue(classpathScanner.loadIndex());
+		
+		assertTrue(classpathScanner.hasReaderCache());
+		assertTrue(classpathScanner.hasWriterCache());
+		assertEquals(SimpleReader.class, classpathScanner.getCachedReaderClass(File.class, "DUMMY"));
+		assertEquals(SimpleWriter.class, classpathScanner.getCachedWriterClass(File.class, "DUMMY"));
+		assertEquals(0, classpathScanner.getRootPackageNames().size());
+	}
+	
+	/**
+	 * Check that loading the index and scanning a package which holds some of
+	 * the same classes is a single registration without duplicates.
+	 */
+	@Test
+	public void testRegisterIndexAndPackage() {
+		final List<String> events = new ArrayList<String>();
+		PoiJoiRegistrationListener registrationListener = new PoiJoiRegistrationListener() {
+			@Override
+			public void registrationStarted() {
+				events.add("started");
+			}
+			
+			@Override
+			public void registeredExtension(String className, String packageName, String formatType, ExtensionType extensionType) {
+				events.add(className);
+			}
+			
+			@Override
+			public void registrationFinished() {
+				events.add("finished");
+			}
+		};
+		
+		classpathScanner.addRootPackageName(getClass().getPackage().getName());
+		classpathScanner.register(true, registrationListener);
+		
+		assertEquals("started", events.get(0));
+		assertEquals("finished", events.get(events.size() - 1));
+		assertEquals(events.size(), new HashSet<String>(events).size());
+		assertTrue(events.contains(SimpleReader.class.getSimpleName()));
+		assertEquals(SimpleWriter.class, classpathScanner.getCachedWriterClass(File.class, "DUMMY"));
+		assertEquals(1, classpathScanner.getRootPackageNames().size());
+	}
 }
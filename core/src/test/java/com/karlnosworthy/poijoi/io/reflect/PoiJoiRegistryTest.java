@@ -0,0 +1,84 @@
+package com.karlnosworthy.poijoi.io.reflect;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.karlnosworthy.poijoi.io.SupportsFormat;
+import com.karlnosworthy.poijoi.io.reader.Reader;
+import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
+
+public class PoiJoiRegistryTest {
+
+	private PoiJoiRegistry registry;
+
+	@Before
+	public void onSetup() {
+		List<CacheEntry> readerEntries = new ArrayList<CacheEntry>();
+		readerEntries.add(new CacheEntry(SimpleReader.class, "dummy", File.class));
+		readerEntries.add(new CacheEntry(SimpleStreamReader.class, "DUMMY", InputStream.class));
+		readerEntries.add(new CacheEntry(SimpleFileStreamReader.class, "DUMMY", FileInputStream.class));
+
+		List<CacheEntry> writerEntries = new ArrayList<CacheEntry>();
+		writerEntries.add(new CacheEntry(SimpleWriter.class, "DUMMY", File.class));
+
+		registry = new PoiJoiRegistry(readerEntries, writerEntries);
+	}
+
+	@Test
+	public void testFormatTypeIsCaseInsensitive() {
+		assertEquals(SimpleReader.class, registry.getReaderClass(File.class, "dummy"));
+		assertEquals(SimpleReader.class, registry.getReaderClass(File.class, "Dummy"));
+		assertEquals(SimpleWriter.class, registry.getWriterClass(File.class, "dummy"));
+		assertEquals(Collections.singleton("DUMMY"), registry.getReaderFormatTypes());
+	}
+
+	@Test
+	public void testResolvesResourceTypeHierarchy() {
+		assertEquals(SimpleStreamReader.class, registry.getReaderClass(ByteArrayInputStream.class, "DUMMY"));
+		assertEquals(SimpleStreamReader.class, registry.getReaderClass(InputStream.class, "DUMMY"));
+
+		// the reader for the most specific type is preferred
+		assertEquals(SimpleFileStreamReader.class, registry.getReaderClass(FileInputStream.class, "DUMMY"));
+
+		// and the answers are remembered
+		assertEquals(SimpleStreamReader.class, registry.getReaderClass(ByteArrayInputStream.class, "DUMMY"));
+	}
+
+	@Test
+	public void testUnknownLookups() {
+		assertNull(registry.getReaderClass(File.class, "UNKNOWN"));
+		assertNull(registry.getReaderClass(String.class, "DUMMY"));
+		assertNull(registry.getReaderClass(String.class, "DUMMY"));
+		assertNull(registry.getWriterClass(InputStream.class, "DUMMY"));
+		assertNull(registry.getReaderClass(null, "DUMMY"));
+		assertNull(registry.getReaderClass(File.class, null));
+	}
+}
+
+@SupportsFormat(type = "DUMMY")
+class SimpleStreamReader implements Reader<InputStream> {
+
+	@Override
+	public PoiJoiMetaData read(InputStream input, boolean readData) throws Exception {
+		return null;
+	}
+}
+
+@SupportsFormat(type = "DUMMY")
+class SimpleFileStreamReader implements Reader<FileInputStream> {
+
+	@Override
+	public PoiJoiMetaData read(FileInputStream input, boolean readData) throws Exception {
+		return null;
+	}
+}
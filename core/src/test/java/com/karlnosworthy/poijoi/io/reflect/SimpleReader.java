@@ -0,0 +1,16 @@
+package com.karlnosworthy.poijoi.io.reflect;
+
+import java.io.File;
+
+import com.karlnosworthy.poijoi.io.SupportsFormat;
+import com.karlnosworthy.poijoi.io.reader.Reader;
+import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
+
+@SupportsFormat(type = "DUMMY")
+class SimpleReader implements Reader<File> {
+
+	@Override
+	public PoiJoiMetaData read(File input, boolean readData) throws Exception {
+		return null;
+	}
+}
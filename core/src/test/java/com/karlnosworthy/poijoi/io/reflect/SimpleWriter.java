@@ -0,0 +1,16 @@
+package com.karlnosworthy.poijoi.io.reflect;
+
+import java.io.File;
+
+import com.karlnosworthy.poijoi.io.SupportsFormat;
+import com.karlnosworthy.poijoi.io.writer.Writer;
+import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
+
+@SupportsFormat(type = "DUMMY")
+class SimpleWriter implements Writer<File> {
+
+	@Override
+	public boolean write(File output, PoiJoiMetaData metaData, WriteType writeType) throws Exception {
+		return false;
+	}
+}
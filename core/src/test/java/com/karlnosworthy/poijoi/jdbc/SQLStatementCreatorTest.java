@@ -0,0 +1,108 @@
+package com.karlnosworthy.poijoi.jdbc;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.karlnosworthy.poijoi.model.ColumnDefinition;
+import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+public class SQLStatementCreatorTest {
+
+	private SQLStatementCreator statementCreator;
+	private TableDefinition tableDefinition;
+
+	@Before
+	public void onSetup() {
+		statementCreator = new SQLStatementCreator();
+
+		List<ColumnDefinition> columnDefinitions = new ArrayList<ColumnDefinition>();
+		columnDefinitions.add(new ColumnDefinition("code", 0, ColumnType.INTEGER_NUMBER));
+		columnDefinitions.add(new ColumnDefinition("name", 1, ColumnType.STRING));
+		tableDefinition = new TableDefinition("TableOne", columnDefinitions);
+	}
+
+	@Test
+	public void testSingleRowInsert() {
+		List<HashMap<String, Object>> rows = createRows(3);
+
+		StringBuilder builder = new StringBuilder();
+		assertEquals(1, statementCreator.appendInsertTableStatement(builder, tableDefinition, rows, 0, 1, 1000));
+		assertEquals(statementCreator.buildInsertTableStatement(tableDefinition, rows.get(0)), builder.toString());
+	}
+
+	@Test
+	public void testMultiRowInsert() {
+		List<HashMap<String, Object>> rows = createRows(5);
+
+		StringBuilder builder = new StringBuilder();
+		assertEquals(3, statementCreator.appendInsertTableStatement(builder, tableDefinition, rows, 1, 3, 1000));
+		assertEquals("INSERT INTO 'TableOne' (\"code\",\"name\") VALUES (1,'Row 1'),(2,'Row 2'),(3,'Row 3');", builder.toString());
+
+		// only as many rows as are left
+		builder.setLength(0);
+		assertEquals(2, statementCreator.appendInsertTableStatement(builder, tableDefinition, rows, 3, 10, 1000));
+	}
+
+	@Test
+	public void testMultiRowInsertStopsAtDifferentColumns() {
+		List<HashMap<String, Object>> rows = createRows(4);
+		rows.get(2).remove("name");
+
+		StringBuilder builder = new StringBuilder();
+		assertEquals(2, statementCreator.appendInsertTableStatement(builder, tableDefinition, rows, 0, 10, 1000));
+		assertEquals(1, statementCreator.appendInsertTableStatement(builder, tableDefinition, rows, 2, 10, 1000));
+	}
+
+	/**
+	 * Check that the values of every row go in the order of the columns the
+	 * statement lists, however each row's map orders them.
+	 */
+	@Test
+	public void testMultiRowInsertUsesFirstRowColumnOrder() {
+		List<HashMap<String, Object>> rows = createRows(2);
+		HashMap<String, Object> reorderedRow = new LinkedHashMap<String, Object>();
+		reorderedRow.put("name", "Row 2");
+		reorderedRow.put("code", 2);
+		rows.add(reorderedRow);
+
+		StringBuilder builder = new StringBuilder();
+		assertEquals(3, statementCreator.appendInsertTableStatement(builder, tableDefinition, rows, 0, 10, 1000));
+		assertEquals("INSERT INTO 'TableOne' (\"code\",\"name\") VALUES (0,'Row 0'),(1,'Row 1'),(2,'Row 2');", builder.toString());
+	}
+
+	@Test
+	public void testMultiRowInsertStopsAtMaxBytes() {
+		List<HashMap<String, Object>> rows = createRows(4);
+		String singleRow = statementCreator.buildInsertTableStatement(tableDefinition, rows.get(0));
+
+		// room for exactly two rows, each extra row adding ",(n,'Row n')"
+		int maxBytes = singleRow.length() + ",(1,'Row 1')".length();
+
+		StringBuilder builder = new StringBuilder();
+		assertEquals(2, statementCreator.appendInsertTableStatement(builder, tableDefinition, rows, 0, 10, maxBytes));
+		assertEquals(maxBytes, builder.length());
+
+		// a statement always holds at least one row
+		builder.setLength(0);
+		assertEquals(1, statementCreator.appendInsertTableStatement(builder, tableDefinition, rows, 0, 10, 1));
+	}
+
+	private List<HashMap<String, Object>> createRows(int numberOfRows) {
+		List<HashMap<String, Object>> rows = new ArrayList<HashMap<String, Object>>();
+		for (int code = 0; code < numberOfRows; code++) {
+			HashMap<String, Object> row = new LinkedHashMap<String, Object>();
+			row.put("code", code);
+			row.put("name", "Row " + code);
+			rows.add(row);
+		}
+		return rows;
+	}
+}
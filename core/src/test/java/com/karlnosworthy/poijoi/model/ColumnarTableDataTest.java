@@ -0,0 +1,96 @@
+package com.karlnosworthy.poijoi.model;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
+
+public class ColumnarTableDataTest {
+
+	@Test
+	public void testPrimitiveColumns() {
+		ColumnarTableData tableData = new ColumnarTableData(createTableDefinition());
+		Date date = new Date();
+
+		tableData.addRow(createRow("One", 1, 1.5, date));
+		tableData.addRow(createRow("Two", 2, 2.5, null));
+		tableData.addRow(createRow("One", null, 3.5, date));
+
+		assertEquals(3, tableData.getRowCount());
+		assertTrue(tableData.getColumn(0) instanceof StringColumnVector);
+		assertTrue(tableData.getColumn(1) instanceof IntegerColumnVector);
+		assertTrue(tableData.getColumn(2) instanceof DecimalColumnVector);
+		assertTrue(tableData.getColumn(3) instanceof DateColumnVector);
+
+		StringColumnVector stringColumn = (StringColumnVector) tableData.getColumn("ColumnOne");
+		assertEquals(2, stringColumn.getDictionary().size());
+		assertEquals(stringColumn.getCode(0), stringColumn.getCode(2));
+
+		IntegerColumnVector integerColumn = (IntegerColumnVector) tableData.getColumn(1);
+		assertEquals(2, integerColumn.getInt(1));
+		assertTrue(integerColumn.isNull(2));
+		assertNull(integerColumn.get(2));
+
+		assertEquals(3.5, ((DecimalColumnVector) tableData.getColumn(2)).getDouble(2), 0);
+		assertEquals(date.getTime(), ((DateColumnVector) tableData.getColumn(3)).getTime(0));
+	}
+
+	@Test
+	public void testRowView() {
+		ColumnarTableData tableData = new ColumnarTableData(createTableDefinition());
+		List<HashMap<String, Object>> rows = new ArrayList<HashMap<String, Object>>();
+
+		rows.add(createRow("One", 1, 1.5, new Date()));
+		rows.add(createRow("Two", null, 2.5, null));
+
+		HashMap<String, Object> partialRow = new HashMap<String, Object>();
+		partialRow.put("ColumnOne", "Three");
+		partialRow.put("Unknown", "Extra");
+		rows.add(partialRow);
+
+		for (HashMap<String, Object> row : rows) {
+			tableData.addRow(row);
+		}
+
+		assertEquals(rows, tableData.asRows());
+		assertFalse(tableData.getRow(2).containsKey("ColumnTwo"));
+		assertTrue(tableData.getRow(1).containsKey("ColumnTwo"));
+	}
+
+	@Test
+	public void testMismatchedValuesArePreserved() {
+		ColumnarTableData tableData = new ColumnarTableData(createTableDefinition());
+		java.sql.Date sqlDate = new java.sql.Date(System.currentTimeMillis());
+
+		tableData.addRow(createRow("One", 1, 1.5, new Date()));
+		tableData.addRow(createRow("Two", 2, 2.5, sqlDate));
+
+		assertTrue(tableData.getColumn(3) instanceof ObjectColumnVector);
+		assertTrue(tableData.getRow(0).get("ColumnFour").getClass() == Date.class);
+		assertSame(sqlDate, tableData.getRow(1).get("ColumnFour"));
+	}
+
+	private TableDefinition createTableDefinition() {
+		List<ColumnDefinition> columnDefinitions = new ArrayList<ColumnDefinition>();
+		columnDefinitions.add(new ColumnDefinition("ColumnOne", 0, ColumnType.STRING));
+		columnDefinitions.add(new ColumnDefinition("ColumnTwo", 1, ColumnType.INTEGER_NUMBER));
+		columnDefinitions.add(new ColumnDefinition("ColumnThree", 2, ColumnType.DECIMAL_NUMBER));
+		columnDefinitions.add(new ColumnDefinition("ColumnFour", 3, ColumnType.DATE));
+		return new TableDefinition("TableOne", columnDefinitions);
+	}
+
+	private HashMap<String, Object> createRow(String one, Integer two, Double three, Date four) {
+		HashMap<String, Object> row = new HashMap<String, Object>();
+		row.put("ColumnOne", one);
+		row.put("ColumnTwo", two);
+		row.put("ColumnThree", three);
+		row.put("ColumnFour", four);
+		return row;
+	}
+}
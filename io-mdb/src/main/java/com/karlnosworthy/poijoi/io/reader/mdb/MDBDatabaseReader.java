@@ -1,26 +1,26 @@
 package com.karlnosworthy.poijoi.io.reader.mdb;
 
 import java.sql.Connection;
-import java.sql.DatabaseMetaData;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.sql.Types;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
+import com.karlnosworthy.poijoi.PoiJoiOptions;
 import com.karlnosworthy.poijoi.UnsupportedMapping;
+import com.karlnosworthy.poijoi.io.MetaDataRowSink;
+import com.karlnosworthy.poijoi.io.RowSink;
 import com.karlnosworthy.poijoi.io.SupportsFormat;
+import com.karlnosworthy.poijoi.io.reader.ConfigurableReader;
 import com.karlnosworthy.poijoi.io.reader.JDBCConnectionReader;
+import com.karlnosworthy.poijoi.io.reader.RowSource;
+import com.karlnosworthy.poijoi.jdbc.JDBCMetaDataCache;
 import com.karlnosworthy.poijoi.jdbc.JDBCMetaDataReader;
+import com.karlnosworthy.poijoi.jdbc.JDBCTableScanner;
 import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
 import com.karlnosworthy.poijoi.model.TableDefinition;
 
-@SupportsFormat(type = "MDB")
-public class MDBDatabaseReader implements JDBCConnectionReader {
+@SupportsFormat(type = "MDB", stateless = true)
+public class MDBDatabaseReader implements JDBCConnectionReader,
+		RowSource<Connection>, ConfigurableReader<Connection> {
 
 	@Override
 	public boolean isValidConnection(Connection connection) {
@@ -40,86 +40,83 @@ public class MDBDatabaseReader implements JDBCConnectionReader {
 	}
 
 	@Override
-	public PoiJoiMetaData read(Connection connection, boolean readData) throws Exception {
+	public PoiJoiMetaData read(Connection connection, boolean readData)
+			throws Exception {
+		return read(connection, readData, null);
+	}
+
+	/**
+	 * Builds a {@link PoiJoiMetaData} object representing an MDB Database
+	 * structure and optionally the data itself using the options given.
+	 * 
+	 * @param connection
+	 *            The connection to the Database
+	 * @param readData
+	 *            Whether or not to read the data or just the database structure
+	 * @param options
+	 *            The options to apply while reading (may be null)
+	 * @return a {@link PoiJoiMetaData} holding the table structures and
+	 *         optionally the table data
+	 */
+	@Override
+	public PoiJoiMetaData read(Connection connection, boolean readData,
+			PoiJoiOptions options) throws Exception {
+		MetaDataRowSink sink = new MetaDataRowSink(readData);
+		if (readRows(connection, readData, sink, options)) {
+			return sink.getMetaData();
+		}
+		return null;
+	}
+
+	/**
+	 * Passes each table structure and optionally its rows to the
+	 * {@link RowSink}, reading one table at a time using a {@link Connection}.
+	 * 
+	 * @param connection
+	 *            The connection to the Database
+	 * @param readData
+	 *            Whether or not to read the data or just the database structure
+	 * @param sink
+	 *            The sink to pass the tables and rows to
+	 * @param options
+	 *            The options to apply while reading (may be null)
+	 * @return True if the connection was valid and has been read otherwise
+	 *         false
+	 */
+	@Override
+	public boolean readRows(Connection connection, boolean readData,
+			RowSink sink, PoiJoiOptions options) throws Exception {
+		
 		if (isValidConnection(connection)) {
 			
 			Class.forName("net.ucanaccess.jdbc.UcanaccessDriver");
-			
-			Map<String, TableDefinition> tableDefinitions = parseDatabaseMetaData(connection
-					.getMetaData());
-			Map<String, List<HashMap<String, Object>>> tableData = null;
-			if (readData) {
-				tableData = readData(connection, tableDefinitions);
+			JDBCTableScanner tableScanner = new JDBCTableScanner(options);
+			Map<String, TableDefinition> tableDefinitions = parseDatabaseMetaData(
+					connection, options);
+			for (TableDefinition tableDefinition : tableDefinitions.values()) {
+				sink.startTable(tableDefinition);
+				if (readData) {
+					tableScanner.scan(connection, tableDefinition, sink);
+				}
+				sink.finishTable(tableDefinition);
 			}
-			return new PoiJoiMetaData(readData, tableDefinitions, tableData);
+			return true;
 		} else {
-			return null;
+			return false;
 		}
 	}
-	
+
 	private Map<String, TableDefinition> parseDatabaseMetaData(
-			DatabaseMetaData databaseMetaData) throws SQLException,
+			Connection connection, PoiJoiOptions options) throws SQLException,
 			UnsupportedMapping {
 		
-		JDBCMetaDataReader metaDataReader = new JDBCMetaDataReader(
-				databaseMetaData);
 		String schemaName = null;
+		if (JDBCMetaDataCache.isEnabled(options)) {
+			return JDBCMetaDataCache.getTableDefinitions(connection, schemaName);
+		}
+		JDBCMetaDataReader metaDataReader = new JDBCMetaDataReader(
+				connection.getMetaData());
 		return metaDataReader.getTableDefinitions(
 				metaDataReader.getTableNames(schemaName), schemaName);
 	}
-	
-	private Map<String, List<HashMap<String, Object>>> readData(
-			Connection connection, Map<String, TableDefinition> tableDefinitions)
-			throws SQLException, UnsupportedMapping {
-
-		Map<String, List<HashMap<String, Object>>> tableData = new HashMap<String, List<HashMap<String, Object>>>();
-		for (String tableName : tableDefinitions.keySet()) {
-
-			Statement statement = connection.createStatement();
-			ResultSet tableDataResultSet = statement
-					.executeQuery("select * from " + tableName);
-
-			List<HashMap<String, Object>> rowData = new ArrayList<HashMap<String, Object>>();
-			ResultSetMetaData resultSetMetaData = tableDataResultSet
-					.getMetaData();
-			while (tableDataResultSet.next()) {
-
-				HashMap<String, Object> columnData = new HashMap<String, Object>();
-				for (int columnIndex = 1; columnIndex <= resultSetMetaData
-						.getColumnCount(); columnIndex++) {
-					String columnName = resultSetMetaData
-							.getColumnName(columnIndex);
-					int columnType = resultSetMetaData
-							.getColumnType(columnIndex);
-					Object value = null;
-					switch (columnType) {
-					case Types.DATE:
-						value = tableDataResultSet.getDate(columnIndex);
-						break;
-					case Types.DECIMAL:
-					case Types.REAL:
-						value = tableDataResultSet.getDouble(columnIndex);
-						break;
-					case Types.INTEGER:
-						value = tableDataResultSet.getInt(columnIndex);
-						break;
-					case Types.BOOLEAN:
-					case Types.CLOB:
-					case Types.BLOB:
-					case Types.CHAR:
-					case Types.VARCHAR:
-						value = tableDataResultSet.getString(columnIndex);
-						break;
-					default:
-						throw new UnsupportedMapping("Unsupported Data Type: "
-								+ columnType);
-					}
-					columnData.put(columnName, value);
-				}
-				rowData.add(columnData);
-			}
-			tableData.put(tableName, rowData);
-		}
-		return tableData;
-	}
 }
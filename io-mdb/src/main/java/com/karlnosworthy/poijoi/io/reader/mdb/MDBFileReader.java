@@ -0,0 +1,217 @@
+package com.karlnosworthy.poijoi.io.reader.mdb;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.healthmarketscience.jackcess.Column;
+import com.healthmarketscience.jackcess.Cursor;
+import com.healthmarketscience.jackcess.CursorBuilder;
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.DatabaseBuilder;
+import com.healthmarketscience.jackcess.Index;
+import com.healthmarketscience.jackcess.Row;
+import com.healthmarketscience.jackcess.Table;
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.UnsupportedMapping;
+import com.karlnosworthy.poijoi.io.MetaDataRowSink;
+import com.karlnosworthy.poijoi.io.RowBuffer;
+import com.karlnosworthy.poijoi.io.RowSink;
+import com.karlnosworthy.poijoi.io.SupportsFormat;
+import com.karlnosworthy.poijoi.io.reader.ConfigurableReader;
+import com.karlnosworthy.poijoi.io.reader.FileReader;
+import com.karlnosworthy.poijoi.io.reader.RowSource;
+import com.karlnosworthy.poijoi.model.ColumnDefinition;
+import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
+import com.karlnosworthy.poijoi.model.IndexDefinition;
+import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+/**
+ * Reads an MDB (Access) file directly using Jackcess, rather than through a
+ * UCanAccess {@link java.sql.Connection} as {@link MDBDatabaseReader} does.
+ *
+ * UCanAccess copies the whole of the file into an in memory HSQLDB database
+ * before anything can be read, whereas this reader opens the file read only
+ * and streams the rows of each table from it using a {@link Cursor}, so only
+ * the current batch of rows is held in memory.
+ *
+ * The table and column names are the ones stored in the file, rather than
+ * the upper case names UCanAccess gives them.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+@SupportsFormat(type = "MDB", stateless = true)
+public class MDBFileReader implements FileReader, RowSource<File>,
+		ConfigurableReader<File> {
+
+	@Override
+	public PoiJoiMetaData read(File input, boolean readData) throws Exception {
+		return read(input, readData, null);
+	}
+
+	/**
+	 * Builds a {@link PoiJoiMetaData} object representing an MDB file
+	 * structure and optionally the data itself using the options given.
+	 *
+	 * @param input
+	 *            The MDB file
+	 * @param readData
+	 *            Whether or not to read the data or just the database structure
+	 * @param options
+	 *            The options to apply while reading (may be null)
+	 * @return a {@link PoiJoiMetaData} holding the table structures and
+	 *         optionally the table data
+	 */
+	@Override
+	public PoiJoiMetaData read(File input, boolean readData,
+			PoiJoiOptions options) throws Exception {
+		MetaDataRowSink sink = new MetaDataRowSink(readData);
+		if (readRows(input, readData, sink, options)) {
+			return sink.getMetaData();
+		}
+		return null;
+	}
+
+	/**
+	 * Passes each table structure and optionally its rows to the
+	 * {@link RowSink}, reading one table at a time from the file.
+	 *
+	 * @param input
+	 *            The MDB file
+	 * @param readData
+	 *            Whether or not to read the data or just the database structure
+	 * @param sink
+	 *            The sink to pass the tables and rows to
+	 * @param options
+	 *            The options to apply while reading (may be null)
+	 * @return True if the file was valid and has been read otherwise false
+	 */
+	@Override
+	public boolean readRows(File input, boolean readData, RowSink sink,
+			PoiJoiOptions options) throws Exception {
+
+		if (input == null || input.isDirectory() || !input.exists()) {
+			return false;
+		}
+
+		Database database = new DatabaseBuilder(input).setReadOnly(true).open();
+		try {
+			for (String tableName : database.getTableNames()) {
+				Table table = database.getTable(tableName);
+				TableDefinition tableDefinition = parseTable(table);
+
+				sink.startTable(tableDefinition);
+				if (readData) {
+					readData(table, tableDefinition, new RowBuffer(sink,
+							tableDefinition));
+				}
+				sink.finishTable(tableDefinition);
+			}
+			return true;
+		} finally {
+			database.close();
+		}
+	}
+
+	private TableDefinition parseTable(Table table) throws UnsupportedMapping {
+		List<ColumnDefinition> columnDefinitions = new ArrayList<ColumnDefinition>();
+		for (Column column : table.getColumns()) {
+			columnDefinitions.add(new ColumnDefinition(column.getName(),
+					column.getColumnIndex(), getColumnType(column)));
+		}
+
+		// the primary key is the ID column, which doesn't need an index
+		List<IndexDefinition> indexDefinitions = new ArrayList<IndexDefinition>();
+		for (Index index : table.getIndexes()) {
+			if (index.isPrimaryKey() || index.isForeignKey()) {
+				continue;
+			}
+			List<? extends Index.Column> indexColumns = index.getColumns();
+			String[] columnNames = new String[indexColumns.size()];
+			for (int columnIndex = 0; columnIndex < columnNames.length; columnIndex++) {
+				columnNames[columnIndex] = indexColumns.get(columnIndex).getName();
+			}
+			indexDefinitions.add(new IndexDefinition(index.getName(), table
+					.getName(), columnNames, index.isUnique()));
+		}
+
+		return new TableDefinition(table.getName(), columnDefinitions,
+				indexDefinitions);
+	}
+
+	private ColumnType getColumnType(Column column) throws UnsupportedMapping {
+		switch (column.getType()) {
+		case BYTE:
+		case INT:
+		case LONG:
+			return ColumnType.INTEGER_NUMBER;
+		case MONEY:
+		case FLOAT:
+		case DOUBLE:
+		case NUMERIC:
+			return ColumnType.DECIMAL_NUMBER;
+		case SHORT_DATE_TIME:
+			return ColumnType.DATE;
+		case BOOLEAN:
+		case TEXT:
+		case MEMO:
+		case GUID:
+			return ColumnType.STRING;
+		default:
+			throw new UnsupportedMapping("Unsupported Data Type: "
+					+ column.getType() + " of column " + column.getName()
+					+ " in table " + column.getTable().getName());
+		}
+	}
+
+	private void readData(Table table, TableDefinition tableDefinition,
+			RowBuffer rowBuffer) throws Exception {
+
+		Cursor cursor = CursorBuilder.createCursor(table);
+		Row row;
+		while ((row = cursor.getNextRow()) != null) {
+			HashMap<String, Object> columnData = new HashMap<String, Object>();
+			for (Map.Entry<String, Object> columnValue : row.entrySet()) {
+				ColumnDefinition columnDefinition = tableDefinition
+						.getColumnDefinition(columnValue.getKey());
+				columnData.put(columnValue.getKey(),
+						convertValue(columnDefinition, columnValue.getValue()));
+			}
+			rowBuffer.add(columnData);
+		}
+		rowBuffer.flush();
+	}
+
+	/**
+	 * Converts the value Jackcess has read into the type the other readers
+	 * use for the column type, e.g. a Short or Byte into an Integer and a
+	 * BigDecimal or Float into a Double.
+	 */
+	private Object convertValue(ColumnDefinition columnDefinition, Object value) {
+		if (value == null || columnDefinition == null) {
+			return value;
+		}
+
+		switch (columnDefinition.getColumnType()) {
+		case INTEGER_NUMBER:
+			return Integer.valueOf(((Number) value).intValue());
+		case DECIMAL_NUMBER:
+			if (value instanceof BigDecimal) {
+				return Double.valueOf(((BigDecimal) value).doubleValue());
+			} else if (value instanceof Float) {
+				// via the text so 1.1f doesn't become 1.100000023841858
+				return Double.valueOf(value.toString());
+			}
+			return value;
+		case STRING:
+			return value.toString();
+		default:
+			return value;
+		}
+	}
+}
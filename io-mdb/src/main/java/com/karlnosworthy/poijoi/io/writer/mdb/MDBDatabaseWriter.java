@@ -12,9 +12,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.karlnosworthy.poijoi.PoiJoiOptions;
-import com.karlnosworthy.poijoi.io.OptionAware;
+import com.karlnosworthy.poijoi.io.RowSink;
 import com.karlnosworthy.poijoi.io.SupportsFormat;
+import com.karlnosworthy.poijoi.io.writer.ConfigurableWriter;
 import com.karlnosworthy.poijoi.io.writer.JDBCConnectionWriter;
+import com.karlnosworthy.poijoi.io.writer.RowSinkFactory;
 import com.karlnosworthy.poijoi.jdbc.JDBCDatabaseCreator;
 import com.karlnosworthy.poijoi.jdbc.SQLStatementCreator;
 import com.karlnosworthy.poijoi.model.ColumnDefinition;
@@ -22,21 +24,23 @@ import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
 import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
 import com.karlnosworthy.poijoi.model.TableDefinition;
 
-@SupportsFormat(type = "MDB")
-public class MDBDatabaseWriter implements JDBCConnectionWriter, OptionAware {
+@SupportsFormat(type = "MDB", stateless = true)
+public class MDBDatabaseWriter implements JDBCConnectionWriter, RowSinkFactory<Connection>, ConfigurableWriter<Connection> {
 	
 	private static final Logger logger = LoggerFactory
 			.getLogger(MDBDatabaseWriter.class);
 
-	private PoiJoiOptions options;
-
-
 	@Override
 	public boolean write(Connection connection, PoiJoiMetaData metadata, WriteType writeType) throws Exception {
+		return write(connection, metadata, writeType, null);
+	}
+
+	@Override
+	public boolean write(Connection connection, PoiJoiMetaData metadata, WriteType writeType, PoiJoiOptions options) throws Exception {
 		if (isValidConnection(connection) && isValidMetadata(metadata)) {
 			
 			Class.forName("net.ucanaccess.jdbc.UcanaccessDriver");
-			JDBCDatabaseCreator databaseCreator = new JDBCDatabaseCreator(new MDBSQLStatementCreator(), connection);
+			JDBCDatabaseCreator databaseCreator = new JDBCDatabaseCreator(new MDBSQLStatementCreator(), connection, options);
 			databaseCreator.create(metadata, writeType);
 //			JDBCDatabaseCreator databaseCreator = new JDBCDatabaseCreator(connection);
 //			databaseCreator.create(metadata, writeType);
@@ -46,10 +50,18 @@ public class MDBDatabaseWriter implements JDBCConnectionWriter, OptionAware {
 		}		
 	}
 
-	public void setOptions(PoiJoiOptions options) {
-		this.options = options;
+	@Override
+	public RowSink createSink(Connection connection, WriteType writeType, PoiJoiOptions options) throws Exception {
+		if (isValidConnection(connection)) {
+			
+			Class.forName("net.ucanaccess.jdbc.UcanaccessDriver");
+			JDBCDatabaseCreator databaseCreator = new JDBCDatabaseCreator(new MDBSQLStatementCreator(), connection, options);
+			return databaseCreator.createSink(writeType);
+		} else {
+			return null;
+		}
 	}
-	
+
 	@Override
 	public boolean isValidConnection(Connection connection) {
 		if (connection == null) {
@@ -84,6 +96,14 @@ public class MDBDatabaseWriter implements JDBCConnectionWriter, OptionAware {
 
 class MDBSQLStatementCreator extends SQLStatementCreator {
 	
+	/**
+	 * Access only takes a single row per INSERT statement.
+	 */
+	@Override
+	public boolean supportsMultiRowInsert() {
+		return false;
+	}
+	
 	@Override
 	public String buildCreateTableStatement(TableDefinition tableDefinition) {
 		
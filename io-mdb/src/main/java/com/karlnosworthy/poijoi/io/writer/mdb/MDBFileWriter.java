@@ -0,0 +1,305 @@
+package com.karlnosworthy.poijoi.io.writer.mdb;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.healthmarketscience.jackcess.Column;
+import com.healthmarketscience.jackcess.ColumnBuilder;
+import com.healthmarketscience.jackcess.DataType;
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.Database.FileFormat;
+import com.healthmarketscience.jackcess.DatabaseBuilder;
+import com.healthmarketscience.jackcess.IndexBuilder;
+import com.healthmarketscience.jackcess.Table;
+import com.healthmarketscience.jackcess.TableBuilder;
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.MetaDataRowSource;
+import com.karlnosworthy.poijoi.io.RowSink;
+import com.karlnosworthy.poijoi.io.RowTransfer;
+import com.karlnosworthy.poijoi.io.SupportsFormat;
+import com.karlnosworthy.poijoi.io.writer.ConfigurableWriter;
+import com.karlnosworthy.poijoi.io.writer.FileWriter;
+import com.karlnosworthy.poijoi.io.writer.RowSinkFactory;
+import com.karlnosworthy.poijoi.model.ColumnDefinition;
+import com.karlnosworthy.poijoi.model.IndexDefinition;
+import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+/**
+ * Writes an MDB (Access) file directly using Jackcess, rather than through a
+ * UCanAccess {@link java.sql.Connection} as {@link MDBDatabaseWriter} does,
+ * which turns every row into an INSERT statement for UCanAccess to parse and
+ * then copy from its HSQLDB mirror into the file.
+ *
+ * The tables are created with a {@link TableBuilder} and the rows are added
+ * to them with {@link Table#addRows(List)} in batches of
+ * {@link #OPTION_BATCH_SIZE} rows, with the file only being synced to disk
+ * once everything has been written.
+ *
+ * Jackcess can only create the indexes of a table along with the table, so
+ * they are kept up to date as the rows are added rather than being built
+ * afterwards.
+ *
+ * A new file is created unless only the data is being written, in which case
+ * the file has to exist already and hold the tables.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+@SupportsFormat(type = "MDB", stateless = true)
+public class MDBFileWriter implements FileWriter, RowSinkFactory<File>, ConfigurableWriter<File> {
+
+	private static final Logger logger = LoggerFactory.getLogger(MDBFileWriter.class);
+
+	/**
+	 * The number of rows added to a table at a time.
+	 */
+	public static final String OPTION_BATCH_SIZE = "--mdb-batch-size";
+
+	/**
+	 * The Access version of the file created, one of the names of
+	 * {@link FileFormat} (e.g. V2000 or V2010), defaults to
+	 * {@link #DEFAULT_FILE_FORMAT}.
+	 */
+	public static final String OPTION_FILE_FORMAT = "--mdb-file-format";
+
+	public static final int DEFAULT_BATCH_SIZE = 10000;
+	public static final FileFormat DEFAULT_FILE_FORMAT = FileFormat.V2000;
+
+	@Override
+	public boolean write(File output, PoiJoiMetaData metaData, WriteType writeType) throws Exception {
+		return write(output, metaData, writeType, null);
+	}
+
+	@Override
+	public boolean write(File output, PoiJoiMetaData metaData, WriteType writeType, PoiJoiOptions options) throws Exception {
+
+		if (metaData == null || metaData.isEmpty()) {
+			return false;
+		}
+
+		RowSink sink = createSink(output, writeType, options);
+		if (sink == null) {
+			return false;
+		}
+		return RowTransfer.transfer(new MetaDataRowSource(), metaData,
+				writeType != WriteType.SCHEMA_ONLY, sink, null);
+	}
+
+	@Override
+	public RowSink createSink(File output, WriteType writeType, PoiJoiOptions options) {
+
+		if (output == null || output.isDirectory()) {
+			return null;
+		} else if (output.exists() != (writeType == WriteType.DATA_ONLY)) {
+			return null;
+		}
+
+		int batchSize = DEFAULT_BATCH_SIZE;
+		FileFormat fileFormat = DEFAULT_FILE_FORMAT;
+		if (options != null) {
+			batchSize = options.getIntValue(OPTION_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+			if (batchSize < 1) {
+				throw new IllegalArgumentException("The value of option " + OPTION_BATCH_SIZE + " must be at least 1: " + batchSize);
+			}
+			if (options.hasValue(OPTION_FILE_FORMAT)) {
+				try {
+					fileFormat = FileFormat.valueOf(options.getValue(OPTION_FILE_FORMAT).trim().toUpperCase());
+				} catch (IllegalArgumentException illegalArgumentException) {
+					throw new IllegalArgumentException("The value of option " + OPTION_FILE_FORMAT + " isn't a known Access version: " + options.getValue(OPTION_FILE_FORMAT));
+				}
+			}
+		}
+
+		return new DatabaseFileRowSink(output, writeType, fileFormat, batchSize);
+	}
+
+	/**
+	 * Creates each table as it starts and adds its rows in batches.
+	 */
+	private static class DatabaseFileRowSink implements RowSink {
+
+		private File output;
+		private WriteType writeType;
+		private FileFormat fileFormat;
+		private int batchSize;
+		private Database database;
+		private Table table;
+		private String[] columnKeys;
+		private List<Object[]> pendingRows;
+
+		DatabaseFileRowSink(File output, WriteType writeType, FileFormat fileFormat, int batchSize) {
+			super();
+			this.output = output;
+			this.writeType = writeType;
+			this.fileFormat = fileFormat;
+			this.batchSize = batchSize;
+			this.pendingRows = new ArrayList<Object[]>();
+		}
+
+		@Override
+		public void startStream() throws Exception {
+			// syncing is left until the file is closed
+			DatabaseBuilder databaseBuilder = new DatabaseBuilder(output).setAutoSync(false);
+			if (writeType == WriteType.DATA_ONLY) {
+				database = databaseBuilder.open();
+			} else {
+				database = databaseBuilder.setFileFormat(fileFormat).create();
+			}
+		}
+
+		@Override
+		public void startTable(TableDefinition tableDefinition) throws Exception {
+			if (writeType == WriteType.DATA_ONLY) {
+				table = database.getTable(tableDefinition.getTableName());
+				if (table == null) {
+					throw new IllegalStateException("Table " + tableDefinition.getTableName() + " doesn't exist in " + output);
+				}
+			} else {
+				table = createTable(tableDefinition);
+			}
+
+			// the key of each row value, in the order of the table's columns
+			List<? extends Column> columns = table.getColumns();
+			columnKeys = new String[columns.size()];
+			for (int columnIndex = 0; columnIndex < columnKeys.length; columnIndex++) {
+				String columnName = columns.get(columnIndex).getName();
+				for (ColumnDefinition columnDefinition : tableDefinition.getColumnDefinitions()) {
+					if (columnName(columnDefinition).equalsIgnoreCase(columnName)) {
+						columnKeys[columnIndex] = columnDefinition.getColumnName();
+						break;
+					}
+				}
+			}
+		}
+
+		@Override
+		public void writeRows(TableDefinition tableDefinition, List<HashMap<String, Object>> rows) throws Exception {
+			if (writeType == WriteType.SCHEMA_ONLY) {
+				return;
+			}
+
+			for (int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
+				HashMap<String, Object> row = rows.get(rowIndex);
+				Object[] values = new Object[columnKeys.length];
+				for (int columnIndex = 0; columnIndex < columnKeys.length; columnIndex++) {
+					if (columnKeys[columnIndex] != null) {
+						values[columnIndex] = row.get(columnKeys[columnIndex]);
+					}
+				}
+				pendingRows.add(values);
+
+				if (pendingRows.size() >= batchSize) {
+					addPendingRows();
+				}
+			}
+		}
+
+		@Override
+		public void finishTable(TableDefinition tableDefinition) throws Exception {
+			addPendingRows();
+			table = null;
+			columnKeys = null;
+		}
+
+		@Override
+		public boolean finishStream() throws Exception {
+			database.flush();
+			database.close();
+			database = null;
+			return true;
+		}
+
+		@Override
+		public void abortStream() {
+			pendingRows.clear();
+			if (database != null) {
+				try {
+					database.close();
+				} catch (Exception exception) {
+					logger.warn("Failed to close {}", output, exception);
+				}
+				database = null;
+
+				// only remove the file if it was created by this sink
+				if (writeType != WriteType.DATA_ONLY) {
+					output.delete();
+				}
+			}
+		}
+
+		private void addPendingRows() throws Exception {
+			if (!pendingRows.isEmpty()) {
+				table.addRows(pendingRows);
+				pendingRows.clear();
+			}
+		}
+
+		private Table createTable(TableDefinition tableDefinition) throws Exception {
+			TableBuilder tableBuilder = new TableBuilder(tableDefinition.getTableName());
+			if (!tableDefinition.providesIDColumn()) {
+				tableBuilder.addColumn(new ColumnBuilder("id", DataType.LONG).setAutoNumber(true));
+				tableBuilder.setPrimaryKey("id");
+			}
+
+			// a MEMO column can hold any length of text but can't be indexed
+			Set<String> indexedColumnNames = new HashSet<String>();
+			if (tableDefinition.hasIndexDefinitions()) {
+				for (IndexDefinition indexDefinition : tableDefinition.getIndexDefinitions()) {
+					for (String columnName : indexDefinition.getColumnNames()) {
+						indexedColumnNames.add(columnName);
+					}
+				}
+			}
+
+			for (ColumnDefinition columnDefinition : tableDefinition.getColumnDefinitions()) {
+				DataType dataType = null;
+				switch (columnDefinition.getColumnType()) {
+				case STRING:
+					dataType = indexedColumnNames.contains(columnDefinition.getColumnName()) ? DataType.TEXT : DataType.MEMO;
+					break;
+				case INTEGER_NUMBER:
+					dataType = DataType.LONG;
+					break;
+				case DECIMAL_NUMBER:
+					dataType = DataType.DOUBLE;
+					break;
+				case DATE:
+					dataType = DataType.SHORT_DATE_TIME;
+					break;
+				}
+				ColumnBuilder columnBuilder = new ColumnBuilder(columnName(columnDefinition), dataType);
+				if (dataType == DataType.TEXT) {
+					columnBuilder.setMaxLength();
+				}
+				tableBuilder.addColumn(columnBuilder);
+			}
+
+			if (tableDefinition.hasIndexDefinitions()) {
+				for (IndexDefinition indexDefinition : tableDefinition.getIndexDefinitions()) {
+					String[] columnNames = new String[indexDefinition.getColumnNames().length];
+					for (int columnIndex = 0; columnIndex < columnNames.length; columnIndex++) {
+						columnNames[columnIndex] = indexDefinition.getColumnName(columnIndex).replace('.', '_');
+					}
+					IndexBuilder indexBuilder = new IndexBuilder(indexDefinition.getIndexName()).addColumns(columnNames);
+					if (indexDefinition.isUnique()) {
+						indexBuilder.setUnique();
+					}
+					tableBuilder.addIndex(indexBuilder);
+				}
+			}
+			return tableBuilder.toTable(database);
+		}
+
+		private String columnName(ColumnDefinition columnDefinition) {
+			return columnDefinition.getColumnName().replace('.', '_');
+		}
+	}
+}
@@ -1,19 +1,32 @@
 package com.karlnosworthy.poijoi.io.reader.mdb;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.writer.Writer.WriteType;
+import com.karlnosworthy.poijoi.io.writer.mdb.MDBFileWriter;
+import com.karlnosworthy.poijoi.jdbc.JDBCMetaDataCache;
 import com.karlnosworthy.poijoi.model.ColumnDefinition;
+import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
+import com.karlnosworthy.poijoi.model.IndexDefinition;
 import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
 import com.karlnosworthy.poijoi.model.TableDefinition;
 
@@ -89,4 +102,62 @@ public class MDBDatabaseReaderTest {
 		}
 
 	}	
+
+	/**
+	 * Test that the indexes are read, apart from that of the primary key, and
+	 * that the cached table definitions are used when asked for
+	 */
+	@Test
+	public void testIndexesAndCachedMetaData() throws Exception {
+		File file = File.createTempFile("poijoi", ".mdb");
+		file.delete();
+		file.deleteOnExit();
+
+		List<ColumnDefinition> columnDefinitions = new ArrayList<ColumnDefinition>();
+		columnDefinitions.add(new ColumnDefinition("col1String", 0, ColumnType.STRING));
+		columnDefinitions.add(new ColumnDefinition("col2Integer", 1, ColumnType.INTEGER_NUMBER));
+		List<IndexDefinition> indexDefinitions = new ArrayList<IndexDefinition>();
+		indexDefinitions.add(new IndexDefinition("idx_both", "TableOne",
+				new String[] { "col1String", "col2Integer" }, true));
+
+		Map<String, TableDefinition> tableDefinitions = new HashMap<String, TableDefinition>();
+		tableDefinitions.put("TableOne", new TableDefinition("TableOne", columnDefinitions, indexDefinitions));
+		tableDefinitions.put("TableTwo", new TableDefinition("TableTwo", columnDefinitions));
+		assertTrue(new MDBFileWriter().write(file, new PoiJoiMetaData(false, tableDefinitions, null),
+				WriteType.SCHEMA_ONLY));
+
+		Connection connection = null;
+		try {
+			connection = DriverManager.getConnection("jdbc:ucanaccess://" + file.getAbsolutePath());
+
+			Map<String, String> optionValues = new HashMap<String, String>();
+			optionValues.put(JDBCMetaDataCache.OPTION_CACHE_METADATA, "");
+			PoiJoiOptions options = new PoiJoiOptions(optionValues);
+
+			PoiJoiMetaData metaData = reader.read(connection, false, options);
+			assertEquals(2, metaData.getTableDefinitions().size());
+			assertEquals(3, metaData.getTableDefinition("TABLETWO").getColumnCount());
+			assertFalse(metaData.getTableDefinition("TABLETWO").hasIndexDefinitions());
+
+			TableDefinition tableDefinition = metaData.getTableDefinition("TABLEONE");
+			assertEquals(1, tableDefinition.getIndexDefinitions().size());
+			IndexDefinition indexDefinition = tableDefinition.getIndexDefinition(0);
+			assertTrue(indexDefinition.isUnique());
+			assertArrayEquals(new String[] { "COL1STRING", "COL2INTEGER" }, indexDefinition.getColumnNames());
+
+			// a table created behind the cache's back isn't seen
+			Statement statement = connection.createStatement();
+			statement.execute("create table TableThree (col1String text)");
+			statement.close();
+			assertEquals(2, reader.read(connection, false, options).getTableDefinitions().size());
+			assertEquals(3, reader.read(connection, false).getTableDefinitions().size());
+
+			JDBCMetaDataCache.clear(connection);
+			assertEquals(3, reader.read(connection, false, options).getTableDefinitions().size());
+		} finally {
+			if (connection != null) {
+				connection.close();
+			}
+		}
+	}
 }
@@ -0,0 +1,95 @@
+package com.karlnosworthy.poijoi.io.reader.mdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.karlnosworthy.poijoi.io.SupportsFormat;
+import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
+import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+public class MDBFileReaderTest {
+
+	private MDBFileReader reader;
+
+	@Before
+	public void setup() throws Exception {
+		reader = new MDBFileReader();
+	}
+
+	@After
+	public void onTeardown() {
+		reader = null;
+	}
+
+	@Test
+	public void testHasAnnotation() {
+		assertTrue(reader.getClass().isAnnotationPresent(SupportsFormat.class));
+	}
+
+	@Test
+	public void testNullFile() throws Exception {
+		PoiJoiMetaData metadata = reader.read(null, false);
+		assertNull(metadata);
+	}
+
+	@Test
+	public void testDirectory() throws Exception {
+		PoiJoiMetaData metadata = reader.read(new File(System.getProperty("java.io.tmpdir")), false);
+		assertNull(metadata);
+	}
+
+	/**
+	 * Test that the column names and types are read from the file
+	 */
+	@Test
+	public void testColumnHeaders() throws Exception {
+		PoiJoiMetaData metaData = reader.read(getFile("test.mdb"), false);
+
+		Map<String, TableDefinition> tableDefinitions = metaData
+				.getTableDefinitions();
+		assertEquals(1, tableDefinitions.size());
+
+		TableDefinition tableDefinition = tableDefinitions.get("TableOne");
+		assertNotNull(tableDefinition);
+
+		assertEquals(5, tableDefinition.getColumnCount());
+		assertEquals(ColumnType.INTEGER_NUMBER, tableDefinition.getColumnDefinition("id").getColumnType());
+		assertEquals(ColumnType.STRING, tableDefinition.getColumnDefinition("col1String").getColumnType());
+		assertEquals(ColumnType.DATE, tableDefinition.getColumnDefinition("col2Date").getColumnType());
+		assertEquals(ColumnType.INTEGER_NUMBER, tableDefinition.getColumnDefinition("col3Integer").getColumnType());
+		assertEquals(ColumnType.DECIMAL_NUMBER, tableDefinition.getColumnDefinition("col4Decimal").getColumnType());
+	}
+
+	/**
+	 * Test that the rows are read, with the currency column as a Double
+	 */
+	@Test
+	public void testReadData() throws Exception {
+		PoiJoiMetaData metaData = reader.read(getFile("test1_2000.mdb"), true);
+
+		List<HashMap<String, Object>> rows = metaData.getTableData("Table1");
+		assertEquals(2, rows.size());
+		assertEquals(1, rows.get(0).get("ID"));
+		assertEquals("string", rows.get(0).get("col1String"));
+		assertEquals(1, rows.get(0).get("col3Integer"));
+		assertEquals(10.1, rows.get(0).get("col4Decimal"));
+		assertTrue(rows.get(0).get("col2Date") instanceof java.util.Date);
+		assertEquals("string2", rows.get(1).get("col1String"));
+	}
+
+	private File getFile(String name) {
+		return new File(getClass().getClassLoader().getResource(name).getPath());
+	}
+}
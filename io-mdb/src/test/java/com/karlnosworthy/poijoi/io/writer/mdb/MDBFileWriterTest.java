@@ -0,0 +1,141 @@
+package com.karlnosworthy.poijoi.io.writer.mdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.reader.mdb.MDBFileReader;
+import com.karlnosworthy.poijoi.io.writer.Writer.WriteType;
+import com.karlnosworthy.poijoi.model.ColumnDefinition;
+import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
+import com.karlnosworthy.poijoi.model.IndexDefinition;
+import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+public class MDBFileWriterTest {
+
+	private MDBFileWriter writer;
+	private File file;
+
+	@Before
+	public void onSetup() throws Exception {
+		writer = new MDBFileWriter();
+		file = File.createTempFile("poijoi", ".mdb");
+		file.delete();
+	}
+
+	@After
+	public void onTeardown() {
+		writer = null;
+		file.delete();
+	}
+
+	@Test
+	public void testNullFile() throws Exception {
+		assertFalse(writer.write(null, createMetaData(1), WriteType.BOTH));
+	}
+
+	@Test
+	public void testWriteWithInvalidMetadata() throws Exception {
+		assertFalse(writer.write(file, null, WriteType.BOTH));
+		assertFalse(writer.write(file, new PoiJoiMetaData(false, null, null), WriteType.SCHEMA_ONLY));
+		assertFalse(file.exists());
+	}
+
+	/**
+	 * Test that an existing file isn't overwritten and that the data can only
+	 * be written to an existing file.
+	 */
+	@Test
+	public void testExistingFile() throws Exception {
+		assertFalse(writer.write(file, createMetaData(1), WriteType.DATA_ONLY));
+		assertTrue(writer.write(file, createMetaData(1), WriteType.SCHEMA_ONLY));
+		assertFalse(writer.write(file, createMetaData(1), WriteType.BOTH));
+
+		assertTrue(writer.write(file, createMetaData(3), WriteType.DATA_ONLY));
+		assertEquals(3, new MDBFileReader().read(file, true).getTableData("TableOne").size());
+	}
+
+	/**
+	 * Test that the rows are all written when they are added over several
+	 * batches and that the index is created.
+	 */
+	@Test
+	public void testSuccessfulWrite() throws Exception {
+		Map<String, String> optionValues = new HashMap<String, String>();
+		optionValues.put(MDBFileWriter.OPTION_BATCH_SIZE, "2");
+		optionValues.put(MDBFileWriter.OPTION_FILE_FORMAT, "v2010");
+
+		assertTrue(writer.write(file, createMetaData(5), WriteType.BOTH, new PoiJoiOptions(optionValues)));
+
+		PoiJoiMetaData metaData = new MDBFileReader().read(file, true);
+		TableDefinition tableDefinition = metaData.getTableDefinition("TableOne");
+		assertNotNull(tableDefinition);
+		assertEquals(5, tableDefinition.getColumnCount());
+		assertEquals(ColumnType.DATE, tableDefinition.getColumnDefinition("col2Date").getColumnType());
+
+		assertEquals(1, tableDefinition.getIndexDefinitions().size());
+		IndexDefinition indexDefinition = tableDefinition.getIndexDefinition(0);
+		assertEquals("idx_col1String", indexDefinition.getIndexName());
+		assertTrue(indexDefinition.isUnique());
+
+		List<HashMap<String, Object>> rows = metaData.getTableData("TableOne");
+		assertEquals(5, rows.size());
+		assertEquals(1, rows.get(0).get("id"));
+		assertEquals("row0", rows.get(0).get("col1String"));
+		assertEquals(4, rows.get(4).get("col3Integer"));
+		assertEquals(4.5, rows.get(4).get("col4Decimal"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownFileFormat() throws Exception {
+		Map<String, String> optionValues = new HashMap<String, String>();
+		optionValues.put(MDBFileWriter.OPTION_FILE_FORMAT, "V1066");
+		writer.write(file, createMetaData(1), WriteType.BOTH, new PoiJoiOptions(optionValues));
+	}
+
+	private PoiJoiMetaData createMetaData(int rowCount) {
+		List<ColumnDefinition> columnDefinitions = new ArrayList<ColumnDefinition>();
+		columnDefinitions.add(new ColumnDefinition("col1String", 0, ColumnType.STRING));
+		columnDefinitions.add(new ColumnDefinition("col2Date", 1, ColumnType.DATE));
+		columnDefinitions.add(new ColumnDefinition("col3Integer", 2, ColumnType.INTEGER_NUMBER));
+		columnDefinitions.add(new ColumnDefinition("col4Decimal", 3, ColumnType.DECIMAL_NUMBER));
+
+		List<IndexDefinition> indexDefinitions = new ArrayList<IndexDefinition>();
+		indexDefinitions.add(new IndexDefinition("idx_col1String", "TableOne", new String[] { "col1String" }, true));
+
+		Map<String, TableDefinition> tableDefinitions = new HashMap<String, TableDefinition>();
+		tableDefinitions.put("TableOne", new TableDefinition("TableOne", columnDefinitions, indexDefinitions));
+
+		Calendar cal = Calendar.getInstance();
+		cal.set(2014, 11, 31, 0, 0, 0);
+		cal.set(Calendar.MILLISECOND, 0);
+
+		List<HashMap<String, Object>> rowData = new ArrayList<HashMap<String, Object>>();
+		for (int rowIndex = 0; rowIndex < rowCount; rowIndex++) {
+			HashMap<String, Object> row = new HashMap<String, Object>();
+			row.put("col1String", "row" + rowIndex);
+			row.put("col2Date", cal.getTime());
+			row.put("col3Integer", Integer.valueOf(rowIndex));
+			row.put("col4Decimal", Double.valueOf(rowIndex + 0.5));
+			rowData.add(row);
+		}
+
+		Map<String, List<HashMap<String, Object>>> tableData = new HashMap<String, List<HashMap<String, Object>>>();
+		tableData.put("TableOne", rowData);
+		return new PoiJoiMetaData(true, tableDefinitions, tableData);
+	}
+}
@@ -1,9 +1,9 @@
 package com.karlnosworthy.poijoi.io.reader.ods;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.odftoolkit.simple.SpreadsheetDocument;
 import org.odftoolkit.simple.table.Cell;
@@ -12,6 +12,14 @@ import org.odftoolkit.simple.table.Table;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.MetaDataRowSink;
+import com.karlnosworthy.poijoi.io.ParallelTableReader;
+import com.karlnosworthy.poijoi.io.ParallelTableReader.TableReader;
+import com.karlnosworthy.poijoi.io.RowBuffer;
+import com.karlnosworthy.poijoi.io.RowSink;
+import com.karlnosworthy.poijoi.io.reader.ConfigurableReader;
+import com.karlnosworthy.poijoi.io.reader.RowSource;
 import com.karlnosworthy.poijoi.model.ColumnDefinition;
 import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
 import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
@@ -22,12 +30,17 @@ import com.karlnosworthy.poijoi.model.TableDefinition;
  * implementations will have to handle how the {@link SpreadsheetDocument} is
  * initially loaded.
  * 
+ * When the input can be opened more than once (e.g. a file) the sheets can be
+ * read at the same time, up to {@link PoiJoiOptions#OPTION_READ_THREADS} of
+ * them (see {@link ParallelTableReader}), with each thread reading from a
+ * copy of the document of its own.
+ * 
  * @author john.bartlett
  *
  * @param <T>
  *            The source Type
  */
-public abstract class AbstractODSReader<T> {
+public abstract class AbstractODSReader<T> implements RowSource<T>, ConfigurableReader<T> {
 
 	protected static final Logger logger = LoggerFactory
 			.getLogger(AbstractODSReader.class);
@@ -53,37 +66,187 @@ public abstract class AbstractODSReader<T> {
 	 */
 	public final PoiJoiMetaData read(T input, boolean readData)
 			throws Exception {
+		return read(input, readData, null);
+	}
+
+	/**
+	 * Reads in a representation of a database and converts it into a
+	 * {@link PoiJoiMetaData} object using the options given.
+	 * 
+	 * @param input
+	 *            The input of the data (e.g. java.io.File etc)
+	 * @param readData
+	 *            Whether or not to read the data or just the database structure
+	 * @param options
+	 *            The options to apply while reading (may be null)
+	 * @return a {@link PoiJoiMetaData} holding the table structures and
+	 *         optionally the table data
+	 */
+	@Override
+	public final PoiJoiMetaData read(T input, boolean readData,
+			PoiJoiOptions options) throws Exception {
+		MetaDataRowSink sink = new MetaDataRowSink(readData);
+		if (readRows(input, readData, sink, options)) {
+			return sink.getMetaData();
+		}
+		return null;
+	}
+
+	/**
+	 * Reads in a representation of a database and passes each table structure
+	 * and optionally its rows to the {@link RowSink}.
+	 * 
+	 * @param input
+	 *            The input of the data (e.g. java.io.File etc)
+	 * @param readData
+	 *            Whether or not to read the data or just the database structure
+	 * @param sink
+	 *            The sink to pass the tables and rows to
+	 * @param options
+	 *            The options to apply while reading (may be null)
+	 * @return True if the input was valid and has been read otherwise false
+	 */
+	@Override
+	public final boolean readRows(T input, boolean readData, RowSink sink,
+			PoiJoiOptions options) throws Exception {
 		
 		if (!isValidInput(input)) {
-			return null;
+			return false;
 		}
 		
+		int numberOfThreads = ParallelTableReader.getNumberOfThreads(options);
+
 		SpreadsheetDocument document = null;
+		DocumentSource documentSource = null;
 		try {
-			Map<String, TableDefinition> tables = new HashMap<String, TableDefinition>();
-			Map<String, List<HashMap<String, Object>>> tableData = new HashMap<String, List<HashMap<String, Object>>>();
 			document = getDocument(input);
 			int totalNumberOfSheets = document.getSheetCount();
-			
-			for (int sheetIndex = 0; sheetIndex < totalNumberOfSheets; sheetIndex++) {
-				Table sheet = document.getSheetByIndex(sheetIndex);
-				
-				TableDefinition tableDefinition = parseSheetMeta(sheet);
-				if (tableDefinition == null) {
-					continue; // couldn't read table definition
-				}
 
-				tables.put(tableDefinition.getTableName(), tableDefinition);
-				if (readData) {
-					tableData.put(tableDefinition.getTableName(),
-							readData(sheet, tableDefinition));
-				}
+			if (numberOfThreads > 1 && totalNumberOfSheets > 1 && canReopen(input)) {
+				document.close();
+				document = null;
+				documentSource = new DocumentSource(input);
+			} else {
+				numberOfThreads = 1;
+				documentSource = new DocumentSource(document);
 			}
-			return new PoiJoiMetaData(readData, tables, tableData);
+
+			List<TableReader> sheetReaders = new ArrayList<TableReader>();
+			for (int sheetIndex = 0; sheetIndex < totalNumberOfSheets; sheetIndex++) {
+				sheetReaders.add(new SheetReader(documentSource, sheetIndex, readData));
+			}
+			ParallelTableReader.read(sheetReaders, sink, numberOfThreads);
+			return true;
 		} finally {
 			if (document != null) {
 				document.close();
 			}
+			if (documentSource != null) {
+				documentSource.close();
+			}
+		}
+	}
+
+	/**
+	 * Whether {@link #getDocument(Object)} can be called more than once for
+	 * the same input, which is needed to read the sheets at the same time.
+	 */
+	boolean canReopen(T input) {
+		return false;
+	}
+
+	/**
+	 * Reads a single sheet from the document given by a {@link DocumentSource}.
+	 */
+	private class SheetReader implements TableReader {
+
+		private DocumentSource documentSource;
+		private int sheetIndex;
+		private boolean readData;
+
+		SheetReader(DocumentSource documentSource, int sheetIndex, boolean readData) {
+			super();
+			this.documentSource = documentSource;
+			this.sheetIndex = sheetIndex;
+			this.readData = readData;
+		}
+
+		@Override
+		public void readTable(RowSink sink) throws Exception {
+			Table sheet = documentSource.getDocument().getSheetByIndex(sheetIndex);
+
+			TableDefinition tableDefinition = parseSheetMeta(sheet);
+			if (tableDefinition == null) {
+				return; // couldn't read table definition
+			}
+
+			sink.startTable(tableDefinition);
+			if (readData) {
+				readData(sheet, tableDefinition, new RowBuffer(sink,
+						tableDefinition));
+			}
+			sink.finishTable(tableDefinition);
+		}
+	}
+
+	/**
+	 * The document the sheets are read from. The DOM behind a
+	 * {@link SpreadsheetDocument} can't be read by more than one thread at a
+	 * time, even when they're reading different sheets, so to read the sheets
+	 * at the same time each thread opens a document of its own.
+	 */
+	private class DocumentSource {
+
+		private SpreadsheetDocument document;
+		private T input;
+		private ThreadLocal<SpreadsheetDocument> threadDocuments;
+		private List<SpreadsheetDocument> openedDocuments;
+
+		/**
+		 * Every sheet is read from the same document, by a single thread.
+		 */
+		DocumentSource(SpreadsheetDocument document) {
+			super();
+			this.document = document;
+		}
+
+		/**
+		 * Each thread reads the sheets from a document of its own.
+		 */
+		DocumentSource(T input) {
+			super();
+			this.input = input;
+			this.threadDocuments = new ThreadLocal<SpreadsheetDocument>();
+			this.openedDocuments = Collections.synchronizedList(new ArrayList<SpreadsheetDocument>());
+		}
+
+		SpreadsheetDocument getDocument() throws Exception {
+			if (document != null) {
+				return document;
+			}
+
+			SpreadsheetDocument threadDocument = threadDocuments.get();
+			if (threadDocument == null) {
+				threadDocument = AbstractODSReader.this.getDocument(input);
+				openedDocuments.add(threadDocument);
+				threadDocuments.set(threadDocument);
+			}
+			return threadDocument;
+		}
+
+		/**
+		 * Close the documents opened by the threads, the shared document
+		 * belongs to the caller.
+		 */
+		void close() {
+			if (openedDocuments != null) {
+				synchronized (openedDocuments) {
+					for (SpreadsheetDocument openedDocument : openedDocuments) {
+						openedDocument.close();
+					}
+					openedDocuments.clear();
+				}
+			}
 		}
 	}
 
@@ -165,9 +328,8 @@ public abstract class AbstractODSReader<T> {
 	 * Read the data stored in a sheet based on the passed in
 	 * {@link TableDefinition}
 	 */
-	private List<HashMap<String, Object>> readData(Table sheet,
-			TableDefinition tableDefinition) {
-		List<HashMap<String, Object>> rowData = new ArrayList<HashMap<String, Object>>();
+	private void readData(Table sheet, TableDefinition tableDefinition,
+			RowBuffer rowBuffer) throws Exception {
 		int sheetRowCount = sheet.getRowCount();
 		if (sheetRowCount > 1) {
 			for (int rowIndex = 1; rowIndex <= (sheetRowCount - 1); rowIndex++) {
@@ -204,11 +366,11 @@ public abstract class AbstractODSReader<T> {
 					}
 				}
 				if (columnData != null) {
-					rowData.add(columnData);
+					rowBuffer.add(columnData);
 					columnData = null;
 				}
 			}
 		}
-		return rowData;
+		rowBuffer.flush();
 	}
 }
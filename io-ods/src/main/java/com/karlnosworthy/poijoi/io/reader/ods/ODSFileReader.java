@@ -13,7 +13,7 @@ import com.karlnosworthy.poijoi.io.reader.FileReader;
  * @author john.bartlett
  *
  */
-@SupportsFormat(type = "ODS")
+@SupportsFormat(type = "ODS", stateless = true)
 public class ODSFileReader extends AbstractODSReader<File> implements
 		FileReader {
 
@@ -22,6 +22,11 @@ public class ODSFileReader extends AbstractODSReader<File> implements
 		return SpreadsheetDocument.loadDocument(input);
 	}
 
+	@Override
+	boolean canReopen(File input) {
+		return true;
+	}
+
 	@Override
 	boolean isValidInput(File input) {
 		if (input == null || input.isDirectory()) {
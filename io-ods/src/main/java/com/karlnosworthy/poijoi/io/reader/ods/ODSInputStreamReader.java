@@ -14,7 +14,7 @@ import com.karlnosworthy.poijoi.io.reader.InputStreamReader;
  * @author john.bartlett
  *
  */
-@SupportsFormat(type = "ODS")
+@SupportsFormat(type = "ODS", stateless = true)
 public class ODSInputStreamReader extends AbstractODSReader<InputStream> implements
 		InputStreamReader {
 
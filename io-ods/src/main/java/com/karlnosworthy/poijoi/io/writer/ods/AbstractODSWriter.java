@@ -4,13 +4,18 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.odftoolkit.simple.SpreadsheetDocument;
 import org.odftoolkit.simple.table.Cell;
 import org.odftoolkit.simple.table.Table;
 
+import com.karlnosworthy.poijoi.PoiJoiOptions;
 import com.karlnosworthy.poijoi.UnsupportedMapping;
+import com.karlnosworthy.poijoi.io.MetaDataRowSource;
+import com.karlnosworthy.poijoi.io.RowSink;
+import com.karlnosworthy.poijoi.io.RowTransfer;
+import com.karlnosworthy.poijoi.io.writer.ConfigurableWriter;
+import com.karlnosworthy.poijoi.io.writer.RowSinkFactory;
 import com.karlnosworthy.poijoi.io.writer.Writer.WriteType;
 import com.karlnosworthy.poijoi.model.ColumnDefinition;
 import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
@@ -26,7 +31,7 @@ import com.karlnosworthy.poijoi.model.TableDefinition;
  * @param <T>
  *            The output type
  */
-public abstract class AbstractODSWriter<T> {
+public abstract class AbstractODSWriter<T> implements RowSinkFactory<T>, ConfigurableWriter<T> {
 
 	abstract boolean isValidOutput(T output);
 	
@@ -55,102 +60,184 @@ public abstract class AbstractODSWriter<T> {
 	 */
 	public final boolean write(T output, PoiJoiMetaData metaData,
 			WriteType writeType) throws Exception {
+		return write(output, metaData, writeType, null);
+	}
+
+	/**
+	 * Writes out a ODS File to reflect the table structures and optionally the
+	 * data stored in the {@link PoiJoiMetaData}, using the options given.
+	 * 
+	 * @param output
+	 *            The mechanism for outputting the data (e.g. java.io.File etc)
+	 * @param metaData
+	 *            a {@link PoiJoiMetaData} holding the table structures and
+	 *            optionally the table data
+	 * @param writeType
+	 *            Rules around what to write
+	 * @param options
+	 *            The options to apply while writing (may be null)
+	 */
+	@Override
+	public final boolean write(T output, PoiJoiMetaData metaData,
+			WriteType writeType, PoiJoiOptions options) throws Exception {
 		
 		if (!isValidOutput(output) || !isValidMetadata(metaData)) {
 			return false;
 		}
 
-		// create a new spreadsheet document ready to write out to the output
-		SpreadsheetDocument spreadsheetDocument = SpreadsheetDocument
-				.newSpreadsheetDocument();
-		Table table = spreadsheetDocument.getSheetByIndex(0);
+		return RowTransfer.transfer(new MetaDataRowSource(), metaData,
+				writeType != WriteType.SCHEMA_ONLY,
+				createSink(output, writeType, options), null);
+	}
 
-		Map<String, TableDefinition> tableDefinitions = metaData
-				.getTableDefinitions();
-		int tableIndex = 0;
-		for (String tableName : tableDefinitions.keySet()) {
-			table.setTableName(tableName);
+	/**
+	 * Creates a sink which adds a sheet to a new spreadsheet document for each
+	 * table it is passed and writes the document to the output once the
+	 * stream finishes.
+	 * 
+	 * @param output
+	 *            The mechanism for outputting the data (e.g. java.io.File etc)
+	 * @param writeType
+	 *            Rules around what to write
+	 * @param options
+	 *            The options to apply while writing (may be null)
+	 */
+	@Override
+	public final RowSink createSink(T output, WriteType writeType,
+			PoiJoiOptions options) {
+		if (!isValidOutput(output)) {
+			return null;
+		}
+		return new SpreadsheetRowSink(output, writeType);
+	}
+	
+	private boolean isValidMetadata(PoiJoiMetaData metadata) {
+		if (metadata == null) {
+			return false;
+		} else {
+			if (metadata.getTableDefinitions() == null || metadata.getTableDefinitions().isEmpty()) {
+				return false;
+			} else if (metadata.isReadData() && metadata.getTableData() == null) {
+				return false;
+			}
+		}
+		return true;
+	}
 
-			TableDefinition tableDefinition = tableDefinitions.get(tableName);
-			List<ColumnDefinition> columnDefinitions = tableDefinition
-					.getColumnDefinitions();
+	/**
+	 * Builds the spreadsheet document one table at a time as the rows arrive.
+	 */
+	private class SpreadsheetRowSink implements RowSink {
+
+		private T output;
+		private WriteType writeType;
+		private SpreadsheetDocument spreadsheetDocument;
+		private Table table;
+		private int tableIndex;
+		private int rowIndex;
+
+		SpreadsheetRowSink(T output, WriteType writeType) {
+			super();
+			this.output = output;
+			this.writeType = writeType;
+		}
+
+		@Override
+		public void startStream() throws Exception {
+			// create a new spreadsheet document ready to write out to the output
+			spreadsheetDocument = SpreadsheetDocument.newSpreadsheetDocument();
+		}
+
+		@Override
+		public void startTable(TableDefinition tableDefinition) {
+			if (tableIndex == 0) {
+				table = spreadsheetDocument.getSheetByIndex(0);
+			} else {
+				table = spreadsheetDocument.addTable();
+			}
+			tableIndex += 1;
+			rowIndex = 0;
+
+			table.setTableName(tableDefinition.getTableName());
 
 			// create the header row using the column definitions
 			if (writeType != WriteType.DATA_ONLY) {
-				for (ColumnDefinition columnDefinition : columnDefinitions) {
+				for (ColumnDefinition columnDefinition : tableDefinition
+						.getColumnDefinitions()) {
 					Cell headerCell = table.getCellByPosition(
 							columnDefinition.getColumnIndex(), 0);
 					headerCell.setStringValue(columnDefinition.getColumnName()
 							.toLowerCase());
 				}
 			}
+		}
+
+		@Override
+		public void writeRows(TableDefinition tableDefinition,
+				List<HashMap<String, Object>> rowData) throws Exception {
 
 			// if the write type is correct output the data into the spreadsheet
-			if (writeType != WriteType.SCHEMA_ONLY) {
-				Map<String, List<HashMap<String, Object>>> tableData = metaData
-						.getTableData();
-
-				List<HashMap<String, Object>> rowData = tableData
-						.get(tableName);
-				for (int rowIndex = 0; rowIndex < tableData.size(); rowIndex++) {
-					for (ColumnDefinition columnDefinition : columnDefinitions) {
-						Cell dataCell = table.getCellByPosition(
-								columnDefinition.getColumnIndex(),
-								1 + rowIndex);
-						HashMap<String, Object> columnData = rowData
-								.get(rowIndex);
-						Object val = columnData.get(columnDefinition
-								.getColumnName());
-						if (val != null) {
-							switch (columnDefinition.getColumnType()) {
-							case DATE:
-								Calendar cal = Calendar.getInstance();
-								cal.setTime((Date) val);
-								dataCell.setDateValue(cal);
-								break;
-							case DECIMAL_NUMBER:
-								dataCell.setDoubleValue((Double) val);
-								break;
-							case INTEGER_NUMBER:
-								Double d = new Double(val.toString());
-								dataCell.setDoubleValue(d);
-								break;
-							case STRING:
-								dataCell.setStringValue(val.toString());
-								break;
-							default:
-								throw new UnsupportedMapping(
-										"Cannot map column type: "
-												+ columnDefinition
-														.getColumnType());
-							}
-						} else {
-							dataCell.setStringValue(null); // set null value
+			if (writeType == WriteType.SCHEMA_ONLY) {
+				return;
+			}
+
+			List<ColumnDefinition> columnDefinitions = tableDefinition
+					.getColumnDefinitions();
+
+			for (HashMap<String, Object> columnData : rowData) {
+				for (ColumnDefinition columnDefinition : columnDefinitions) {
+					Cell dataCell = table.getCellByPosition(
+							columnDefinition.getColumnIndex(), 1 + rowIndex);
+					Object val = columnData.get(columnDefinition
+							.getColumnName());
+					if (val != null) {
+						switch (columnDefinition.getColumnType()) {
+						case DATE:
+							Calendar cal = Calendar.getInstance();
+							cal.setTime((Date) val);
+							dataCell.setDateValue(cal);
+							break;
+						case DECIMAL_NUMBER:
+							dataCell.setDoubleValue((Double) val);
+							break;
+						case INTEGER_NUMBER:
+							Double d = new Double(val.toString());
+							dataCell.setDoubleValue(d);
+							break;
+						case STRING:
+							dataCell.setStringValue(val.toString());
+							break;
+						default:
+							throw new UnsupportedMapping(
+									"Cannot map column type: "
+											+ columnDefinition
+													.getColumnType());
 						}
+					} else {
+						dataCell.setStringValue(null); // set null value
 					}
 				}
+				rowIndex++;
 			}
+		}
 
-			tableIndex += 1;
-			if (tableIndex < tableDefinitions.size()) {
-				table = spreadsheetDocument.addTable();
-			}
+		@Override
+		public void finishTable(TableDefinition tableDefinition) {
+			table = null;
 		}
 
-		// write out the spreadsheet
-		return write(output, spreadsheetDocument);
-	}
-	
-	private boolean isValidMetadata(PoiJoiMetaData metadata) {
-		if (metadata == null) {
-			return false;
-		} else {
-			if (metadata.getTableDefinitions() == null || metadata.getTableDefinitions().isEmpty()) {
-				return false;
-			} else if (metadata.isReadData() && metadata.getTableData() == null) {
-				return false;
+		@Override
+		public boolean finishStream() throws Exception {
+			// write out the spreadsheet
+			return write(output, spreadsheetDocument);
+		}
+
+		@Override
+		public void abortStream() {
+			if (spreadsheetDocument != null) {
+				spreadsheetDocument.close();
+				spreadsheetDocument = null;
 			}
 		}
-		return true;
 	}
 }
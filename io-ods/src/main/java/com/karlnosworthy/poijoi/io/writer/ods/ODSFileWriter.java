@@ -13,7 +13,7 @@ import com.karlnosworthy.poijoi.io.writer.FileWriter;
  * @author john.bartlett
  *
  */
-@SupportsFormat(type = "ODS")
+@SupportsFormat(type = "ODS", stateless = true)
 public class ODSFileWriter extends AbstractODSWriter<File> implements FileWriter {
 
 	@Override
@@ -14,7 +14,7 @@ import com.karlnosworthy.poijoi.io.writer.OutputStreamWriter;
  * @author john.bartlett
  *
  */
-@SupportsFormat(type = "ODS")
+@SupportsFormat(type = "ODS", stateless = true)
 public class ODSOutputStreamWriter extends AbstractODSWriter<OutputStream>
 		implements OutputStreamWriter {
 
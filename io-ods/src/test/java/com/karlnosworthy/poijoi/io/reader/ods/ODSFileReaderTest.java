@@ -11,7 +11,11 @@ import java.util.List;
 import java.util.Map;
 
 import org.junit.Test;
+import org.odftoolkit.simple.SpreadsheetDocument;
+import org.odftoolkit.simple.table.Row;
+import org.odftoolkit.simple.table.Table;
 
+import com.karlnosworthy.poijoi.PoiJoiOptions;
 import com.karlnosworthy.poijoi.model.ColumnDefinition;
 import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
 import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
@@ -118,4 +122,70 @@ public class ODSFileReaderTest {
 		assertEquals(new Integer("2"), dataRow.get("col3Integer"));
 		assertEquals(new Double("12.02"), dataRow.get("col4Decimal"));
 	}
+
+	/**
+	 * Test that reading the sheets at the same time gives the same tables as
+	 * reading them one after another
+	 */
+	@Test
+	public void testParallelReadMatchesSequential() throws Exception {
+		File file = createSpreadsheet(4, 50);
+
+		ODSFileReader reader = new ODSFileReader();
+		PoiJoiMetaData metaData = reader.read(file, true, null);
+
+		Map<String, String> options = new HashMap<String, String>();
+		options.put(PoiJoiOptions.OPTION_READ_THREADS, "4");
+		PoiJoiMetaData parallelMetaData = reader.read(file, true, new PoiJoiOptions(options));
+
+		assertEquals(4, metaData.getTableDefinitions().size());
+		assertEquals(4, parallelMetaData.getTableDefinitions().size());
+		for (String tableName : metaData.getTableDefinitions().keySet()) {
+			assertEquals(50, metaData.getTableData(tableName).size());
+			assertTrue(parallelMetaData.getTableDefinition(tableName).isSameAs(metaData.getTableDefinition(tableName)));
+			assertEquals(metaData.getTableData(tableName), parallelMetaData.getTableData(tableName));
+		}
+	}
+
+	private File createSpreadsheet(int numberOfSheets, int numberOfRows) throws Exception {
+		Calendar cal = Calendar.getInstance();
+		cal.set(2014, 11, 31, 0, 0, 0);
+		cal.set(Calendar.MILLISECOND, 0);
+
+		SpreadsheetDocument document = SpreadsheetDocument.newSpreadsheetDocument();
+		try {
+			for (int sheetIndex = 0; sheetIndex < numberOfSheets; sheetIndex++) {
+				String tableName = "Table" + sheetIndex;
+				Table sheet = sheetIndex == 0 ? document.getSheetByIndex(0) : document.appendSheet(tableName);
+				sheet.setTableName(tableName);
+
+				Row headerRow = sheet.getRowByIndex(0);
+				headerRow.getCellByIndex(0).setStringValue("col1String");
+				headerRow.getCellByIndex(1).setStringValue("col2Date");
+				headerRow.getCellByIndex(2).setStringValue("col4Decimal");
+
+				for (int rowIndex = 1; rowIndex <= numberOfRows; rowIndex++) {
+					Row dataRow = sheet.getRowByIndex(rowIndex);
+					dataRow.getCellByIndex(0).setStringValue(tableName + " row " + rowIndex);
+					dataRow.getCellByIndex(1).setDateValue(cal);
+					dataRow.getCellByIndex(2).setDoubleValue(rowIndex + 0.25);
+				}
+
+				// a new sheet starts out with more columns and rows than are used
+				if (sheet.getColumnCount() > 3) {
+					sheet.removeColumnsByIndex(3, sheet.getColumnCount() - 3);
+				}
+				if (sheet.getRowCount() > numberOfRows + 1) {
+					sheet.removeRowsByIndex(numberOfRows + 1, sheet.getRowCount() - numberOfRows - 1);
+				}
+			}
+
+			File file = File.createTempFile("poijoi", ".ods");
+			file.deleteOnExit();
+			document.save(file);
+			return file;
+		} finally {
+			document.close();
+		}
+	}
 }
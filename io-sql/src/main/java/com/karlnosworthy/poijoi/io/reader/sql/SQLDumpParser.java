@@ -0,0 +1,292 @@
+package com.karlnosworthy.poijoi.io.reader.sql;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.karlnosworthy.poijoi.io.RowBuffer;
+import com.karlnosworthy.poijoi.io.RowSink;
+import com.karlnosworthy.poijoi.io.reader.sql.SQLStatementParser.CopyHeader;
+import com.karlnosworthy.poijoi.io.reader.sql.SQLStatementParser.TableRows;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+/**
+ * Reads a SQL dump in a single pass, passing its tables and rows to a
+ * {@link RowSink}.
+ *
+ * The CREATE statements are parsed as soon as they are found, while the
+ * INSERT statements (and COPY data) are collected into chunks of roughly the
+ * same number of bytes which, when more than one thread is allowed, are
+ * parsed in parallel. The parsed chunks are always passed to the sink in the
+ * order they appear in the dump, with only a limited number of chunks being
+ * parsed ahead of the sink.
+ *
+ * Each table is started on the sink when its first rows arrive, and the rows
+ * of a table therefore have to be together in the dump. Tables without any
+ * rows are passed to the sink once the whole dump has been read. An index
+ * created after the rows of its table is added to the table definition the
+ * sink has already been given, so it's only seen by sinks which look at the
+ * indexes once the stream has finished.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+final class SQLDumpParser {
+
+	private static final Logger logger = LoggerFactory.getLogger(SQLDumpParser.class);
+
+	private SQLStatementScanner scanner;
+	private Charset charset;
+	private int numberOfThreads;
+	private int chunkSize;
+	private boolean readData;
+	private RowSink sink;
+
+	private Map<String, TableDefinition> tableDefinitions;
+	private List<TableDefinition> createdTables;
+	private Set<TableDefinition> startedTables;
+	private SQLStatementParser statementParser;
+
+	private List<Section> chunk;
+	private long chunkBytes;
+	private ExecutorService executorService;
+	private Deque<Future<List<TableRows>>> parsingChunks;
+
+	private TableDefinition currentTable;
+	private RowBuffer rowBuffer;
+
+	/**
+	 * An INSERT statement or section of COPY data waiting to be parsed.
+	 */
+	private static final class Section {
+
+		final ByteBuffer bytes;
+		final long offset;
+		final CopyHeader copyHeader;
+
+		Section(ByteBuffer bytes, long offset, CopyHeader copyHeader) {
+			super();
+			this.bytes = bytes;
+			this.offset = offset;
+			this.copyHeader = copyHeader;
+		}
+	}
+
+	SQLDumpParser(SQLStatementScanner scanner, Charset charset, int numberOfThreads, int chunkSize,
+			boolean readData, RowSink sink) {
+		super();
+		this.scanner = scanner;
+		this.charset = charset;
+		this.numberOfThreads = numberOfThreads;
+		this.chunkSize = chunkSize;
+		this.readData = readData;
+		this.sink = sink;
+		this.tableDefinitions = new ConcurrentHashMap<String, TableDefinition>();
+		this.createdTables = new ArrayList<TableDefinition>();
+		this.startedTables = Collections.newSetFromMap(new IdentityHashMap<TableDefinition, Boolean>());
+		this.statementParser = new SQLStatementParser(charset, tableDefinitions);
+		this.chunk = new ArrayList<Section>();
+		this.parsingChunks = new ArrayDeque<Future<List<TableRows>>>();
+	}
+
+	void parse() throws Exception {
+		try {
+			CopyHeader copyHeader = null;
+			while (scanner.next()) {
+				switch (scanner.getStatementType()) {
+					case CREATE:
+						TableDefinition tableDefinition = parseCreate(scanner.getStatement(), scanner.getStatementOffset());
+						if (tableDefinition != null) {
+							createdTables.add(tableDefinition);
+						}
+						break;
+					case INSERT:
+						if (readData) {
+							addToChunk(new Section(scanner.getStatement(), scanner.getStatementOffset(), null));
+						}
+						break;
+					case COPY:
+						if (readData) {
+							copyHeader = parseCopy(scanner.getStatement(), scanner.getStatementOffset());
+						}
+						break;
+					case COPY_DATA:
+						if (copyHeader != null) {
+							addToChunk(new Section(scanner.getStatement(), scanner.getStatementOffset(), copyHeader));
+							copyHeader = null;
+						}
+						break;
+					default:
+						break;
+				}
+			}
+
+			dispatchChunk(true);
+			while (!parsingChunks.isEmpty()) {
+				deliver(await(parsingChunks.removeFirst()));
+			}
+			finishCurrentTable();
+
+			for (TableDefinition tableDefinition : createdTables) {
+				if (!startedTables.contains(tableDefinition)) {
+					sink.startTable(tableDefinition);
+					sink.finishTable(tableDefinition);
+				}
+			}
+		} finally {
+			if (executorService != null) {
+				executorService.shutdownNow();
+			}
+		}
+	}
+
+	private TableDefinition parseCreate(ByteBuffer statement, long offset) throws IOException {
+		try {
+			return statementParser.parseCreate(statement);
+		} catch (IOException ioException) {
+			throw parseFailure(offset, ioException);
+		}
+	}
+
+	private CopyHeader parseCopy(ByteBuffer statement, long offset) throws IOException {
+		try {
+			return statementParser.parseCopy(statement);
+		} catch (IOException ioException) {
+			throw parseFailure(offset, ioException);
+		}
+	}
+
+	private void addToChunk(Section section) throws Exception {
+		chunk.add(section);
+		chunkBytes += section.bytes.remaining();
+		if (chunkBytes >= chunkSize) {
+			dispatchChunk(false);
+		}
+	}
+
+	/**
+	 * Parse the current chunk, on this thread if only one thread is allowed or
+	 * if it's the only chunk in the dump, otherwise in the background.
+	 */
+	private void dispatchChunk(boolean lastChunk) throws Exception {
+		if (chunk.isEmpty()) {
+			return;
+		}
+		final List<Section> sections = chunk;
+		chunk = new ArrayList<Section>();
+		chunkBytes = 0;
+
+		if (numberOfThreads < 2 || (lastChunk && executorService == null)) {
+			deliver(parseSections(sections, statementParser));
+			return;
+		}
+
+		if (executorService == null) {
+			logger.debug("Parsing the SQL dump using {} thread(s)", numberOfThreads);
+			executorService = Executors.newFixedThreadPool(numberOfThreads);
+		}
+		parsingChunks.add(executorService.submit(new Callable<List<TableRows>>() {
+			@Override
+			public List<TableRows> call() throws IOException {
+				return parseSections(sections, new SQLStatementParser(charset, tableDefinitions));
+			}
+		}));
+
+		// keep enough chunks parsing to keep the threads busy, but no more
+		while (parsingChunks.size() > 2 * numberOfThreads) {
+			deliver(await(parsingChunks.removeFirst()));
+		}
+	}
+
+	private static List<TableRows> parseSections(List<Section> sections, SQLStatementParser parser)
+			throws IOException {
+		List<TableRows> parsedSections = new ArrayList<TableRows>();
+		for (Section section : sections) {
+			TableRows tableRows;
+			try {
+				if (section.copyHeader == null) {
+					tableRows = parser.parseInsert(section.bytes);
+				} else {
+					tableRows = parser.parseCopyData(section.copyHeader, section.bytes);
+				}
+			} catch (IOException ioException) {
+				throw parseFailure(section.offset, ioException);
+			}
+
+			// merge the rows of consecutive statements for the same table
+			TableRows previousTableRows = parsedSections.isEmpty() ? null
+					: parsedSections.get(parsedSections.size() - 1);
+			if (previousTableRows != null && previousTableRows.tableDefinition == tableRows.tableDefinition) {
+				previousTableRows.rows.addAll(tableRows.rows);
+			} else {
+				parsedSections.add(tableRows);
+			}
+		}
+		return parsedSections;
+	}
+
+	private static IOException parseFailure(long offset, IOException cause) {
+		return new IOException("Couldn't parse the statement at byte " + offset + ": " + cause.getMessage(), cause);
+	}
+
+	private List<TableRows> await(Future<List<TableRows>> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException executionException) {
+			Throwable cause = executionException.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw executionException;
+		}
+	}
+
+	/**
+	 * Pass the rows of a parsed chunk on to the sink, switching tables as
+	 * needed.
+	 */
+	private void deliver(List<TableRows> parsedChunk) throws Exception {
+		for (TableRows tableRows : parsedChunk) {
+			if (tableRows.tableDefinition != currentTable) {
+				finishCurrentTable();
+				if (!startedTables.add(tableRows.tableDefinition)) {
+					throw new IOException("The rows of table " + tableRows.tableDefinition.getTableName()
+							+ " aren't all together in the dump");
+				}
+				currentTable = tableRows.tableDefinition;
+				rowBuffer = new RowBuffer(sink, currentTable);
+				sink.startTable(currentTable);
+			}
+
+			for (int rowIndex = 0; rowIndex < tableRows.rows.size(); rowIndex++) {
+				rowBuffer.add(tableRows.rows.get(rowIndex));
+			}
+		}
+	}
+
+	private void finishCurrentTable() throws Exception {
+		if (currentTable != null) {
+			rowBuffer.flush();
+			sink.finishTable(currentTable);
+			currentTable = null;
+			rowBuffer = null;
+		}
+	}
+}
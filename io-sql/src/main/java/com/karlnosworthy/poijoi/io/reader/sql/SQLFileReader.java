@@ -0,0 +1,112 @@
+package com.karlnosworthy.poijoi.io.reader.sql;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.MetaDataRowSink;
+import com.karlnosworthy.poijoi.io.RowSink;
+import com.karlnosworthy.poijoi.io.SupportsFormat;
+import com.karlnosworthy.poijoi.io.reader.ConfigurableReader;
+import com.karlnosworthy.poijoi.io.reader.FileReader;
+import com.karlnosworthy.poijoi.io.reader.RowSource;
+import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
+
+/**
+ * Reads the tables, indexes and rows of a SQL dump (e.g. as written by the
+ * SQL writers or SQLite's .dump command) without needing a database to replay
+ * it into.
+ *
+ * The CREATE TABLE, CREATE INDEX and INSERT statements, along with the data
+ * of any {@code COPY ... FROM stdin} statements, are read from a memory
+ * mapped copy of the file, with everything else (e.g. PRAGMAs and
+ * transactions) being ignored. The values inserted have to be literals and
+ * strings have to use the standard SQL escaping of doubling any quotes.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+@SupportsFormat(type = "SQL", stateless = true)
+public class SQLFileReader implements FileReader, RowSource<File>, ConfigurableReader<File> {
+
+	/**
+	 * The name of the character set the dump is encoded with, defaults to
+	 * UTF-8. This is the same option the SQL writers use.
+	 */
+	public static final String OPTION_CHARSET = "--sql-charset";
+
+	/**
+	 * The number of threads used to parse the INSERT statements of the dump,
+	 * defaults to the number of processors.
+	 */
+	public static final String OPTION_PARSE_THREADS = "--sql-parse-threads";
+
+	/**
+	 * The number of bytes of INSERT statements each thread is given to parse
+	 * at a time.
+	 */
+	public static final String OPTION_PARSE_CHUNK_SIZE = "--sql-parse-chunk-size";
+
+	static final int DEFAULT_PARSE_CHUNK_SIZE = 1024 * 1024;
+
+	/**
+	 * The characters the statements are split on, which have to be encoded as
+	 * they are in ASCII.
+	 */
+	private static final String SCANNED_CHARACTERS = ";'\"`[]-/*\\.\r\n\t\f CREATEINSERTREPLACECOPYSTDINcreateinsertreplacecopystdin";
+
+	@Override
+	public PoiJoiMetaData read(File input, boolean readData) throws Exception {
+		return read(input, readData, null);
+	}
+
+	@Override
+	public PoiJoiMetaData read(File input, boolean readData, PoiJoiOptions options) throws Exception {
+		MetaDataRowSink sink = new MetaDataRowSink(readData);
+		if (readRows(input, readData, sink, options)) {
+			return sink.getMetaData();
+		}
+		return null;
+	}
+
+	@Override
+	public boolean readRows(File input, boolean readData, RowSink sink, PoiJoiOptions options) throws Exception {
+
+		if (input == null || input.isDirectory() || !input.exists()) {
+			return false;
+		}
+
+		Charset charset = Charset.forName("UTF-8");
+		int numberOfThreads = Runtime.getRuntime().availableProcessors();
+		int chunkSize = DEFAULT_PARSE_CHUNK_SIZE;
+		if (options != null) {
+			if (options.hasValue(OPTION_CHARSET)) {
+				charset = Charset.forName(options.getValue(OPTION_CHARSET).trim());
+			}
+			numberOfThreads = options.getIntValue(OPTION_PARSE_THREADS, numberOfThreads);
+			if (numberOfThreads < 1) {
+				throw new IllegalArgumentException("The value of option " + OPTION_PARSE_THREADS + " must be at least 1: " + numberOfThreads);
+			}
+			chunkSize = options.getIntValue(OPTION_PARSE_CHUNK_SIZE, chunkSize);
+			if (chunkSize < 1) {
+				throw new IllegalArgumentException("The value of option " + OPTION_PARSE_CHUNK_SIZE + " must be at least 1: " + chunkSize);
+			}
+		}
+
+		// the statements are split before being decoded
+		if (!Arrays.equals(SCANNED_CHARACTERS.getBytes(charset), SCANNED_CHARACTERS.getBytes("US-ASCII"))) {
+			throw new IllegalArgumentException("The character set " + charset.name() + " can't be used to read a SQL dump");
+		}
+
+		FileInputStream inputStream = new FileInputStream(input);
+		try {
+			new SQLDumpParser(new SQLStatementScanner(inputStream.getChannel()), charset, numberOfThreads,
+					chunkSize, readData, sink).parse();
+			return true;
+		} finally {
+			inputStream.close();
+		}
+	}
+}
@@ -0,0 +1,589 @@
+package com.karlnosworthy.poijoi.io.reader.sql;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.karlnosworthy.poijoi.io.reader.sql.SQLTokenizer.TokenType;
+import com.karlnosworthy.poijoi.model.ColumnDefinition;
+import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
+import com.karlnosworthy.poijoi.model.IndexDefinition;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+/**
+ * Parses the CREATE TABLE, CREATE INDEX, INSERT and COPY statements of a SQL
+ * dump, building the table definitions from the CREATE statements and typed
+ * rows from the INSERT statements and COPY data.
+ *
+ * An instance isn't thread safe, but any number of instances can share the
+ * same table definitions, which are only ever added to.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+final class SQLStatementParser {
+
+	/**
+	 * Words which start a constraint rather than a column in a CREATE TABLE.
+	 */
+	private static final Set<String> TABLE_CONSTRAINT_WORDS = new HashSet<String>(Arrays.asList(
+			"CONSTRAINT", "PRIMARY", "UNIQUE", "CHECK", "FOREIGN", "KEY", "INDEX", "FULLTEXT", "SPATIAL", "EXCLUDE"));
+
+	/**
+	 * Words which end the type name of a column and start its constraints.
+	 */
+	private static final Set<String> COLUMN_CONSTRAINT_WORDS = new HashSet<String>(Arrays.asList(
+			"CONSTRAINT", "PRIMARY", "NOT", "NULL", "UNIQUE", "DEFAULT", "CHECK", "REFERENCES", "COLLATE",
+			"GENERATED", "AS", "AUTOINCREMENT", "AUTO_INCREMENT", "COMMENT", "ON"));
+
+	private static final String[] DATE_PATTERNS = { "yyyy-MM-dd HH:mm:ss.SSS", "yyyy-MM-dd'T'HH:mm:ss.SSS",
+			"yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd'T'HH:mm:ss", "yyyy-MM-dd" };
+
+	private Map<String, TableDefinition> tableDefinitions;
+	private CharsetDecoder decoder;
+	private SimpleDateFormat[] dateFormats;
+	private SQLTokenizer tokenizer;
+
+	/**
+	 * The rows parsed from a statement, all of which belong to the same table.
+	 */
+	static final class TableRows {
+
+		final TableDefinition tableDefinition;
+		final List<HashMap<String, Object>> rows;
+
+		TableRows(TableDefinition tableDefinition, List<HashMap<String, Object>> rows) {
+			super();
+			this.tableDefinition = tableDefinition;
+			this.rows = rows;
+		}
+	}
+
+	/**
+	 * The table and columns named by a {@code COPY ... FROM stdin} statement,
+	 * needed to parse the data which follows it.
+	 */
+	static final class CopyHeader {
+
+		final TableDefinition tableDefinition;
+		final List<ColumnDefinition> columnDefinitions;
+
+		CopyHeader(TableDefinition tableDefinition, List<ColumnDefinition> columnDefinitions) {
+			super();
+			this.tableDefinition = tableDefinition;
+			this.columnDefinitions = columnDefinitions;
+		}
+	}
+
+	/**
+	 * @param tableDefinitions
+	 *            The tables created so far keyed by name, which must be safe
+	 *            to use from more than one thread if the instances using it
+	 *            are
+	 */
+	SQLStatementParser(Charset charset, Map<String, TableDefinition> tableDefinitions) {
+		super();
+		this.tableDefinitions = tableDefinitions;
+		this.decoder = charset.newDecoder();
+		this.dateFormats = new SimpleDateFormat[DATE_PATTERNS.length];
+		for (int patternIndex = 0; patternIndex < DATE_PATTERNS.length; patternIndex++) {
+			dateFormats[patternIndex] = new SimpleDateFormat(DATE_PATTERNS[patternIndex]);
+			dateFormats[patternIndex].setLenient(false);
+		}
+	}
+
+	/**
+	 * Parse a CREATE statement, adding a new table to the table definitions or
+	 * a new index to its table. Anything other than a table or index (e.g. a
+	 * view) is ignored.
+	 *
+	 * @return The table created, or null if the statement didn't create one
+	 */
+	TableDefinition parseCreate(ByteBuffer statement) throws IOException {
+		start(statement);
+		expectWord("CREATE");
+		while (tokenizer.isWord("TEMP") || tokenizer.isWord("TEMPORARY") || tokenizer.isWord("UNLOGGED")) {
+			tokenizer.advance();
+		}
+
+		if (tokenizer.isWord("TABLE")) {
+			tokenizer.advance();
+			return parseCreateTable();
+		}
+
+		boolean unique = false;
+		if (tokenizer.isWord("UNIQUE")) {
+			tokenizer.advance();
+			unique = true;
+		}
+		if (tokenizer.isWord("INDEX")) {
+			tokenizer.advance();
+			parseCreateIndex(unique);
+		}
+		return null;
+	}
+
+	/**
+	 * Parse an INSERT (or REPLACE) statement with one or more rows of values.
+	 */
+	TableRows parseInsert(ByteBuffer statement) throws IOException {
+		start(statement);
+		if (tokenizer.isWord("INSERT")) {
+			tokenizer.advance();
+			if (tokenizer.isWord("OR")) {
+				tokenizer.advance();
+				tokenizer.advance();
+			}
+		} else {
+			expectWord("REPLACE");
+		}
+		if (tokenizer.isWord("IGNORE")) {
+			tokenizer.advance();
+		}
+		expectWord("INTO");
+
+		TableDefinition tableDefinition = findTable(readName());
+		List<ColumnDefinition> columnDefinitions = tableDefinition.getColumnDefinitions();
+		if (tokenizer.isSymbol('(')) {
+			columnDefinitions = readColumnList(tableDefinition);
+		}
+
+		List<HashMap<String, Object>> rows = new ArrayList<HashMap<String, Object>>();
+		if (tokenizer.isWord("DEFAULT")) {
+			tokenizer.advance();
+			expectWord("VALUES");
+			rows.add(new HashMap<String, Object>());
+			return new TableRows(tableDefinition, rows);
+		}
+		expectWord("VALUES");
+
+		do {
+			expectSymbol('(');
+			HashMap<String, Object> row = new HashMap<String, Object>();
+			for (int columnIndex = 0; columnIndex < columnDefinitions.size(); columnIndex++) {
+				if (columnIndex > 0) {
+					expectSymbol(',');
+				}
+				ColumnDefinition columnDefinition = columnDefinitions.get(columnIndex);
+				Object value = readValue(tableDefinition, columnDefinition);
+				if (value != null) {
+					row.put(columnDefinition.getColumnName(), value);
+				}
+			}
+			if (!tokenizer.isSymbol(')')) {
+				throw new IOException("The number of values doesn't match the " + columnDefinitions.size()
+						+ " columns being inserted into table " + tableDefinition.getTableName());
+			}
+			tokenizer.advance();
+			rows.add(row);
+		} while (acceptSymbol(','));
+
+		return new TableRows(tableDefinition, rows);
+	}
+
+	/**
+	 * Parse a {@code COPY table [(columns)] FROM stdin} statement.
+	 */
+	CopyHeader parseCopy(ByteBuffer statement) throws IOException {
+		start(statement);
+		expectWord("COPY");
+
+		TableDefinition tableDefinition = findTable(readName());
+		List<ColumnDefinition> columnDefinitions = tableDefinition.getColumnDefinitions();
+		if (tokenizer.isSymbol('(')) {
+			columnDefinitions = readColumnList(tableDefinition);
+		}
+		return new CopyHeader(tableDefinition, columnDefinitions);
+	}
+
+	/**
+	 * Parse the lines of tab separated values following a COPY statement, in
+	 * which \N stands for a missing value.
+	 */
+	TableRows parseCopyData(CopyHeader copyHeader, ByteBuffer data) throws IOException {
+		CharSequence text = decoder.reset().decode(data);
+		List<ColumnDefinition> columnDefinitions = copyHeader.columnDefinitions;
+		List<HashMap<String, Object>> rows = new ArrayList<HashMap<String, Object>>();
+		StringBuilder builder = new StringBuilder();
+
+		int lineStart = 0;
+		while (lineStart < text.length()) {
+			HashMap<String, Object> row = new HashMap<String, Object>();
+			int columnIndex = 0;
+			int position = lineStart;
+			boolean endOfLine = false;
+
+			while (!endOfLine) {
+				builder.setLength(0);
+				boolean isNull = false;
+				while (position < text.length()) {
+					char character = text.charAt(position++);
+					if (character == '\t') {
+						break;
+					} else if (character == '\n') {
+						endOfLine = true;
+						break;
+					} else if (character == '\\' && position < text.length()) {
+						char escaped = text.charAt(position++);
+						switch (escaped) {
+							case 'N':
+								isNull = true;
+								break;
+							case 't':
+								builder.append('\t');
+								break;
+							case 'n':
+								builder.append('\n');
+								break;
+							case 'r':
+								builder.append('\r');
+								break;
+							case 'b':
+								builder.append('\b');
+								break;
+							case 'f':
+								builder.append('\f');
+								break;
+							default:
+								builder.append(escaped);
+						}
+					} else if (character != '\r' || (position < text.length() && text.charAt(position) != '\n')) {
+						builder.append(character);
+					}
+				}
+				if (position >= text.length()) {
+					endOfLine = true;
+				}
+
+				if (columnIndex >= columnDefinitions.size()) {
+					throw new IOException("A line of the COPY data for table " + copyHeader.tableDefinition.getTableName()
+							+ " has more than " + columnDefinitions.size() + " values");
+				}
+				ColumnDefinition columnDefinition = columnDefinitions.get(columnIndex++);
+				if (!isNull) {
+					row.put(columnDefinition.getColumnName(),
+							convert(copyHeader.tableDefinition, columnDefinition, builder.toString(), false));
+				}
+			}
+
+			if (columnIndex != columnDefinitions.size()) {
+				throw new IOException("A line of the COPY data for table " + copyHeader.tableDefinition.getTableName()
+						+ " has " + columnIndex + " values rather than " + columnDefinitions.size());
+			}
+			rows.add(row);
+			lineStart = position;
+		}
+		return new TableRows(copyHeader.tableDefinition, rows);
+	}
+
+	private void start(ByteBuffer statement) throws IOException {
+		tokenizer = new SQLTokenizer(decoder.reset().decode(statement));
+	}
+
+	private TableDefinition parseCreateTable() throws IOException {
+		skipIfNotExists();
+		String tableName = readName();
+		if (!tokenizer.isSymbol('(')) {
+			// e.g. CREATE TABLE ... AS SELECT, which has no columns to read
+			return null;
+		}
+		tokenizer.advance();
+
+		List<ColumnDefinition> columnDefinitions = new ArrayList<ColumnDefinition>();
+		do {
+			if (tokenizer.getType() == TokenType.WORD
+					&& TABLE_CONSTRAINT_WORDS.contains(tokenizer.getValue().toUpperCase())) {
+				skipToEndOfElement();
+				continue;
+			}
+
+			String columnName = readName();
+			StringBuilder typeName = new StringBuilder();
+			while (tokenizer.getType() == TokenType.WORD
+					&& !COLUMN_CONSTRAINT_WORDS.contains(tokenizer.getValue().toUpperCase())) {
+				typeName.append(tokenizer.getValue().toUpperCase()).append(' ');
+				tokenizer.advance();
+			}
+			skipToEndOfElement();
+
+			columnDefinitions.add(new ColumnDefinition(columnName, columnDefinitions.size(),
+					columnType(typeName.toString())));
+		} while (acceptSymbol(','));
+		expectSymbol(')');
+
+		if (findTableOrNull(tableName) != null) {
+			throw new IOException("Table " + tableName + " is created more than once");
+		}
+
+		// indexes created later in the dump are added to the table
+		TableDefinition tableDefinition = new TableDefinition(tableName, columnDefinitions,
+				new CopyOnWriteArrayList<IndexDefinition>());
+		tableDefinitions.put(tableName, tableDefinition);
+		return tableDefinition;
+	}
+
+	private void parseCreateIndex(boolean unique) throws IOException {
+		if (tokenizer.isWord("CONCURRENTLY")) {
+			tokenizer.advance();
+		}
+		skipIfNotExists();
+		String indexName = readName();
+		expectWord("ON");
+		if (tokenizer.isWord("ONLY")) {
+			tokenizer.advance();
+		}
+		TableDefinition tableDefinition = findTable(readName());
+		if (tokenizer.isWord("USING")) {
+			tokenizer.advance();
+			tokenizer.advance();
+		}
+
+		expectSymbol('(');
+		List<String> columnNames = new ArrayList<String>();
+		do {
+			columnNames.add(findColumn(tableDefinition, readName()).getColumnName());
+			skipToEndOfElement();
+		} while (acceptSymbol(','));
+		expectSymbol(')');
+
+		tableDefinition.getIndexDefinitions().add(new IndexDefinition(indexName,
+				tableDefinition.getTableName(), columnNames.toArray(new String[columnNames.size()]), unique));
+	}
+
+	private List<ColumnDefinition> readColumnList(TableDefinition tableDefinition) throws IOException {
+		expectSymbol('(');
+		List<ColumnDefinition> columnDefinitions = new ArrayList<ColumnDefinition>();
+		do {
+			columnDefinitions.add(findColumn(tableDefinition, readName()));
+		} while (acceptSymbol(','));
+		expectSymbol(')');
+		return columnDefinitions;
+	}
+
+	/**
+	 * Read a literal value, converting it to the type of its column.
+	 */
+	private Object readValue(TableDefinition tableDefinition, ColumnDefinition columnDefinition) throws IOException {
+		String sign = "";
+		if (tokenizer.isSymbol('-') || tokenizer.isSymbol('+')) {
+			sign = tokenizer.getValue();
+			tokenizer.advance();
+		}
+
+		Object value;
+		String text = tokenizer.getValue();
+		switch (tokenizer.getType()) {
+			case NUMBER:
+				value = convert(tableDefinition, columnDefinition, sign + text, true);
+				break;
+			case STRING:
+				value = convert(tableDefinition, columnDefinition, text, false);
+				break;
+			case WORD:
+				if (text.equalsIgnoreCase("NULL")) {
+					value = null;
+				} else if (text.equalsIgnoreCase("TRUE") || text.equalsIgnoreCase("FALSE")) {
+					boolean isTrue = text.equalsIgnoreCase("TRUE");
+					if (columnDefinition.getColumnType() == ColumnType.STRING) {
+						value = String.valueOf(isTrue);
+					} else {
+						value = convert(tableDefinition, columnDefinition, isTrue ? "1" : "0", true);
+					}
+				} else {
+					throw new IOException("Unsupported value " + text + " for column "
+							+ columnDefinition.getColumnName() + " of table " + tableDefinition.getTableName());
+				}
+				break;
+			default:
+				throw new IOException("Unexpected '" + text + "' in the values for table " + tableDefinition.getTableName());
+		}
+		tokenizer.advance();
+		return value;
+	}
+
+	private Object convert(TableDefinition tableDefinition, ColumnDefinition columnDefinition, String text,
+			boolean isNumber) throws IOException {
+		try {
+			switch (columnDefinition.getColumnType()) {
+				case INTEGER_NUMBER:
+					return toInteger(text.trim());
+				case DECIMAL_NUMBER:
+					return Double.valueOf(text.trim());
+				case DATE:
+					return isNumber ? new Date(Long.parseLong(text)) : toDate(text.trim());
+				default:
+					return text;
+			}
+		} catch (NumberFormatException numberFormatException) {
+			throw new IOException("Invalid value '" + text + "' for column " + columnDefinition.getColumnName()
+					+ " of table " + tableDefinition.getTableName());
+		}
+	}
+
+	/**
+	 * An Integer if the value fits in one (which is what the other readers
+	 * use), otherwise a Long, or the Double given if it isn't whole.
+	 */
+	private Object toInteger(String text) {
+		long value;
+		try {
+			value = Long.parseLong(text);
+		} catch (NumberFormatException numberFormatException) {
+			Double decimalValue = Double.valueOf(text);
+			if (decimalValue.doubleValue() != Math.rint(decimalValue.doubleValue())
+					|| Math.abs(decimalValue.doubleValue()) >= Long.MAX_VALUE) {
+				return decimalValue;
+			}
+			value = decimalValue.longValue();
+		}
+
+		if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+			return Integer.valueOf((int) value);
+		}
+		return Long.valueOf(value);
+	}
+
+	private Date toDate(String text) {
+		for (SimpleDateFormat dateFormat : dateFormats) {
+			ParsePosition parsePosition = new ParsePosition(0);
+			Date date = dateFormat.parse(text, parsePosition);
+			if (date != null && parsePosition.getIndex() == text.length()) {
+				return date;
+			}
+		}
+		throw new NumberFormatException(text);
+	}
+
+	/**
+	 * Works out the type of a column from its declared type, along the lines
+	 * of SQLite's type affinity rules.
+	 */
+	private ColumnType columnType(String typeName) {
+		if (typeName.contains("INT") || typeName.contains("SERIAL")) {
+			return ColumnType.INTEGER_NUMBER;
+		} else if (typeName.contains("CHAR") || typeName.contains("CLOB") || typeName.contains("TEXT")) {
+			return ColumnType.STRING;
+		} else if (typeName.contains("REAL") || typeName.contains("FLOA") || typeName.contains("DOUB")
+				|| typeName.contains("DEC") || typeName.contains("NUMERIC")) {
+			return ColumnType.DECIMAL_NUMBER;
+		} else if (typeName.contains("DATE") || typeName.contains("TIME")) {
+			return ColumnType.DATE;
+		}
+		return ColumnType.STRING;
+	}
+
+	private TableDefinition findTable(String tableName) throws IOException {
+		TableDefinition tableDefinition = findTableOrNull(tableName);
+		if (tableDefinition == null) {
+			throw new IOException("Table " + tableName + " is used before it has been created");
+		}
+		return tableDefinition;
+	}
+
+	private TableDefinition findTableOrNull(String tableName) {
+		TableDefinition tableDefinition = tableDefinitions.get(tableName);
+		if (tableDefinition == null) {
+			for (String name : tableDefinitions.keySet()) {
+				if (name.equalsIgnoreCase(tableName)) {
+					return tableDefinitions.get(name);
+				}
+			}
+		}
+		return tableDefinition;
+	}
+
+	/**
+	 * Find a column by name, allowing for the '.' in a column name having been
+	 * replaced with '_' when the table was created (as the SQL writers do).
+	 */
+	private ColumnDefinition findColumn(TableDefinition tableDefinition, String columnName) throws IOException {
+		for (ColumnDefinition columnDefinition : tableDefinition.getColumnDefinitions()) {
+			if (columnDefinition.getColumnName().equalsIgnoreCase(columnName)
+					|| columnDefinition.getColumnName().equalsIgnoreCase(columnName.replace('.', '_'))) {
+				return columnDefinition;
+			}
+		}
+		throw new IOException("Table " + tableDefinition.getTableName() + " doesn't have a column named " + columnName);
+	}
+
+	/**
+	 * Read a possibly quoted and schema qualified name, returning the name
+	 * without the schema.
+	 */
+	private String readName() throws IOException {
+		String name;
+		do {
+			if (tokenizer.getType() != TokenType.WORD && tokenizer.getType() != TokenType.IDENTIFIER
+					&& tokenizer.getType() != TokenType.STRING) {
+				throw new IOException("Expected a name but found '" + tokenizer.getValue() + "'");
+			}
+			name = tokenizer.getValue();
+			tokenizer.advance();
+		} while (acceptSymbol('.'));
+		return name;
+	}
+
+	private void skipIfNotExists() throws IOException {
+		if (tokenizer.isWord("IF")) {
+			tokenizer.advance();
+			expectWord("NOT");
+			expectWord("EXISTS");
+		}
+	}
+
+	/**
+	 * Skip to the comma or closing bracket which ends the current element of a
+	 * bracketed list, stepping over any nested brackets.
+	 */
+	private void skipToEndOfElement() throws IOException {
+		int depth = 0;
+		while (tokenizer.getType() != TokenType.END) {
+			if (tokenizer.isSymbol('(')) {
+				depth++;
+			} else if (tokenizer.isSymbol(')')) {
+				if (depth == 0) {
+					return;
+				}
+				depth--;
+			} else if (tokenizer.isSymbol(',') && depth == 0) {
+				return;
+			}
+			tokenizer.advance();
+		}
+		throw new IOException("Unexpected end of statement, expected ')'");
+	}
+
+	private void expectWord(String word) throws IOException {
+		if (!tokenizer.isWord(word)) {
+			throw new IOException("Expected " + word + " but found '" + tokenizer.getValue() + "'");
+		}
+		tokenizer.advance();
+	}
+
+	private void expectSymbol(char symbol) throws IOException {
+		if (!tokenizer.isSymbol(symbol)) {
+			throw new IOException("Expected '" + symbol + "' but found '" + tokenizer.getValue() + "'");
+		}
+		tokenizer.advance();
+	}
+
+	private boolean acceptSymbol(char symbol) throws IOException {
+		if (tokenizer.isSymbol(symbol)) {
+			tokenizer.advance();
+			return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,340 @@
+package com.karlnosworthy.poijoi.io.reader.sql;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Splits a SQL dump into its statements in a single pass over the bytes of a
+ * memory mapped file, without decoding them, so that each statement can be
+ * decoded and parsed separately (and on another thread).
+ *
+ * A statement ends at a semicolon which isn't inside a quoted string or
+ * identifier or a comment. This relies on the dump being in a character set
+ * which encodes these characters as single bytes, as ASCII does, and which
+ * never uses those bytes as part of another character (e.g. UTF-8 or
+ * ISO-8859-1).
+ *
+ * The file is mapped a window at a time, so dumps larger than a single
+ * mapping can be scanned, with the window being moved on to start at the
+ * statement being scanned when it runs off the end of the current one.
+ *
+ * The data following a {@code COPY ... FROM stdin} statement is returned as
+ * a statement of its own, up to (but not including) the line holding the
+ * {@code \.} which ends it.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+final class SQLStatementScanner {
+
+	enum StatementType {
+		CREATE, INSERT, COPY, COPY_DATA, OTHER
+	}
+
+	private static final int MORE_INPUT_NEEDED = -1;
+
+	private FileChannel channel;
+	private long fileSize;
+	private long windowSize;
+	private ByteBuffer window;
+	private long windowOffset;
+	private int position;
+	private boolean copyDataNext;
+
+	private int statementStart;
+	private int statementEnd;
+	private StatementType statementType;
+
+	SQLStatementScanner(FileChannel channel) throws IOException {
+		this(channel, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param windowSize
+	 *            The largest number of bytes to map at once, which is also the
+	 *            size of the largest statement which can be scanned
+	 */
+	SQLStatementScanner(FileChannel channel, long windowSize) throws IOException {
+		super();
+		this.channel = channel;
+		this.fileSize = channel.size();
+		this.windowSize = Math.min(windowSize, Integer.MAX_VALUE);
+		mapWindow(0);
+		skipByteOrderMark();
+	}
+
+	/**
+	 * Move on to the next statement.
+	 *
+	 * @return True if there was another statement otherwise false
+	 */
+	boolean next() throws IOException {
+		while (true) {
+			int start;
+			int end;
+			if (copyDataNext) {
+				start = startOfNextLine(position);
+				if (start == MORE_INPUT_NEEDED && isLastWindow()) {
+					throw new IOException("The COPY statement ending at byte " + (windowOffset + position) + " isn't followed by any data");
+				}
+				end = start == MORE_INPUT_NEEDED ? MORE_INPUT_NEEDED : findEndOfCopyData(start);
+			} else {
+				start = skipWhitespace(position);
+				if (start == MORE_INPUT_NEEDED) {
+					mapWindow(windowOffset + window.limit());
+					continue;
+				} else if (start == window.limit()) {
+					return false;
+				}
+				end = findEndOfStatement(start);
+			}
+
+			if (end == MORE_INPUT_NEEDED) {
+				// start the window at the statement so all of it is mapped
+				int windowStart = copyDataNext ? position : start;
+				if (windowStart == 0) {
+					throw new IOException("The statement at byte " + windowOffset + " is larger than " + windowSize + " bytes");
+				}
+				mapWindow(windowOffset + windowStart);
+				continue;
+			}
+
+			statementStart = start;
+			statementEnd = end;
+			if (copyDataNext) {
+				statementType = StatementType.COPY_DATA;
+				position = startOfNextLine(end);
+				if (position == MORE_INPUT_NEEDED) {
+					position = window.limit();
+				}
+				copyDataNext = false;
+				return true;
+			}
+
+			position = end < window.limit() ? end + 1 : end;
+			if (end > start) {
+				statementType = typeOf(start, end);
+				copyDataNext = statementType == StatementType.COPY && containsIgnoringCase(start, end, "STDIN");
+				return true;
+			}
+		}
+	}
+
+	StatementType getStatementType() {
+		return statementType;
+	}
+
+	/**
+	 * The bytes of the current statement, without the semicolon ending it.
+	 * The buffer remains valid after the scanner has moved on.
+	 */
+	ByteBuffer getStatement() {
+		ByteBuffer statement = window.duplicate();
+		statement.position(statementStart);
+		statement.limit(statementEnd);
+		return statement.slice();
+	}
+
+	/**
+	 * The position in the file of the first byte of the current statement.
+	 */
+	long getStatementOffset() {
+		return windowOffset + statementStart;
+	}
+
+	private void mapWindow(long offset) throws IOException {
+		windowOffset = offset;
+		window = channel.map(MapMode.READ_ONLY, offset, Math.min(windowSize, fileSize - offset));
+		position = 0;
+	}
+
+	private boolean isLastWindow() {
+		return windowOffset + window.limit() >= fileSize;
+	}
+
+	private void skipByteOrderMark() {
+		if (window.limit() >= 3 && (window.get(0) & 0xFF) == 0xEF
+				&& (window.get(1) & 0xFF) == 0xBB && (window.get(2) & 0xFF) == 0xBF) {
+			position = 3;
+		}
+	}
+
+	private int skipWhitespace(int index) {
+		int limit = window.limit();
+		while (index < limit) {
+			byte value = window.get(index);
+			if (value != ' ' && value != '\t' && value != '\r' && value != '\n' && value != '\f') {
+				return index;
+			}
+			index++;
+		}
+		return isLastWindow() ? limit : MORE_INPUT_NEEDED;
+	}
+
+	private int findEndOfStatement(int index) {
+		int limit = window.limit();
+		byte closingQuote = 0;
+
+		while (index < limit) {
+			byte value = window.get(index);
+			if (closingQuote != 0) {
+				// a doubled quote simply closes and reopens the string
+				if (value == closingQuote) {
+					closingQuote = 0;
+				}
+				index++;
+				continue;
+			}
+
+			switch (value) {
+				case '\'':
+				case '"':
+				case '`':
+					closingQuote = value;
+					break;
+				case '[':
+					closingQuote = ']';
+					break;
+				case ';':
+					return index;
+				case '-':
+				case '/':
+					if (index + 1 >= limit) {
+						return isLastWindow() ? limit : MORE_INPUT_NEEDED;
+					}
+					byte nextValue = window.get(index + 1);
+					if (value == '-' && nextValue == '-') {
+						index = startOfNextLine(index);
+						if (index == MORE_INPUT_NEEDED) {
+							return isLastWindow() ? limit : MORE_INPUT_NEEDED;
+						}
+						continue;
+					} else if (value == '/' && nextValue == '*') {
+						index = endOfBlockComment(index + 2);
+						if (index == MORE_INPUT_NEEDED) {
+							return isLastWindow() ? limit : MORE_INPUT_NEEDED;
+						}
+						continue;
+					}
+					break;
+			}
+			index++;
+		}
+		return isLastWindow() ? limit : MORE_INPUT_NEEDED;
+	}
+
+	/**
+	 * Find the line holding only {@code \.} which ends a section of COPY data
+	 * starting at the given line.
+	 */
+	private int findEndOfCopyData(int lineStart) throws IOException {
+		int limit = window.limit();
+		while (lineStart < limit) {
+			if (window.get(lineStart) == '\\' && lineStart + 1 < limit && window.get(lineStart + 1) == '.') {
+				int afterMarker = lineStart + 2;
+				if (afterMarker == limit && isLastWindow()) {
+					return lineStart;
+				} else if (afterMarker < limit && (window.get(afterMarker) == '\n' || window.get(afterMarker) == '\r')) {
+					return lineStart;
+				}
+			}
+
+			lineStart = startOfNextLine(lineStart);
+			if (lineStart == MORE_INPUT_NEEDED) {
+				break;
+			}
+		}
+
+		if (isLastWindow()) {
+			throw new IOException("The COPY data starting at byte " + (windowOffset + position) + " isn't ended by a \\. line");
+		}
+		return MORE_INPUT_NEEDED;
+	}
+
+	private int startOfNextLine(int index) {
+		int limit = window.limit();
+		while (index < limit) {
+			if (window.get(index++) == '\n') {
+				return index;
+			}
+		}
+		return MORE_INPUT_NEEDED;
+	}
+
+	private int endOfBlockComment(int index) {
+		int limit = window.limit();
+		while (index + 1 < limit) {
+			if (window.get(index) == '*' && window.get(index + 1) == '/') {
+				return index + 2;
+			}
+			index++;
+		}
+		return MORE_INPUT_NEEDED;
+	}
+
+	/**
+	 * Work out the type of statement from its first word, skipping any
+	 * comments ahead of it.
+	 */
+	private StatementType typeOf(int start, int end) {
+		int index = start;
+		while (index < end) {
+			byte value = window.get(index);
+			if (value == ' ' || value == '\t' || value == '\r' || value == '\n' || value == '\f') {
+				index++;
+			} else if (value == '-' && index + 1 < end && window.get(index + 1) == '-') {
+				index = startOfNextLine(index);
+				if (index == MORE_INPUT_NEEDED || index > end) {
+					return StatementType.OTHER;
+				}
+			} else if (value == '/' && index + 1 < end && window.get(index + 1) == '*') {
+				index = endOfBlockComment(index + 2);
+				if (index == MORE_INPUT_NEEDED || index > end) {
+					return StatementType.OTHER;
+				}
+			} else {
+				break;
+			}
+		}
+
+		if (startsWithIgnoringCase(index, end, "CREATE")) {
+			return StatementType.CREATE;
+		} else if (startsWithIgnoringCase(index, end, "INSERT") || startsWithIgnoringCase(index, end, "REPLACE")) {
+			return StatementType.INSERT;
+		} else if (startsWithIgnoringCase(index, end, "COPY")) {
+			return StatementType.COPY;
+		}
+		return StatementType.OTHER;
+	}
+
+	private boolean startsWithIgnoringCase(int index, int end, String word) {
+		if (index + word.length() > end) {
+			return false;
+		}
+		for (int offset = 0; offset < word.length(); offset++) {
+			if (Character.toUpperCase((char) window.get(index + offset)) != word.charAt(offset)) {
+				return false;
+			}
+		}
+		if (index + word.length() == end) {
+			return true;
+		}
+		char following = (char) window.get(index + word.length());
+		return !Character.isLetterOrDigit(following) && following != '_';
+	}
+
+	private boolean containsIgnoringCase(int start, int end, String word) {
+		for (int index = start; index + word.length() <= end; index++) {
+			boolean matches = true;
+			for (int offset = 0; offset < word.length() && matches; offset++) {
+				matches = Character.toUpperCase((char) window.get(index + offset)) == word.charAt(offset);
+			}
+			if (matches) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
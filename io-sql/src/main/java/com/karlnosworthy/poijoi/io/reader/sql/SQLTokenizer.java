@@ -0,0 +1,182 @@
+package com.karlnosworthy.poijoi.io.reader.sql;
+
+import java.io.IOException;
+
+/**
+ * Splits the text of a single SQL statement into tokens, skipping any
+ * whitespace and comments between them.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+final class SQLTokenizer {
+
+	enum TokenType {
+		/** An unquoted word, e.g. a keyword or a plain identifier */
+		WORD,
+		/** A "quoted", `quoted` or [quoted] identifier */
+		IDENTIFIER,
+		/** A 'quoted' string */
+		STRING,
+		NUMBER,
+		/** Any other single character, e.g. a bracket or comma */
+		SYMBOL,
+		/** The end of the statement */
+		END
+	}
+
+	private CharSequence text;
+	private int position;
+	private TokenType type;
+	private String value;
+	private StringBuilder builder;
+
+	SQLTokenizer(CharSequence text) throws IOException {
+		super();
+		this.text = text;
+		this.builder = new StringBuilder();
+		advance();
+	}
+
+	TokenType getType() {
+		return type;
+	}
+
+	/**
+	 * The text of the current token, without the quotes of a quoted string or
+	 * identifier.
+	 */
+	String getValue() {
+		return value;
+	}
+
+	boolean isWord(String word) {
+		return type == TokenType.WORD && value.equalsIgnoreCase(word);
+	}
+
+	boolean isSymbol(char symbol) {
+		return type == TokenType.SYMBOL && value.charAt(0) == symbol;
+	}
+
+	/**
+	 * Move on to the next token.
+	 */
+	void advance() throws IOException {
+		skipWhitespaceAndComments();
+		if (position >= text.length()) {
+			type = TokenType.END;
+			value = "";
+			return;
+		}
+
+		char character = text.charAt(position);
+		if (character == '\'') {
+			type = TokenType.STRING;
+			value = readQuoted('\'');
+		} else if (character == '"') {
+			type = TokenType.IDENTIFIER;
+			value = readQuoted('"');
+		} else if (character == '`') {
+			type = TokenType.IDENTIFIER;
+			value = readQuoted('`');
+		} else if (character == '[') {
+			type = TokenType.IDENTIFIER;
+			value = readQuoted(']');
+		} else if (isDigit(position) || (character == '.' && isDigit(position + 1))) {
+			type = TokenType.NUMBER;
+			value = readNumber();
+		} else if (Character.isLetter(character) || character == '_') {
+			type = TokenType.WORD;
+			value = readWord();
+		} else {
+			type = TokenType.SYMBOL;
+			value = String.valueOf(character);
+			position++;
+		}
+	}
+
+	private void skipWhitespaceAndComments() {
+		while (position < text.length()) {
+			char character = text.charAt(position);
+			if (Character.isWhitespace(character)) {
+				position++;
+			} else if (character == '-' && position + 1 < text.length() && text.charAt(position + 1) == '-') {
+				while (position < text.length() && text.charAt(position) != '\n') {
+					position++;
+				}
+			} else if (character == '/' && position + 1 < text.length() && text.charAt(position + 1) == '*') {
+				position += 2;
+				while (position + 1 < text.length() && !(text.charAt(position) == '*' && text.charAt(position + 1) == '/')) {
+					position++;
+				}
+				position += 2;
+			} else {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Read a quoted string or identifier, in which the closing quote is
+	 * escaped by doubling it.
+	 */
+	private String readQuoted(char closingQuote) throws IOException {
+		int start = position++;
+		builder.setLength(0);
+		while (position < text.length()) {
+			char character = text.charAt(position++);
+			if (character == closingQuote) {
+				if (closingQuote != ']' && position < text.length() && text.charAt(position) == closingQuote) {
+					position++;
+				} else {
+					return builder.toString();
+				}
+			}
+			builder.append(character);
+		}
+		throw new IOException("The quoted value starting at character " + start + " isn't closed");
+	}
+
+	private String readNumber() {
+		int start = position;
+		while (isDigit(position)) {
+			position++;
+		}
+		if (position < text.length() && text.charAt(position) == '.') {
+			position++;
+			while (isDigit(position)) {
+				position++;
+			}
+		}
+		if (position < text.length() && (text.charAt(position) == 'e' || text.charAt(position) == 'E')) {
+			int exponentStart = position++;
+			if (position < text.length() && (text.charAt(position) == '+' || text.charAt(position) == '-')) {
+				position++;
+			}
+			if (isDigit(position)) {
+				while (isDigit(position)) {
+					position++;
+				}
+			} else {
+				position = exponentStart;
+			}
+		}
+		return text.subSequence(start, position).toString();
+	}
+
+	private String readWord() {
+		int start = position;
+		while (position < text.length()) {
+			char character = text.charAt(position);
+			if (!Character.isLetterOrDigit(character) && character != '_' && character != '$') {
+				break;
+			}
+			position++;
+		}
+		return text.subSequence(start, position).toString();
+	}
+
+	private boolean isDigit(int index) {
+		return index < text.length() && text.charAt(index) >= '0' && text.charAt(index) <= '9';
+	}
+}
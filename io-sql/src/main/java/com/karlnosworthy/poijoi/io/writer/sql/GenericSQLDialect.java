@@ -0,0 +1,67 @@
+package com.karlnosworthy.poijoi.io.writer.sql;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.jdbc.SQLStatementCreator;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+/**
+ * Writes plain CREATE TABLE and INSERT statements, as generated by a
+ * {@link SQLStatementCreator}, optionally combining rows into multi-row
+ * INSERT statements (see {@link SQLStatementCreator#OPTION_ROWS_PER_INSERT}).
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public class GenericSQLDialect extends SQLDialect {
+
+	public static final String NAME = "generic";
+
+	private SQLStatementCreator sqlStatementCreator;
+	private int rowsPerInsert;
+	private int maxInsertBytes;
+	private StringBuilder statementBuilder;
+
+	public GenericSQLDialect() {
+		super();
+		this.sqlStatementCreator = new SQLStatementCreator();
+		this.rowsPerInsert = 1;
+		this.maxInsertBytes = SQLStatementCreator.DEFAULT_MAX_INSERT_BYTES;
+		this.statementBuilder = new StringBuilder();
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public void configure(PoiJoiOptions options) {
+		rowsPerInsert = SQLStatementCreator.getRowsPerInsert(options);
+		maxInsertBytes = SQLStatementCreator.getMaxInsertBytes(options);
+	}
+
+	@Override
+	public void writeCreateTable(Writer writer, TableDefinition tableDefinition) throws IOException {
+		writer.write(sqlStatementCreator.buildCreateTableStatement(tableDefinition));
+		writer.write('\n');
+	}
+
+	@Override
+	public void writeRows(Writer writer, TableDefinition tableDefinition,
+			List<HashMap<String, Object>> rows) throws IOException {
+
+		int rowIndex = 0;
+		while (rowIndex < rows.size()) {
+			statementBuilder.setLength(0);
+			rowIndex += sqlStatementCreator.appendInsertTableStatement(statementBuilder,
+					tableDefinition, rows, rowIndex, rowsPerInsert, maxInsertBytes);
+			statementBuilder.append('\n');
+			writer.append(statementBuilder);
+		}
+	}
+}
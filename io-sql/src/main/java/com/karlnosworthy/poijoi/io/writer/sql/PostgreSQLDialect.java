@@ -0,0 +1,170 @@
+package com.karlnosworthy.poijoi.io.writer.sql;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+import com.karlnosworthy.poijoi.model.ColumnDefinition;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+/**
+ * Writes a dump for replaying into PostgreSQL (e.g. using psql), with the
+ * data of each table written as a {@code COPY ... FROM stdin} section of tab
+ * separated rows rather than as INSERT statements, all inside a transaction.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public class PostgreSQLDialect extends SQLDialect {
+
+	public static final String NAME = "postgresql";
+
+	private static final String NULL_VALUE = "\\N";
+
+	private SimpleDateFormat dateFormat;
+	private StringBuilder rowBuilder;
+
+	public PostgreSQLDialect() {
+		super();
+		this.dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+		this.rowBuilder = new StringBuilder();
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean isTransactional() {
+		return true;
+	}
+
+	@Override
+	public void writeBeginTransaction(Writer writer) throws IOException {
+		writer.write("BEGIN;\n");
+	}
+
+	@Override
+	public void writeCreateTable(Writer writer, TableDefinition tableDefinition) throws IOException {
+		writer.write("CREATE TABLE ");
+		writeIdentifier(writer, tableDefinition.getTableName());
+		writer.write(" (");
+
+		boolean first = true;
+		if (!tableDefinition.providesIDColumn()) {
+			writer.write("id SERIAL PRIMARY KEY");
+			first = false;
+		}
+
+		for (ColumnDefinition columnDefinition : tableDefinition.getColumnDefinitions()) {
+			if (!first) {
+				writer.write(",");
+			}
+			first = false;
+
+			writeIdentifier(writer, columnName(columnDefinition));
+			switch (columnDefinition.getColumnType()) {
+				case STRING:
+					writer.write(" TEXT");
+					break;
+				case INTEGER_NUMBER:
+					writer.write(" BIGINT");
+					break;
+				case DECIMAL_NUMBER:
+					writer.write(" DOUBLE PRECISION");
+					break;
+				case DATE:
+					writer.write(" TIMESTAMP");
+					break;
+			}
+		}
+		writer.write(");\n");
+	}
+
+	@Override
+	public void startData(Writer writer, TableDefinition tableDefinition) throws IOException {
+		writer.write("COPY ");
+		writeIdentifier(writer, tableDefinition.getTableName());
+		writer.write(" (");
+
+		boolean first = true;
+		for (ColumnDefinition columnDefinition : tableDefinition.getColumnDefinitions()) {
+			if (!first) {
+				writer.write(",");
+			}
+			first = false;
+			writeIdentifier(writer, columnName(columnDefinition));
+		}
+		writer.write(") FROM stdin;\n");
+	}
+
+	/**
+	 * Writes each row as a line of tab separated values, one for every column
+	 * of the table, with \N standing in for any missing values.
+	 */
+	@Override
+	public void writeRows(Writer writer, TableDefinition tableDefinition,
+			List<HashMap<String, Object>> rows) throws IOException {
+
+		List<ColumnDefinition> columnDefinitions = tableDefinition.getColumnDefinitions();
+		for (HashMap<String, Object> row : rows) {
+			rowBuilder.setLength(0);
+			for (int columnIndex = 0; columnIndex < columnDefinitions.size(); columnIndex++) {
+				if (columnIndex > 0) {
+					rowBuilder.append('\t');
+				}
+				appendValue(rowBuilder, row.get(columnDefinitions.get(columnIndex).getColumnName()));
+			}
+			rowBuilder.append('\n');
+			writer.append(rowBuilder);
+		}
+	}
+
+	@Override
+	public void finishData(Writer writer, TableDefinition tableDefinition) throws IOException {
+		writer.write("\\.\n");
+	}
+
+	private void appendValue(StringBuilder builder, Object value) {
+		if (value == null) {
+			builder.append(NULL_VALUE);
+		} else if (value instanceof Date) {
+			builder.append(dateFormat.format((Date) value));
+		} else {
+			String text = value.toString();
+			for (int index = 0; index < text.length(); index++) {
+				char character = text.charAt(index);
+				switch (character) {
+					case '\\':
+						builder.append("\\\\");
+						break;
+					case '\t':
+						builder.append("\\t");
+						break;
+					case '\n':
+						builder.append("\\n");
+						break;
+					case '\r':
+						builder.append("\\r");
+						break;
+					default:
+						builder.append(character);
+				}
+			}
+		}
+	}
+
+	private String columnName(ColumnDefinition columnDefinition) {
+		return columnDefinition.getColumnName().replace('.', '_');
+	}
+
+	private void writeIdentifier(Writer writer, String identifier) throws IOException {
+		writer.write('"');
+		writer.write(identifier.replace("\"", "\"\""));
+		writer.write('"');
+	}
+}
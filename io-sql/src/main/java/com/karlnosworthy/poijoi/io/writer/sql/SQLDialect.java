@@ -0,0 +1,134 @@
+package com.karlnosworthy.poijoi.io.writer.sql;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ServiceLoader;
+
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+/**
+ * Decides how the statements of a SQL dump are written for a particular
+ * database, so that the dump can be replayed as quickly as that database
+ * allows.
+ *
+ * Dialects are found using a {@link ServiceLoader}, so additional ones can be
+ * provided by listing them in a
+ * {@code META-INF/services/com.karlnosworthy.poijoi.io.writer.sql.SQLDialect}
+ * file, and are chosen by name using the {@link #OPTION_DIALECT} option. A
+ * new instance is created for each dump so a dialect can keep state between
+ * calls.
+ *
+ * The methods are called in the following order, with the data of a table
+ * being split into more than one section if a transaction is committed part
+ * way through it:
+ *
+ * <pre>
+ * writePrologue
+ *   (writeCreateTable, (startData, writeRows*, finishData)*)*
+ * writeEpilogue
+ * </pre>
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public abstract class SQLDialect {
+
+	/**
+	 * The name of the dialect to write the dump in, defaults to
+	 * {@link GenericSQLDialect#NAME}.
+	 */
+	public static final String OPTION_DIALECT = "--sql-dialect";
+
+	/**
+	 * The number of rows to write in each transaction, turning transactions on
+	 * for dialects which don't use them by default. Zero (the default) writes
+	 * all of the dump in a single transaction.
+	 */
+	public static final String OPTION_COMMIT_EVERY = "--sql-commit-every";
+
+	/**
+	 * The name used to choose this dialect, compared ignoring case.
+	 */
+	public abstract String getName();
+
+	/**
+	 * Called once before anything is written, with the options for the dump.
+	 */
+	public void configure(PoiJoiOptions options) {
+	}
+
+	/**
+	 * Whether the dump is written inside transactions even if
+	 * {@link #OPTION_COMMIT_EVERY} hasn't been given.
+	 */
+	public boolean isTransactional() {
+		return false;
+	}
+
+	/**
+	 * Write anything which has to come before the first statement, outside
+	 * of any transaction.
+	 */
+	public void writePrologue(Writer writer) throws IOException {
+	}
+
+	public void writeBeginTransaction(Writer writer) throws IOException {
+		writer.write("BEGIN TRANSACTION;\n");
+	}
+
+	public void writeCommitTransaction(Writer writer) throws IOException {
+		writer.write("COMMIT;\n");
+	}
+
+	public abstract void writeCreateTable(Writer writer, TableDefinition tableDefinition) throws IOException;
+
+	/**
+	 * Called before the first batch of rows of a data section.
+	 */
+	public void startData(Writer writer, TableDefinition tableDefinition) throws IOException {
+	}
+
+	public abstract void writeRows(Writer writer, TableDefinition tableDefinition,
+			List<HashMap<String, Object>> rows) throws IOException;
+
+	/**
+	 * Called after the last batch of rows of a data section.
+	 */
+	public void finishData(Writer writer, TableDefinition tableDefinition) throws IOException {
+	}
+
+	/**
+	 * Write anything which has to come after the last statement, outside of
+	 * any transaction.
+	 */
+	public void writeEpilogue(Writer writer) throws IOException {
+	}
+
+	/**
+	 * Create a new instance of the dialect chosen by the options.
+	 *
+	 * @throws IllegalArgumentException
+	 *             If there isn't a dialect with the name given
+	 */
+	static SQLDialect forOptions(PoiJoiOptions options) {
+		String name = GenericSQLDialect.NAME;
+		if (options != null && options.getValue(OPTION_DIALECT) != null
+				&& !options.getValue(OPTION_DIALECT).trim().isEmpty()) {
+			name = options.getValue(OPTION_DIALECT).trim();
+		}
+
+		List<String> names = new ArrayList<String>();
+		for (SQLDialect dialect : ServiceLoader.load(SQLDialect.class, SQLDialect.class.getClassLoader())) {
+			if (dialect.getName().equalsIgnoreCase(name)) {
+				dialect.configure(options);
+				return dialect;
+			}
+			names.add(dialect.getName());
+		}
+		throw new IllegalArgumentException("Unknown SQL dialect '" + name + "', the known dialects are " + names);
+	}
+}
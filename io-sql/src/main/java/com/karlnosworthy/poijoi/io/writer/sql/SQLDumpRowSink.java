@@ -0,0 +1,173 @@
+package com.karlnosworthy.poijoi.io.writer.sql;
+
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.RowSink;
+import com.karlnosworthy.poijoi.io.writer.Writer.WriteType;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+/**
+ * Converts the tables and rows it is passed into a SQL dump written in the
+ * {@link SQLDialect} chosen by the options, with the CREATE statement for
+ * each table being output ahead of its data.
+ *
+ * If the dialect is transactional, or {@link SQLDialect#OPTION_COMMIT_EVERY}
+ * is given, the statements are wrapped in transactions, committing at the end
+ * of the batch which takes the number of rows written past the given number
+ * (or only at the end of the dump if it's zero).
+ *
+ * The statements are encoded straight into a fixed size buffer which is
+ * written to the output channel each time it fills, so the memory used
+ * doesn't grow with the size of the dump.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+abstract class SQLDumpRowSink implements RowSink {
+
+	/**
+	 * The size of the buffer, in bytes, the statements are encoded into before
+	 * being written to the output.
+	 */
+	static final String OPTION_BUFFER_SIZE = "--sql-buffer-size";
+
+	/**
+	 * The name of the character set the statements are encoded with.
+	 */
+	static final String OPTION_CHARSET = "--sql-charset";
+
+	static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+	static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+
+	private SQLDialect dialect;
+	private WriteType writeType;
+	private Charset charset;
+	private int bufferSize;
+	private boolean transactional;
+	private int commitEvery;
+	private long uncommittedRows;
+	private boolean inData;
+	private WritableByteChannel channel;
+	private Writer writer;
+
+	SQLDumpRowSink(WriteType writeType, PoiJoiOptions options) {
+		super();
+		this.writeType = writeType;
+		this.dialect = SQLDialect.forOptions(options);
+		this.charset = DEFAULT_CHARSET;
+		this.bufferSize = DEFAULT_BUFFER_SIZE;
+		this.transactional = dialect.isTransactional();
+
+		if (options != null) {
+			if (options.hasValue(OPTION_CHARSET)) {
+				this.charset = Charset.forName(options.getValue(OPTION_CHARSET).trim());
+			}
+			this.bufferSize = options.getIntValue(OPTION_BUFFER_SIZE, DEFAULT_BUFFER_SIZE);
+			if (this.bufferSize <= 0) {
+				throw new IllegalArgumentException("The value of option " + OPTION_BUFFER_SIZE + " must be greater than zero: " + this.bufferSize);
+			}
+			if (options.hasValue(SQLDialect.OPTION_COMMIT_EVERY)) {
+				this.transactional = true;
+				this.commitEvery = options.getIntValue(SQLDialect.OPTION_COMMIT_EVERY, 0);
+				if (this.commitEvery < 0) {
+					throw new IllegalArgumentException("The value of option " + SQLDialect.OPTION_COMMIT_EVERY + " must not be negative: " + this.commitEvery);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Open the channel the dump is written to, called as the stream starts.
+	 */
+	abstract WritableByteChannel openChannel() throws Exception;
+
+	/**
+	 * Called once the stream has finished, after everything written has been
+	 * flushed to the channel, or once it has been aborted.
+	 *
+	 * @param completed
+	 *            True if the whole dump has been written otherwise false
+	 */
+	abstract void closeChannel(WritableByteChannel channel, boolean completed) throws Exception;
+
+	@Override
+	public void startStream() throws Exception {
+		channel = openChannel();
+		writer = Channels.newWriter(channel, charset.newEncoder(), bufferSize);
+
+		dialect.writePrologue(writer);
+		if (transactional) {
+			dialect.writeBeginTransaction(writer);
+		}
+	}
+
+	@Override
+	public void startTable(TableDefinition tableDefinition) throws Exception {
+		if (writeType != WriteType.DATA_ONLY) {
+			dialect.writeCreateTable(writer, tableDefinition);
+		}
+	}
+
+	@Override
+	public void writeRows(TableDefinition tableDefinition, List<HashMap<String, Object>> tableData) throws Exception {
+		if (writeType == WriteType.SCHEMA_ONLY || tableData.isEmpty()) {
+			return;
+		}
+
+		if (!inData) {
+			dialect.startData(writer, tableDefinition);
+			inData = true;
+		}
+		dialect.writeRows(writer, tableDefinition, tableData);
+
+		uncommittedRows += tableData.size();
+		if (transactional && commitEvery > 0 && uncommittedRows >= commitEvery) {
+			finishTable(tableDefinition);
+			dialect.writeCommitTransaction(writer);
+			dialect.writeBeginTransaction(writer);
+			uncommittedRows = 0;
+		}
+	}
+
+	@Override
+	public void finishTable(TableDefinition tableDefinition) throws Exception {
+		if (inData) {
+			dialect.finishData(writer, tableDefinition);
+			inData = false;
+		}
+	}
+
+	@Override
+	public boolean finishStream() throws Exception {
+		if (transactional) {
+			dialect.writeCommitTransaction(writer);
+		}
+		dialect.writeEpilogue(writer);
+
+		writer.flush();
+		writer = null;
+		closeChannel(channel, true);
+		channel = null;
+		return true;
+	}
+
+	@Override
+	public void abortStream() {
+		// anything still in the buffer is dropped rather than written
+		writer = null;
+		if (channel != null) {
+			try {
+				closeChannel(channel, false);
+			} catch (Exception exception) {
+				// already failing, nothing more can be done
+			}
+			channel = null;
+		}
+	}
+}
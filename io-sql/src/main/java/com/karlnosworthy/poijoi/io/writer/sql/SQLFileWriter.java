@@ -2,15 +2,16 @@ package com.karlnosworthy.poijoi.io.writer.sql;
 
 import java.io.File;
 import java.io.FileOutputStream;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.nio.channels.WritableByteChannel;
 
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.MetaDataRowSource;
+import com.karlnosworthy.poijoi.io.RowSink;
+import com.karlnosworthy.poijoi.io.RowTransfer;
 import com.karlnosworthy.poijoi.io.SupportsFormat;
-import com.karlnosworthy.poijoi.io.writer.Writer;
-import com.karlnosworthy.poijoi.jdbc.SQLStatementCreator;
+import com.karlnosworthy.poijoi.io.writer.ConfigurableWriter;
+import com.karlnosworthy.poijoi.io.writer.RowSinkFactory;
 import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
-import com.karlnosworthy.poijoi.model.TableDefinition;
 
 /**
  * 
@@ -19,46 +20,45 @@ import com.karlnosworthy.poijoi.model.TableDefinition;
  */
 
 
-@SupportsFormat(type = "SQL")
-public class SQLFileWriter implements Writer<File> {
+@SupportsFormat(type = "SQL", stateless = true)
+public class SQLFileWriter implements ConfigurableWriter<File>, RowSinkFactory<File> {
 
 	@Override
 	public boolean write(File output, PoiJoiMetaData metaData, WriteType writeType) throws Exception {
+		return write(output, metaData, writeType, null);
+	}
+	
+	@Override
+	public boolean write(File output, PoiJoiMetaData metaData, WriteType writeType, PoiJoiOptions options) throws Exception {
 		
-		if (output == null || output.isDirectory() || output.exists()) { 
-			return false;
-		} else if (metaData == null || metaData.isEmpty()) {
+		if (metaData == null || metaData.isEmpty()) {
 			return false;
 		}
 		
-		SQLStatementCreator sqlStatementWriter = new SQLStatementCreator();
-		
-		StringBuffer buffer = new StringBuffer();
+		return RowTransfer.transfer(new MetaDataRowSource(), metaData,
+				writeType != WriteType.SCHEMA_ONLY, createSink(output, writeType, options), null);
+	}
+	
+	@Override
+	public RowSink createSink(final File output, WriteType writeType, PoiJoiOptions options) {
 		
-		if (writeType != WriteType.DATA_ONLY) {
-			for (String tableName : metaData.getTableDefinitions().keySet()) {
-				TableDefinition tableDefinition = metaData.getTableDefinition(tableName);
-				buffer.append(sqlStatementWriter.buildCreateTableStatement(tableDefinition));
-				buffer.append("\n");
-			}
+		if (output == null || output.isDirectory() || output.exists()) { 
+			return null;
 		}
 		
-		if (writeType != WriteType.SCHEMA_ONLY) {
-			for (String tableName : metaData.getTableDefinitions().keySet()) {
-				TableDefinition tableDefinition = metaData.getTableDefinition(tableName);
-				List<HashMap<String, Object>> tableData = metaData.getTableData(tableName);
+		return new SQLDumpRowSink(writeType, options) {
+			@Override
+			WritableByteChannel openChannel() throws Exception {
+				return new FileOutputStream(output).getChannel();
+			}
 
-				for (int tableDataRowIndex = 0; tableDataRowIndex < tableData.size(); tableDataRowIndex ++) {
-					Map<String,Object> rowDataToInsert = tableData.get(tableDataRowIndex);
-					buffer.append(sqlStatementWriter.buildInsertTableStatement(tableDefinition, rowDataToInsert));
-					buffer.append("\n");
+			@Override
+			void closeChannel(WritableByteChannel channel, boolean completed) throws Exception {
+				channel.close();
+				if (!completed) {
+					output.delete();
 				}
 			}
-		}
-		
-		FileOutputStream fileOutputStream = new FileOutputStream(output);
-		fileOutputStream.write(buffer.toString().getBytes());
-		fileOutputStream.close();
-		return true;
+		};
 	}
 }
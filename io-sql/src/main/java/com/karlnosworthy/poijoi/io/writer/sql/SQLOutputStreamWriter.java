@@ -2,58 +2,62 @@ package com.karlnosworthy.poijoi.io.writer.sql;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.MetaDataRowSource;
+import com.karlnosworthy.poijoi.io.RowSink;
+import com.karlnosworthy.poijoi.io.RowTransfer;
 import com.karlnosworthy.poijoi.io.SupportsFormat;
-import com.karlnosworthy.poijoi.io.writer.Writer;
-import com.karlnosworthy.poijoi.jdbc.SQLStatementCreator;
+import com.karlnosworthy.poijoi.io.writer.ConfigurableWriter;
+import com.karlnosworthy.poijoi.io.writer.RowSinkFactory;
 import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
-import com.karlnosworthy.poijoi.model.TableDefinition;
 
 /**
  * 
  * @author Karl Nosworthy
  * @since 1.0
  */
-@SupportsFormat(type = "SQL")
-public class SQLOutputStreamWriter implements Writer<OutputStream> {
+@SupportsFormat(type = "SQL", stateless = true)
+public class SQLOutputStreamWriter implements ConfigurableWriter<OutputStream>, RowSinkFactory<OutputStream> {
 
 	@Override
 	public boolean write(OutputStream output, PoiJoiMetaData metaData, WriteType writeType) throws Exception {
+		return write(output, metaData, writeType, null);
+	}
+	
+	@Override
+	public boolean write(OutputStream output, PoiJoiMetaData metaData, WriteType writeType, PoiJoiOptions options) throws Exception {
 		
 		if (isValidOutput(output) && isValidMetadata(metaData)) {
-			
-			SQLStatementCreator sqlStatementWriter = new SQLStatementCreator();
-			
-			StringBuffer buffer = new StringBuffer();
-			
-			if (writeType != WriteType.DATA_ONLY) {
-				for (String tableName : metaData.getTableDefinitions().keySet()) {
-					TableDefinition tableDefinition = metaData.getTableDefinition(tableName);
-					buffer.append(sqlStatementWriter.buildCreateTableStatement(tableDefinition));
-					buffer.append("\n");
-				}
+			return RowTransfer.transfer(new MetaDataRowSource(), metaData,
+					writeType != WriteType.SCHEMA_ONLY, createSink(output, writeType, options), null);
+		}
+		return false;
+	}
+	
+	@Override
+	public RowSink createSink(final OutputStream output, WriteType writeType, PoiJoiOptions options) {
+		
+		if (!isValidOutput(output)) {
+			return null;
+		}
+		
+		return new SQLDumpRowSink(writeType, options) {
+			@Override
+			WritableByteChannel openChannel() {
+				return Channels.newChannel(output);
 			}
-			
-			if (writeType != WriteType.SCHEMA_ONLY) {
-				for (String tableName : metaData.getTableDefinitions().keySet()) {
-					TableDefinition tableDefinition = metaData.getTableDefinition(tableName);
-					List<HashMap<String, Object>> tableData = metaData.getTableData(tableName);
 
-					for (int tableDataRowIndex = 0; tableDataRowIndex < tableData.size(); tableDataRowIndex ++) {
-						Map<String,Object> rowDataToInsert = tableData.get(tableDataRowIndex);
-						buffer.append(sqlStatementWriter.buildInsertTableStatement(tableDefinition, rowDataToInsert));
-						buffer.append("\n");
-					}
+			@Override
+			void closeChannel(WritableByteChannel channel, boolean completed) throws Exception {
+				// the stream belongs to the caller so is left open
+				if (completed) {
+					output.flush();
 				}
 			}
-			
-			output.write(buffer.toString().getBytes());
-			return true;
-		}
-		return false;
+		};
 	}
 	
 	boolean isValidOutput(OutputStream output) {
@@ -0,0 +1,37 @@
+package com.karlnosworthy.poijoi.io.writer.sql;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a dump for replaying into SQLite, with the statements inside
+ * transactions and a prologue of PRAGMAs which stop SQLite syncing every
+ * write to disk while the dump is being replayed.
+ *
+ * The PRAGMAs only last as long as the connection replaying the dump.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public class SQLiteSQLDialect extends GenericSQLDialect {
+
+	public static final String NAME = "sqlite";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean isTransactional() {
+		return true;
+	}
+
+	@Override
+	public void writePrologue(Writer writer) throws IOException {
+		// the journal mode can't be changed inside a transaction
+		writer.write("PRAGMA foreign_keys=OFF;\n");
+		writer.write("PRAGMA synchronous=OFF;\n");
+		writer.write("PRAGMA journal_mode=MEMORY;\n");
+	}
+}
@@ -0,0 +1,284 @@
+package com.karlnosworthy.poijoi.io.reader.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.SupportsFormat;
+import com.karlnosworthy.poijoi.io.writer.Writer.WriteType;
+import com.karlnosworthy.poijoi.io.writer.sql.PostgreSQLDialect;
+import com.karlnosworthy.poijoi.io.writer.sql.SQLDialect;
+import com.karlnosworthy.poijoi.io.writer.sql.SQLFileWriter;
+import com.karlnosworthy.poijoi.jdbc.SQLStatementCreator;
+import com.karlnosworthy.poijoi.model.ColumnDefinition;
+import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
+import com.karlnosworthy.poijoi.model.IndexDefinition;
+import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+public class SQLFileReaderTest {
+
+	private SQLFileReader reader;
+	private File dumpFile;
+
+	@Before
+	public void onSetup() throws Exception {
+		reader = new SQLFileReader();
+		dumpFile = File.createTempFile("poijoi", ".sql");
+		dumpFile.delete();
+	}
+
+	@After
+	public void onTeardown() {
+		dumpFile.delete();
+		reader = null;
+	}
+
+	@Test
+	public void testHasAnnotation() {
+		assertTrue(reader.getClass().isAnnotationPresent(SupportsFormat.class));
+	}
+
+	@Test
+	public void testReadWithInvalidFile() throws Exception {
+		assertNull(reader.read(null, true));
+		assertNull(reader.read(new File(System.getProperty("java.io.tmpdir")), true));
+		assertNull(reader.read(dumpFile, true));
+	}
+
+	/**
+	 * Check a dump written by the SQL writer, using multi-row INSERTs, reads
+	 * back with the same structure and values.
+	 */
+	@Test
+	public void testReadWrittenDump() throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		options.put(SQLStatementCreator.OPTION_ROWS_PER_INSERT, "2");
+		new SQLFileWriter().write(dumpFile, createMetaData(), WriteType.BOTH, new PoiJoiOptions(options));
+
+		PoiJoiMetaData metaData = reader.read(dumpFile, true);
+		assertWrittenTable(metaData);
+	}
+
+	/**
+	 * Check the COPY data of a PostgreSQL dump is read.
+	 */
+	@Test
+	public void testReadPostgreSQLDump() throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		options.put(SQLDialect.OPTION_DIALECT, PostgreSQLDialect.NAME);
+		options.put(SQLDialect.OPTION_COMMIT_EVERY, "1");
+		new SQLFileWriter().write(dumpFile, createMetaData(), WriteType.BOTH, new PoiJoiOptions(options));
+
+		PoiJoiMetaData metaData = reader.read(dumpFile, true);
+		assertWrittenTable(metaData);
+	}
+
+	@Test
+	public void testReadHandWrittenDump() throws Exception {
+		writeDump("PRAGMA foreign_keys=OFF;\n"
+				+ "BEGIN TRANSACTION;\n"
+				+ "-- the people; all of them\n"
+				+ "CREATE TABLE IF NOT EXISTS \"people\" (\n"
+				+ "  id INTEGER PRIMARY KEY AUTOINCREMENT,\n"
+				+ "  [name] VARCHAR(50) NOT NULL DEFAULT 'none',\n"
+				+ "  `score` DECIMAL(10,2),\n"
+				+ "  joined DATETIME,\n"
+				+ "  CONSTRAINT unique_name UNIQUE (name, score)\n"
+				+ ");\n"
+				+ "CREATE TABLE empty_table (value TEXT);\n"
+				+ "INSERT INTO people VALUES(1,'O''Brien; Pat',-1.5e1,'2015-01-02 03:04:05');\n"
+				+ "/* a comment; with a semicolon */\n"
+				+ "INSERT OR REPLACE INTO main.people (id, name) VALUES (2, 'Sam'), (3,NULL);\n"
+				+ "CREATE UNIQUE INDEX people_name ON people (name COLLATE NOCASE DESC);\n"
+				+ "CREATE VIEW people_view AS SELECT * FROM people;\n"
+				+ "COMMIT;\n");
+
+		PoiJoiMetaData metaData = reader.read(dumpFile, true);
+		assertEquals(2, metaData.getTableDefinitions().size());
+
+		TableDefinition tableDefinition = metaData.getTableDefinition("people");
+		assertEquals(4, tableDefinition.getColumnCount());
+		assertEquals(ColumnType.INTEGER_NUMBER, tableDefinition.getColumnDefinition("id").getColumnType());
+		assertEquals(ColumnType.STRING, tableDefinition.getColumnDefinition("name").getColumnType());
+		assertEquals(ColumnType.DECIMAL_NUMBER, tableDefinition.getColumnDefinition("score").getColumnType());
+		assertEquals(ColumnType.DATE, tableDefinition.getColumnDefinition("joined").getColumnType());
+
+		assertEquals(1, tableDefinition.getIndexDefinitions().size());
+		IndexDefinition indexDefinition = tableDefinition.getIndexDefinition(0);
+		assertEquals("people_name", indexDefinition.getIndexName());
+		assertEquals("name", indexDefinition.getColumnName(0));
+		assertTrue(indexDefinition.isUnique());
+
+		List<HashMap<String, Object>> rows = metaData.getTableData("people");
+		assertEquals(3, rows.size());
+		assertEquals(1, rows.get(0).get("id"));
+		assertEquals("O'Brien; Pat", rows.get(0).get("name"));
+		assertEquals(-15.0, rows.get(0).get("score"));
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTime((java.util.Date) rows.get(0).get("joined"));
+		assertEquals(2015, calendar.get(Calendar.YEAR));
+		assertEquals(5, calendar.get(Calendar.SECOND));
+		assertEquals("Sam", rows.get(1).get("name"));
+		assertNull(rows.get(2).get("name"));
+
+		assertNotNull(metaData.getTableDefinition("empty_table"));
+		assertEquals(0, metaData.getTableData("empty_table").size());
+	}
+
+	@Test
+	public void testReadSchemaOnly() throws Exception {
+		writeDump("CREATE TABLE one (value TEXT);\nINSERT INTO one VALUES (this isn't parsed);\n");
+
+		PoiJoiMetaData metaData = reader.read(dumpFile, false);
+		assertFalse(metaData.isReadData());
+		assertEquals(1, metaData.getTableDefinition("one").getColumnCount());
+	}
+
+	/**
+	 * Check the rows come back in order when the INSERTs are parsed by more
+	 * than one thread.
+	 */
+	@Test
+	public void testParallelRead() throws Exception {
+		StringBuilder dump = new StringBuilder();
+		dump.append("CREATE TABLE numbers (number INTEGER, name TEXT);\n");
+		for (int number = 0; number < 2000; number++) {
+			dump.append("INSERT INTO numbers VALUES (").append(number).append(",'").append(number).append("');\n");
+			if (number == 1000) {
+				dump.append("CREATE TABLE later (value REAL);\n");
+			}
+		}
+		dump.append("INSERT INTO later VALUES (1.5);\n");
+		writeDump(dump.toString());
+
+		Map<String, String> options = new HashMap<String, String>();
+		options.put(SQLFileReader.OPTION_PARSE_THREADS, "4");
+		options.put(SQLFileReader.OPTION_PARSE_CHUNK_SIZE, "100");
+		PoiJoiMetaData metaData = reader.read(dumpFile, true, new PoiJoiOptions(options));
+
+		List<HashMap<String, Object>> rows = metaData.getTableData("numbers");
+		assertEquals(2000, rows.size());
+		for (int number = 0; number < rows.size(); number++) {
+			assertEquals(number, rows.get(number).get("number"));
+			assertEquals(String.valueOf(number), rows.get(number).get("name"));
+		}
+		assertEquals(1.5, metaData.getTableData("later").get(0).get("value"));
+	}
+
+	/**
+	 * Check statements which cross the end of a mapped window are read whole.
+	 */
+	@Test
+	public void testScanAcrossWindows() throws Exception {
+		writeDump("CREATE TABLE one (value TEXT);\n\n   INSERT INTO one VALUES ('a;b');\nCOPY one FROM stdin;\nx\ny\n\\.\nCOMMIT");
+
+		List<String> statements = new ArrayList<String>();
+		FileInputStream inputStream = new FileInputStream(dumpFile);
+		try {
+			SQLStatementScanner scanner = new SQLStatementScanner(inputStream.getChannel(), 40);
+			while (scanner.next()) {
+				statements.add(scanner.getStatementType() + ":"
+						+ Charset.forName("UTF-8").decode(scanner.getStatement()).toString());
+			}
+		} finally {
+			inputStream.close();
+		}
+
+		assertEquals(5, statements.size());
+		assertEquals("CREATE:CREATE TABLE one (value TEXT)", statements.get(0));
+		assertEquals("INSERT:INSERT INTO one VALUES ('a;b')", statements.get(1));
+		assertEquals("COPY:COPY one FROM stdin", statements.get(2));
+		assertEquals("COPY_DATA:x\ny\n", statements.get(3));
+		assertEquals("OTHER:COMMIT", statements.get(4));
+	}
+
+	@Test
+	public void testReadInvalidDump() throws Exception {
+		writeDump("CREATE TABLE one (value INTEGER);\nINSERT INTO one VALUES (1);\nINSERT INTO one VALUES ('x');\n");
+		try {
+			reader.read(dumpFile, true);
+			fail("Expected the invalid value to be reported");
+		} catch (IOException ioException) {
+			assertTrue(ioException.getMessage(), ioException.getMessage().contains("byte 62"));
+		}
+	}
+
+	private void writeDump(String dump) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(dumpFile), "UTF-8");
+		try {
+			writer.write(dump);
+		} finally {
+			writer.close();
+		}
+	}
+
+	private PoiJoiMetaData createMetaData() {
+		List<ColumnDefinition> columnDefinitions = new ArrayList<ColumnDefinition>();
+		columnDefinitions.add(new ColumnDefinition("code", 0, ColumnType.INTEGER_NUMBER));
+		columnDefinitions.add(new ColumnDefinition("name", 1, ColumnType.STRING));
+		columnDefinitions.add(new ColumnDefinition("price", 2, ColumnType.DECIMAL_NUMBER));
+		columnDefinitions.add(new ColumnDefinition("added", 3, ColumnType.DATE));
+
+		Map<String, TableDefinition> tableDefinitions = new HashMap<String, TableDefinition>();
+		tableDefinitions.put("Products", new TableDefinition("Products", columnDefinitions));
+
+		Calendar calendar = Calendar.getInstance();
+		calendar.set(2015, Calendar.MARCH, 4, 5, 6, 7);
+		calendar.set(Calendar.MILLISECOND, 8);
+
+		List<HashMap<String, Object>> rows = new ArrayList<HashMap<String, Object>>();
+		String[] names = { "Tea", "Builder's\ttea", "Café" };
+		for (int code = 0; code < names.length; code++) {
+			HashMap<String, Object> row = new HashMap<String, Object>();
+			row.put("code", code);
+			row.put("name", names[code]);
+			row.put("price", code + 0.25);
+			row.put("added", calendar.getTime());
+			rows.add(row);
+		}
+
+		Map<String, List<HashMap<String, Object>>> tableData = new HashMap<String, List<HashMap<String, Object>>>();
+		tableData.put("Products", rows);
+		return new PoiJoiMetaData(true, tableDefinitions, tableData);
+	}
+
+	private void assertWrittenTable(PoiJoiMetaData metaData) {
+		TableDefinition tableDefinition = metaData.getTableDefinition("Products");
+		assertNotNull(tableDefinition);
+		assertEquals(ColumnType.INTEGER_NUMBER, tableDefinition.getColumnDefinition("code").getColumnType());
+		assertEquals(ColumnType.STRING, tableDefinition.getColumnDefinition("name").getColumnType());
+		assertEquals(ColumnType.DECIMAL_NUMBER, tableDefinition.getColumnDefinition("price").getColumnType());
+		assertEquals(ColumnType.DATE, tableDefinition.getColumnDefinition("added").getColumnType());
+
+		List<HashMap<String, Object>> expectedRows = createMetaData().getTableData("Products");
+		List<HashMap<String, Object>> rows = metaData.getTableData("Products");
+		assertEquals(expectedRows.size(), rows.size());
+		for (int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
+			for (String columnName : expectedRows.get(rowIndex).keySet()) {
+				assertEquals(expectedRows.get(rowIndex).get(columnName), rows.get(rowIndex).get(columnName));
+			}
+		}
+	}
+}
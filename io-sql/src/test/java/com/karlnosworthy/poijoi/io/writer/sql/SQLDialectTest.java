@@ -0,0 +1,105 @@
+package com.karlnosworthy.poijoi.io.writer.sql;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.writer.Writer.WriteType;
+import com.karlnosworthy.poijoi.model.ColumnDefinition;
+import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
+import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+public class SQLDialectTest {
+
+	private SQLOutputStreamWriter outputStreamWriter;
+	private PoiJoiMetaData metaData;
+
+	@Before
+	public void onSetup() {
+		outputStreamWriter = new SQLOutputStreamWriter();
+
+		List<ColumnDefinition> columnDefinitions = new ArrayList<ColumnDefinition>();
+		columnDefinitions.add(new ColumnDefinition("code", 0, ColumnType.INTEGER_NUMBER));
+		columnDefinitions.add(new ColumnDefinition("name", 1, ColumnType.STRING));
+
+		Map<String, TableDefinition> tableDefinitions = new HashMap<String, TableDefinition>();
+		tableDefinitions.put("TableOne", new TableDefinition("TableOne", columnDefinitions));
+
+		List<HashMap<String, Object>> rows = new ArrayList<HashMap<String, Object>>();
+		String[] names = { "One", "Two\tTabbed", null };
+		for (int code = 0; code < names.length; code++) {
+			HashMap<String, Object> row = new HashMap<String, Object>();
+			row.put("code", code);
+			if (names[code] != null) {
+				row.put("name", names[code]);
+			}
+			rows.add(row);
+		}
+
+		Map<String, List<HashMap<String, Object>>> tableData = new HashMap<String, List<HashMap<String, Object>>>();
+		tableData.put("TableOne", rows);
+
+		metaData = new PoiJoiMetaData(true, tableDefinitions, tableData);
+	}
+
+	@Test
+	public void testSQLiteDialect() throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		options.put(SQLDialect.OPTION_DIALECT, "SQLite");
+
+		String[] lines = write(options);
+		assertEquals(9, lines.length);
+		assertEquals("PRAGMA foreign_keys=OFF;", lines[0]);
+		assertEquals("PRAGMA synchronous=OFF;", lines[1]);
+		assertEquals("PRAGMA journal_mode=MEMORY;", lines[2]);
+		assertEquals("BEGIN TRANSACTION;", lines[3]);
+		assertTrue(lines[4].startsWith("CREATE TABLE TableOne"));
+		assertTrue(lines[7].startsWith("INSERT INTO 'TableOne'"));
+		assertEquals("COMMIT;", lines[8]);
+	}
+
+	@Test
+	public void testCommitEvery() throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		options.put(SQLDialect.OPTION_COMMIT_EVERY, "2");
+		options.put(SQLDialect.OPTION_DIALECT, PostgreSQLDialect.NAME);
+
+		// the rows arrive in a single batch, which is committed on its own
+		List<String> expected = new ArrayList<String>();
+		expected.add("BEGIN;");
+		expected.add("CREATE TABLE \"TableOne\" (id SERIAL PRIMARY KEY,\"code\" BIGINT,\"name\" TEXT);");
+		expected.add("COPY \"TableOne\" (\"code\",\"name\") FROM stdin;");
+		expected.add("0\tOne");
+		expected.add("1\tTwo\\tTabbed");
+		expected.add("2\t\\N");
+		expected.add("\\.");
+		expected.add("COMMIT;");
+		expected.add("BEGIN;");
+		expected.add("COMMIT;");
+		assertArrayEquals(expected.toArray(), write(options));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownDialect() throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		options.put(SQLDialect.OPTION_DIALECT, "unknown");
+		outputStreamWriter.createSink(new ByteArrayOutputStream(), WriteType.BOTH, new PoiJoiOptions(options));
+	}
+
+	private String[] write(Map<String, String> options) throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		assertTrue(outputStreamWriter.write(outputStream, metaData, WriteType.BOTH, new PoiJoiOptions(options)));
+		return new String(outputStream.toByteArray(), "UTF-8").split("\n");
+	}
+}
@@ -1,8 +1,10 @@
 package com.karlnosworthy.poijoi.io.writer.sql;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileReader;
@@ -18,6 +20,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.karlnosworthy.poijoi.PoiJoiOptions;
 import com.karlnosworthy.poijoi.io.writer.Writer.WriteType;
 import com.karlnosworthy.poijoi.model.ColumnDefinition;
 import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
@@ -145,4 +148,48 @@ public class SQLOutputStreamWriterTest {
 		assertTrue(sqlLines.get(0).equals("CREATE TABLE TableOne (id INTEGER PRIMARY KEY AUTOINCREMENT,\"col1String\" TEXT,\"col2Date\" DATE,\"col3Integer\" INTEGER,\"col4Decimal\" REAL);"));
 		assertTrue(sqlLines.get(1).equals("INSERT INTO 'TableOne' (\"col1String\",\"col2Date\",\"col3Integer\",\"col4Decimal\") VALUES ('hello','2015-01-31 00:00:00.000',19,1.5);"));
 	}
+	
+	/**
+	 * Check that a dump much larger than the buffer is written in full using
+	 * the requested character set.
+	 */
+	@Test
+	public void testWriteWithSmallBufferAndCharset() throws Exception {
+		List<ColumnDefinition> columnDefinitions = new ArrayList<ColumnDefinition>();
+		columnDefinitions.add(new ColumnDefinition("col1String", 0, ColumnType.STRING));
+
+		Map<String, TableDefinition> tableDefinitions = new HashMap<String, TableDefinition>();
+		tableDefinitions.put("TableOne", new TableDefinition("TableOne", columnDefinitions));
+
+		List<HashMap<String, Object>> rowData = new ArrayList<HashMap<String, Object>>();
+		for (int rowIndex = 0; rowIndex < 1000; rowIndex++) {
+			HashMap<String, Object> row = new HashMap<String, Object>();
+			row.put("col1String", "caf\u00e9 " + rowIndex);
+			rowData.add(row);
+		}
+
+		Map<String, List<HashMap<String, Object>>> tableData = new HashMap<String, List<HashMap<String, Object>>>();
+		tableData.put("TableOne", rowData);
+
+		Map<String, String> options = new HashMap<String, String>();
+		options.put(SQLDumpRowSink.OPTION_BUFFER_SIZE, "16");
+		options.put(SQLDumpRowSink.OPTION_CHARSET, "UTF-16");
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		assertTrue(outputStreamWriter.write(outputStream, new PoiJoiMetaData(true, tableDefinitions, tableData),
+				WriteType.BOTH, new PoiJoiOptions(options)));
+
+		String[] sqlLines = new String(outputStream.toByteArray(), "UTF-16").split("\n");
+		assertEquals(1001, sqlLines.length);
+		assertTrue(sqlLines[0].startsWith("CREATE TABLE TableOne"));
+		assertTrue(sqlLines[1000].startsWith("INSERT INTO 'TableOne'"));
+		assertTrue(sqlLines[1000].contains("'caf\u00e9 999'"));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testWriteWithInvalidBufferSize() throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		options.put(SQLDumpRowSink.OPTION_BUFFER_SIZE, "0");
+		outputStreamWriter.createSink(new ByteArrayOutputStream(), WriteType.BOTH, new PoiJoiOptions(options));
+	}
 }
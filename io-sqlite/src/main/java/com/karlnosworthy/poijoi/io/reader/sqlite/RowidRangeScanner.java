@@ -0,0 +1,247 @@
+package com.karlnosworthy.poijoi.io.reader.sqlite;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.karlnosworthy.poijoi.io.RowSink;
+import com.karlnosworthy.poijoi.jdbc.ConnectionFactory;
+import com.karlnosworthy.poijoi.jdbc.JDBCTableScanner;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+/**
+ * Reads a large SQLite table by splitting it into ranges of rowids and
+ * reading the ranges at the same time, each on a connection of its own,
+ * while still passing the rows on to the sink in rowid order.
+ *
+ * Each range is read into a bounded queue of row batches which the calling
+ * thread empties one range after another, so a range which is ahead of its
+ * turn waits once its queue is full rather than holding its rows in memory.
+ *
+ * The ranges are read using separate connections, so the database shouldn't
+ * be written to while it's being read unless it is in WAL mode, where each
+ * connection still sees a consistent (though possibly different) snapshot.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+final class RowidRangeScanner {
+
+	/**
+	 * Marks the end of the rows of a range.
+	 */
+	private static final List<HashMap<String, Object>> END_OF_RANGE = new ArrayList<HashMap<String, Object>>();
+
+	private final JDBCTableScanner tableScanner;
+	private final ConnectionFactory connectionFactory;
+	private final int maximumRanges;
+	private final long minimumRangeRows;
+	private final int queueSize;
+
+	/**
+	 * @param tableScanner
+	 *            The scanner each range is read with
+	 * @param connectionFactory
+	 *            The factory of the connections each range is read on
+	 * @param maximumRanges
+	 *            The most ranges a table is split into, and so read at the
+	 *            same time
+	 * @param minimumRangeRows
+	 *            The fewest rowids a range can cover
+	 * @param queueSize
+	 *            The number of batches of a range which can be waiting to be
+	 *            passed on
+	 */
+	RowidRangeScanner(JDBCTableScanner tableScanner,
+			ConnectionFactory connectionFactory, int maximumRanges,
+			long minimumRangeRows, int queueSize) {
+		super();
+		this.tableScanner = tableScanner;
+		this.connectionFactory = connectionFactory;
+		this.maximumRanges = maximumRanges;
+		this.minimumRangeRows = minimumRangeRows;
+		this.queueSize = queueSize;
+	}
+
+	/**
+	 * Pass all the rows of a table to the sink, the table having already been
+	 * started, if it's large enough to be worth splitting.
+	 *
+	 * @param connection
+	 *            The connection used to work out the ranges of the table
+	 * @param tableDefinition
+	 *            The table to read
+	 * @param sink
+	 *            The sink to pass the rows to
+	 * @return True if the table has been read, false if it is too small to
+	 *         split (or has no rowids) and has to be read in one go
+	 */
+	boolean scan(Connection connection, TableDefinition tableDefinition,
+			RowSink sink) throws Exception {
+
+		List<long[]> ranges = splitIntoRanges(connection, tableDefinition);
+		if (ranges.size() < 2) {
+			return false;
+		}
+
+		ExecutorService executorService = Executors.newFixedThreadPool(ranges.size());
+		List<BlockingQueue<List<HashMap<String, Object>>>> queues = new ArrayList<BlockingQueue<List<HashMap<String, Object>>>>();
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (long[] range : ranges) {
+				BlockingQueue<List<HashMap<String, Object>>> queue = new ArrayBlockingQueue<List<HashMap<String, Object>>>(queueSize);
+				queues.add(queue);
+				futures.add(executorService.submit(createRangeReader(tableDefinition, range, queue)));
+			}
+
+			for (int rangeIndex = 0; rangeIndex < ranges.size(); rangeIndex++) {
+				BlockingQueue<List<HashMap<String, Object>>> queue = queues.get(rangeIndex);
+				List<HashMap<String, Object>> rows;
+				while ((rows = queue.take()) != END_OF_RANGE) {
+					sink.writeRows(tableDefinition, rows);
+				}
+				rethrowFailure(futures.get(rangeIndex));
+			}
+			return true;
+		} finally {
+			executorService.shutdownNow();
+			// make room for the end of any range left waiting on its queue
+			for (BlockingQueue<List<HashMap<String, Object>>> queue : queues) {
+				queue.clear();
+			}
+		}
+	}
+
+	/**
+	 * Split the rowids of the table into at most {@link #maximumRanges}
+	 * ranges of at least {@link #minimumRangeRows} rowids each. The rowids
+	 * may have gaps, so the number of rows in each range is only a guess.
+	 */
+	private List<long[]> splitIntoRanges(Connection connection,
+			TableDefinition tableDefinition) throws SQLException {
+
+		List<long[]> ranges = new ArrayList<long[]>();
+
+		long firstRowid;
+		long lastRowid;
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet resultSet = statement.executeQuery("select min(rowid), max(rowid) from "
+					+ tableDefinition.getTableName());
+			if (!resultSet.next() || resultSet.getObject(1) == null) {
+				return ranges;
+			}
+			firstRowid = resultSet.getLong(1);
+			lastRowid = resultSet.getLong(2);
+		} catch (SQLException sqlException) {
+			// a WITHOUT ROWID table
+			return ranges;
+		} finally {
+			statement.close();
+		}
+
+		long numberOfRowids = lastRowid - firstRowid + 1;
+		if (numberOfRowids <= 0) {
+			return ranges;
+		}
+		long numberOfRanges = Math.min(maximumRanges, numberOfRowids / minimumRangeRows);
+		long rangeRowids = numberOfRowids / Math.max(1, numberOfRanges);
+		for (int rangeIndex = 0; rangeIndex < numberOfRanges; rangeIndex++) {
+			long fromRowid = firstRowid + rangeIndex * rangeRowids;
+			long toRowid = rangeIndex == numberOfRanges - 1 ? lastRowid : fromRowid + rangeRowids - 1;
+			ranges.add(new long[] { fromRowid, toRowid });
+		}
+		return ranges;
+	}
+
+	private Callable<Void> createRangeReader(final TableDefinition tableDefinition,
+			long[] range, final BlockingQueue<List<HashMap<String, Object>>> queue) {
+
+		final String query = "select * from " + tableDefinition.getTableName()
+				+ " where rowid >= " + range[0] + " and rowid <= " + range[1]
+				+ " order by rowid";
+
+		return new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				try {
+					Connection rangeConnection = connectionFactory.createConnection();
+					try {
+						tableScanner.scan(rangeConnection, query, tableDefinition, new QueueRowSink(queue));
+					} finally {
+						rangeConnection.close();
+					}
+				} finally {
+					queue.put(END_OF_RANGE);
+				}
+				return null;
+			}
+		};
+	}
+
+	private void rethrowFailure(Future<Void> future) throws Exception {
+		try {
+			future.get();
+		} catch (ExecutionException executionException) {
+			Throwable cause = executionException.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw executionException;
+		}
+	}
+
+	/**
+	 * Puts each batch of rows of a range on to the range's queue.
+	 */
+	private static final class QueueRowSink implements RowSink {
+
+		private final BlockingQueue<List<HashMap<String, Object>>> queue;
+
+		QueueRowSink(BlockingQueue<List<HashMap<String, Object>>> queue) {
+			super();
+			this.queue = queue;
+		}
+
+		@Override
+		public void startStream() {
+		}
+
+		@Override
+		public void startTable(TableDefinition tableDefinition) {
+		}
+
+		@Override
+		public void writeRows(TableDefinition tableDefinition,
+				List<HashMap<String, Object>> rows) throws InterruptedException {
+			// the batch isn't guaranteed to be valid once this returns
+			queue.put(new ArrayList<HashMap<String, Object>>(rows));
+		}
+
+		@Override
+		public void finishTable(TableDefinition tableDefinition) {
+		}
+
+		@Override
+		public boolean finishStream() {
+			return true;
+		}
+
+		@Override
+		public void abortStream() {
+		}
+	}
+}
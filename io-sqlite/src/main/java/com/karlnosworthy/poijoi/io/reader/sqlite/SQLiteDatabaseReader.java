@@ -1,21 +1,29 @@
 package com.karlnosworthy.poijoi.io.reader.sqlite;
 
 import java.sql.Connection;
-import java.sql.DatabaseMetaData;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
+import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.sql.Types;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.sqlite.SQLiteConfig;
+
+import com.karlnosworthy.poijoi.PoiJoiOptions;
 import com.karlnosworthy.poijoi.UnsupportedMapping;
+import com.karlnosworthy.poijoi.io.MetaDataRowSink;
+import com.karlnosworthy.poijoi.io.ParallelTableReader;
+import com.karlnosworthy.poijoi.io.ParallelTableReader.TableReader;
+import com.karlnosworthy.poijoi.io.PipelinedRowSink;
+import com.karlnosworthy.poijoi.io.RowSink;
 import com.karlnosworthy.poijoi.io.SupportsFormat;
+import com.karlnosworthy.poijoi.io.reader.ConfigurableReader;
 import com.karlnosworthy.poijoi.io.reader.JDBCConnectionReader;
+import com.karlnosworthy.poijoi.io.reader.RowSource;
+import com.karlnosworthy.poijoi.jdbc.ConnectionFactory;
+import com.karlnosworthy.poijoi.jdbc.JDBCMetaDataCache;
 import com.karlnosworthy.poijoi.jdbc.JDBCMetaDataReader;
+import com.karlnosworthy.poijoi.jdbc.JDBCTableScanner;
 import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
 import com.karlnosworthy.poijoi.model.TableDefinition;
 
@@ -26,8 +34,26 @@ import com.karlnosworthy.poijoi.model.TableDefinition;
  * @author john.bartlett
  *
  */
-@SupportsFormat(type = "SQLITE")
-public class SQLiteDatabaseReader implements JDBCConnectionReader {
+@SupportsFormat(type = "SQLITE", stateless = true)
+public class SQLiteDatabaseReader implements JDBCConnectionReader,
+		RowSource<Connection>, ConfigurableReader<Connection> {
+
+	private static final String JDBC_URL_PREFIX = "jdbc:sqlite:";
+
+	/**
+	 * The number of rowid ranges a large table is split into and read at the
+	 * same time, each on a read only connection of its own. Defaults to 1,
+	 * which reads each table in one go.
+	 */
+	public static final String OPTION_RANGE_THREADS = "--sqlite-range-threads";
+
+	/**
+	 * The fewest rowids a range can cover, so tables with fewer than twice
+	 * this many rowids are read in one go.
+	 */
+	public static final String OPTION_MIN_RANGE_ROWS = "--sqlite-min-range-rows";
+
+	public static final int DEFAULT_MIN_RANGE_ROWS = 100000;
 
 	@Override
 	public boolean isValidConnection(Connection connection) {
@@ -60,84 +86,205 @@ public class SQLiteDatabaseReader implements JDBCConnectionReader {
 	@Override
 	public PoiJoiMetaData read(Connection connection, boolean readData)
 			throws Exception {
+		return read(connection, readData, null);
+	}
+
+	/**
+	 * Builds a {@link PoiJoiMetaData} object representing an SQLite Database
+	 * structure and optionally the data itself using the options given.
+	 * 
+	 * @param connection
+	 *            The connection to the Database
+	 * @param readData
+	 *            Whether or not to read the data or just the database structure
+	 * @param options
+	 *            The options to apply while reading (may be null)
+	 * @return a {@link PoiJoiMetaData} holding the table structures and
+	 *         optionally the table data
+	 */
+	@Override
+	public PoiJoiMetaData read(Connection connection, boolean readData,
+			PoiJoiOptions options) throws Exception {
+		MetaDataRowSink sink = new MetaDataRowSink(readData);
+		if (readRows(connection, readData, sink, options)) {
+			return sink.getMetaData();
+		}
+		return null;
+	}
+
+	/**
+	 * Passes each table structure and optionally its rows to the
+	 * {@link RowSink} using a {@link Connection}. Up to
+	 * {@link PoiJoiOptions#OPTION_READ_THREADS} tables are read at the same
+	 * time, each on a read only connection of its own opened from the URL of
+	 * the connection given, unless it's to an in memory database which only
+	 * that connection can see. The same goes for the rowid ranges of large
+	 * tables, {@link #OPTION_RANGE_THREADS} of which are read at the same time.
+	 * 
+	 * @param connection
+	 *            The connection to the Database
+	 * @param readData
+	 *            Whether or not to read the data or just the database structure
+	 * @param sink
+	 *            The sink to pass the tables and rows to
+	 * @param options
+	 *            The options to apply while reading (may be null)
+	 * @return True if the connection was valid and has been read otherwise
+	 *         false
+	 */
+	@Override
+	public boolean readRows(Connection connection, boolean readData,
+			RowSink sink, PoiJoiOptions options) throws Exception {
+		
+		if (isValidConnection(connection)) {
+			return readRows(connection, createConnectionFactory(connection),
+					readData, sink, options);
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Passes each table structure and optionally its rows to the
+	 * {@link RowSink}, reading the structure using a {@link Connection} and
+	 * reading up to {@link PoiJoiOptions#OPTION_READ_THREADS} tables at the
+	 * same time, each on a connection of its own from the
+	 * {@link ConnectionFactory}. Tables with more than
+	 * {@link #OPTION_MIN_RANGE_ROWS} rowids are split into up to
+	 * {@link #OPTION_RANGE_THREADS} rowid ranges which are read at the same
+	 * time, again each on a connection of its own, and passed on in order.
+	 * 
+	 * @param connection
+	 *            The connection to the Database
+	 * @param connectionFactory
+	 *            The factory of the connections the tables are read on, or
+	 *            null to read them one at a time on the connection given
+	 * @param readData
+	 *            Whether or not to read the data or just the database structure
+	 * @param sink
+	 *            The sink to pass the tables and rows to
+	 * @param options
+	 *            The options to apply while reading (may be null)
+	 * @return True if the connection was valid and has been read otherwise
+	 *         false
+	 */
+	public boolean readRows(final Connection connection,
+			final ConnectionFactory connectionFactory, final boolean readData,
+			RowSink sink, PoiJoiOptions options) throws Exception {
 		
 		if (isValidConnection(connection)) {
 			
 			Class.forName("org.sqlite.JDBC");
-			Map<String, TableDefinition> tableDefinitions = parseDatabaseMetaData(connection
-					.getMetaData());
-			Map<String, List<HashMap<String, Object>>> tableData = null;
-			if (readData) {
-				tableData = readData(connection, tableDefinitions);
+			int numberOfThreads = ParallelTableReader.getNumberOfThreads(options);
+			if (connectionFactory == null || !readData) {
+				numberOfThreads = 1;
+			}
+			final boolean ownConnections = numberOfThreads > 1;
+			final JDBCTableScanner tableScanner = new JDBCTableScanner(options);
+			final RowidRangeScanner rangeScanner = readData && connectionFactory != null
+					? createRangeScanner(tableScanner, connectionFactory, options) : null;
+
+			Map<String, TableDefinition> tableDefinitions = parseDatabaseMetaData(
+					connection, options);
+			
+			List<TableReader> tableReaders = new ArrayList<TableReader>();
+			for (final TableDefinition tableDefinition : tableDefinitions.values()) {
+				tableReaders.add(new TableReader() {
+					@Override
+					public void readTable(RowSink sink) throws Exception {
+						sink.startTable(tableDefinition);
+						if (readData) {
+							Connection tableConnection = ownConnections
+									? connectionFactory.createConnection() : connection;
+							try {
+								if (rangeScanner == null
+										|| !rangeScanner.scan(tableConnection, tableDefinition, sink)) {
+									tableScanner.scan(tableConnection, tableDefinition, sink);
+								}
+							} finally {
+								if (ownConnections) {
+									tableConnection.close();
+								}
+							}
+						}
+						sink.finishTable(tableDefinition);
+					}
+				});
 			}
-			return new PoiJoiMetaData(readData, tableDefinitions, tableData);
+			ParallelTableReader.read(tableReaders, sink, numberOfThreads);
+			return true;
 		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Creates a scanner which splits large tables into rowid ranges, or null
+	 * if the tables are to be read in one go.
+	 */
+	private RowidRangeScanner createRangeScanner(JDBCTableScanner tableScanner,
+			ConnectionFactory connectionFactory, PoiJoiOptions options) {
+
+		if (options == null) {
 			return null;
 		}
+		int numberOfRanges = options.getIntValue(OPTION_RANGE_THREADS, 1);
+		if (numberOfRanges < 1) {
+			throw new IllegalArgumentException("The value of option " + OPTION_RANGE_THREADS + " must be at least 1: " + numberOfRanges);
+		}
+		int minimumRangeRows = options.getIntValue(OPTION_MIN_RANGE_ROWS, DEFAULT_MIN_RANGE_ROWS);
+		if (minimumRangeRows < 1) {
+			throw new IllegalArgumentException("The value of option " + OPTION_MIN_RANGE_ROWS + " must be at least 1: " + minimumRangeRows);
+		}
+		int queueSize = options.getIntValue(PoiJoiOptions.OPTION_QUEUE_SIZE, PipelinedRowSink.DEFAULT_QUEUE_SIZE);
+		if (queueSize < 1) {
+			queueSize = PipelinedRowSink.DEFAULT_QUEUE_SIZE;
+		}
+
+		if (numberOfRanges < 2) {
+			return null;
+		}
+		return new RowidRangeScanner(tableScanner, connectionFactory,
+				numberOfRanges, minimumRangeRows, queueSize);
+	}
+
+	/**
+	 * Creates a factory of read only connections to the same database file as
+	 * the connection given, or null if it's an in memory database.
+	 */
+	private ConnectionFactory createConnectionFactory(Connection connection)
+			throws SQLException {
+
+		final String url = connection.getMetaData().getURL();
+		if (url == null || !url.startsWith(JDBC_URL_PREFIX)) {
+			return null;
+		}
+		String fileName = url.substring(JDBC_URL_PREFIX.length()).trim();
+		if (fileName.isEmpty() || fileName.contains(":memory:")
+				|| fileName.contains("mode=memory")) {
+			return null;
+		}
+
+		return new ConnectionFactory() {
+			@Override
+			public Connection createConnection() throws SQLException {
+				SQLiteConfig config = new SQLiteConfig();
+				config.setReadOnly(true);
+				return DriverManager.getConnection(url, config.toProperties());
+			}
+		};
 	}
 
 	private Map<String, TableDefinition> parseDatabaseMetaData(
-			DatabaseMetaData databaseMetaData) throws SQLException,
+			Connection connection, PoiJoiOptions options) throws SQLException,
 			UnsupportedMapping {
 		JDBCMetaDataReader metaDataReader = new JDBCMetaDataReader(
-				databaseMetaData);
+				connection.getMetaData());
 		String schemaName = metaDataReader.getDefaultSchemaName();
+		if (JDBCMetaDataCache.isEnabled(options)) {
+			return JDBCMetaDataCache.getTableDefinitions(connection, schemaName);
+		}
 		return metaDataReader.getTableDefinitions(
 				metaDataReader.getTableNames(schemaName), schemaName);
 	}
-
-	private Map<String, List<HashMap<String, Object>>> readData(
-			Connection connection, Map<String, TableDefinition> tableDefinitions)
-			throws SQLException, UnsupportedMapping {
-
-		Map<String, List<HashMap<String, Object>>> tableData = new HashMap<String, List<HashMap<String, Object>>>();
-		for (String tableName : tableDefinitions.keySet()) {
-
-			Statement statement = connection.createStatement();
-			ResultSet tableDataResultSet = statement
-					.executeQuery("select * from " + tableName);
-
-			List<HashMap<String, Object>> rowData = new ArrayList<HashMap<String, Object>>();
-			ResultSetMetaData resultSetMetaData = tableDataResultSet
-					.getMetaData();
-			while (tableDataResultSet.next()) {
-
-				HashMap<String, Object> columnData = new HashMap<String, Object>();
-				for (int columnIndex = 1; columnIndex <= resultSetMetaData
-						.getColumnCount(); columnIndex++) {
-					String columnName = resultSetMetaData
-							.getColumnName(columnIndex);
-					int columnType = resultSetMetaData
-							.getColumnType(columnIndex);
-					Object value = null;
-					switch (columnType) {
-					case Types.DATE:
-						value = tableDataResultSet.getDate(columnIndex);
-						break;
-					case Types.DECIMAL:
-					case Types.REAL:
-						value = tableDataResultSet.getDouble(columnIndex);
-						break;
-					case Types.INTEGER:
-						value = tableDataResultSet.getInt(columnIndex);
-						break;
-					case Types.BOOLEAN:
-					case Types.CLOB:
-					case Types.BLOB:
-					case Types.CHAR:
-					case Types.VARCHAR:
-						value = tableDataResultSet.getString(columnIndex);
-						break;
-					default:
-						throw new UnsupportedMapping("Unsupported Data Type: "
-								+ columnType);
-					}
-					columnData.put(columnName, value);
-				}
-				rowData.add(columnData);
-			}
-			tableData.put(tableName, rowData);
-		}
-		return tableData;
-	}
 }
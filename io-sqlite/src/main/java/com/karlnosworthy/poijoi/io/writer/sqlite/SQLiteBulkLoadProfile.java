@@ -0,0 +1,275 @@
+package com.karlnosworthy.poijoi.io.writer.sqlite;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.jdbc.JDBCLoadReport;
+import com.karlnosworthy.poijoi.jdbc.JDBCLoadSink;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+/**
+ * Trades durability for speed while an SQLite Database is being loaded, by
+ * changing the connection's pragmas for the duration of the load:
+ *
+ * <ul>
+ * <li>journal_mode to {@link #OPTION_JOURNAL_MODE} (WAL by default)</li>
+ * <li>synchronous to OFF</li>
+ * <li>cache_size to {@link #OPTION_CACHE_SIZE}</li>
+ * <li>page_size to {@link #OPTION_PAGE_SIZE}, which only takes effect on a
+ * database which is still empty</li>
+ * <li>temp_store to MEMORY</li>
+ * <li>locking_mode to EXCLUSIVE, so no other connection can use the database
+ * until the load has finished</li>
+ * </ul>
+ *
+ * Once the load has finished (or failed) every setting apart from the page
+ * size is put back the way it was. The value each setting actually had
+ * during the load, as SQLite may refuse a change (e.g. WAL for an in memory
+ * database), is recorded in the {@link JDBCLoadReport} of the load.
+ *
+ * If the journal mode is OFF a failed batch can't be rolled back, so rows of
+ * the batch may have been inserted before the failure is reported.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public final class SQLiteBulkLoadProfile {
+
+	private static final Logger logger = LoggerFactory.getLogger(SQLiteBulkLoadProfile.class);
+
+	/**
+	 * Load the database using the bulk load profile.
+	 */
+	public static final String OPTION_BULK_LOAD_PROFILE = "--sqlite-bulk-load-profile";
+
+	/**
+	 * The journal mode used during the load, one of OFF, WAL, MEMORY,
+	 * TRUNCATE, PERSIST or DELETE.
+	 */
+	public static final String OPTION_JOURNAL_MODE = "--sqlite-journal-mode";
+
+	/**
+	 * The cache size used during the load, as the number of pages or, if
+	 * negative, the number of KiB (as for the cache_size pragma).
+	 */
+	public static final String OPTION_CACHE_SIZE = "--sqlite-cache-size";
+
+	/**
+	 * The page size of a database created by the load, a power of two from
+	 * 512 to 65536.
+	 */
+	public static final String OPTION_PAGE_SIZE = "--sqlite-page-size";
+
+	public static final String DEFAULT_JOURNAL_MODE = "WAL";
+	public static final int DEFAULT_CACHE_SIZE = -262144;
+	public static final int DEFAULT_PAGE_SIZE = 4096;
+
+	private static final String[] JOURNAL_MODES = { "OFF", "WAL", "MEMORY", "TRUNCATE", "PERSIST", "DELETE" };
+
+	private String journalMode;
+	private int cacheSize;
+	private int pageSize;
+	private Map<String, String> previousValues;
+
+	private SQLiteBulkLoadProfile(String journalMode, int cacheSize, int pageSize) {
+		super();
+		this.journalMode = journalMode;
+		this.cacheSize = cacheSize;
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * The profile asked for by the options, or null if the database is to be
+	 * loaded with its own settings.
+	 *
+	 * @param options
+	 *            The options to apply while writing (may be null)
+	 */
+	public static SQLiteBulkLoadProfile fromOptions(PoiJoiOptions options) {
+		if (options == null || !options.getBooleanValue(OPTION_BULK_LOAD_PROFILE, false)) {
+			return null;
+		}
+
+		String journalMode = DEFAULT_JOURNAL_MODE;
+		if (options.hasValue(OPTION_JOURNAL_MODE)) {
+			journalMode = null;
+			for (String knownJournalMode : JOURNAL_MODES) {
+				if (knownJournalMode.equalsIgnoreCase(options.getValue(OPTION_JOURNAL_MODE).trim())) {
+					journalMode = knownJournalMode;
+				}
+			}
+			if (journalMode == null) {
+				throw new IllegalArgumentException("The value of option " + OPTION_JOURNAL_MODE + " isn't a known journal mode: " + options.getValue(OPTION_JOURNAL_MODE));
+			}
+		}
+
+		int cacheSize = options.getIntValue(OPTION_CACHE_SIZE, DEFAULT_CACHE_SIZE);
+		if (cacheSize == 0) {
+			throw new IllegalArgumentException("The value of option " + OPTION_CACHE_SIZE + " must not be 0");
+		}
+
+		int pageSize = options.getIntValue(OPTION_PAGE_SIZE, DEFAULT_PAGE_SIZE);
+		if (pageSize < 512 || pageSize > 65536 || Integer.bitCount(pageSize) != 1) {
+			throw new IllegalArgumentException("The value of option " + OPTION_PAGE_SIZE + " must be a power of two from 512 to 65536: " + pageSize);
+		}
+
+		return new SQLiteBulkLoadProfile(journalMode, cacheSize, pageSize);
+	}
+
+	/**
+	 * Change the connection's settings for the load, noting what they were so
+	 * that they can be restored and recording what they now are in the
+	 * report.
+	 */
+	public void apply(Connection connection, JDBCLoadReport loadReport) throws SQLException {
+		previousValues = new HashMap<String, String>();
+		for (String pragma : new String[] { "locking_mode", "journal_mode", "synchronous", "cache_size", "temp_store" }) {
+			previousValues.put(pragma, getPragma(connection, pragma));
+		}
+		String previousPageSize = getPragma(connection, "page_size");
+
+		// the page size has to be set before the journal mode is WAL
+		setPragma(connection, "page_size", String.valueOf(pageSize));
+		setPragma(connection, "locking_mode", "EXCLUSIVE");
+		setPragma(connection, "journal_mode", journalMode);
+		setPragma(connection, "synchronous", "OFF");
+		setPragma(connection, "cache_size", String.valueOf(cacheSize));
+		setPragma(connection, "temp_store", "MEMORY");
+
+		// a new page size only takes effect once the database is written to
+		String pageSizeValue = getPragma(connection, "page_count").equals("0")
+				? String.valueOf(pageSize) : getPragma(connection, "page_size");
+
+		loadReport.addSetting("journal_mode", describe(previousValues.get("journal_mode"), getPragma(connection, "journal_mode")));
+		loadReport.addSetting("synchronous", describe(previousValues.get("synchronous"), getPragma(connection, "synchronous")));
+		loadReport.addSetting("cache_size", describe(previousValues.get("cache_size"), getPragma(connection, "cache_size")));
+		loadReport.addSetting("page_size", describe(previousPageSize, pageSizeValue));
+		loadReport.addSetting("temp_store", describe(previousValues.get("temp_store"), getPragma(connection, "temp_store")));
+		loadReport.addSetting("locking_mode", describe(previousValues.get("locking_mode"), getPragma(connection, "locking_mode")));
+		logger.debug("Applied the bulk load profile, {}", loadReport.getSettings());
+	}
+
+	/**
+	 * Put the connection's settings back the way they were before the load.
+	 */
+	public void restore(Connection connection) throws SQLException {
+		if (previousValues == null) {
+			return;
+		}
+
+		setPragma(connection, "journal_mode", previousValues.get("journal_mode"));
+		setPragma(connection, "synchronous", previousValues.get("synchronous"));
+		setPragma(connection, "cache_size", previousValues.get("cache_size"));
+		setPragma(connection, "temp_store", previousValues.get("temp_store"));
+		setPragma(connection, "locking_mode", previousValues.get("locking_mode"));
+
+		// the exclusive lock is only given up the next time the database is read
+		getPragma(connection, "schema_version");
+		previousValues = null;
+	}
+
+	/**
+	 * Wrap a sink so that the profile is applied when its stream starts and
+	 * restored once the stream has finished or been aborted, recording the
+	 * settings in the sink's own report.
+	 */
+	public JDBCLoadSink wrap(Connection connection, JDBCLoadSink sink) {
+		return new ProfiledRowSink(connection, sink);
+	}
+
+	private static String describe(String previousValue, String value) {
+		if (previousValue == null || previousValue.equalsIgnoreCase(value)) {
+			return value;
+		}
+		return value + " (was " + previousValue + ")";
+	}
+
+	private static String getPragma(Connection connection, String pragma) throws SQLException {
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet resultSet = statement.executeQuery("pragma " + pragma);
+			return resultSet.next() ? resultSet.getString(1) : null;
+		} finally {
+			statement.close();
+		}
+	}
+
+	private static void setPragma(Connection connection, String pragma, String value) throws SQLException {
+		if (value == null) {
+			return;
+		}
+		Statement statement = connection.createStatement();
+		try {
+			statement.execute("pragma " + pragma + " = " + value);
+		} finally {
+			statement.close();
+		}
+	}
+
+	private final class ProfiledRowSink implements JDBCLoadSink {
+
+		private final Connection connection;
+		private final JDBCLoadSink sink;
+
+		ProfiledRowSink(Connection connection, JDBCLoadSink sink) {
+			super();
+			this.connection = connection;
+			this.sink = sink;
+		}
+
+		@Override
+		public void startStream() throws Exception {
+			apply(connection, sink.getLoadReport());
+			sink.startStream();
+		}
+
+		@Override
+		public void startTable(TableDefinition tableDefinition) throws Exception {
+			sink.startTable(tableDefinition);
+		}
+
+		@Override
+		public void writeRows(TableDefinition tableDefinition,
+				List<HashMap<String, Object>> rows) throws Exception {
+			sink.writeRows(tableDefinition, rows);
+		}
+
+		@Override
+		public void finishTable(TableDefinition tableDefinition) throws Exception {
+			sink.finishTable(tableDefinition);
+		}
+
+		@Override
+		public boolean finishStream() throws Exception {
+			try {
+				return sink.finishStream();
+			} finally {
+				restore(connection);
+			}
+		}
+
+		@Override
+		public void abortStream() {
+			sink.abortStream();
+			try {
+				restore(connection);
+			} catch (SQLException sqlException) {
+				logger.warn("Unable to restore the settings changed by the bulk load profile", sqlException);
+			}
+		}
+
+		@Override
+		public JDBCLoadReport getLoadReport() {
+			return sink.getLoadReport();
+		}
+	}
+}
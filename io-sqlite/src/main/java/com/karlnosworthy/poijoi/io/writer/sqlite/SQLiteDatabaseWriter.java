@@ -8,11 +8,14 @@ import org.slf4j.LoggerFactory;
 import org.sqlite.SQLiteConfig;
 
 import com.karlnosworthy.poijoi.PoiJoiOptions;
-import com.karlnosworthy.poijoi.io.OptionAware;
 import com.karlnosworthy.poijoi.io.SupportsFormat;
 import com.karlnosworthy.poijoi.io.reader.sqlite.SQLiteDatabaseReader;
+import com.karlnosworthy.poijoi.io.writer.ConfigurableWriter;
 import com.karlnosworthy.poijoi.io.writer.JDBCConnectionWriter;
+import com.karlnosworthy.poijoi.io.writer.RowSinkFactory;
 import com.karlnosworthy.poijoi.jdbc.JDBCDatabaseCreator;
+import com.karlnosworthy.poijoi.jdbc.JDBCLoadReport;
+import com.karlnosworthy.poijoi.jdbc.JDBCLoadSink;
 import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
 
 /**
@@ -21,14 +24,13 @@ import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
  * @author john.bartlett
  *
  */
-@SupportsFormat(type = "SQLITE")
-public class SQLiteDatabaseWriter implements JDBCConnectionWriter, OptionAware {
+@SupportsFormat(type = "SQLITE", stateless = true)
+public class SQLiteDatabaseWriter implements JDBCConnectionWriter,
+		RowSinkFactory<Connection>, ConfigurableWriter<Connection> {
 
 	private static final Logger logger = LoggerFactory
 			.getLogger(SQLiteDatabaseReader.class);
 
-	private PoiJoiOptions options;
-	
 	/**
 	 * Writes an SQLite Database (and optionally the data) based on the contents
 	 * of a {@link PoiJoiMetaData}.
@@ -46,21 +48,146 @@ public class SQLiteDatabaseWriter implements JDBCConnectionWriter, OptionAware {
 	@Override
 	public final boolean write(Connection connection, PoiJoiMetaData metaData,
 			WriteType writeType) throws Exception {
+		return write(connection, metaData, writeType, null);
+	}
+
+	/**
+	 * Writes an SQLite Database (and optionally the data) based on the contents
+	 * of a {@link PoiJoiMetaData}, using the options given.
+	 * 
+	 * If {@link SQLiteBulkLoadProfile#OPTION_BULK_LOAD_PROFILE} is given the
+	 * database is loaded using a {@link SQLiteBulkLoadProfile}, and if
+	 * {@link SQLiteInMemoryBuild#OPTION_BUILD_IN_MEMORY} is given it is built
+	 * in memory and then backed up to its file.
+	 * 
+	 * @param connection
+	 *            The connection to the SQLite Database
+	 * @param metaData
+	 *            A {@link PoiJoiMetaData} holding the table structures and
+	 *            optionally the table data
+	 * @param writeType
+	 *            Control over what gets written
+	 * @param options
+	 *            The options to apply while writing (may be null)
+	 *            
+	 * @return True if the write was successful otherwise false
+	 */
+	@Override
+	public final boolean write(Connection connection, PoiJoiMetaData metaData,
+			WriteType writeType, PoiJoiOptions options) throws Exception {
+		return load(connection, metaData, writeType, options) != null;
+	}
+
+	/**
+	 * Writes an SQLite Database in the same way as
+	 * {@link #write(Connection, PoiJoiMetaData, WriteType, PoiJoiOptions)},
+	 * returning the report of the load, including the settings changed by
+	 * any {@link SQLiteBulkLoadProfile}.
+	 * 
+	 * @return The report of the load if the write was successful otherwise
+	 *         null
+	 */
+	public final JDBCLoadReport load(Connection connection, PoiJoiMetaData metaData,
+			WriteType writeType, PoiJoiOptions options) throws Exception {
 		
 		if (isValidConnection(connection) && isValidMetadata(metaData)) {
 			
 			Class.forName("org.sqlite.JDBC");
-			JDBCDatabaseCreator databaseCreator = new JDBCDatabaseCreator(connection);
-	
-			if (options != null && options.hasValue("--version")) {
-				Integer versionNumber = Integer.parseInt(options
-						.getValue("--version"));
-				setVersionNumber(connection, versionNumber);
+			SQLiteInMemoryBuild inMemoryBuild = SQLiteInMemoryBuild.fromOptions(connection, options);
+			if (inMemoryBuild == null) {
+				return loadInto(connection, metaData, writeType, options);
 			}
 			
-			return databaseCreator.create(metaData, writeType);
+			try {
+				JDBCLoadReport loadReport = loadInto(inMemoryBuild.open(), metaData, writeType, options);
+				if (loadReport != null) {
+					inMemoryBuild.persist();
+				}
+				return loadReport;
+			} finally {
+				inMemoryBuild.close();
+			}
 		} else {
-			return false;
+			return null;
+		}
+	}
+
+	private JDBCLoadReport loadInto(Connection connection, PoiJoiMetaData metaData,
+			WriteType writeType, PoiJoiOptions options) throws Exception {
+		
+		JDBCDatabaseCreator databaseCreator = new JDBCDatabaseCreator(connection, options);
+		JDBCLoadReport loadReport = databaseCreator.getLoadReport();
+
+		applyVersionNumber(connection, options);
+		
+		SQLiteBulkLoadProfile bulkLoadProfile = SQLiteBulkLoadProfile.fromOptions(options);
+		if (bulkLoadProfile == null) {
+			return databaseCreator.create(metaData, writeType) ? loadReport : null;
+		}
+		
+		bulkLoadProfile.apply(connection, loadReport);
+		try {
+			return databaseCreator.create(metaData, writeType) ? loadReport : null;
+		} finally {
+			bulkLoadProfile.restore(connection);
+			logger.info("Loaded using the bulk load profile, {}", loadReport);
+		}
+	}
+
+	/**
+	 * Creates a sink which writes each table (and optionally its rows) to the
+	 * SQLite Database as it arrives, and which holds the report of its load.
+	 * 
+	 * @param connection
+	 *            The connection to the SQLite Database
+	 * @param writeType
+	 *            Control over what gets written
+	 * @param options
+	 *            The options to apply while writing (may be null)
+	 */
+	@Override
+	public JDBCLoadSink createSink(Connection connection, WriteType writeType,
+			PoiJoiOptions options) throws Exception {
+		
+		if (isValidConnection(connection)) {
+			
+			Class.forName("org.sqlite.JDBC");
+			SQLiteInMemoryBuild inMemoryBuild = SQLiteInMemoryBuild.fromOptions(connection, options);
+			if (inMemoryBuild == null) {
+				return createLoadSink(connection, writeType, options);
+			}
+			
+			try {
+				return inMemoryBuild.wrap(createLoadSink(inMemoryBuild.open(), writeType, options));
+			} catch (Exception exception) {
+				inMemoryBuild.close();
+				throw exception;
+			}
+		} else {
+			return null;
+		}
+	}
+
+	private JDBCLoadSink createLoadSink(Connection connection, WriteType writeType,
+			PoiJoiOptions options) throws Exception {
+		
+		JDBCDatabaseCreator databaseCreator = new JDBCDatabaseCreator(connection, options);
+		
+		applyVersionNumber(connection, options);
+		
+		JDBCLoadSink sink = databaseCreator.createSink(writeType);
+		SQLiteBulkLoadProfile bulkLoadProfile = SQLiteBulkLoadProfile.fromOptions(options);
+		if (bulkLoadProfile != null) {
+			sink = bulkLoadProfile.wrap(connection, sink);
+		}
+		return sink;
+	}
+
+	private void applyVersionNumber(Connection connection, PoiJoiOptions options) {
+		if (options != null && options.hasValue("--version")) {
+			Integer versionNumber = Integer.parseInt(options
+					.getValue("--version"));
+			setVersionNumber(connection, versionNumber);
 		}
 	}
 
@@ -78,10 +205,6 @@ public class SQLiteDatabaseWriter implements JDBCConnectionWriter, OptionAware {
 		return false;
 	}
 
-	public void setOptions(PoiJoiOptions options) {
-		this.options = options;
-	}
-	
 	@Override
 	public boolean isValidConnection(Connection connection) {
 		if (connection == null) {
@@ -0,0 +1,221 @@
+package com.karlnosworthy.poijoi.io.writer.sqlite;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.jdbc.JDBCLoadReport;
+import com.karlnosworthy.poijoi.jdbc.JDBCLoadSink;
+import com.karlnosworthy.poijoi.jdbc.JDBCMetaDataCache;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+/**
+ * Builds an SQLite Database in memory rather than in its file, so that none
+ * of the page writes made during the load go to disk, and then writes the
+ * finished database to the file in one go using SQLite's online backup.
+ *
+ * Anything already in the file is read into memory first, so the load adds
+ * to the database just as it would if it were made on the file itself. The
+ * file is only written to if the load succeeds, and is left as it was if
+ * the load fails.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+public final class SQLiteInMemoryBuild {
+
+	private static final Logger logger = LoggerFactory.getLogger(SQLiteInMemoryBuild.class);
+
+	/**
+	 * Build the database in memory and then back it up to its file.
+	 */
+	public static final String OPTION_BUILD_IN_MEMORY = "--sqlite-build-in-memory";
+
+	private final Connection targetConnection;
+	private final String fileName;
+	private Connection memoryConnection;
+
+	private SQLiteInMemoryBuild(Connection targetConnection, String fileName) {
+		super();
+		this.targetConnection = targetConnection;
+		this.fileName = fileName;
+	}
+
+	/**
+	 * The in memory build asked for by the options, or null if the database
+	 * is to be built on the connection itself, either because the options
+	 * don't ask for it or because the connection isn't to a file.
+	 *
+	 * @param targetConnection
+	 *            The connection to the SQLite Database being written
+	 * @param options
+	 *            The options to apply while writing (may be null)
+	 */
+	public static SQLiteInMemoryBuild fromOptions(Connection targetConnection,
+			PoiJoiOptions options) throws SQLException {
+
+		if (options == null || !options.getBooleanValue(OPTION_BUILD_IN_MEMORY, false)) {
+			return null;
+		}
+
+		String fileName = null;
+		Statement statement = targetConnection.createStatement();
+		try {
+			ResultSet resultSet = statement.executeQuery("pragma database_list");
+			while (resultSet.next()) {
+				if ("main".equals(resultSet.getString(2))) {
+					fileName = resultSet.getString(3);
+				}
+			}
+		} finally {
+			statement.close();
+		}
+
+		if (fileName == null || fileName.isEmpty()) {
+			logger.warn("Option {} ignored as the database isn't written to a file", OPTION_BUILD_IN_MEMORY);
+			return null;
+		}
+		return new SQLiteInMemoryBuild(targetConnection, fileName);
+	}
+
+	/**
+	 * Open the in memory database, holding a copy of the file's database,
+	 * which the load is to be made on.
+	 */
+	public Connection open() throws SQLException {
+		memoryConnection = DriverManager.getConnection("jdbc:sqlite::memory:");
+		try {
+			execute(memoryConnection, "restore from " + quote(fileName));
+		} catch (SQLException sqlException) {
+			close();
+			throw sqlException;
+		}
+		return memoryConnection;
+	}
+
+	/**
+	 * Write the in memory database to the file, replacing its contents.
+	 */
+	public void persist() throws SQLException {
+		long startTime = System.currentTimeMillis();
+		execute(memoryConnection, "backup to " + quote(fileName));
+		JDBCMetaDataCache.clear(targetConnection);
+		logger.info("Backed up the database built in memory to '{}' in {} ms", fileName,
+				System.currentTimeMillis() - startTime);
+	}
+
+	/**
+	 * Close the in memory database, throwing away anything not yet persisted.
+	 */
+	public void close() {
+		if (memoryConnection != null) {
+			try {
+				memoryConnection.close();
+			} catch (SQLException sqlException) {
+				logger.warn("Unable to close the in memory database", sqlException);
+			}
+			memoryConnection = null;
+		}
+	}
+
+	/**
+	 * Wrap a sink writing to the in memory database so that the database is
+	 * persisted once the stream has finished successfully, and closed once it
+	 * has finished or been aborted.
+	 */
+	public JDBCLoadSink wrap(JDBCLoadSink sink) {
+		return new InMemoryRowSink(sink);
+	}
+
+	/**
+	 * Quote a file name for the driver's backup and restore commands. The
+	 * driver reads the name up to the next matching quote and has no escape
+	 * for a quote inside it, so doubling one would change the file written to;
+	 * instead the name is quoted with whichever quote it doesn't contain.
+	 */
+	static String quote(String fileName) throws SQLException {
+		if (fileName.indexOf('"') < 0) {
+			return "\"" + fileName + "\"";
+		}
+		if (fileName.indexOf('\'') < 0) {
+			return "'" + fileName + "'";
+		}
+		throw new SQLException("Unable to quote the file name '" + fileName
+				+ "' as it contains both single and double quotes");
+	}
+
+	private static void execute(Connection connection, String command) throws SQLException {
+		Statement statement = connection.createStatement();
+		try {
+			statement.executeUpdate(command);
+		} finally {
+			statement.close();
+		}
+	}
+
+	private final class InMemoryRowSink implements JDBCLoadSink {
+
+		private final JDBCLoadSink sink;
+
+		InMemoryRowSink(JDBCLoadSink sink) {
+			super();
+			this.sink = sink;
+		}
+
+		@Override
+		public void startStream() throws Exception {
+			sink.startStream();
+		}
+
+		@Override
+		public void startTable(TableDefinition tableDefinition) throws Exception {
+			sink.startTable(tableDefinition);
+		}
+
+		@Override
+		public void writeRows(TableDefinition tableDefinition,
+				List<HashMap<String, Object>> rows) throws Exception {
+			sink.writeRows(tableDefinition, rows);
+		}
+
+		@Override
+		public void finishTable(TableDefinition tableDefinition) throws Exception {
+			sink.finishTable(tableDefinition);
+		}
+
+		@Override
+		public boolean finishStream() throws Exception {
+			try {
+				boolean finished = sink.finishStream();
+				if (finished) {
+					persist();
+				}
+				return finished;
+			} finally {
+				close();
+			}
+		}
+
+		@Override
+		public void abortStream() {
+			try {
+				sink.abortStream();
+			} finally {
+				close();
+			}
+		}
+
+		@Override
+		public JDBCLoadReport getLoadReport() {
+			return sink.getLoadReport();
+		}
+	}
+}
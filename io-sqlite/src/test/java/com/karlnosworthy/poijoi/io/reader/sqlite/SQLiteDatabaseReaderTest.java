@@ -5,8 +5,11 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
@@ -16,7 +19,12 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.writer.Writer.WriteType;
+import com.karlnosworthy.poijoi.io.writer.sqlite.SQLiteDatabaseWriter;
+import com.karlnosworthy.poijoi.jdbc.JDBCTableScanner;
 import com.karlnosworthy.poijoi.model.ColumnDefinition;
+import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
 import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
 import com.karlnosworthy.poijoi.model.TableDefinition;
 
@@ -134,4 +142,170 @@ public class SQLiteDatabaseReaderTest {
 			}
 		}
 	}
+
+	/**
+	 * Test that reading the tables at the same time, each on a connection of
+	 * its own, gives the same tables as reading them one after another
+	 */
+	@Test
+	public void testParallelReadMatchesSequential() throws Exception {
+		String path = getClass().getClassLoader().getResource("test.sqlite")
+				.getPath();
+
+		Connection connection = null;
+		try {
+			connection = DriverManager.getConnection("jdbc:sqlite:" + path);
+
+			PoiJoiMetaData metaData = reader.read(connection, true);
+
+			Map<String, String> options = new HashMap<String, String>();
+			options.put(PoiJoiOptions.OPTION_READ_THREADS, "4");
+			PoiJoiMetaData parallelMetaData = reader.read(connection, true, new PoiJoiOptions(options));
+
+			assertEquals(metaData.getTableDefinitions().keySet(), parallelMetaData.getTableDefinitions().keySet());
+			for (String tableName : metaData.getTableDefinitions().keySet()) {
+				assertTrue(parallelMetaData.getTableDefinition(tableName).isSameAs(metaData.getTableDefinition(tableName)));
+				assertEquals(metaData.getTableData(tableName), parallelMetaData.getTableData(tableName));
+			}
+		} finally {
+			if (connection != null) {
+				connection.close();
+			}
+		}
+	}
+
+	/**
+	 * Test that splitting the tables into rowid ranges, with gaps in the
+	 * rowids and a table without any, gives the same rows in the same order
+	 * as reading each table in one go
+	 */
+	@Test
+	public void testRangeReadMatchesSequential() throws Exception {
+		File file = File.createTempFile("poijoi", ".sqlite");
+		file.deleteOnExit();
+
+		Connection connection = null;
+		try {
+			connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+			assertTrue(new SQLiteDatabaseWriter().write(connection, createMetaData(2, 5003), WriteType.BOTH));
+
+			Statement statement = connection.createStatement();
+			statement.execute("delete from Table0 where col3Integer between 1000 and 2500");
+			statement.execute("create table Keyed (col3Integer INTEGER PRIMARY KEY, col1String TEXT) without rowid");
+			statement.execute("insert into Keyed values (1, 'one'), (2, 'two')");
+			statement.close();
+
+			PoiJoiMetaData metaData = reader.read(connection, true);
+
+			Map<String, String> options = new HashMap<String, String>();
+			options.put(SQLiteDatabaseReader.OPTION_RANGE_THREADS, "4");
+			options.put(SQLiteDatabaseReader.OPTION_MIN_RANGE_ROWS, "1000");
+			options.put(PoiJoiOptions.OPTION_QUEUE_SIZE, "1");
+			PoiJoiMetaData rangeMetaData = reader.read(connection, true, new PoiJoiOptions(options));
+
+			assertEquals(3, rangeMetaData.getTableDefinitions().size());
+			assertEquals(3502, rangeMetaData.getTableData("Table0").size());
+			assertEquals(5003, rangeMetaData.getTableData("Table1").size());
+			assertEquals(2, rangeMetaData.getTableData("Keyed").size());
+			for (String tableName : metaData.getTableDefinitions().keySet()) {
+				assertEquals(metaData.getTableData(tableName), rangeMetaData.getTableData(tableName));
+			}
+		} finally {
+			if (connection != null) {
+				connection.close();
+			}
+		}
+	}
+
+	/**
+	 * Check that an in memory database, which other connections can't see, is
+	 * still read when reading the tables at the same time is asked for
+	 */
+	@Test
+	public void testParallelReadOfMemoryDatabase() throws Exception {
+		Connection connection = null;
+		try {
+			connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+			assertTrue(new SQLiteDatabaseWriter().write(connection, createMetaData(2, 10), WriteType.BOTH));
+
+			Map<String, String> options = new HashMap<String, String>();
+			options.put(PoiJoiOptions.OPTION_READ_THREADS, "2");
+			PoiJoiMetaData metaData = reader.read(connection, true, new PoiJoiOptions(options));
+
+			assertEquals(2, metaData.getTableDefinitions().size());
+			assertEquals(10, metaData.getTableData("Table1").size());
+		} finally {
+			if (connection != null) {
+				connection.close();
+			}
+		}
+	}
+
+	/**
+	 * Check that the rows all come through, in batches, whatever the number
+	 * fetched from the database at a time
+	 */
+	@Test
+	public void testFetchSize() throws Exception {
+		Connection connection = null;
+		try {
+			connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+			assertTrue(new SQLiteDatabaseWriter().write(connection, createMetaData(1, 1201), WriteType.BOTH));
+
+			Map<String, String> options = new HashMap<String, String>();
+			options.put(JDBCTableScanner.OPTION_FETCH_SIZE, "7");
+			PoiJoiMetaData metaData = reader.read(connection, true, new PoiJoiOptions(options));
+
+			List<HashMap<String, Object>> rows = metaData.getTableData("Table0");
+			assertEquals(1201, rows.size());
+			assertEquals("Table0 row 1200", rows.get(1200).get("col1String"));
+			assertEquals(Integer.valueOf(1200), rows.get(1200).get("col3Integer"));
+			assertEquals(Double.valueOf(1200.25), rows.get(1200).get("col4Decimal"));
+		} finally {
+			if (connection != null) {
+				connection.close();
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidFetchSize() throws Exception {
+		Connection connection = null;
+		try {
+			connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+			Map<String, String> options = new HashMap<String, String>();
+			options.put(JDBCTableScanner.OPTION_FETCH_SIZE, "0");
+			reader.read(connection, true, new PoiJoiOptions(options));
+		} finally {
+			if (connection != null) {
+				connection.close();
+			}
+		}
+	}
+
+	private PoiJoiMetaData createMetaData(int numberOfTables, int numberOfRows) {
+		Map<String, TableDefinition> tableDefinitions = new HashMap<String, TableDefinition>();
+		Map<String, List<HashMap<String, Object>>> tableData = new HashMap<String, List<HashMap<String, Object>>>();
+
+		for (int tableIndex = 0; tableIndex < numberOfTables; tableIndex++) {
+			String tableName = "Table" + tableIndex;
+
+			List<ColumnDefinition> columnDefinitions = new ArrayList<ColumnDefinition>();
+			columnDefinitions.add(new ColumnDefinition("col1String", 0, ColumnType.STRING));
+			columnDefinitions.add(new ColumnDefinition("col3Integer", 1, ColumnType.INTEGER_NUMBER));
+			columnDefinitions.add(new ColumnDefinition("col4Decimal", 2, ColumnType.DECIMAL_NUMBER));
+			tableDefinitions.put(tableName, new TableDefinition(tableName, columnDefinitions));
+
+			List<HashMap<String, Object>> rows = new ArrayList<HashMap<String, Object>>();
+			for (int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
+				HashMap<String, Object> row = new HashMap<String, Object>();
+				row.put("col1String", tableName + " row " + rowIndex);
+				row.put("col3Integer", Integer.valueOf(rowIndex));
+				row.put("col4Decimal", Double.valueOf(rowIndex + 0.25));
+				rows.add(row);
+			}
+			tableData.put(tableName, rows);
+		}
+		return new PoiJoiMetaData(true, tableDefinitions, tableData);
+	}
 }
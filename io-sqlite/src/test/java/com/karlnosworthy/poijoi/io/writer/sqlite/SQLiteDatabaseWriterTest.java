@@ -7,20 +7,35 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.RowSink;
 import com.karlnosworthy.poijoi.io.writer.Writer.WriteType;
+import com.karlnosworthy.poijoi.jdbc.BatchInsertException;
+import com.karlnosworthy.poijoi.jdbc.ConnectionFactory;
+import com.karlnosworthy.poijoi.jdbc.JDBCDatabaseCreator;
+import com.karlnosworthy.poijoi.jdbc.JDBCLoadReport;
+import com.karlnosworthy.poijoi.jdbc.JDBCLoadSink;
+import com.karlnosworthy.poijoi.jdbc.SQLStatementCreator;
 import com.karlnosworthy.poijoi.model.ColumnDefinition;
 import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
+import com.karlnosworthy.poijoi.model.IndexDefinition;
 import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
 import com.karlnosworthy.poijoi.model.TableDefinition;
 
@@ -168,4 +183,730 @@ public class SQLiteDatabaseWriterTest {
 			}
 		}
 	}
+
+	/**
+	 * Check that the rows are inserted in batches of the configured size.
+	 */
+	@Test
+	public void testBatchedWrite() throws Exception {
+		Map<String, String> optionValues = new HashMap<String, String>();
+		optionValues.put(JDBCDatabaseCreator.OPTION_BATCH_SIZE, "2");
+
+		Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+		try {
+			JDBCDatabaseCreator databaseCreator = new JDBCDatabaseCreator(connection,
+					new PoiJoiOptions(optionValues));
+			TableDefinition tableDefinition = createBatchTableDefinition();
+
+			RowSink sink = databaseCreator.createSink(WriteType.BOTH);
+			sink.startStream();
+			sink.startTable(tableDefinition);
+			sink.writeRows(tableDefinition, createBatchRows(1, 2, 3, 4, 5));
+			sink.finishTable(tableDefinition);
+			assertTrue(sink.finishStream());
+
+			JDBCLoadReport loadReport = databaseCreator.getLoadReport();
+			assertEquals(5, loadReport.getNumberOfRowsInserted());
+			assertEquals(5, loadReport.getNumberOfRowsInserted("BatchTable"));
+			assertEquals(3, loadReport.getNumberOfBatches());
+
+			Statement statement = connection.createStatement();
+			ResultSet resultSet = statement.executeQuery("select count(*) from BatchTable");
+			assertTrue(resultSet.next());
+			assertEquals(5, resultSet.getInt(1));
+			statement.close();
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * Check that the row which failed a batch reaches the caller of write,
+	 * rather than the write just returning false.
+	 */
+	@Test
+	public void testWriteReportsFailedRow() throws Exception {
+		Map<String, TableDefinition> tableDefinitions = new HashMap<String, TableDefinition>();
+		tableDefinitions.put("BatchTable", createBatchTableDefinition());
+		Map<String, List<HashMap<String, Object>>> tableData = new HashMap<String, List<HashMap<String, Object>>>();
+		tableData.put("BatchTable", createBatchRows(1, 2, 3, 2));
+
+		Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+		try {
+			// the inserts go to a temporary table of the same name, which rejects the duplicate
+			Statement statement = connection.createStatement();
+			statement.execute("create temp table BatchTable (code integer unique, name text)");
+			statement.close();
+
+			writer.write(connection, new PoiJoiMetaData(true, tableDefinitions, tableData), WriteType.BOTH);
+			fail("Expected the duplicate row to fail the write");
+		} catch (BatchInsertException batchInsertException) {
+			assertEquals("BatchTable", batchInsertException.getTableName());
+			assertEquals(3, batchInsertException.getRowNumber());
+			assertEquals(2, batchInsertException.getRowData().get("code"));
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * Check that the row which caused a batch to fail is reported.
+	 */
+	@Test
+	public void testBatchedWriteReportsFailedRow() throws Exception {
+		Map<String, String> optionValues = new HashMap<String, String>();
+		optionValues.put(JDBCDatabaseCreator.OPTION_BATCH_SIZE, "3");
+
+		Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+		try {
+			JDBCDatabaseCreator databaseCreator = new JDBCDatabaseCreator(connection,
+					new PoiJoiOptions(optionValues));
+			TableDefinition tableDefinition = createBatchTableDefinition();
+
+			RowSink sink = databaseCreator.createSink(WriteType.BOTH);
+			sink.startStream();
+			sink.startTable(tableDefinition);
+
+			Statement statement = connection.createStatement();
+			statement.execute("create unique index BatchTableCode on BatchTable(code)");
+			statement.close();
+
+			try {
+				sink.writeRows(tableDefinition, createBatchRows(1, 2, 3, 4, 2, 6));
+				fail("Expected the duplicate row to fail the batch");
+			} catch (BatchInsertException batchInsertException) {
+				assertEquals("BatchTable", batchInsertException.getTableName());
+				assertEquals(4, batchInsertException.getRowNumber());
+				assertEquals(2, batchInsertException.getRowData().get("code"));
+			} finally {
+				sink.abortStream();
+			}
+
+			assertEquals(4, databaseCreator.getLoadReport().getNumberOfRowsInserted());
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * Check that a bulk load commits every N rows and then restores the
+	 * connection's auto-commit mode.
+	 */
+	@Test
+	public void testBulkLoadCommitsEveryNRows() throws Exception {
+		Map<String, String> optionValues = new HashMap<String, String>();
+		optionValues.put(JDBCDatabaseCreator.OPTION_COMMIT_EVERY, "2");
+
+		Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+		try {
+			JDBCDatabaseCreator databaseCreator = new JDBCDatabaseCreator(connection,
+					new PoiJoiOptions(optionValues));
+			assertTrue(databaseCreator.isBulkLoad());
+			TableDefinition tableDefinition = createBatchTableDefinition();
+
+			RowSink sink = databaseCreator.createSink(WriteType.BOTH);
+			sink.startStream();
+			assertFalse(connection.getAutoCommit());
+			sink.startTable(tableDefinition);
+			sink.writeRows(tableDefinition, createBatchRows(1, 2, 3, 4, 5));
+			sink.finishTable(tableDefinition);
+			assertTrue(sink.finishStream());
+			assertTrue(connection.getAutoCommit());
+
+			JDBCLoadReport loadReport = databaseCreator.getLoadReport();
+			assertEquals(5, loadReport.getNumberOfRowsCommitted());
+			assertEquals(3, loadReport.getNumberOfCommits());
+
+			Statement statement = connection.createStatement();
+			ResultSet resultSet = statement.executeQuery("select count(*) from BatchTable");
+			assertTrue(resultSet.next());
+			assertEquals(5, resultSet.getInt(1));
+			statement.close();
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * Check that a failed bulk load rolls back everything since the last
+	 * commit and restores the connection's auto-commit mode.
+	 */
+	@Test
+	public void testBulkLoadRollsBackOnFailure() throws Exception {
+		Map<String, String> optionValues = new HashMap<String, String>();
+		optionValues.put(JDBCDatabaseCreator.OPTION_COMMIT_EVERY, "3");
+
+		Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+		try {
+			JDBCDatabaseCreator databaseCreator = new JDBCDatabaseCreator(connection,
+					new PoiJoiOptions(optionValues));
+			TableDefinition tableDefinition = createBatchTableDefinition();
+
+			RowSink sink = databaseCreator.createSink(WriteType.BOTH);
+			sink.startStream();
+			sink.startTable(tableDefinition);
+
+			Statement statement = connection.createStatement();
+			statement.execute("create unique index BatchTableCode on BatchTable(code)");
+			statement.close();
+
+			try {
+				sink.writeRows(tableDefinition, createBatchRows(1, 2, 3, 4, 2));
+				sink.finishTable(tableDefinition);
+				fail("Expected the duplicate row to fail the batch");
+			} catch (BatchInsertException batchInsertException) {
+				assertEquals(4, batchInsertException.getRowNumber());
+			} finally {
+				sink.abortStream();
+			}
+			assertTrue(connection.getAutoCommit());
+			assertEquals(3, databaseCreator.getLoadReport().getNumberOfRowsCommitted());
+
+			statement = connection.createStatement();
+			ResultSet resultSet = statement.executeQuery("select count(*) from BatchTable");
+			assertTrue(resultSet.next());
+			assertEquals(3, resultSet.getInt(1));
+			statement.close();
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * Check that the failed row is located when the first batch of a bulk
+	 * load fails, before anything (including the table) has been committed.
+	 */
+	@Test
+	public void testBulkLoadFailureInFirstBatch() throws Exception {
+		Map<String, String> optionValues = new HashMap<String, String>();
+		optionValues.put(JDBCDatabaseCreator.OPTION_BULK_LOAD, "");
+
+		Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+		try {
+			JDBCDatabaseCreator databaseCreator = new JDBCDatabaseCreator(connection,
+					new PoiJoiOptions(optionValues));
+			TableDefinition tableDefinition = createBatchTableDefinition();
+
+			RowSink sink = databaseCreator.createSink(WriteType.BOTH);
+			sink.startStream();
+			sink.startTable(tableDefinition);
+
+			Statement statement = connection.createStatement();
+			statement.execute("create unique index BatchTableCode on BatchTable(code)");
+			statement.close();
+
+			try {
+				sink.writeRows(tableDefinition, createBatchRows(1, 2, 3, 2));
+				sink.finishTable(tableDefinition);
+				fail("Expected the duplicate row to fail the batch");
+			} catch (BatchInsertException batchInsertException) {
+				assertEquals(3, batchInsertException.getRowNumber());
+				assertEquals(2, batchInsertException.getRowData().get("code"));
+			} finally {
+				sink.abortStream();
+			}
+			assertTrue(connection.getAutoCommit());
+			assertEquals(-1, countRows(connection, "BatchTable"));
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * Check that deferred indexes are only created once the data has been
+	 * loaded, using the connections provided by a {@link ConnectionFactory}.
+	 */
+	@Test
+	public void testDeferredIndexes() throws Exception {
+		Map<String, String> optionValues = new HashMap<String, String>();
+		optionValues.put(JDBCDatabaseCreator.OPTION_DEFER_INDEXES, "");
+		optionValues.put(JDBCDatabaseCreator.OPTION_INDEX_THREADS, "2");
+
+		final File file = File.createTempFile("deferred", ".sqlite");
+		file.deleteOnExit();
+
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+		try {
+			JDBCDatabaseCreator databaseCreator = new JDBCDatabaseCreator(connection,
+					new PoiJoiOptions(optionValues));
+			databaseCreator.setConnectionFactory(new ConnectionFactory() {
+				@Override
+				public Connection createConnection() throws SQLException {
+					return DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+				}
+			});
+
+			RowSink sink = databaseCreator.createSink(WriteType.BOTH);
+			sink.startStream();
+			for (String tableName : new String[] { "TableA", "TableB" }) {
+				TableDefinition tableDefinition = createIndexedTableDefinition(tableName);
+				sink.startTable(tableDefinition);
+				sink.writeRows(tableDefinition, createBatchRows(1, 2, 3));
+				sink.finishTable(tableDefinition);
+			}
+			assertEquals(0, countIndexes(connection));
+			assertTrue(sink.finishStream());
+			assertEquals(2, countIndexes(connection));
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * Check that a table is only loaded once the table it references has been
+	 * loaded in full, when the tables are loaded on connections of their own.
+	 */
+	@Test
+	public void testParallelLoad() throws Exception {
+		Map<String, String> optionValues = new HashMap<String, String>();
+		optionValues.put(JDBCDatabaseCreator.OPTION_LOAD_THREADS, "2");
+
+		final File file = File.createTempFile("parallel", ".sqlite");
+		file.deleteOnExit();
+
+		Map<String, TableDefinition> tableDefinitions = new LinkedHashMap<String, TableDefinition>();
+		tableDefinitions.put("Child", createChildTableDefinition());
+		tableDefinitions.put("Parent", createIndexedTableDefinition("Parent"));
+
+		int[] codes = new int[1200];
+		for (int codeIndex = 0; codeIndex < codes.length; codeIndex++) {
+			codes[codeIndex] = codeIndex;
+		}
+		Map<String, List<HashMap<String, Object>>> tableData = new HashMap<String, List<HashMap<String, Object>>>();
+		tableData.put("Child", createBatchRows(1, 2, 3));
+		tableData.put("Parent", createBatchRows(codes));
+
+		final Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+		try {
+			// the number of parent rows each time a table starts to load
+			final List<Integer> parentRowCounts = new ArrayList<Integer>();
+			JDBCDatabaseCreator databaseCreator = new JDBCDatabaseCreator(new SQLStatementCreator(),
+					connection, new PoiJoiOptions(optionValues));
+			databaseCreator.setConnectionFactory(new ConnectionFactory() {
+				@Override
+				public Connection createConnection() throws SQLException {
+					synchronized (parentRowCounts) {
+						parentRowCounts.add(countRows(connection, "Parent"));
+					}
+					return DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+				}
+			});
+			assertTrue(databaseCreator.isParallelLoad());
+
+			assertTrue(databaseCreator.create(new PoiJoiMetaData(true, tableDefinitions, tableData), WriteType.BOTH));
+			assertEquals(Arrays.asList(-1, 1200), parentRowCounts);
+			assertEquals(1200, countRows(connection, "Parent"));
+			assertEquals(3, countRows(connection, "Child"));
+			assertEquals(1203, databaseCreator.getLoadReport().getNumberOfRowsInserted());
+			assertEquals(1, countIndexes(connection));
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * Check that tables which don't reference each other are loaded at the
+	 * same time, each on a connection of its own.
+	 */
+	@Test
+	public void testParallelLoadOfIndependentTables() throws Exception {
+		Map<String, String> optionValues = new HashMap<String, String>();
+		optionValues.put(JDBCDatabaseCreator.OPTION_LOAD_THREADS, "2");
+
+		final File file = File.createTempFile("parallel", ".sqlite");
+		file.deleteOnExit();
+
+		Map<String, TableDefinition> tableDefinitions = new LinkedHashMap<String, TableDefinition>();
+		tableDefinitions.put("TableA", createIndexedTableDefinition("TableA"));
+		tableDefinitions.put("TableB", createIndexedTableDefinition("TableB"));
+
+		Map<String, List<HashMap<String, Object>>> tableData = new HashMap<String, List<HashMap<String, Object>>>();
+		tableData.put("TableA", createBatchRows(1, 2, 3));
+		tableData.put("TableB", createBatchRows(4, 5));
+
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+		try {
+			// each table's connection is only handed over once both tables have asked for one
+			final CountDownLatch tablesLoading = new CountDownLatch(2);
+			final AtomicInteger tablesLoadedTogether = new AtomicInteger();
+			JDBCDatabaseCreator databaseCreator = new JDBCDatabaseCreator(new SQLStatementCreator(),
+					connection, new PoiJoiOptions(optionValues));
+			databaseCreator.setConnectionFactory(new ConnectionFactory() {
+				@Override
+				public Connection createConnection() throws SQLException {
+					tablesLoading.countDown();
+					try {
+						if (tablesLoading.await(10, TimeUnit.SECONDS)) {
+							tablesLoadedTogether.incrementAndGet();
+						}
+					} catch (InterruptedException interruptedException) {
+						Thread.currentThread().interrupt();
+					}
+					return DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+				}
+			});
+
+			assertTrue(databaseCreator.create(new PoiJoiMetaData(true, tableDefinitions, tableData), WriteType.BOTH));
+			assertEquals(2, tablesLoadedTogether.get());
+			assertEquals(3, countRows(connection, "TableA"));
+			assertEquals(2, countRows(connection, "TableB"));
+			assertEquals(5, databaseCreator.getLoadReport().getNumberOfRowsInserted());
+			assertEquals(2, countIndexes(connection));
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * Check that a table which fails to load stops the tables referencing it
+	 * from being loaded but not the other tables.
+	 */
+	@Test
+	public void testParallelLoadFailure() throws Exception {
+		Map<String, String> optionValues = new HashMap<String, String>();
+		optionValues.put(JDBCDatabaseCreator.OPTION_LOAD_THREADS, "3");
+		optionValues.put(JDBCDatabaseCreator.OPTION_BULK_LOAD, "");
+
+		final File file = File.createTempFile("parallel", ".sqlite");
+		file.deleteOnExit();
+
+		Map<String, TableDefinition> tableDefinitions = new LinkedHashMap<String, TableDefinition>();
+		tableDefinitions.put("Parent", createIndexedTableDefinition("Parent"));
+		tableDefinitions.put("Child", createChildTableDefinition());
+		tableDefinitions.put("Other", createIndexedTableDefinition("Other"));
+
+		Map<String, List<HashMap<String, Object>>> tableData = new HashMap<String, List<HashMap<String, Object>>>();
+		tableData.put("Parent", createBatchRows(1, 2, 3));
+		tableData.put("Child", createBatchRows(1, 2, 3));
+		tableData.put("Other", createBatchRows(1, 2, 3));
+
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+		try {
+			// the parent table can't be created as it already exists
+			Statement statement = connection.createStatement();
+			statement.execute("create table Parent (code integer)");
+			statement.close();
+
+			JDBCDatabaseCreator databaseCreator = new JDBCDatabaseCreator(new SQLStatementCreator(),
+					connection, new PoiJoiOptions(optionValues));
+			databaseCreator.setConnectionFactory(new ConnectionFactory() {
+				@Override
+				public Connection createConnection() throws SQLException {
+					return DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+				}
+			});
+
+			assertFalse(databaseCreator.create(new PoiJoiMetaData(true, tableDefinitions, tableData), WriteType.BOTH));
+			assertEquals(0, countRows(connection, "Parent"));
+			assertEquals(-1, countRows(connection, "Child"));
+			assertEquals(3, countRows(connection, "Other"));
+		} finally {
+			connection.close();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidLoadThreads() throws Exception {
+		Map<String, String> optionValues = new HashMap<String, String>();
+		optionValues.put(JDBCDatabaseCreator.OPTION_LOAD_THREADS, "0");
+
+		new JDBCDatabaseCreator(null, new PoiJoiOptions(optionValues));
+	}
+
+	/**
+	 * Check that the bulk load profile's settings are used during the load,
+	 * reported and put back once the load has finished.
+	 */
+	@Test
+	public void testBulkLoadProfile() throws Exception {
+		Map<String, String> optionValues = new HashMap<String, String>();
+		optionValues.put(SQLiteBulkLoadProfile.OPTION_BULK_LOAD_PROFILE, "");
+
+		File file = File.createTempFile("profile", ".sqlite");
+		file.deleteOnExit();
+		file.delete();
+
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+		try {
+			TableDefinition tableDefinition = createBatchTableDefinition();
+
+			JDBCLoadSink sink = writer.createSink(connection, WriteType.BOTH, new PoiJoiOptions(optionValues));
+			sink.startStream();
+			assertEquals("wal", getPragma(connection, "journal_mode"));
+			assertEquals("0", getPragma(connection, "synchronous"));
+			assertEquals("exclusive", getPragma(connection, "locking_mode"));
+			assertEquals("2", getPragma(connection, "temp_store"));
+			sink.startTable(tableDefinition);
+			sink.writeRows(tableDefinition, createBatchRows(1, 2, 3));
+			sink.finishTable(tableDefinition);
+			assertTrue(sink.finishStream());
+
+			assertEquals("delete", getPragma(connection, "journal_mode"));
+			assertEquals("2", getPragma(connection, "synchronous"));
+			assertEquals("normal", getPragma(connection, "locking_mode"));
+			assertEquals("0", getPragma(connection, "temp_store"));
+			assertEquals("4096", getPragma(connection, "page_size"));
+
+			Map<String, String> settings = sink.getLoadReport().getSettings();
+			assertEquals("wal (was delete)", settings.get("journal_mode"));
+			assertEquals("0 (was 2)", settings.get("synchronous"));
+			assertEquals(String.valueOf(SQLiteBulkLoadProfile.DEFAULT_CACHE_SIZE), settings.get("cache_size").split(" ")[0]);
+			assertTrue(settings.get("page_size").startsWith("4096"));
+			assertTrue(sink.getLoadReport().toString().contains("settings"));
+
+			// the database is no longer locked by the load
+			Connection otherConnection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+			try {
+				assertEquals(3, countRows(otherConnection, "BatchTable"));
+			} finally {
+				otherConnection.close();
+			}
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * Check that a database built in memory is backed up to its file along
+	 * with what was already in the file.
+	 */
+	@Test
+	public void testBuildInMemory() throws Exception {
+		Map<String, String> optionValues = new HashMap<String, String>();
+		optionValues.put(SQLiteInMemoryBuild.OPTION_BUILD_IN_MEMORY, "");
+		optionValues.put("--version", "7");
+
+		File file = File.createTempFile("memory", ".sqlite");
+		file.deleteOnExit();
+
+		Map<String, TableDefinition> tableDefinitions = new HashMap<String, TableDefinition>();
+		tableDefinitions.put("BatchTable", createBatchTableDefinition());
+		Map<String, List<HashMap<String, Object>>> tableData = new HashMap<String, List<HashMap<String, Object>>>();
+		tableData.put("BatchTable", createBatchRows(1, 2, 3, 4));
+
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+		try {
+			Statement statement = connection.createStatement();
+			statement.execute("create table Existing (code integer)");
+			statement.execute("insert into Existing values (1)");
+			statement.close();
+
+			JDBCLoadReport loadReport = writer.load(connection, new PoiJoiMetaData(true, tableDefinitions, tableData),
+					WriteType.BOTH, new PoiJoiOptions(optionValues));
+			assertNotNull(loadReport);
+			assertEquals(4, loadReport.getNumberOfRowsInserted());
+
+			assertEquals(1, countRows(connection, "Existing"));
+			assertEquals(4, countRows(connection, "BatchTable"));
+			assertEquals("7", getPragma(connection, "user_version"));
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * Check that the file is left as it was when a load built in memory is
+	 * aborted.
+	 */
+	@Test
+	public void testBuildInMemoryToQuotedFileName() throws Exception {
+		Map<String, String> optionValues = new HashMap<String, String>();
+		optionValues.put(SQLiteInMemoryBuild.OPTION_BUILD_IN_MEMORY, "");
+
+		File directory = File.createTempFile("memory", "");
+		assertTrue(directory.delete());
+		assertTrue(directory.mkdir());
+		directory.deleteOnExit();
+		File file = new File(directory, "quoted\"name.sqlite");
+		file.deleteOnExit();
+
+		Map<String, TableDefinition> tableDefinitions = new HashMap<String, TableDefinition>();
+		tableDefinitions.put("BatchTable", createBatchTableDefinition());
+		Map<String, List<HashMap<String, Object>>> tableData = new HashMap<String, List<HashMap<String, Object>>>();
+		tableData.put("BatchTable", createBatchRows(1, 2, 3));
+
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+		try {
+			JDBCLoadReport loadReport = writer.load(connection, new PoiJoiMetaData(true, tableDefinitions, tableData),
+					WriteType.BOTH, new PoiJoiOptions(optionValues));
+			assertNotNull(loadReport);
+			assertEquals(3, countRows(connection, "BatchTable"));
+			assertEquals(1, directory.list().length);
+		} finally {
+			connection.close();
+		}
+	}
+
+	@Test
+	public void testBuildInMemoryAborted() throws Exception {
+		Map<String, String> optionValues = new HashMap<String, String>();
+		optionValues.put(SQLiteInMemoryBuild.OPTION_BUILD_IN_MEMORY, "");
+
+		File file = File.createTempFile("memory", ".sqlite");
+		file.deleteOnExit();
+
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+		try {
+			TableDefinition tableDefinition = createBatchTableDefinition();
+
+			RowSink sink = writer.createSink(connection, WriteType.BOTH, new PoiJoiOptions(optionValues));
+			sink.startStream();
+			sink.startTable(tableDefinition);
+			sink.writeRows(tableDefinition, createBatchRows(1, 2, 3));
+			assertEquals(-1, countRows(connection, "BatchTable"));
+			sink.abortStream();
+
+			assertEquals(-1, countRows(connection, "BatchTable"));
+		} finally {
+			connection.close();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidBulkLoadJournalMode() throws Exception {
+		Map<String, String> optionValues = new HashMap<String, String>();
+		optionValues.put(SQLiteBulkLoadProfile.OPTION_BULK_LOAD_PROFILE, "");
+		optionValues.put(SQLiteBulkLoadProfile.OPTION_JOURNAL_MODE, "FAST");
+
+		SQLiteBulkLoadProfile.fromOptions(new PoiJoiOptions(optionValues));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidBatchSize() throws Exception {
+		Map<String, String> optionValues = new HashMap<String, String>();
+		optionValues.put(JDBCDatabaseCreator.OPTION_BATCH_SIZE, "0");
+
+		new JDBCDatabaseCreator(null, new PoiJoiOptions(optionValues));
+	}
+
+	/**
+	 * Check that generated SQL can insert several rows per statement and that
+	 * a failed row is still located.
+	 */
+	@Test
+	public void testMultiRowInsert() throws Exception {
+		Map<String, String> optionValues = new HashMap<String, String>();
+		optionValues.put(JDBCDatabaseCreator.OPTION_BATCH_SIZE, "5");
+		optionValues.put(SQLStatementCreator.OPTION_ROWS_PER_INSERT, "2");
+
+		Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+		try {
+			JDBCDatabaseCreator databaseCreator = new JDBCDatabaseCreator(new SQLStatementCreator(),
+					connection, new PoiJoiOptions(optionValues));
+			assertTrue(databaseCreator.isMultiRowInsert());
+			TableDefinition tableDefinition = createBatchTableDefinition();
+
+			RowSink sink = databaseCreator.createSink(WriteType.BOTH);
+			sink.startStream();
+			sink.startTable(tableDefinition);
+
+			Statement statement = connection.createStatement();
+			statement.execute("create unique index BatchTableCode on BatchTable(code)");
+
+			sink.writeRows(tableDefinition, createBatchRows(1, 2, 3, 4, 5));
+			assertEquals(5, databaseCreator.getLoadReport().getNumberOfRowsInserted());
+
+			try {
+				sink.writeRows(tableDefinition, createBatchRows(6, 7, 8, 3, 9));
+				fail("Expected the duplicate row to fail the batch");
+			} catch (BatchInsertException batchInsertException) {
+				assertEquals(8, batchInsertException.getRowNumber());
+				assertEquals(3, batchInsertException.getRowData().get("code"));
+			} finally {
+				sink.abortStream();
+			}
+
+			assertEquals(8, databaseCreator.getLoadReport().getNumberOfRowsInserted());
+
+			ResultSet resultSet = statement.executeQuery("select count(*) from BatchTable");
+			assertTrue(resultSet.next());
+			assertEquals(8, resultSet.getInt(1));
+			statement.close();
+		} finally {
+			connection.close();
+		}
+	}
+
+	private TableDefinition createBatchTableDefinition() {
+		List<ColumnDefinition> columnDefinitions = new ArrayList<ColumnDefinition>();
+		columnDefinitions.add(new ColumnDefinition("code", 0, ColumnType.INTEGER_NUMBER));
+		columnDefinitions.add(new ColumnDefinition("name", 1, ColumnType.STRING));
+
+		return new TableDefinition("BatchTable", columnDefinitions);
+	}
+
+	private List<HashMap<String, Object>> createBatchRows(int... codes) {
+		List<HashMap<String, Object>> rows = new ArrayList<HashMap<String, Object>>();
+		for (int code : codes) {
+			HashMap<String, Object> row = new HashMap<String, Object>();
+			row.put("code", code);
+			row.put("name", "Row " + code);
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	private TableDefinition createIndexedTableDefinition(String tableName) {
+		List<ColumnDefinition> columnDefinitions = new ArrayList<ColumnDefinition>();
+		columnDefinitions.add(new ColumnDefinition("code", 0, ColumnType.INTEGER_NUMBER));
+		columnDefinitions.add(new ColumnDefinition("name", 1, ColumnType.STRING));
+
+		List<IndexDefinition> indexDefinitions = new ArrayList<IndexDefinition>();
+		indexDefinitions.add(new IndexDefinition(tableName + "Code", tableName,
+				new String[] { "code" }, false));
+
+		return new TableDefinition(tableName, columnDefinitions, indexDefinitions);
+	}
+
+	private TableDefinition createChildTableDefinition() {
+		List<ColumnDefinition> columnDefinitions = new ArrayList<ColumnDefinition>();
+		columnDefinitions.add(new ColumnDefinition("code", 0, ColumnType.INTEGER_NUMBER));
+		columnDefinitions.add(new ColumnDefinition("name", 1, ColumnType.STRING));
+		columnDefinitions.add(new ColumnDefinition("Parent.id", 2, ColumnType.INTEGER_NUMBER));
+
+		return new TableDefinition("Child", columnDefinitions);
+	}
+
+	/**
+	 * The number of rows in a table, or -1 if it doesn't exist.
+	 */
+	private int countRows(Connection connection, String tableName) throws SQLException {
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet resultSet = statement.executeQuery(
+					"select count(*) from sqlite_master where type = 'table' and name = '" + tableName + "'");
+			resultSet.next();
+			if (resultSet.getInt(1) == 0) {
+				return -1;
+			}
+			resultSet = statement.executeQuery("select count(*) from " + tableName);
+			resultSet.next();
+			return resultSet.getInt(1);
+		} finally {
+			statement.close();
+		}
+	}
+
+	private String getPragma(Connection connection, String pragma) throws SQLException {
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet resultSet = statement.executeQuery("pragma " + pragma);
+			resultSet.next();
+			return resultSet.getString(1);
+		} finally {
+			statement.close();
+		}
+	}
+
+	private int countIndexes(Connection connection) throws SQLException {
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet resultSet = statement.executeQuery(
+					"select count(*) from sqlite_master where type = 'index'");
+			resultSet.next();
+			return resultSet.getInt(1);
+		} finally {
+			statement.close();
+		}
+	}
 }
@@ -6,13 +6,24 @@ import java.util.List;
 import java.util.Map;
 
 import com.karlnosworthy.poijoi.model.IndexDefinition;
-import org.apache.poi.hssf.usermodel.HSSFDateUtil;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
 import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormat;
 import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.MetaDataRowSink;
+import com.karlnosworthy.poijoi.io.ParallelTableReader;
+import com.karlnosworthy.poijoi.io.ParallelTableReader.TableReader;
+import com.karlnosworthy.poijoi.io.RowBuffer;
+import com.karlnosworthy.poijoi.io.RowSink;
+import com.karlnosworthy.poijoi.io.reader.ConfigurableReader;
+import com.karlnosworthy.poijoi.io.reader.RowSource;
 import com.karlnosworthy.poijoi.model.ColumnDefinition;
 import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
 import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
@@ -23,22 +34,27 @@ import com.karlnosworthy.poijoi.model.TableDefinition;
  * implementations will have to handle how the {@link Workbook} is initially
  * loaded.
  * 
+ * When the {@link PoiJoiOptions#OPTION_STREAMING} option is set the workbook
+ * is read from its record stream in a single pass (see
+ * {@link XLSRecordListener}) instead of loading the whole {@link Workbook}.
+ * Otherwise the sheets can be read at the same time, up to
+ * {@link PoiJoiOptions#OPTION_READ_THREADS} of them (see
+ * {@link ParallelTableReader}).
+ * 
  * @author john.bartlett
  * @author Karl Nosworthy
  *
  * @param <T>
  *            The source Type
  */
-public abstract class AbstractXLSReader<T> {
+public abstract class AbstractXLSReader<T> implements RowSource<T>, ConfigurableReader<T> {
 
 	protected IndexDefinitionReader indexDefinitionReader;
-	protected TableDefinitionReader tableDefinitionReader;
 
 
 	protected AbstractXLSReader() {
 		super();
 		this.indexDefinitionReader = new IndexDefinitionReader();
-		this.tableDefinitionReader = new TableDefinitionReader();
 	}
 
 
@@ -49,6 +65,12 @@ public abstract class AbstractXLSReader<T> {
 	 */
 	abstract Workbook getWorkbook(T source) throws Exception;
 
+	/**
+	 * Get a {@link NPOIFSFileSystem} based on the source type, used when
+	 * streaming
+	 */
+	abstract NPOIFSFileSystem getFileSystem(T source) throws Exception;
+
 	/**
 	 * Reads in a XLS representation of a database and converts it into a
 	 * {@link PoiJoiMetaData} object which holds the table structures and
@@ -63,17 +85,74 @@ public abstract class AbstractXLSReader<T> {
 	 */
 	public final PoiJoiMetaData read(T input, boolean readData)
 			throws Exception {
+		return read(input, readData, null);
+	}
+
+	/**
+	 * Reads in a XLS representation of a database and converts it into a
+	 * {@link PoiJoiMetaData} object using the options given rather than any
+	 * that have been set on this reader.
+	 * 
+	 * @param input
+	 *            The input source of the data (e.g. java.io.File etc)
+	 * @param readData
+	 *            Whether or not to read the data or just the database structure
+	 * @param options
+	 *            The options to apply while reading (may be null)
+	 * @return a {@link PoiJoiMetaData} holding the table structures and
+	 *         optionally the table data
+	 */
+	@Override
+	public final PoiJoiMetaData read(T input, boolean readData,
+			PoiJoiOptions options) throws Exception {
+		MetaDataRowSink sink = new MetaDataRowSink(readData);
+		if (readRows(input, readData, sink, options)) {
+			return sink.getMetaData();
+		}
+		return null;
+	}
+
+	/**
+	 * Reads in a XLS representation of a database and passes each table
+	 * structure and optionally its rows to the {@link RowSink}.
+	 * 
+	 * @param input
+	 *            The input source of the data (e.g. java.io.File etc)
+	 * @param readData
+	 *            Whether or not to read the data or just the database structure
+	 * @param sink
+	 *            The sink to pass the tables and rows to
+	 * @param options
+	 *            The options to apply while reading (may be null)
+	 * @return True if the input was valid and has been read otherwise false
+	 */
+	@Override
+	public final boolean readRows(T input, boolean readData, RowSink sink,
+			PoiJoiOptions options) throws Exception {
 		
 		if (!isValidInput(input)) {
-			return null;
+			return false;
 		}
 		
-		Map<String, TableDefinition> tables = new HashMap<String, TableDefinition>();
-		Map<String, List<HashMap<String, Object>>> tableData = new HashMap<String, List<HashMap<String, Object>>>();
+		if (options != null && options.hasValue(PoiJoiOptions.OPTION_STREAMING)) {
+			NPOIFSFileSystem fileSystem = getFileSystem(input);
+			try {
+				new XLSRecordListener(fileSystem.getRoot(), readData, sink, indexDefinitionReader).process();
+			} finally {
+				fileSystem.close();
+			}
+			return true;
+		}
+		
+		int numberOfThreads = ParallelTableReader.getNumberOfThreads(options);
+
 		Map<String, List<IndexDefinition>> indexDefinitions = new HashMap<String, List<IndexDefinition>>();
 
 		Workbook workbook = getWorkbook(input);
 
+		// created up front as the sheets may be read on other threads
+		DataFormat dataFormat = workbook.createDataFormat();
+
 		String[] nonInternalSheetNames = determineNonInternalSheetNames(workbook);
 
 		// INDEXES/INDICES
@@ -84,26 +163,53 @@ public abstract class AbstractXLSReader<T> {
 
 		// DATA TABLES
 		if (nonInternalSheetNames != null && nonInternalSheetNames.length > 0) {
+			List<TableReader> sheetReaders = new ArrayList<TableReader>();
 			for (String sheetName : nonInternalSheetNames) {
-				Sheet sheet = workbook.getSheet(sheetName);
-
-				TableDefinition tableDefinition = tableDefinitionReader.read(sheet, indexDefinitions);
-				if (tableDefinition != null) {
-					tables.put(tableDefinition.getTableName(), tableDefinition);
-					if (readData) {
-						tableData.put(tableDefinition.getTableName(),
-								readData(sheet, tableDefinition));
-					}
-				}
+				sheetReaders.add(new SheetReader(workbook.getSheet(sheetName), indexDefinitions, dataFormat, readData));
 			}
+			ParallelTableReader.read(sheetReaders, sink, numberOfThreads);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Reads a single sheet, which can be done at the same time as the other
+	 * sheets of the workbook as long as each has its own
+	 * {@link TableDefinitionReader} and {@link CellDateFormats}.
+	 */
+	private class SheetReader implements TableReader {
+
+		private Sheet sheet;
+		private Map<String, List<IndexDefinition>> indexDefinitions;
+		private DataFormat dataFormat;
+		private boolean readData;
+
+		SheetReader(Sheet sheet, Map<String, List<IndexDefinition>> indexDefinitions, DataFormat dataFormat, boolean readData) {
+			super();
+			this.sheet = sheet;
+			this.indexDefinitions = indexDefinitions;
+			this.dataFormat = dataFormat;
+			this.readData = readData;
 		}
 
-		return new PoiJoiMetaData(readData, tables, tableData);
+		@Override
+		public void readTable(RowSink sink) throws Exception {
+			CellDateFormats cellDateFormats = new CellDateFormats(dataFormat);
+
+			TableDefinition tableDefinition = new TableDefinitionReader(cellDateFormats).read(sheet, indexDefinitions);
+			if (tableDefinition != null) {
+				sink.startTable(tableDefinition);
+				if (readData) {
+					readData(sheet, tableDefinition, cellDateFormats, new RowBuffer(sink, tableDefinition));
+				}
+				sink.finishTable(tableDefinition);
+			}
+		}
 	}
 
-	private List<HashMap<String, Object>> readData(Sheet sheet,
-			TableDefinition tableDefinition) {
-		List<HashMap<String, Object>> rowData = new ArrayList<HashMap<String, Object>>();
+	private void readData(Sheet sheet, TableDefinition tableDefinition,
+			CellDateFormats cellDateFormats, RowBuffer rowBuffer) throws Exception {
 
 		if (sheet.getLastRowNum() > 1) {
 			for (int rowIndex = 1; rowIndex <= sheet.getLastRowNum(); rowIndex++) {
@@ -123,7 +229,7 @@ public abstract class AbstractXLSReader<T> {
 						if (dataCell.getCellType() == Cell.CELL_TYPE_STRING) {
 							columnData.put(colName, dataCell.getStringCellValue()
 									.trim());
-						} else if (HSSFDateUtil.isCellDateFormatted(dataCell)) {
+						} else if (cellDateFormats.isCellDateFormatted(dataCell)) {
 							columnData.put(colName, dataCell.getDateCellValue());
 						} else {
 							Double d = new Double(dataCell.getNumericCellValue());
@@ -135,10 +241,10 @@ public abstract class AbstractXLSReader<T> {
 						}
 					}
 				}
-				rowData.add(columnData);
+				rowBuffer.add(columnData);
 			}
 		}
-		return rowData;
+		rowBuffer.flush();
 	}
 
 	private String[] determineNonInternalSheetNames(Workbook workbook) {
@@ -159,104 +265,18 @@ public abstract class AbstractXLSReader<T> {
 	}
 }
 
-class IndexDefinitionReader {
-
-	private final int CELL_INDEX_NAME = 0;
-	private final int CELL_TABLE_NAME = 1;
-	private final int CELL_TABLE_COLUMNS = 2;
-	private final int CELL_UNIQUE_FLAG = 3;
-
-
-	IndexDefinitionReader() {
-		super();
-	}
-
-	public boolean isIndexSheet(String sheetName) {
-		if (sheetName.equalsIgnoreCase("indexes") ||
-			sheetName.equalsIgnoreCase("indices")) {
-			return true;
-		}
-		return false;
-	}
-
-	public Sheet findIndexDefinitionSheet(Workbook workbook) {
-
-		if (workbook != null && workbook.getNumberOfSheets() > 0) {
-			for (int sheetNumber = 0; sheetNumber < workbook.getNumberOfSheets(); sheetNumber++) {
-				String sheetName = workbook.getSheetName(sheetNumber);
-				if (isIndexSheet(sheetName)) {
-					return workbook.getSheetAt(sheetNumber);
-				}
-			}
-		}
-		return null;
-	}
-
-	public Map<String, List<IndexDefinition>> readDefinitions(Sheet sheet) {
-		Map<String, List<IndexDefinition>> tableIndexDefinitions = new HashMap<String, List<IndexDefinition>>();
-
-		if (sheet.getFirstRowNum() == sheet.getLastRowNum()) {
-			IndexDefinition indexDefinition = readDefinition(sheet.getRow(sheet.getFirstRowNum()));
-
-			if (indexDefinition != null) {
-				List<IndexDefinition> indexDefinitions = new ArrayList<IndexDefinition>();
-				indexDefinitions.add(indexDefinition);
-
-				tableIndexDefinitions.put(indexDefinition.getTableName(), indexDefinitions);
-			}
-		} else {
-			int numberOfIndexes = 1 + (sheet.getLastRowNum() - sheet.getFirstRowNum());
-
-			for (int rowNumber = sheet.getFirstRowNum(); rowNumber < numberOfIndexes; rowNumber++) {
-				IndexDefinition indexDefinition = readDefinition(sheet.getRow(rowNumber));
-
-				if (indexDefinition != null) {
-					List<IndexDefinition> indexDefinitions = null;
-
-					if (tableIndexDefinitions.containsKey(indexDefinition.getTableName())) {
-						indexDefinitions = tableIndexDefinitions.get(indexDefinition.getTableName());
-					} else {
-						indexDefinitions = new ArrayList<IndexDefinition>();
-						tableIndexDefinitions.put(indexDefinition.getTableName(), indexDefinitions);
-					}
-
-					indexDefinitions.add(indexDefinition);
-				}
-			}
-		}
-
-		return tableIndexDefinitions;
-	}
-
-	public IndexDefinition readDefinition(Row row) {
-
-		IndexDefinition indexDefinition = null;
-
-		String indexName = getValueForCell(row, CELL_INDEX_NAME);
-		String tableName = getValueForCell(row, CELL_TABLE_NAME);
-		String columns = getValueForCell(row, CELL_TABLE_COLUMNS);
-
-		String[] columnNames=  columns.split(",");
-
-		indexDefinition = new IndexDefinition(indexName, tableName, columnNames, false);
-
-		return indexDefinition;
-	}
-
-	private String getValueForCell(Row row, int cellIndex) {
-		Cell cell = row.getCell(cellIndex);
-		return cell.getStringCellValue();
-	}
-}
-
 class TableDefinitionReader {
 
+	private static final Object FORMAT_LOCK = new Object();
+
 	private DataFormatter dataFormatter;
+	private CellDateFormats cellDateFormats;
 
 
-	TableDefinitionReader() {
+	TableDefinitionReader(CellDateFormats cellDateFormats) {
 		super();
 		this.dataFormatter = new DataFormatter();
+		this.cellDateFormats = cellDateFormats;
 	}
 
 	public TableDefinition read(Sheet sheet) {
@@ -308,11 +328,14 @@ class TableDefinitionReader {
 						break;
 					case Cell.CELL_TYPE_FORMULA:
 					case Cell.CELL_TYPE_NUMERIC:
-						if (HSSFDateUtil.isCellDateFormatted(typedRowCell)) {
+						if (cellDateFormats.isCellDateFormatted(typedRowCell)) {
 							columnType = ColumnType.DATE;
 						} else {
-							String formattedValue = dataFormatter
-									.formatCellValue(typedRowCell);
+							// formatting looks the format up through the style's static cache
+							String formattedValue;
+							synchronized (FORMAT_LOCK) {
+								formattedValue = dataFormatter.formatCellValue(typedRowCell);
+							}
 
 							if (formattedValue.contains(".")) {
 								columnType = ColumnType.DECIMAL_NUMBER;
@@ -335,3 +358,44 @@ class TableDefinitionReader {
 		return tableDefinition;
 	}
 }
+
+/**
+ * Works out whether numeric cells are formatted as dates, in the same way as
+ * {@link DateUtil#isCellDateFormatted(Cell)}. That looks up the format of a
+ * cell through HSSFCellStyle, which caches the last format it looked up in
+ * static fields and so can't be used by more than one thread at a time,
+ * whereas this looks the formats up in the {@link DataFormat} of the workbook
+ * and caches them itself. Each thread needs its own instance.
+ */
+class CellDateFormats {
+
+	private DataFormat dataFormat;
+	private Map<Short, Boolean> dateFormats;
+
+
+	CellDateFormats(DataFormat dataFormat) {
+		super();
+		this.dataFormat = dataFormat;
+		this.dateFormats = new HashMap<Short, Boolean>();
+	}
+
+	public boolean isCellDateFormatted(Cell cell) {
+		if (cell == null || !DateUtil.isValidExcelDate(cell.getNumericCellValue())) {
+			return false;
+		}
+
+		CellStyle cellStyle = cell.getCellStyle();
+		if (cellStyle == null) {
+			return false;
+		}
+
+		short formatIndex = cellStyle.getDataFormat();
+		Boolean dateFormat = dateFormats.get(formatIndex);
+		if (dateFormat == null) {
+			String formatString = formatIndex == -1 ? "General" : dataFormat.getFormat(formatIndex);
+			dateFormat = DateUtil.isADateFormat(formatIndex, formatString);
+			dateFormats.put(formatIndex, dateFormat);
+		}
+		return dateFormat;
+	}
+}
@@ -0,0 +1,115 @@
+package com.karlnosworthy.poijoi.io.reader.xls;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import com.karlnosworthy.poijoi.model.IndexDefinition;
+
+class IndexDefinitionReader {
+
+	private final int CELL_INDEX_NAME = 0;
+	private final int CELL_TABLE_NAME = 1;
+	private final int CELL_TABLE_COLUMNS = 2;
+	private final int CELL_UNIQUE_FLAG = 3;
+
+
+	IndexDefinitionReader() {
+		super();
+	}
+
+	public boolean isIndexSheet(String sheetName) {
+		if (sheetName.equalsIgnoreCase("indexes") ||
+			sheetName.equalsIgnoreCase("indices")) {
+			return true;
+		}
+		return false;
+	}
+
+	public Sheet findIndexDefinitionSheet(Workbook workbook) {
+
+		if (workbook != null && workbook.getNumberOfSheets() > 0) {
+			for (int sheetNumber = 0; sheetNumber < workbook.getNumberOfSheets(); sheetNumber++) {
+				String sheetName = workbook.getSheetName(sheetNumber);
+				if (isIndexSheet(sheetName)) {
+					return workbook.getSheetAt(sheetNumber);
+				}
+			}
+		}
+		return null;
+	}
+
+	public Map<String, List<IndexDefinition>> readDefinitions(Sheet sheet) {
+		Map<String, List<IndexDefinition>> tableIndexDefinitions = new HashMap<String, List<IndexDefinition>>();
+
+		if (sheet.getFirstRowNum() == sheet.getLastRowNum()) {
+			IndexDefinition indexDefinition = readDefinition(sheet.getRow(sheet.getFirstRowNum()));
+
+			if (indexDefinition != null) {
+				List<IndexDefinition> indexDefinitions = new ArrayList<IndexDefinition>();
+				indexDefinitions.add(indexDefinition);
+
+				tableIndexDefinitions.put(indexDefinition.getTableName(), indexDefinitions);
+			}
+		} else {
+			int numberOfIndexes = 1 + (sheet.getLastRowNum() - sheet.getFirstRowNum());
+
+			for (int rowNumber = sheet.getFirstRowNum(); rowNumber < numberOfIndexes; rowNumber++) {
+				IndexDefinition indexDefinition = readDefinition(sheet.getRow(rowNumber));
+
+				if (indexDefinition != null) {
+					List<IndexDefinition> indexDefinitions = null;
+
+					if (tableIndexDefinitions.containsKey(indexDefinition.getTableName())) {
+						indexDefinitions = tableIndexDefinitions.get(indexDefinition.getTableName());
+					} else {
+						indexDefinitions = new ArrayList<IndexDefinition>();
+						tableIndexDefinitions.put(indexDefinition.getTableName(), indexDefinitions);
+					}
+
+					indexDefinitions.add(indexDefinition);
+				}
+			}
+		}
+
+		return tableIndexDefinitions;
+	}
+
+	public IndexDefinition readDefinition(Map<Integer, String> cellValues) {
+		String columns = cellValues.get(CELL_TABLE_COLUMNS);
+		if (columns == null) {
+			return null;
+		}
+
+		String[] columnNames = columns.split(",");
+
+		return new IndexDefinition(cellValues.get(CELL_INDEX_NAME),
+				cellValues.get(CELL_TABLE_NAME), columnNames, false);
+	}
+
+	public IndexDefinition readDefinition(Row row) {
+
+		IndexDefinition indexDefinition = null;
+
+		String indexName = getValueForCell(row, CELL_INDEX_NAME);
+		String tableName = getValueForCell(row, CELL_TABLE_NAME);
+		String columns = getValueForCell(row, CELL_TABLE_COLUMNS);
+
+		String[] columnNames=  columns.split(",");
+
+		indexDefinition = new IndexDefinition(indexName, tableName, columnNames, false);
+
+		return indexDefinition;
+	}
+
+	private String getValueForCell(Row row, int cellIndex) {
+		Cell cell = row.getCell(cellIndex);
+		return cell.getStringCellValue();
+	}
+}
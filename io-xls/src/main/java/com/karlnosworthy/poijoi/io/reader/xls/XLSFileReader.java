@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileInputStream;
 
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
 import org.apache.poi.ss.usermodel.Workbook;
 
 import com.karlnosworthy.poijoi.io.SupportsFormat;
@@ -15,7 +16,7 @@ import com.karlnosworthy.poijoi.io.reader.FileReader;
  * @author john.bartlett
  *
  */
-@SupportsFormat(type = "XLS")
+@SupportsFormat(type = "XLS", stateless = true)
 public final class XLSFileReader extends AbstractXLSReader<File> implements FileReader {
 
 	@Override
@@ -23,6 +24,11 @@ public final class XLSFileReader extends AbstractXLSReader<File> implements File
 		return new HSSFWorkbook(new FileInputStream(source));
 	}
 	
+	@Override
+	NPOIFSFileSystem getFileSystem(File source) throws Exception {
+		return new NPOIFSFileSystem(source, true);
+	}
+	
 	@Override
 	boolean isValidInput(File input) {
 		if (input == null || input.isDirectory()) {
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
 import org.apache.poi.ss.usermodel.Workbook;
 
 import com.karlnosworthy.poijoi.io.SupportsFormat;
@@ -15,7 +16,7 @@ import com.karlnosworthy.poijoi.io.reader.InputStreamReader;
  * @author john.bartlett
  *
  */
-@SupportsFormat(type = "XLS")
+@SupportsFormat(type = "XLS", stateless = true)
 public class XLSInputStreamReader extends AbstractXLSReader<InputStream> implements
 		InputStreamReader {
 
@@ -24,6 +25,15 @@ public class XLSInputStreamReader extends AbstractXLSReader<InputStream> impleme
 		return new HSSFWorkbook(source);
 	}
 
+	/**
+	 * The file system is read from the {@link InputStream} into memory,
+	 * streaming from a {@link java.io.File} avoids this.
+	 */
+	@Override
+	NPOIFSFileSystem getFileSystem(InputStream source) throws Exception {
+		return new NPOIFSFileSystem(source);
+	}
+
 	@Override
 	boolean isValidInput(InputStream input) {
 		if (input == null) {
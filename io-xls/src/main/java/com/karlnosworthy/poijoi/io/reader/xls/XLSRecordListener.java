@@ -0,0 +1,566 @@
+package com.karlnosworthy.poijoi.io.reader.xls;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.poi.hssf.eventusermodel.AbortableHSSFListener;
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.HSSFUserException;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.DateWindow1904Record;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RowRecord;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.usermodel.HSSFDateUtil;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.DirectoryNode;
+import org.apache.poi.poifs.filesystem.DocumentInputStream;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DataFormatter;
+
+import com.karlnosworthy.poijoi.io.RowBuffer;
+import com.karlnosworthy.poijoi.io.RowSink;
+import com.karlnosworthy.poijoi.model.ColumnDefinition;
+import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
+import com.karlnosworthy.poijoi.model.IndexDefinition;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+/**
+ * Reads an XLS workbook from its record stream in a single forward pass,
+ * passing each sheet's table definition and rows to a {@link RowSink} as the
+ * records arrive. The column types are worked out in the same way as the
+ * {@link TableDefinitionReader} does from the row after the header row.
+ *
+ * The index definition sheet is read ahead of the data sheets (using its
+ * position from the workbook globals) so the indexes can be included in the
+ * table definitions without having to wait for the whole workbook.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+final class XLSRecordListener extends AbortableHSSFListener {
+
+	/**
+	 * The value of a single cell record.
+	 */
+	private static final class RecordCell {
+		int columnIndex;
+		int cellType;
+		String stringValue;
+		double numericValue;
+		int formatIndex;
+		String formatString;
+
+		boolean isNumeric() {
+			return cellType == Cell.CELL_TYPE_NUMERIC || cellType == Cell.CELL_TYPE_BLANK;
+		}
+
+		boolean isDateFormatted() {
+			return isNumeric() && HSSFDateUtil.isValidExcelDate(numericValue)
+					&& HSSFDateUtil.isADateFormat(formatIndex, formatString);
+		}
+	}
+
+	private DirectoryNode directory;
+	private boolean readData;
+	private RowSink sink;
+	private IndexDefinitionReader indexDefinitionReader;
+	private FormatTrackingHSSFListener formatTracker;
+	private DataFormatter dataFormatter;
+
+	private List<BoundSheetRecord> boundSheetRecords;
+	private BoundSheetRecord[] orderedBoundSheetRecords;
+	private SSTRecord sstRecord;
+	private boolean date1904;
+	private Map<String, List<IndexDefinition>> indexDefinitions;
+
+	private int depth;
+	private int sheetIndex;
+	private String sheetName;
+	private boolean readingSheet;
+	private TreeSet<Integer> knownRowNumbers;
+	private int currentRowNumber;
+	private List<RecordCell> currentRowCells;
+	private RecordCell pendingFormulaCell;
+
+	private int headerRowNumber;
+	private List<RecordCell> headerCells;
+	private TableDefinition tableDefinition;
+	private RowBuffer rowBuffer;
+	private List<HashMap<String, Object>> pendingRows;
+	private boolean sheetComplete;
+
+	XLSRecordListener(DirectoryNode directory, boolean readData, RowSink sink,
+			IndexDefinitionReader indexDefinitionReader) {
+		super();
+		this.directory = directory;
+		this.readData = readData;
+		this.sink = sink;
+		this.indexDefinitionReader = indexDefinitionReader;
+		this.formatTracker = new FormatTrackingHSSFListener(new HSSFListener() {
+			@Override
+			public void processRecord(Record record) {
+			}
+		});
+		this.dataFormatter = new DataFormatter();
+		this.boundSheetRecords = new ArrayList<BoundSheetRecord>();
+		this.indexDefinitions = new HashMap<String, List<IndexDefinition>>();
+		this.sheetIndex = -1;
+	}
+
+	/**
+	 * Process every record of the workbook.
+	 */
+	void process() throws Exception {
+		HSSFRequest request = new HSSFRequest();
+		request.addListenerForAllRecords(this);
+		try {
+			new HSSFEventFactory().abortableProcessWorkbookEvents(request, directory);
+		} catch (HSSFUserException userException) {
+			if (userException.getReason() instanceof Exception) {
+				throw (Exception) userException.getReason();
+			}
+			throw userException;
+		}
+	}
+
+	@Override
+	public short abortableProcessRecord(Record record) throws HSSFUserException {
+		formatTracker.processRecordInternally(record);
+
+		try {
+			switch (record.getSid()) {
+			case BoundSheetRecord.sid:
+				boundSheetRecords.add((BoundSheetRecord) record);
+				break;
+			case SSTRecord.sid:
+				sstRecord = (SSTRecord) record;
+				break;
+			case DateWindow1904Record.sid:
+				date1904 = ((DateWindow1904Record) record).getWindowing() == 1;
+				break;
+			case BOFRecord.sid:
+				depth++;
+				if (depth == 1 && ((BOFRecord) record).getType() != BOFRecord.TYPE_WORKBOOK) {
+					startSheet((BOFRecord) record);
+				}
+				break;
+			case EOFRecord.sid:
+				depth--;
+				if (depth == 0 && readingSheet) {
+					endSheet();
+				}
+				break;
+			case RowRecord.sid:
+				if (isReadingCells()) {
+					knownRowNumbers.add(((RowRecord) record).getRowNumber());
+				}
+				break;
+			case NumberRecord.sid:
+				if (isReadingCells()) {
+					NumberRecord numberRecord = (NumberRecord) record;
+					addCell(numberRecord, Cell.CELL_TYPE_NUMERIC, null, numberRecord.getValue());
+				}
+				break;
+			case LabelSSTRecord.sid:
+				if (isReadingCells()) {
+					LabelSSTRecord labelSSTRecord = (LabelSSTRecord) record;
+					String value = sstRecord.getString(labelSSTRecord.getSSTIndex()).getString();
+					addCell(labelSSTRecord, Cell.CELL_TYPE_STRING, value, 0);
+				}
+				break;
+			case LabelRecord.sid:
+				if (isReadingCells()) {
+					LabelRecord labelRecord = (LabelRecord) record;
+					addCell(labelRecord, Cell.CELL_TYPE_STRING, labelRecord.getValue(), 0);
+				}
+				break;
+			case BlankRecord.sid:
+				if (isReadingCells()) {
+					addCell((BlankRecord) record, Cell.CELL_TYPE_BLANK, null, 0);
+				}
+				break;
+			case MulBlankRecord.sid:
+				if (isReadingCells()) {
+					MulBlankRecord mulBlankRecord = (MulBlankRecord) record;
+					for (int index = 0; index < mulBlankRecord.getNumColumns(); index++) {
+						BlankRecord blankRecord = new BlankRecord();
+						blankRecord.setRow(mulBlankRecord.getRow());
+						blankRecord.setColumn((short) (mulBlankRecord.getFirstColumn() + index));
+						blankRecord.setXFIndex(mulBlankRecord.getXFAt(index));
+						addCell(blankRecord, Cell.CELL_TYPE_BLANK, null, 0);
+					}
+				}
+				break;
+			case BoolErrRecord.sid:
+				if (isReadingCells()) {
+					BoolErrRecord boolErrRecord = (BoolErrRecord) record;
+					if (boolErrRecord.isBoolean()) {
+						addCell(boolErrRecord, Cell.CELL_TYPE_BOOLEAN,
+								String.valueOf(boolErrRecord.getBooleanValue()), 0);
+					} else {
+						addCell(boolErrRecord, Cell.CELL_TYPE_ERROR, null, 0);
+					}
+				}
+				break;
+			case FormulaRecord.sid:
+				if (isReadingCells()) {
+					addFormulaCell((FormulaRecord) record);
+				}
+				break;
+			case StringRecord.sid:
+				if (pendingFormulaCell != null) {
+					pendingFormulaCell.stringValue = ((StringRecord) record).getString();
+					pendingFormulaCell = null;
+				}
+				break;
+			}
+		} catch (HSSFUserException userException) {
+			throw userException;
+		} catch (Exception exception) {
+			throw new HSSFUserException(exception.getMessage(), exception);
+		}
+		return 0;
+	}
+
+	private boolean isReadingCells() {
+		return readingSheet && depth == 1 && !sheetComplete;
+	}
+
+	private void startSheet(BOFRecord bofRecord) throws Exception {
+		if (orderedBoundSheetRecords == null) {
+			orderedBoundSheetRecords = BoundSheetRecord.orderByBofPosition(boundSheetRecords);
+			readIndexDefinitions();
+		}
+
+		sheetIndex++;
+		sheetName = null;
+		readingSheet = false;
+
+		if (bofRecord.getType() != BOFRecord.TYPE_WORKSHEET || sheetIndex >= orderedBoundSheetRecords.length) {
+			return;
+		}
+
+		sheetName = orderedBoundSheetRecords[sheetIndex].getSheetname();
+		if (indexDefinitionReader.isIndexSheet(sheetName)) {
+			return;
+		}
+
+		readingSheet = true;
+		knownRowNumbers = new TreeSet<Integer>();
+		currentRowNumber = -1;
+		currentRowCells = null;
+		pendingFormulaCell = null;
+		headerCells = null;
+		tableDefinition = null;
+		rowBuffer = null;
+		pendingRows = new ArrayList<HashMap<String, Object>>();
+		sheetComplete = false;
+	}
+
+	private void endSheet() throws Exception {
+		readingSheet = false;
+
+		if (!sheetComplete) {
+			if (currentRowNumber >= 0) {
+				processRow(currentRowNumber, currentRowCells);
+			}
+			while (!sheetComplete && !knownRowNumbers.isEmpty()) {
+				processRow(knownRowNumbers.pollFirst(), new ArrayList<RecordCell>());
+			}
+			if (headerCells != null && tableDefinition == null) {
+				startTable(null);
+			}
+		}
+
+		if (tableDefinition != null) {
+			rowBuffer.flush();
+			sink.finishTable(tableDefinition);
+		}
+	}
+
+	private void addFormulaCell(FormulaRecord formulaRecord) throws Exception {
+		switch (formulaRecord.getCachedResultType()) {
+		case Cell.CELL_TYPE_STRING:
+			// the value is provided by the following StringRecord
+			pendingFormulaCell = addCell(formulaRecord, Cell.CELL_TYPE_STRING, "", 0);
+			break;
+		case Cell.CELL_TYPE_BOOLEAN:
+			addCell(formulaRecord, Cell.CELL_TYPE_BOOLEAN,
+					String.valueOf(formulaRecord.getCachedBooleanValue()), 0);
+			break;
+		case Cell.CELL_TYPE_ERROR:
+			addCell(formulaRecord, Cell.CELL_TYPE_ERROR, null, 0);
+			break;
+		default:
+			addCell(formulaRecord, Cell.CELL_TYPE_NUMERIC, null, formulaRecord.getValue());
+		}
+	}
+
+	private RecordCell addCell(CellValueRecordInterface cellRecord, int cellType,
+			String stringValue, double numericValue) throws Exception {
+
+		int rowNumber = cellRecord.getRow();
+		if (rowNumber != currentRowNumber) {
+			if (currentRowNumber >= 0) {
+				processRow(currentRowNumber, currentRowCells);
+			}
+			// rows without any cells still count as (empty) rows
+			while (!knownRowNumbers.isEmpty() && knownRowNumbers.first() < rowNumber) {
+				processRow(knownRowNumbers.pollFirst(), new ArrayList<RecordCell>());
+			}
+			knownRowNumbers.remove(rowNumber);
+			currentRowNumber = rowNumber;
+			currentRowCells = new ArrayList<RecordCell>();
+		}
+
+		RecordCell cell = new RecordCell();
+		cell.columnIndex = cellRecord.getColumn();
+		cell.cellType = cellType;
+		cell.stringValue = stringValue;
+		cell.numericValue = numericValue;
+		cell.formatIndex = formatTracker.getFormatIndex(cellRecord);
+		cell.formatString = formatTracker.getFormatString(cellRecord);
+		currentRowCells.add(cell);
+		return cell;
+	}
+
+	private void processRow(int rowNumber, List<RecordCell> cells) throws Exception {
+		if (sheetComplete) {
+			return;
+		}
+
+		if (headerCells == null) {
+			headerRowNumber = rowNumber;
+			headerCells = cells;
+			return;
+		}
+
+		if (tableDefinition == null) {
+			startTable(rowNumber == headerRowNumber + 1 ? cells : null);
+		}
+
+		if (!readData) {
+			sheetComplete = true;
+			return;
+		}
+
+		// Like the workbook based reader, the data is only read if there is
+		// more than one row of it.
+		HashMap<String, Object> rowData = readRow(cells);
+		if (rowNumber <= 1) {
+			pendingRows.add(rowData);
+		} else {
+			for (HashMap<String, Object> pendingRow : pendingRows) {
+				rowBuffer.add(pendingRow);
+			}
+			pendingRows.clear();
+			rowBuffer.add(rowData);
+		}
+	}
+
+	private void startTable(List<RecordCell> typedRowCells) throws Exception {
+		List<ColumnDefinition> columns = new ArrayList<ColumnDefinition>();
+
+		for (RecordCell headerCell : headerCells) {
+			String cellName = getStringValue(headerCell);
+
+			RecordCell typedRowCell = null;
+			if (typedRowCells != null) {
+				typedRowCell = findCell(typedRowCells, headerCell.columnIndex);
+			}
+
+			ColumnType columnType = ColumnType.STRING;
+
+			int cellType = Cell.CELL_TYPE_BLANK;
+			if (typedRowCell != null) {
+				cellType = typedRowCell.cellType;
+			}
+
+			switch (cellType) {
+				case Cell.CELL_TYPE_BLANK:
+					if (cellName.endsWith(".id")) {
+						columnType = ColumnType.INTEGER_NUMBER;
+					} else {
+						columnType = ColumnType.STRING;
+					}
+					break;
+				case Cell.CELL_TYPE_BOOLEAN:
+				case Cell.CELL_TYPE_ERROR:
+				case Cell.CELL_TYPE_STRING:
+					columnType = ColumnType.STRING;
+					break;
+				case Cell.CELL_TYPE_NUMERIC:
+					if (typedRowCell.isDateFormatted()) {
+						columnType = ColumnType.DATE;
+					} else {
+						String formattedValue = dataFormatter.formatRawCellContents(
+								typedRowCell.numericValue, typedRowCell.formatIndex,
+								typedRowCell.formatString);
+
+						if (formattedValue.contains(".")) {
+							columnType = ColumnType.DECIMAL_NUMBER;
+						} else {
+							columnType = ColumnType.INTEGER_NUMBER;
+						}
+					}
+					break;
+			}
+
+			columns.add(new ColumnDefinition(cellName, headerCell.columnIndex, columnType));
+		}
+
+		if (indexDefinitions.containsKey(sheetName)) {
+			tableDefinition = new TableDefinition(sheetName, columns, indexDefinitions.get(sheetName));
+		} else {
+			tableDefinition = new TableDefinition(sheetName, columns);
+		}
+
+		sink.startTable(tableDefinition);
+		rowBuffer = new RowBuffer(sink, tableDefinition);
+	}
+
+	private HashMap<String, Object> readRow(List<RecordCell> cells) {
+		HashMap<String, Object> columnData = new HashMap<String, Object>();
+
+		for (RecordCell dataCell : cells) {
+			ColumnDefinition columnDefinition = tableDefinition
+					.getColumnDefinition(dataCell.columnIndex);
+			if (columnDefinition == null) {
+				continue;
+			}
+			String colName = columnDefinition.getColumnName();
+
+			if (dataCell.cellType == Cell.CELL_TYPE_STRING) {
+				columnData.put(colName, dataCell.stringValue.trim());
+			} else if (dataCell.cellType == Cell.CELL_TYPE_BOOLEAN) {
+				columnData.put(colName, dataCell.stringValue);
+			} else if (dataCell.isDateFormatted()) {
+				columnData.put(colName, HSSFDateUtil.getJavaDate(dataCell.numericValue, date1904));
+			} else if (dataCell.isNumeric()) {
+				Double d = new Double(dataCell.numericValue);
+				if (columnDefinition.getColumnType() == ColumnType.INTEGER_NUMBER) {
+					columnData.put(colName, d.intValue());
+				} else {
+					columnData.put(colName, d);
+				}
+			}
+		}
+		return columnData;
+	}
+
+	private String getStringValue(RecordCell cell) {
+		if (cell.stringValue != null) {
+			return cell.stringValue;
+		} else if (cell.cellType == Cell.CELL_TYPE_NUMERIC) {
+			return dataFormatter.formatRawCellContents(cell.numericValue,
+					cell.formatIndex, cell.formatString);
+		}
+		return "";
+	}
+
+	private RecordCell findCell(List<RecordCell> cells, int columnIndex) {
+		for (RecordCell cell : cells) {
+			if (cell.columnIndex == columnIndex) {
+				return cell;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Read the index definition sheet directly from its position in the
+	 * workbook stream, before any of the data sheets are read.
+	 */
+	private void readIndexDefinitions() throws Exception {
+		BoundSheetRecord indexSheetRecord = null;
+		for (BoundSheetRecord boundSheetRecord : boundSheetRecords) {
+			if (indexDefinitionReader.isIndexSheet(boundSheetRecord.getSheetname())) {
+				indexSheetRecord = boundSheetRecord;
+				break;
+			}
+		}
+
+		if (indexSheetRecord == null) {
+			return;
+		}
+
+		final Map<Integer, Map<Integer, String>> indexRows = new TreeMap<Integer, Map<Integer, String>>();
+
+		HSSFRequest request = new HSSFRequest();
+		request.addListenerForAllRecords(new AbortableHSSFListener() {
+			private int indexSheetDepth;
+
+			@Override
+			public short abortableProcessRecord(Record record) {
+				String value = null;
+				switch (record.getSid()) {
+				case BOFRecord.sid:
+					indexSheetDepth++;
+					break;
+				case EOFRecord.sid:
+					indexSheetDepth--;
+					return indexSheetDepth == 0 ? (short) 1 : 0;
+				case LabelSSTRecord.sid:
+					if (sstRecord != null) {
+						value = sstRecord.getString(((LabelSSTRecord) record).getSSTIndex()).getString();
+					}
+					break;
+				case LabelRecord.sid:
+					value = ((LabelRecord) record).getValue();
+					break;
+				}
+
+				if (value != null && indexSheetDepth == 1) {
+					CellValueRecordInterface cellRecord = (CellValueRecordInterface) record;
+					Map<Integer, String> indexRow = indexRows.get(cellRecord.getRow());
+					if (indexRow == null) {
+						indexRow = new HashMap<Integer, String>();
+						indexRows.put(cellRecord.getRow(), indexRow);
+					}
+					indexRow.put((int) cellRecord.getColumn(), value);
+				}
+				return 0;
+			}
+		});
+
+		DocumentInputStream workbookStream = directory.createDocumentInputStream(
+				HSSFWorkbook.getWorkbookDirEntryName(directory));
+		try {
+			workbookStream.skip(indexSheetRecord.getPositionOfBof());
+			new HSSFEventFactory().abortableProcessEvents(request, workbookStream);
+		} finally {
+			workbookStream.close();
+		}
+
+		for (Map<Integer, String> indexRow : indexRows.values()) {
+			IndexDefinition indexDefinition = indexDefinitionReader.readDefinition(indexRow);
+			if (indexDefinition != null) {
+				List<IndexDefinition> tableIndexDefinitions = indexDefinitions.get(indexDefinition.getTableName());
+				if (tableIndexDefinitions == null) {
+					tableIndexDefinitions = new ArrayList<IndexDefinition>();
+					indexDefinitions.put(indexDefinition.getTableName(), tableIndexDefinitions);
+				}
+				tableIndexDefinitions.add(indexDefinition);
+			}
+		}
+	}
+}
@@ -1,9 +1,9 @@
 package com.karlnosworthy.poijoi.io.writer.xls;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import com.karlnosworthy.poijoi.model.IndexDefinition;
 import org.apache.poi.hssf.usermodel.HSSFCell;
@@ -15,6 +15,12 @@ import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.MetaDataRowSource;
+import com.karlnosworthy.poijoi.io.RowSink;
+import com.karlnosworthy.poijoi.io.RowTransfer;
+import com.karlnosworthy.poijoi.io.writer.ConfigurableWriter;
+import com.karlnosworthy.poijoi.io.writer.RowSinkFactory;
 import com.karlnosworthy.poijoi.io.writer.Writer.WriteType;
 import com.karlnosworthy.poijoi.model.ColumnDefinition;
 import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
@@ -29,7 +35,7 @@ import com.karlnosworthy.poijoi.model.TableDefinition;
  * @param <T>
  *            The output type
  */
-public abstract class AbstractXLSWriter<T> {
+public abstract class AbstractXLSWriter<T> implements RowSinkFactory<T>, ConfigurableWriter<T> {
 	
 	abstract boolean isValidOutput(T output);
 
@@ -57,78 +63,54 @@ public abstract class AbstractXLSWriter<T> {
 	 */
 	public final boolean write(T output, PoiJoiMetaData metaData,
 			WriteType writeType) throws Exception {
+		return write(output, metaData, writeType, null);
+	}
+
+	/**
+	 * Writes out an XLS File to reflect the table structures and optionally the
+	 * data stored in the {@link PoiJoiMetaData}, using the options given.
+	 * 
+	 * @param output
+	 *            The mechanism for outputting the data (e.g. java.io.File etc)
+	 * @param metaData
+	 *            a {@link PoiJoiMetaData} holding the table structures and
+	 *            optionally the table data
+	 * @param writeType
+	 *            Rules around what to write
+	 * @param options
+	 *            The options to apply while writing (may be null)
+	 */
+	@Override
+	public final boolean write(T output, PoiJoiMetaData metaData,
+			WriteType writeType, PoiJoiOptions options) throws Exception {
 
 		if (!isValidOutput(output) || !isValidMetadata(metaData)) {
 			return false;
 		}
 		
-		HSSFWorkbook wb = new HSSFWorkbook();
-
-		Map<String, TableDefinition> tableDefinitions = metaData
-				.getTableDefinitions();
-
-		for (String tableName : tableDefinitions.keySet()) {
-			HSSFSheet sheet = wb.createSheet(tableName);
-			TableDefinition table = tableDefinitions.get(tableName);
-			List<ColumnDefinition> columnDefinitions = table.getColumnDefinitions();
-
-			// do headers
-			if (writeType != WriteType.DATA_ONLY) {
-				HSSFRow headerRow = sheet.createRow(0);
-				for (ColumnDefinition cd : columnDefinitions) {
-					HSSFCell cell = headerRow.createCell(cd.getColumnIndex());
-					cell.setCellValue(cd.getColumnName());
-				}
-			}
-
-			// write out the data into the sheet
-			if (writeType != WriteType.SCHEMA_ONLY) {
-				List<HashMap<String, Object>> tableData = metaData
-						.getTableData(tableName);
-				for (int rowIndex = 0; rowIndex < tableData.size(); rowIndex++) {
-					int insertIndex = rowIndex;
-					if (writeType != WriteType.DATA_ONLY) {
-						insertIndex++; // increase the insert index if header
-										// included
-					}
-					HSSFRow row = sheet.createRow(insertIndex);
-					HashMap<String, Object> columnData = tableData
-							.get(rowIndex);
-					for (String columnName : columnData.keySet()) {
-						ColumnDefinition columnDefinition = table
-								.getColumnDefinition(columnName);
-						HSSFCell cell = row.createCell(columnDefinition
-								.getColumnIndex());
-						switch (columnDefinition.getColumnType()) {
-						case DATE:
-							cell.setCellValue((Date) columnData.get(columnName));
-							break;
-						default:
-							cell.setCellValue(columnData.get(columnName)
-									.toString());
-						}
-					}
-				}
-			}
-		}
-
-		List<IndexDefinition> indexDefinitions = metaData.getIndexDefinitions();
-		if (indexDefinitions != null && !indexDefinitions.isEmpty()) {
-			Sheet indexesSheet = wb.createSheet("indexes");
-
-			for (int rowNumber = 0; rowNumber < indexDefinitions.size(); rowNumber ++) {
-				IndexDefinition indexDefinition = indexDefinitions.get(rowNumber);
-				Row indexRow = indexesSheet.createRow(rowNumber);
-
-				Cell tableNameCell = indexRow.createCell(0, Cell.CELL_TYPE_STRING);
-				tableNameCell.setCellValue(indexDefinition.getTableName());
+		return RowTransfer.transfer(new MetaDataRowSource(), metaData,
+				writeType != WriteType.SCHEMA_ONLY,
+				createSink(output, writeType, options), null);
+	}
 
-				Cell indexColumnsCell = indexRow.createCell(1, Cell.CELL_TYPE_STRING);
-				indexColumnsCell.setCellValue(createStringFromArray(indexDefinition.getColumnNames()));
-			}
+	/**
+	 * Creates a sink which adds a sheet to a new XLS workbook for each table it
+	 * is passed and writes the workbook to the output once the stream finishes.
+	 * 
+	 * @param output
+	 *            The mechanism for outputting the data (e.g. java.io.File etc)
+	 * @param writeType
+	 *            Rules around what to write
+	 * @param options
+	 *            The options to apply while writing (may be null)
+	 */
+	@Override
+	public final RowSink createSink(T output, WriteType writeType,
+			PoiJoiOptions options) {
+		if (!isValidOutput(output)) {
+			return null;
 		}
-
-		return write(output, wb);
+		return new WorkbookRowSink(output, writeType);
 	}
 	
 	private boolean isValidMetadata(PoiJoiMetaData metadata) {
@@ -159,4 +141,108 @@ public abstract class AbstractXLSWriter<T> {
 
 		return stringBuilder.toString();
 	}
+
+	/**
+	 * Builds the workbook one table at a time as the rows arrive.
+	 */
+	private class WorkbookRowSink implements RowSink {
+
+		private T output;
+		private WriteType writeType;
+		private HSSFWorkbook wb;
+		private HSSFSheet sheet;
+		private int insertIndex;
+		private List<IndexDefinition> indexDefinitions;
+
+		WorkbookRowSink(T output, WriteType writeType) {
+			super();
+			this.output = output;
+			this.writeType = writeType;
+			this.indexDefinitions = new ArrayList<IndexDefinition>();
+		}
+
+		@Override
+		public void startStream() {
+			wb = new HSSFWorkbook();
+		}
+
+		@Override
+		public void startTable(TableDefinition table) {
+			sheet = wb.createSheet(table.getTableName());
+			insertIndex = 0;
+
+			// do headers
+			if (writeType != WriteType.DATA_ONLY) {
+				HSSFRow headerRow = sheet.createRow(0);
+				for (ColumnDefinition cd : table.getColumnDefinitions()) {
+					HSSFCell cell = headerRow.createCell(cd.getColumnIndex());
+					cell.setCellValue(cd.getColumnName());
+				}
+				insertIndex++; // increase the insert index if header included
+			}
+
+			if (table.hasIndexDefinitions()) {
+				indexDefinitions.addAll(table.getIndexDefinitions());
+			}
+		}
+
+		@Override
+		public void writeRows(TableDefinition table,
+				List<HashMap<String, Object>> tableData) {
+
+			// write out the data into the sheet
+			if (writeType == WriteType.SCHEMA_ONLY) {
+				return;
+			}
+
+			for (int rowIndex = 0; rowIndex < tableData.size(); rowIndex++) {
+				HSSFRow row = sheet.createRow(insertIndex++);
+				HashMap<String, Object> columnData = tableData.get(rowIndex);
+				for (String columnName : columnData.keySet()) {
+					ColumnDefinition columnDefinition = table
+							.getColumnDefinition(columnName);
+					HSSFCell cell = row.createCell(columnDefinition
+							.getColumnIndex());
+					switch (columnDefinition.getColumnType()) {
+					case DATE:
+						cell.setCellValue((Date) columnData.get(columnName));
+						break;
+					default:
+						cell.setCellValue(columnData.get(columnName)
+								.toString());
+					}
+				}
+			}
+		}
+
+		@Override
+		public void finishTable(TableDefinition table) {
+			sheet = null;
+		}
+
+		@Override
+		public boolean finishStream() throws Exception {
+			if (!indexDefinitions.isEmpty()) {
+				Sheet indexesSheet = wb.createSheet("indexes");
+
+				for (int rowNumber = 0; rowNumber < indexDefinitions.size(); rowNumber ++) {
+					IndexDefinition indexDefinition = indexDefinitions.get(rowNumber);
+					Row indexRow = indexesSheet.createRow(rowNumber);
+
+					Cell tableNameCell = indexRow.createCell(0, Cell.CELL_TYPE_STRING);
+					tableNameCell.setCellValue(indexDefinition.getTableName());
+
+					Cell indexColumnsCell = indexRow.createCell(1, Cell.CELL_TYPE_STRING);
+					indexColumnsCell.setCellValue(createStringFromArray(indexDefinition.getColumnNames()));
+				}
+			}
+
+			return write(output, wb);
+		}
+
+		@Override
+		public void abortStream() {
+			wb = null;
+		}
+	}
 }
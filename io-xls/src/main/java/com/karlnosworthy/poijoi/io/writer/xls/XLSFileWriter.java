@@ -14,7 +14,7 @@ import com.karlnosworthy.poijoi.io.writer.FileWriter;
  * @author john.bartlett
  *
  */
-@SupportsFormat(type = "XLS")
+@SupportsFormat(type = "XLS", stateless = true)
 public class XLSFileWriter extends AbstractXLSWriter<File> implements
 		FileWriter {
 
@@ -14,7 +14,7 @@ import com.karlnosworthy.poijoi.io.writer.OutputStreamWriter;
  * @author john.bartlett
  *
  */
-@SupportsFormat(type = "XLS")
+@SupportsFormat(type = "XLS", stateless = true)
 public class XLSOutputStreamWriter extends AbstractXLSWriter<OutputStream> implements OutputStreamWriter {
 
 	@Override
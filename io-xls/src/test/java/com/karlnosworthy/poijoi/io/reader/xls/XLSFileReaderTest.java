@@ -15,6 +15,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.karlnosworthy.poijoi.PoiJoiOptions;
 import com.karlnosworthy.poijoi.model.ColumnDefinition;
 import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
 import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
@@ -155,4 +156,76 @@ public class XLSFileReaderTest {
 		assertEquals("col1String", indexDefinition.getColumnName(0));
 		assertEquals("col3Integer", indexDefinition.getColumnName(1));
 	}
+
+	/**
+	 * Check that reading the record stream gives the same structure, indexes
+	 * and values as loading the whole workbook
+	 */
+	@Test
+	public void testStreamingMatchesWorkbook() throws Exception {
+		for (String resourceName : new String[] { "test1.xls", "sheets_with_valid_indexes.xls" }) {
+			String path = getClass().getClassLoader().getResource(resourceName)
+					.getPath();
+
+			PoiJoiMetaData metaData = reader.read(new File(path), true);
+
+			PoiJoiMetaData streamedMetaData = reader.read(new File(path), true, createStreamingOptions());
+
+			assertEquals(metaData.getTableDefinitions().size(), streamedMetaData.getTableDefinitions().size());
+			for (String tableName : metaData.getTableDefinitions().keySet()) {
+				TableDefinition tableDefinition = metaData.getTableDefinition(tableName);
+				TableDefinition streamedTableDefinition = streamedMetaData.getTableDefinition(tableName);
+
+				assertTrue(streamedTableDefinition.isSameAs(tableDefinition));
+				assertEquals(tableDefinition.hasIndexDefinitions(), streamedTableDefinition.hasIndexDefinitions());
+				assertEquals(metaData.getTableData(tableName), streamedMetaData.getTableData(tableName));
+			}
+		}
+	}
+
+	@Test
+	public void testStreamingValidIndexes() throws Exception {
+		String path = getClass().getClassLoader().getResource("sheets_with_valid_indexes.xls")
+				.getPath();
+
+		PoiJoiMetaData metaData = reader.read(new File(path), false, createStreamingOptions());
+
+		TableDefinition tableDefinition = metaData.getTableDefinition("simple_data");
+		assertNotNull(tableDefinition);
+		assertEquals(1, tableDefinition.getIndexDefinitions().size());
+
+		IndexDefinition indexDefinition = tableDefinition.getIndexDefinition(0);
+		assertEquals("simple_data", indexDefinition.getTableName());
+		assertEquals("col1String", indexDefinition.getColumnName(0));
+		assertEquals("col3Integer", indexDefinition.getColumnName(1));
+		assertTrue(metaData.getTableData().isEmpty());
+	}
+
+	private PoiJoiOptions createStreamingOptions() {
+		Map<String, String> options = new HashMap<String, String>();
+		options.put(PoiJoiOptions.OPTION_STREAMING, "");
+		return new PoiJoiOptions(options);
+	}
+
+	/**
+	 * Test that reading the sheets at the same time gives the same tables as
+	 * reading them one after another
+	 */
+	@Test
+	public void testParallelReadMatchesSequential() throws Exception {
+		String path = getClass().getClassLoader().getResource("test1.xls")
+				.getPath();
+
+		PoiJoiMetaData metaData = reader.read(new File(path), true, null);
+
+		Map<String, String> options = new HashMap<String, String>();
+		options.put(PoiJoiOptions.OPTION_READ_THREADS, "4");
+		PoiJoiMetaData parallelMetaData = reader.read(new File(path), true, new PoiJoiOptions(options));
+
+		assertEquals(metaData.getTableDefinitions().keySet(), parallelMetaData.getTableDefinitions().keySet());
+		for (String tableName : metaData.getTableDefinitions().keySet()) {
+			assertTrue(parallelMetaData.getTableDefinition(tableName).isSameAs(metaData.getTableDefinition(tableName)));
+			assertEquals(metaData.getTableData(tableName), parallelMetaData.getTableData(tableName));
+		}
+	}
 }
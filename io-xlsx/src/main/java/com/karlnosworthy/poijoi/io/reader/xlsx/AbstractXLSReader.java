@@ -1,17 +1,35 @@
 package com.karlnosworthy.poijoi.io.reader.xlsx;
 
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+
+import javax.xml.parsers.SAXParserFactory;
 
 import org.apache.poi.hssf.usermodel.HSSFDateUtil;
+import org.apache.poi.openxml4j.opc.OPCPackage;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.DataFormatter;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorkbook;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.WorkbookDocument;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
 
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.MetaDataRowSink;
+import com.karlnosworthy.poijoi.io.ParallelTableReader;
+import com.karlnosworthy.poijoi.io.ParallelTableReader.TableReader;
+import com.karlnosworthy.poijoi.io.RowBuffer;
+import com.karlnosworthy.poijoi.io.RowSink;
+import com.karlnosworthy.poijoi.io.reader.ConfigurableReader;
+import com.karlnosworthy.poijoi.io.reader.RowSource;
 import com.karlnosworthy.poijoi.model.ColumnDefinition;
 import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
 import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
@@ -22,12 +40,19 @@ import com.karlnosworthy.poijoi.model.TableDefinition;
  * implementations will have to handle how the {@link Workbook} is initially
  * loaded.
  * 
+ * When the {@link PoiJoiOptions#OPTION_STREAMING} option is set the sheets are
+ * parsed one row at a time using an {@link XSSFReader} instead of loading the
+ * whole {@link Workbook}, so the memory used doesn't grow with the size of the
+ * sheets. Otherwise the sheets can be read at the same time, up to
+ * {@link PoiJoiOptions#OPTION_READ_THREADS} of them (see
+ * {@link ParallelTableReader}).
+ * 
  * @author john.bartlett
  *
  * @param <T>
  *            The source Type
  */
-public abstract class AbstractXLSReader<T> {
+public abstract class AbstractXLSReader<T> implements RowSource<T>, ConfigurableReader<T> {
 	
 	abstract boolean isValidInput(T input);
 
@@ -36,6 +61,11 @@ public abstract class AbstractXLSReader<T> {
 	 */
 	abstract Workbook getWorkbook(T source) throws Exception;
 
+	/**
+	 * Get an {@link OPCPackage} based on the source type, used when streaming
+	 */
+	abstract OPCPackage getPackage(T source) throws Exception;
+
 	/**
 	 * Reads in a XLSX representation of a database and converts it into a
 	 * {@link PoiJoiMetaData} object which holds the table structures and
@@ -50,29 +80,149 @@ public abstract class AbstractXLSReader<T> {
 	 */
 	public final PoiJoiMetaData read(T input, boolean readData)
 			throws Exception {
+		return read(input, readData, null);
+	}
+
+	/**
+	 * Reads in a XLSX representation of a database and converts it into a
+	 * {@link PoiJoiMetaData} object using the options given rather than any
+	 * that have been set on this reader.
+	 * 
+	 * @param input
+	 *            The input source of the data (e.g. java.io.File etc)
+	 * @param readData
+	 *            Whether or not to read the data or just the database structure
+	 * @param options
+	 *            The options to apply while reading (may be null)
+	 * @return a {@link PoiJoiMetaData} holding the table structures and
+	 *         optionally the table data
+	 */
+	@Override
+	public final PoiJoiMetaData read(T input, boolean readData,
+			PoiJoiOptions options) throws Exception {
+		MetaDataRowSink sink = new MetaDataRowSink(readData);
+		if (readRows(input, readData, sink, options)) {
+			return sink.getMetaData();
+		}
+		return null;
+	}
+
+	/**
+	 * Reads in a XLSX representation of a database and passes each table
+	 * structure and optionally its rows to the {@link RowSink}.
+	 * 
+	 * @param input
+	 *            The input source of the data (e.g. java.io.File etc)
+	 * @param readData
+	 *            Whether or not to read the data or just the database structure
+	 * @param sink
+	 *            The sink to pass the tables and rows to
+	 * @param options
+	 *            The options to apply while reading (may be null)
+	 * @return True if the input was valid and has been read otherwise false
+	 */
+	@Override
+	public final boolean readRows(T input, boolean readData, RowSink sink,
+			PoiJoiOptions options) throws Exception {
 		
 		if (!isValidInput(input)) {
-			return null;
+			return false;
+		}
+		
+		if (options != null && options.hasValue(PoiJoiOptions.OPTION_STREAMING)) {
+			readRowsStreaming(input, readData, sink);
+			return true;
 		}
 		
+		int numberOfThreads = ParallelTableReader.getNumberOfThreads(options);
+
 		Workbook workbook = getWorkbook(input);
-		Map<String, TableDefinition> tables = new HashMap<String, TableDefinition>();
-		Map<String, List<HashMap<String, Object>>> tableData = new HashMap<String, List<HashMap<String, Object>>>();
 		int totalNumberOfSheets = workbook.getNumberOfSheets();
 
+		List<TableReader> sheetReaders = new ArrayList<TableReader>();
 		for (int sheetIndex = 0; sheetIndex < (totalNumberOfSheets - 1); sheetIndex++) {
-			Sheet sheet = workbook.getSheetAt(sheetIndex);
+			sheetReaders.add(new SheetReader(workbook.getSheetAt(sheetIndex), readData));
+		}
+		ParallelTableReader.read(sheetReaders, sink, numberOfThreads);
+		return true;
+	}
+
+	/**
+	 * Reads a single sheet, which can be done at the same time as the other
+	 * sheets of the workbook.
+	 */
+	private class SheetReader implements TableReader {
+
+		private Sheet sheet;
+		private boolean readData;
+
+		SheetReader(Sheet sheet, boolean readData) {
+			super();
+			this.sheet = sheet;
+			this.readData = readData;
+		}
+
+		@Override
+		public void readTable(RowSink sink) throws Exception {
 			TableDefinition tableDefinition = parseSheetMeta(sheet);
 			if (tableDefinition == null) {
-				continue; // couldn't read table definition
+				return; // couldn't read table definition
 			}
-			tables.put(tableDefinition.getTableName(), tableDefinition);
+			sink.startTable(tableDefinition);
 			if (readData) {
-				tableData.put(tableDefinition.getTableName(),
-						readData(sheet, tableDefinition));
+				readData(sheet, tableDefinition, new RowBuffer(sink, tableDefinition));
 			}
+			sink.finishTable(tableDefinition);
+		}
+	}
+
+	private void readRowsStreaming(T input, boolean readData, RowSink sink)
+			throws Exception {
+
+		OPCPackage opcPackage = getPackage(input);
+		try {
+			XSSFReader xssfReader = new XSSFReader(opcPackage);
+			ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(opcPackage);
+			StylesTable styles = xssfReader.getStylesTable();
+
+			InputStream workbookData = xssfReader.getWorkbookData();
+			CTWorkbook workbook;
+			try {
+				workbook = WorkbookDocument.Factory.parse(workbookData).getWorkbook();
+			} finally {
+				workbookData.close();
+			}
+			boolean date1904 = workbook.isSetWorkbookPr() && workbook.getWorkbookPr().getDate1904();
+			int totalNumberOfSheets = workbook.getSheets().sizeOfSheetArray();
+
+			SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
+			saxParserFactory.setNamespaceAware(true);
+
+			XSSFReader.SheetIterator sheetIterator = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+			for (int sheetIndex = 0; sheetIndex < (totalNumberOfSheets - 1) && sheetIterator.hasNext(); sheetIndex++) {
+				InputStream sheetData = sheetIterator.next();
+				XLSXSheetHandler sheetHandler = new XLSXSheetHandler(sheetIterator.getSheetName(),
+						sharedStrings, styles, date1904, readData, sink);
+				try {
+					XMLReader sheetParser = saxParserFactory.newSAXParser().getXMLReader();
+					sheetParser.setContentHandler(sheetHandler);
+					sheetParser.parse(new InputSource(sheetData));
+				} catch (XLSXSheetHandler.StopParsingException stopParsingException) {
+					// Everything required from the sheet has been read
+				} finally {
+					sheetData.close();
+				}
+
+				TableDefinition tableDefinition = sheetHandler.getTableDefinition();
+				if (tableDefinition == null) {
+					continue; // couldn't read table definition
+				}
+				sheetHandler.flush();
+				sink.finishTable(tableDefinition);
+			}
+		} finally {
+			opcPackage.revert();
 		}
-		return new PoiJoiMetaData(readData, tables, tableData);
 	}
 
 	private TableDefinition parseSheetMeta(Sheet sheet) {
@@ -142,9 +292,9 @@ public abstract class AbstractXLSReader<T> {
 		return null;
 	}
 
-	private List<HashMap<String, Object>> readData(Sheet sheet,
-			TableDefinition tableDefinition) {
-		List<HashMap<String, Object>> rowData = new ArrayList<HashMap<String, Object>>();
+	private void readData(Sheet sheet, TableDefinition tableDefinition,
+			RowBuffer rowBuffer) throws Exception {
+		DataFormatter dataFormatter = new DataFormatter();
 		if (sheet.getLastRowNum() > 1) {
 			for (int rowIndex = 1; rowIndex <= sheet.getLastRowNum(); rowIndex++) {
 				Row dataRow = sheet.getRow(rowIndex);
@@ -160,6 +310,8 @@ public abstract class AbstractXLSReader<T> {
 					if (dataCell.getCellType() == Cell.CELL_TYPE_STRING) {
 						columnData.put(colName, dataCell.getStringCellValue()
 								.trim());
+					} else if (dataCell.getCellType() == Cell.CELL_TYPE_BOOLEAN) {
+						columnData.put(colName, dataFormatter.formatCellValue(dataCell));
 					} else if (HSSFDateUtil.isCellDateFormatted(dataCell)) {
 						columnData.put(colName, dataCell.getDateCellValue());
 					} else {
@@ -171,10 +323,10 @@ public abstract class AbstractXLSReader<T> {
 						}
 					}
 				}
-				rowData.add(columnData);
+				rowBuffer.add(columnData);
 			}
 		}
-		return rowData;
+		rowBuffer.flush();
 	}
 
 }
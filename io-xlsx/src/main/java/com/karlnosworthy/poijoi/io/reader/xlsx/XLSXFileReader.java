@@ -3,6 +3,8 @@ package com.karlnosworthy.poijoi.io.reader.xlsx;
 import java.io.File;
 import java.io.FileInputStream;
 
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
@@ -15,7 +17,7 @@ import com.karlnosworthy.poijoi.io.reader.FileReader;
  * @author john.bartlett
  *
  */
-@SupportsFormat(type = "XLSX")
+@SupportsFormat(type = "XLSX", stateless = true)
 public final class XLSXFileReader extends AbstractXLSReader<File> implements FileReader {
 
 	@Override
@@ -23,6 +25,11 @@ public final class XLSXFileReader extends AbstractXLSReader<File> implements Fil
 		return new XSSFWorkbook(new FileInputStream(source));
 	}
 
+	@Override
+	OPCPackage getPackage(File source) throws Exception {
+		return OPCPackage.open(source, PackageAccess.READ);
+	}
+
 	@Override
 	boolean isValidInput(File input) {
 		if (input == null || input.isDirectory()) {
@@ -3,6 +3,7 @@ package com.karlnosworthy.poijoi.io.reader.xlsx;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.apache.poi.openxml4j.opc.OPCPackage;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
@@ -16,7 +17,7 @@ import com.karlnosworthy.poijoi.io.reader.InputStreamReader;
  * @author john.bartlett
  *
  */
-@SupportsFormat(type = "XLSX")
+@SupportsFormat(type = "XLSX", stateless = true)
 public class XLSXInputStreamReader extends AbstractXLSReader<InputStream>
 		implements InputStreamReader {
 
@@ -25,6 +26,15 @@ public class XLSXInputStreamReader extends AbstractXLSReader<InputStream>
 		return new XSSFWorkbook(source);
 	}
 
+	/**
+	 * The package is read from the {@link InputStream} into memory, streaming
+	 * from a {@link java.io.File} avoids this.
+	 */
+	@Override
+	OPCPackage getPackage(InputStream source) throws Exception {
+		return OPCPackage.open(source);
+	}
+
 	@Override
 	boolean isValidInput(InputStream input) {
 		if (input == null) {
@@ -0,0 +1,347 @@
+package com.karlnosworthy.poijoi.io.reader.xlsx;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import com.karlnosworthy.poijoi.io.RowBuffer;
+import com.karlnosworthy.poijoi.io.RowSink;
+import com.karlnosworthy.poijoi.model.ColumnDefinition;
+import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
+import com.karlnosworthy.poijoi.model.TableDefinition;
+
+/**
+ * A SAX handler which reads a single XLSX worksheet one row at a time. The
+ * first row provides the column names, the second row is used to work out the
+ * column types (in the same way as {@link AbstractXLSReader} does) and every
+ * row after the first is passed on to the {@link RowSink} as it is parsed.
+ *
+ * Only the current row is ever held in memory.
+ *
+ * @author Karl Nosworthy
+ * @since 1.0
+ */
+final class XLSXSheetHandler extends DefaultHandler {
+
+	/**
+	 * Thrown to stop parsing once everything required has been read.
+	 */
+	static final class StopParsingException extends SAXException {
+
+		private static final long serialVersionUID = 1L;
+
+		StopParsingException() {
+			super("Parsing stopped");
+		}
+	}
+
+	/**
+	 * The contents of a single parsed cell.
+	 */
+	private static final class ParsedCell {
+		int columnIndex;
+		String type;
+		String rawValue;
+		XSSFCellStyle style;
+
+		boolean isNumeric() {
+			return type == null || type.equals("n");
+		}
+
+		boolean isBoolean() {
+			return "b".equals(type);
+		}
+
+		boolean isText() {
+			return "s".equals(type) || "inlineStr".equals(type) || "str".equals(type);
+		}
+
+		boolean isDateFormatted() {
+			if (!isNumeric() || style == null) {
+				return false;
+			}
+			double numericValue = getNumericValue();
+			return DateUtil.isValidExcelDate(numericValue)
+					&& DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString());
+		}
+
+		double getNumericValue() {
+			if (rawValue == null || rawValue.isEmpty()) {
+				return 0;
+			}
+			return Double.parseDouble(rawValue);
+		}
+	}
+
+	private String sheetName;
+	private ReadOnlySharedStringsTable sharedStrings;
+	private StylesTable styles;
+	private boolean date1904;
+	private boolean readData;
+	private RowSink sink;
+	private DataFormatter dataFormatter;
+
+	private int rowIndex;
+	private List<ParsedCell> rowCells;
+	private ParsedCell cell;
+	private StringBuilder cellValue;
+	private boolean collectingValue;
+	private boolean collectingInlineString;
+
+	private List<ParsedCell> headerCells;
+	private TableDefinition tableDefinition;
+	private RowBuffer rowBuffer;
+	private HashMap<String, Object> pendingRow;
+	private boolean skipSheet;
+
+	XLSXSheetHandler(String sheetName, ReadOnlySharedStringsTable sharedStrings,
+			StylesTable styles, boolean date1904, boolean readData, RowSink sink) {
+		super();
+		this.sheetName = sheetName;
+		this.sharedStrings = sharedStrings;
+		this.styles = styles;
+		this.date1904 = date1904;
+		this.readData = readData;
+		this.sink = sink;
+		this.dataFormatter = new DataFormatter();
+		this.rowIndex = -1;
+		this.cellValue = new StringBuilder();
+	}
+
+	/**
+	 * The table that was read from the sheet, or null if the sheet doesn't
+	 * have a header row.
+	 */
+	TableDefinition getTableDefinition() {
+		return tableDefinition;
+	}
+
+	@Override
+	public void startElement(String uri, String localName, String qName,
+			Attributes attributes) throws SAXException {
+
+		if ("row".equals(localName)) {
+			String rowReference = attributes.getValue("r");
+			rowIndex = rowReference != null ? Integer.parseInt(rowReference) - 1 : rowIndex + 1;
+			rowCells = new ArrayList<ParsedCell>();
+		} else if ("c".equals(localName)) {
+			int previousColumnIndex = cell != null ? cell.columnIndex : -1;
+			cell = new ParsedCell();
+
+			String cellReference = attributes.getValue("r");
+			if (cellReference != null) {
+				cell.columnIndex = new CellReference(cellReference).getCol();
+			} else {
+				cell.columnIndex = rowCells.isEmpty() ? 0 : previousColumnIndex + 1;
+			}
+			cell.type = attributes.getValue("t");
+
+			String styleIndex = attributes.getValue("s");
+			if (styleIndex != null && styles != null) {
+				cell.style = styles.getStyleAt(Integer.parseInt(styleIndex));
+			}
+		} else if ("v".equals(localName)) {
+			cellValue.setLength(0);
+			collectingValue = true;
+		} else if ("is".equals(localName)) {
+			cellValue.setLength(0);
+			collectingInlineString = true;
+		} else if ("t".equals(localName) && collectingInlineString) {
+			collectingValue = true;
+		}
+	}
+
+	@Override
+	public void characters(char[] ch, int start, int length) {
+		if (collectingValue) {
+			cellValue.append(ch, start, length);
+		}
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName)
+			throws SAXException {
+
+		if ("v".equals(localName) || ("t".equals(localName) && collectingInlineString)) {
+			collectingValue = false;
+		} else if ("is".equals(localName)) {
+			collectingInlineString = false;
+			cell.rawValue = cellValue.toString();
+		} else if ("c".equals(localName)) {
+			if (cell.rawValue == null && cellValue.length() > 0) {
+				cell.rawValue = cellValue.toString();
+			}
+			if ("s".equals(cell.type) && cell.rawValue != null) {
+				cell.rawValue = sharedStrings.getEntryAt(Integer.parseInt(cell.rawValue));
+			}
+			rowCells.add(cell);
+			cellValue.setLength(0);
+		} else if ("row".equals(localName)) {
+			endRow();
+			cell = null;
+		}
+	}
+
+	@Override
+	public void endDocument() throws SAXException {
+		if (!skipSheet && headerCells != null && tableDefinition == null) {
+			startTable(null);
+		}
+	}
+
+	private void endRow() throws SAXException {
+		if (skipSheet) {
+			return;
+		}
+
+		if (headerCells == null) {
+			if (rowIndex != 0) {
+				// If we don't have any columns then there's nothing we can do
+				skipSheet = true;
+				throw new StopParsingException();
+			}
+			headerCells = rowCells;
+			return;
+		}
+
+		if (tableDefinition == null) {
+			startTable(rowIndex == 1 ? rowCells : null);
+		}
+
+		if (!readData) {
+			throw new StopParsingException();
+		}
+
+		// Like the workbook based reader, the data is only read if there is
+		// more than one row of it.
+		HashMap<String, Object> rowData = readRow(rowCells);
+		try {
+			if (rowIndex == 1) {
+				pendingRow = rowData;
+			} else {
+				if (pendingRow != null) {
+					rowBuffer.add(pendingRow);
+					pendingRow = null;
+				}
+				rowBuffer.add(rowData);
+			}
+		} catch (SAXException saxException) {
+			throw saxException;
+		} catch (Exception exception) {
+			throw new SAXException(exception);
+		}
+	}
+
+	/**
+	 * Pass any remaining rows on to the sink.
+	 */
+	void flush() throws Exception {
+		if (rowBuffer != null) {
+			rowBuffer.flush();
+		}
+	}
+
+	private void startTable(List<ParsedCell> typedRowCells) throws SAXException {
+		List<ColumnDefinition> columns = new ArrayList<ColumnDefinition>();
+
+		for (ParsedCell headerCell : headerCells) {
+			String cellName = headerCell.rawValue != null ? headerCell.rawValue : "";
+
+			ParsedCell typedRowCell = null;
+			if (typedRowCells != null) {
+				typedRowCell = findCell(typedRowCells, headerCell.columnIndex);
+			}
+
+			ColumnType columnType = ColumnType.STRING;
+
+			if (typedRowCell == null || typedRowCell.rawValue == null) {
+				if (cellName.endsWith(".id")) {
+					columnType = ColumnType.INTEGER_NUMBER;
+				}
+			} else if (typedRowCell.isNumeric()) {
+				if (typedRowCell.isDateFormatted()) {
+					columnType = ColumnType.DATE;
+				} else {
+					String formattedValue = formatNumericCell(typedRowCell);
+
+					if (formattedValue.contains(".")) {
+						columnType = ColumnType.DECIMAL_NUMBER;
+					} else {
+						columnType = ColumnType.INTEGER_NUMBER;
+					}
+				}
+			}
+
+			columns.add(new ColumnDefinition(cellName, headerCell.columnIndex,
+					columnType));
+		}
+
+		tableDefinition = new TableDefinition(sheetName, columns);
+		try {
+			sink.startTable(tableDefinition);
+		} catch (Exception exception) {
+			throw new SAXException(exception);
+		}
+		rowBuffer = new RowBuffer(sink, tableDefinition);
+	}
+
+	private HashMap<String, Object> readRow(List<ParsedCell> cells) {
+		HashMap<String, Object> columnData = new HashMap<String, Object>();
+
+		for (ParsedCell dataCell : cells) {
+			ColumnDefinition columnDefinition = tableDefinition
+					.getColumnDefinition(dataCell.columnIndex);
+			if (columnDefinition == null) {
+				continue;
+			}
+			String colName = columnDefinition.getColumnName();
+
+			if (dataCell.isText()) {
+				String stringValue = dataCell.rawValue != null ? dataCell.rawValue : "";
+				columnData.put(colName, stringValue.trim());
+			} else if (dataCell.isBoolean()) {
+				// formatted as the workbook based reader's DataFormatter does
+				columnData.put(colName, String.valueOf("1".equals(dataCell.rawValue)));
+			} else if (!dataCell.isNumeric()) {
+				columnData.put(colName, dataCell.rawValue);
+			} else if (dataCell.isDateFormatted()) {
+				columnData.put(colName, DateUtil.getJavaDate(dataCell.getNumericValue(), date1904));
+			} else {
+				Double d = new Double(dataCell.getNumericValue());
+				if (columnDefinition.getColumnType() == ColumnType.INTEGER_NUMBER) {
+					columnData.put(colName, d.intValue());
+				} else {
+					columnData.put(colName, d);
+				}
+			}
+		}
+		return columnData;
+	}
+
+	private String formatNumericCell(ParsedCell numericCell) {
+		if (numericCell.style == null) {
+			return dataFormatter.formatRawCellContents(numericCell.getNumericValue(), 0, "General");
+		}
+		return dataFormatter.formatRawCellContents(numericCell.getNumericValue(),
+				numericCell.style.getDataFormat(), numericCell.style.getDataFormatString());
+	}
+
+	private ParsedCell findCell(List<ParsedCell> cells, int columnIndex) {
+		for (ParsedCell parsedCell : cells) {
+			if (parsedCell.columnIndex == columnIndex) {
+				return parsedCell;
+			}
+		}
+		return null;
+	}
+}
@@ -3,14 +3,20 @@ package com.karlnosworthy.poijoi.io.writer.xlsx;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
+import com.karlnosworthy.poijoi.PoiJoiOptions;
+import com.karlnosworthy.poijoi.io.MetaDataRowSource;
+import com.karlnosworthy.poijoi.io.RowSink;
+import com.karlnosworthy.poijoi.io.RowTransfer;
+import com.karlnosworthy.poijoi.io.writer.ConfigurableWriter;
+import com.karlnosworthy.poijoi.io.writer.RowSinkFactory;
 import com.karlnosworthy.poijoi.io.writer.Writer.WriteType;
 import com.karlnosworthy.poijoi.model.ColumnDefinition;
 import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
@@ -20,13 +26,29 @@ import com.karlnosworthy.poijoi.model.TableDefinition;
  * Abstract class used to handle all the generic XLSX access and then specific
  * implementations will have to handle how they write the {@link Workbook} out.
  * 
+ * When the {@link PoiJoiOptions#OPTION_STREAMING} option is set the rows are
+ * written to an {@link SXSSFWorkbook}, which only keeps a window of rows (see
+ * {@link #OPTION_ROW_WINDOW}) of each sheet in memory and flushes the rest to
+ * temporary files. The temporary files are removed once the workbook
+ * has been written (or the write has failed).
+ * 
  * @author john.bartlett
  *
  * @param <T>
  *            The output type
  */
-public abstract class AbstractXLSXWriter<T> {
+public abstract class AbstractXLSXWriter<T> implements RowSinkFactory<T>, ConfigurableWriter<T> {
 
+	/**
+	 * The number of rows to keep in memory when streaming.
+	 */
+	public static final String OPTION_ROW_WINDOW = "--row-window";
+	
+	/**
+	 * Whether to gzip the temporary files created when streaming.
+	 */
+	public static final String OPTION_COMPRESS_TEMP_FILES = "--compress-temp-files";
+	
 	abstract boolean isValidOutput(T output);
 	
 	/**
@@ -52,68 +74,178 @@ public abstract class AbstractXLSXWriter<T> {
 	 *            Rules around what to write
 	 */
 	public final boolean write(T output, PoiJoiMetaData metaData, WriteType writeType) throws Exception {
+		return write(output, metaData, writeType, null);
+	}
+
+	/**
+	 * Writes out an XLSX File to reflect the table structures and optionally the
+	 * data stored in the {@link PoiJoiMetaData}, using the options given.
+	 * 
+	 * @param output
+	 *            The mechanism for outputting the data (e.g. java.io.File etc)
+	 * @param metaData
+	 *            a {@link PoiJoiMetaData} holding the table structures and
+	 *            optionally the table data
+	 * @param writeType
+	 *            Rules around what to write
+	 * @param options
+	 *            The options to apply while writing (may be null)
+	 */
+	@Override
+	public final boolean write(T output, PoiJoiMetaData metaData,
+			WriteType writeType, PoiJoiOptions options) throws Exception {
 
 		if (!isValidOutput(output) || !isValidMetadata(metaData)) {
 			return false;
 		}
 		
-		Workbook wb = new XSSFWorkbook();
+		return RowTransfer.transfer(new MetaDataRowSource(), metaData,
+				writeType != WriteType.SCHEMA_ONLY, createSink(output, writeType, options), null);
+	}
+	
+	/**
+	 * Creates a sink which adds a sheet to a new XLSX workbook for each table it
+	 * is passed and writes the workbook to the output once the stream finishes.
+	 * 
+	 * @param output
+	 *            The mechanism for outputting the data (e.g. java.io.File etc)
+	 * @param writeType
+	 *            Rules around what to write
+	 * @param options
+	 *            The options to apply while writing (may be null)
+	 */
+	@Override
+	public final RowSink createSink(T output, WriteType writeType, PoiJoiOptions options) {
+		if (!isValidOutput(output)) {
+			return null;
+		}
+		return new WorkbookRowSink(output, writeType, options);
+	}
+	
+	private Workbook createWorkbook(PoiJoiOptions options) {
+		if (options == null || !options.hasValue(PoiJoiOptions.OPTION_STREAMING)) {
+			return new XSSFWorkbook();
+		}
 		
-		Map<String, TableDefinition> tableDefinitions = metaData.getTableDefinitions();
-		for (String tableName : tableDefinitions.keySet()) {
-			
-			Sheet sheet = wb.createSheet(tableName);
-			TableDefinition table = tableDefinitions.get(tableName);
-			List<ColumnDefinition> columnDefinitions = table.getColumnDefinitions();
+		int rowWindow = options.getIntValue(OPTION_ROW_WINDOW, SXSSFWorkbook.DEFAULT_WINDOW_SIZE);
+		if (rowWindow < 1) {
+			throw new IllegalArgumentException("The value of option " + OPTION_ROW_WINDOW + " must be at least 1: " + rowWindow);
+		}
+		
+		SXSSFWorkbook workbook = new SXSSFWorkbook(rowWindow);
+		workbook.setCompressTempFiles(options.getBooleanValue(OPTION_COMPRESS_TEMP_FILES, false));
+		return workbook;
+	}
+	
+	/**
+	 * Remove any temporary files used by a streamed workbook.
+	 */
+	private void dispose(Workbook workbook) {
+		if (workbook instanceof SXSSFWorkbook) {
+			((SXSSFWorkbook) workbook).dispose();
+		}
+	}
+	
+	private boolean isValidMetadata(PoiJoiMetaData metadata) {
+		if (metadata == null) {
+			return false;
+		} else {
+			if (metadata.getTableDefinitions() == null || metadata.getTableDefinitions().isEmpty()) {
+				return false;
+			} else if (metadata.isReadData() && metadata.getTableData() == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Builds the workbook one table at a time as the rows arrive.
+	 */
+	private class WorkbookRowSink implements RowSink {
+		
+		private T output;
+		private WriteType writeType;
+		private PoiJoiOptions options;
+		private Workbook wb;
+		private Sheet sheet;
+		private int insertIndex;
+		
+		WorkbookRowSink(T output, WriteType writeType, PoiJoiOptions options) {
+			super();
+			this.output = output;
+			this.writeType = writeType;
+			this.options = options;
+		}
+		
+		@Override
+		public void startStream() {
+			wb = createWorkbook(options);
+		}
+		
+		@Override
+		public void startTable(TableDefinition table) {
+			sheet = wb.createSheet(table.getTableName());
+			insertIndex = 0;
 			
 			// do headers
 			if (writeType != WriteType.DATA_ONLY) {
 				Row headerRow = sheet.createRow(0);
-				for (ColumnDefinition cd : columnDefinitions) {
+				for (ColumnDefinition cd : table.getColumnDefinitions()) {
 					Cell cell = headerRow.createCell(cd.getColumnIndex());
 					cell.setCellValue(cd.getColumnName());
 				}
+				insertIndex++; // increase the insert index if header included
 			}
+		}
+		
+		@Override
+		public void writeRows(TableDefinition table, List<HashMap<String, Object>> tableData) {
 			
 			// write out the data into the sheet
-			if (writeType != WriteType.SCHEMA_ONLY) {
-				List<HashMap<String, Object>> tableData = metaData.getTableData(tableName);
-				for (int rowIndex = 0; rowIndex < tableData.size(); rowIndex++) {
-					int insertIndex = rowIndex;
-					if (writeType != WriteType.DATA_ONLY) {
-						insertIndex++; // increase the insert index if header included
-					}
-					Row row = sheet.createRow(insertIndex);
-					HashMap<String,Object> columnData = tableData.get(rowIndex);
-					for (String columnName : columnData.keySet()) {
-						ColumnDefinition columnDefinition = table.getColumnDefinition(columnName);
-						Cell cell = row.createCell(columnDefinition.getColumnIndex());
-						switch (columnDefinition.getColumnType()) {
-							case DATE:
-								cell.setCellValue((Date) columnData.get(columnName));
-								break;
-							default:
-								cell.setCellValue(columnData.get(columnName).toString());
-						}
+			if (writeType == WriteType.SCHEMA_ONLY) {
+				return;
+			}
+			
+			for (int rowIndex = 0; rowIndex < tableData.size(); rowIndex++) {
+				Row row = sheet.createRow(insertIndex++);
+				HashMap<String,Object> columnData = tableData.get(rowIndex);
+				for (String columnName : columnData.keySet()) {
+					ColumnDefinition columnDefinition = table.getColumnDefinition(columnName);
+					Cell cell = row.createCell(columnDefinition.getColumnIndex());
+					switch (columnDefinition.getColumnType()) {
+						case DATE:
+							cell.setCellValue((Date) columnData.get(columnName));
+							break;
+						default:
+							cell.setCellValue(columnData.get(columnName).toString());
 					}
 				}
 			}
-			
 		}
-		return write(output, wb);
-	}
-	
-	private boolean isValidMetadata(PoiJoiMetaData metadata) {
-		if (metadata == null) {
-			return false;
-		} else {
-			if (metadata.getTableDefinitions() == null || metadata.getTableDefinitions().isEmpty()) {
-				return false;
-			} else if (metadata.isReadData() && metadata.getTableData() == null) {
-				return false;
+		
+		@Override
+		public void finishTable(TableDefinition table) {
+			sheet = null;
+		}
+		
+		@Override
+		public boolean finishStream() throws Exception {
+			try {
+				return write(output, wb);
+			} finally {
+				dispose(wb);
+				wb = null;
+			}
+		}
+		
+		@Override
+		public void abortStream() {
+			if (wb != null) {
+				dispose(wb);
+				wb = null;
 			}
 		}
-		return true;
 	}
-
 }
@@ -14,7 +14,7 @@ import com.karlnosworthy.poijoi.io.writer.FileWriter;
  * @author john.bartlett
  *
  */
-@SupportsFormat(type = "XLSX")
+@SupportsFormat(type = "XLSX", stateless = true)
 public class XLSXFileWriter extends AbstractXLSXWriter<File> implements
 		FileWriter {
 	
@@ -14,7 +14,7 @@ import com.karlnosworthy.poijoi.io.writer.OutputStreamWriter;
  * @author john.bartlett
  *
  */
-@SupportsFormat(type = "XLSX")
+@SupportsFormat(type = "XLSX", stateless = true)
 public class XLSXOutputStreamWriter extends AbstractXLSXWriter<OutputStream> implements
 		OutputStreamWriter {
 
@@ -5,15 +5,20 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.karlnosworthy.poijoi.PoiJoiOptions;
 import com.karlnosworthy.poijoi.model.ColumnDefinition;
 import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
 import com.karlnosworthy.poijoi.model.PoiJoiMetaData;
@@ -135,4 +140,97 @@ public class XLSXFileReaderTest {
 		assertEquals(new Double("12.02"), dataRow.get("col4Decimal"));
 	}
 
+	/**
+	 * Check that streaming the sheets gives the same structure and values as
+	 * loading the whole workbook
+	 */
+	@Test
+	public void testStreamingMatchesWorkbook() throws Exception {
+		String path = createWorkbookWithBooleanColumn().getPath();
+
+		PoiJoiMetaData metaData = reader.read(new File(path), true);
+		assertEquals("true", metaData.getTableData("Sheet1").get(0).get("col5Boolean"));
+
+		Map<String, String> options = new HashMap<String, String>();
+		options.put(PoiJoiOptions.OPTION_STREAMING, "");
+
+		PoiJoiMetaData streamedMetaData = reader.read(new File(path), true, new PoiJoiOptions(options));
+
+		assertEquals(1, streamedMetaData.getTableDefinitions().size());
+		assertTrue(streamedMetaData.getTableDefinition("Sheet1").isSameAs(
+				metaData.getTableDefinition("Sheet1")));
+		assertEquals(metaData.getTableData("Sheet1"),
+				streamedMetaData.getTableData("Sheet1"));
+	}
+
+	/**
+	 * Check that streaming just the structure doesn't read any data
+	 */
+	@Test
+	public void testStreamingColumnTypes() throws Exception {
+		String path = getClass().getClassLoader().getResource("test1.xlsx")
+				.getPath();
+
+		Map<String, String> options = new HashMap<String, String>();
+		options.put(PoiJoiOptions.OPTION_STREAMING, "");
+
+		PoiJoiMetaData metaData = reader.read(new File(path), false, new PoiJoiOptions(options));
+
+		TableDefinition tableDefinition = metaData.getTableDefinition("Sheet1");
+		assertNotNull(tableDefinition);
+		assertEquals(4, tableDefinition.getColumnCount());
+		assertEquals(ColumnType.DATE,
+				tableDefinition.getColumnDefinition("col2Date").getColumnType());
+		assertEquals(ColumnType.DECIMAL_NUMBER, tableDefinition
+				.getColumnDefinition("col4Decimal").getColumnType());
+		assertTrue(metaData.getTableData().isEmpty());
+	}
+
+	/**
+	 * Test that reading the sheets at the same time gives the same tables as
+	 * reading them one after another
+	 */
+	@Test
+	public void testParallelReadMatchesSequential() throws Exception {
+		String path = getClass().getClassLoader().getResource("test1.xlsx")
+				.getPath();
+
+		PoiJoiMetaData metaData = reader.read(new File(path), true, null);
+
+		Map<String, String> options = new HashMap<String, String>();
+		options.put(PoiJoiOptions.OPTION_READ_THREADS, "4");
+		PoiJoiMetaData parallelMetaData = reader.read(new File(path), true, new PoiJoiOptions(options));
+
+		assertEquals(metaData.getTableDefinitions().keySet(), parallelMetaData.getTableDefinitions().keySet());
+		for (String tableName : metaData.getTableDefinitions().keySet()) {
+			assertTrue(parallelMetaData.getTableDefinition(tableName).isSameAs(metaData.getTableDefinition(tableName)));
+			assertEquals(metaData.getTableData(tableName), parallelMetaData.getTableData(tableName));
+		}
+	}
+
+	/**
+	 * A copy of test1.xlsx with a column of boolean cells added to Sheet1.
+	 */
+	private File createWorkbookWithBooleanColumn() throws Exception {
+		InputStream inputStream = getClass().getClassLoader().getResourceAsStream("test1.xlsx");
+		XSSFWorkbook workbook = new XSSFWorkbook(inputStream);
+		inputStream.close();
+
+		Sheet sheet = workbook.getSheet("Sheet1");
+		int columnIndex = sheet.getRow(0).getLastCellNum();
+		sheet.getRow(0).createCell(columnIndex).setCellValue("col5Boolean");
+		for (int rowIndex = 1; rowIndex <= sheet.getLastRowNum(); rowIndex++) {
+			sheet.getRow(rowIndex).createCell(columnIndex).setCellValue(rowIndex % 2 == 1);
+		}
+
+		File file = File.createTempFile("poijoi", ".xlsx");
+		file.deleteOnExit();
+		FileOutputStream outputStream = new FileOutputStream(file);
+		try {
+			workbook.write(outputStream);
+		} finally {
+			outputStream.close();
+		}
+		return file;
+	}
 }
@@ -16,6 +16,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.karlnosworthy.poijoi.PoiJoiOptions;
 import com.karlnosworthy.poijoi.io.writer.Writer.WriteType;
 import com.karlnosworthy.poijoi.model.ColumnDefinition;
 import com.karlnosworthy.poijoi.model.ColumnDefinition.ColumnType;
@@ -122,4 +123,54 @@ public class XLSXFileWriterTest {
 		assertNotNull(sheet);
 		assertEquals(1, sheet.getLastRowNum());
 	}
+
+	/**
+	 * Check that streaming more rows than the row window through an
+	 * SXSSFWorkbook still writes every row
+	 */
+	@Test
+	public void testSuccessfulStreamingWrite() throws Exception {
+
+		List<ColumnDefinition> columnDefinitions = new ArrayList<ColumnDefinition>();
+		columnDefinitions.add(new ColumnDefinition("col1String", 0, ColumnType.STRING));
+		columnDefinitions.add(new ColumnDefinition("col2Integer", 1, ColumnType.INTEGER_NUMBER));
+
+		Map<String, TableDefinition> tableDefinitions = new HashMap<String, TableDefinition>();
+		tableDefinitions.put("TableOne", new TableDefinition("TableOne",
+				columnDefinitions));
+
+		List<HashMap<String, Object>> rowData = new ArrayList<HashMap<String, Object>>();
+		for (int rowIndex = 0; rowIndex < 25; rowIndex++) {
+			HashMap<String, Object> row = new HashMap<String, Object>();
+			row.put("col1String", "row" + rowIndex);
+			row.put("col2Integer", new Integer(rowIndex));
+			rowData.add(row);
+		}
+
+		Map<String, List<HashMap<String, Object>>> tableData = new HashMap<String, List<HashMap<String, Object>>>();
+		tableData.put("TableOne", rowData);
+
+		PoiJoiMetaData metaData = new PoiJoiMetaData(true, tableDefinitions,
+				tableData);
+
+		Map<String, String> options = new HashMap<String, String>();
+		options.put(PoiJoiOptions.OPTION_STREAMING, "");
+		options.put(AbstractXLSXWriter.OPTION_ROW_WINDOW, "5");
+		options.put(AbstractXLSXWriter.OPTION_COMPRESS_TEMP_FILES, "true");
+
+		String temp = System.getProperty("java.io.tmpdir");
+		File file = new File(temp, "test_streaming.xlsx");
+		file.deleteOnExit();
+
+		assertTrue(writer.write(file, metaData, WriteType.BOTH, new PoiJoiOptions(options)));
+
+		// validate contents of the file
+		XSSFWorkbook wb = new XSSFWorkbook(new FileInputStream(file));
+		XSSFSheet sheet = wb.getSheet("TableOne");
+		assertNotNull(sheet);
+		assertEquals(25, sheet.getLastRowNum());
+		assertEquals("col1String", sheet.getRow(0).getCell(0).getStringCellValue());
+		assertEquals("row0", sheet.getRow(1).getCell(0).getStringCellValue());
+		assertEquals("row24", sheet.getRow(25).getCell(0).getStringCellValue());
+	}
 }
@@ -70,7 +70,12 @@ public class PoiJoiLauncher implements PoiJoiRegistrationListener {
 		this.options = options;
 	}
 
-	public void process() throws Exception {
+	/**
+	 * Runs the conversion (or comparison) set up on this launcher.
+	 * 
+	 * @return False if the conversion failed, otherwise true
+	 */
+	public boolean process() throws Exception {
 		
 		PoiJoi poiJoi = null;
 
@@ -114,11 +119,10 @@ public class PoiJoiLauncher implements PoiJoiRegistrationListener {
 					logger.info("Match");
 				}
 			} else { // Normal I/O
-				PoiJoiMetaData metadata = poiJoi.read(primaryQualifierHandle, primaryFormat, true);
-				logger.info("Metadata: {} ",metadata);
-				poiJoi.write(metadata, secondaryQualifierHandle, secondaryFormat, WriteType.BOTH);
+				return poiJoi.convert(primaryQualifierHandle, primaryFormat, secondaryQualifierHandle, secondaryFormat, WriteType.BOTH, poiJoiOptions);
 			}
 		}
+		return true;
 	}
 
 	@Override
@@ -163,9 +167,13 @@ public class PoiJoiLauncher implements PoiJoiRegistrationListener {
 				} else {
 					poiJoiInstance.setOptions(parseOptions(args[0]));
 				}
-				poiJoiInstance.process();
+				if (!poiJoiInstance.process()) {
+					logger.error("Unable to convert {} to {}", poiJoiInstance.primaryQualifier, poiJoiInstance.secondaryQualifier);
+					System.exit(1);
+				}
 			} catch (Exception e) {
 				logger.error(e.getMessage(), e);
+				System.exit(1);
 			}
 		}
 	}